@@ -39,6 +39,11 @@ public class ConfigBuilder {
             newConfig.setDbPassword(encryptionUtil.encryptAsString(configRequest.getDbPassword()));
         }
         newConfig.setQuery(configRequest.getQuery());
+        newConfig.setPoolSize(configRequest.getPoolSize());
+        newConfig.setIdleTimeout(configRequest.getIdleTimeout());
+        newConfig.setMaxLifetime(configRequest.getMaxLifetime());
+        newConfig.setValidationQuery(configRequest.getValidationQuery());
+        newConfig.setMaxConcurrentMappings(configRequest.getMaxConcurrentMappings());
         return newConfig;
     }
 
@@ -33,6 +33,11 @@ public class ConfigResponseBuilder {
         configResponse.setUser(config.getUser());
         configResponse.setQuery(config.getQuery());
         configResponse.setUrl(config.getUrl());
+        configResponse.setPoolSize(config.getPoolSize());
+        configResponse.setIdleTimeout(config.getIdleTimeout());
+        configResponse.setMaxLifetime(config.getMaxLifetime());
+        configResponse.setValidationQuery(config.getValidationQuery());
+        configResponse.setMaxConcurrentMappings(config.getMaxConcurrentMappings());
         return configResponse;
     }
 }
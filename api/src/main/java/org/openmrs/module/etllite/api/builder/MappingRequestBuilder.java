@@ -32,11 +32,15 @@ public class MappingRequestBuilder {
         mapping.setName(mappingRequest.getName());
         mapping.setSource(mappingRequest.getSource());
         mapping.setTransformTemplate(mappingRequest.getTransformTemplate());
+        mapping.setTransformDefinition(mappingRequest.getTransformDefinition());
         mapping.setLoadTemplate(mappingRequest.getLoadTemplate());
         mapping.setQuery(mappingRequest.getQuery());
         mapping.setCronExpression(mappingRequest.getCronExpression());
         mapping.setFetchSize(mappingRequest.getFetchSize());
         mapping.setTestResultsSize(mappingRequest.getTestResultsSize());
+        if (mappingRequest.getSettings() != null) {
+            mapping.setSettings(mappingRequest.getSettings());
+        }
         return mapping;
     }
 }
@@ -34,10 +34,12 @@ public class MappingResponseBuilder {
         mappingResponse.setSource(mapping.getSource());
         mappingResponse.setQuery(mapping.getQuery());
         mappingResponse.setTransformTemplate(mapping.getTransformTemplate());
+        mappingResponse.setTransformDefinition(mapping.getTransformDefinition());
         mappingResponse.setLoadTemplate(mapping.getLoadTemplate());
         mappingResponse.setCronExpression(mapping.getCronExpression());
         mappingResponse.setFetchSize(mapping.getFetchSize());
         mappingResponse.setTestResultsSize(mapping.getTestResultsSize());
+        mappingResponse.setSettings(mapping.getSettings());
         return mappingResponse;
     }
 }
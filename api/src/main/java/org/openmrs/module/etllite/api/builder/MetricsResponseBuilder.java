@@ -0,0 +1,87 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.builder;
+
+import org.openmrs.module.etllite.api.contract.ExecutorStatsResponse;
+import org.openmrs.module.etllite.api.contract.MappingMetricsResponse;
+import org.openmrs.module.etllite.api.contract.StageMetricsResponse;
+import org.openmrs.module.etllite.api.engine.BoundedDaemonExecutor;
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+import org.openmrs.module.etllite.api.metrics.Histogram;
+import org.openmrs.module.etllite.api.metrics.MappingMetrics;
+import org.openmrs.module.etllite.api.metrics.StageMetrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Response Builder class for the metrics of the mappings and the listener executors
+ */
+public class MetricsResponseBuilder {
+
+    /**
+     * Creates <code>MappingMetricsResponse</code> from the metrics of a mapping
+     *
+     * @param mappingMetrics metrics of the mapping
+     * @return <code>MappingMetricsResponse</code>
+     */
+    public MappingMetricsResponse createFrom(MappingMetrics mappingMetrics) {
+        Map<String, StageMetricsResponse> stages = new LinkedHashMap<>();
+        for (ETLStage stage : ETLStage.values()) {
+            stages.put(stage.name(), createFrom(mappingMetrics.getStage(stage), stage));
+        }
+
+        MappingMetricsResponse response = new MappingMetricsResponse();
+        response.setSource(mappingMetrics.getSource());
+        response.setMapping(mappingMetrics.getMapping());
+        response.setStages(stages);
+        return response;
+    }
+
+    /**
+     * Creates <code>ExecutorStatsResponse</code> from the current state of an executor
+     *
+     * @param executor the executor of an ETL event listener
+     * @return <code>ExecutorStatsResponse</code>
+     */
+    public ExecutorStatsResponse createFrom(BoundedDaemonExecutor executor) {
+        ExecutorStatsResponse response = new ExecutorStatsResponse();
+        response.setName(executor.getName());
+        response.setMaxWorkers(executor.getMaxWorkers());
+        response.setActiveWorkers(executor.getActiveWorkers());
+        response.setQueueCapacity(executor.getQueueCapacity());
+        response.setQueueDepth(executor.getQueueDepth());
+        response.setCompletedTasks(executor.getCompletedTasks());
+        response.setRejectedTasks(executor.getRejectedTasks());
+        response.setMeanWaitMillis(executor.getWaitTime().getMeanMillis());
+        response.setMaxWaitMillis(executor.getWaitTime().getMaxMillis());
+        response.setMeanRunMillis(executor.getRunTime().getMeanMillis());
+        response.setMaxRunMillis(executor.getRunTime().getMaxMillis());
+        return response;
+    }
+
+    private StageMetricsResponse createFrom(StageMetrics stageMetrics, ETLStage stage) {
+        Histogram batchLatency = stageMetrics.getBatchLatency();
+        StageMetricsResponse response = new StageMetricsResponse();
+        response.setBatches(batchLatency.getCount());
+        response.setRowsIn(stageMetrics.getRowsIn());
+        response.setRowsOut(stageMetrics.getRowsOut());
+        response.setErrors(stageMetrics.getErrors());
+        response.setRowsPerSecond(stageMetrics.getRowsPerSecond());
+        response.setMeanBatchMillis(batchLatency.getMeanMillis());
+        response.setMaxBatchMillis(batchLatency.getMaxMillis());
+        response.setBatchLatency(batchLatency.getBuckets());
+        if (stage == ETLStage.EXTRACT) {
+            response.setMeanTimeToFirstRowMillis(stageMetrics.getTimeToFirstRow().getMeanMillis());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.etllite.api.domain.Mapping;
+import org.openmrs.module.etllite.api.domain.MappingSettings;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the mappings used by the ETL runs, so the mapping with its query and templates is not read from the database
+ * again for the extract, transform and load of every batch. The mappings are cached per source and name as detached
+ * snapshots, which are shared by all the runs of the mapping and must not be modified. The parsed templates of the
+ * snapshot are kept by the {@link TemplateCache} under the id of the mapping. The mapping service removes the cached
+ * mapping whenever the mapping is created, updated or deleted. Mappings which do not exist are never cached. A mapping
+ * loaded before it was removed is not cached, as it may be the previous version of the mapping.
+ */
+public class MappingCache {
+
+    private static final Log LOGGER = LogFactory.getLog(MappingCache.class);
+
+    private static final String KEY_SEPARATOR = ":";
+
+    private final Map<String, Mapping> mappings = new ConcurrentHashMap<>();
+
+    // the number of invalidations of each mapping, a mapping is cached only if it was not invalidated while loading
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Returns the snapshot of the mapping, the mapping is loaded and cached if it is not cached yet
+     *
+     * @param source source of the mapping
+     * @param name   name of the mapping
+     * @param loader loads the mapping from the database, returns null if the mapping does not exist
+     * @return snapshot of the mapping or null if the mapping does not exist
+     */
+    public Mapping getMapping(String source, String name, Supplier<Mapping> loader) {
+        String key = source + KEY_SEPARATOR + name;
+        Mapping cachedMapping = mappings.get(key);
+        if (cachedMapping != null) {
+            hitCount.incrementAndGet();
+            return cachedMapping;
+        }
+
+        missCount.incrementAndGet();
+        long loadEpoch = epoch.get();
+        long loadGeneration = generations.getOrDefault(key, 0L);
+        Mapping mapping = loader.get();
+        if (mapping == null) {
+            return null;
+        }
+        Mapping snapshot = snapshot(mapping);
+        // the check and the caching are atomic with the invalidation of the same mapping
+        generations.compute(key, (k, generation) -> {
+            if (epoch.get() == loadEpoch && (generation == null ? 0L : generation) == loadGeneration) {
+                mappings.put(key, snapshot);
+            }
+            return generation;
+        });
+        LOGGER.debug(String.format("Mapping cached, key : %s, hits : %d, misses : %d", key, hitCount.get(),
+                missCount.get()));
+        return snapshot;
+    }
+
+    /**
+     * Removes the cached mapping
+     *
+     * @param source source of the mapping
+     * @param name   name of the mapping
+     */
+    public void invalidate(String source, String name) {
+        String key = source + KEY_SEPARATOR + name;
+        generations.compute(key, (k, generation) -> {
+            mappings.remove(key);
+            return generation == null ? 1L : generation + 1;
+        });
+    }
+
+    /**
+     * Removes all the cached mappings
+     */
+    public void invalidateAll() {
+        // the epoch is advanced first, so a mapping loaded before can not be cached after the clearing
+        epoch.incrementAndGet();
+        mappings.clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int size() {
+        return mappings.size();
+    }
+
+    /**
+     * Copies the mapping without the audit users, so the snapshot does not hold the Hibernate session of the
+     * transaction which loaded it
+     */
+    private Mapping snapshot(Mapping mapping) {
+        Mapping snapshot = new Mapping();
+        snapshot.setId(mapping.getId());
+        snapshot.setUuid(mapping.getUuid());
+        snapshot.setName(mapping.getName());
+        snapshot.setDescription(mapping.getDescription());
+        snapshot.setSource(mapping.getSource());
+        snapshot.setQuery(mapping.getQuery());
+        snapshot.setTransformTemplate(mapping.getTransformTemplate());
+        snapshot.setTransformDefinition(mapping.getTransformDefinition());
+        snapshot.setLoadTemplate(mapping.getLoadTemplate());
+        snapshot.setCronExpression(mapping.getCronExpression());
+        snapshot.setFetchSize(mapping.getFetchSize());
+        snapshot.setTestResultsSize(mapping.getTestResultsSize());
+        snapshot.setDateCreated(mapping.getDateCreated());
+        snapshot.setDateChanged(mapping.getDateChanged());
+        snapshot.setRetired(mapping.getRetired());
+        if (mapping.getSettings() != null) {
+            snapshot.setSettings(new MappingSettings(mapping.getSettings()));
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.ServiceContext;
+import org.openmrs.module.etllite.api.util.Util;
+import org.springframework.beans.BeansException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the OpenMRS services and Spring beans which are exposed to the load templates, so they are not parsed from
+ * the configuration and looked up again for every loaded batch. The services are resolved once for the services
+ * configuration of the module and resolved again only when the configuration is changed or the cache is invalidated,
+ * which happens whenever the configuration is saved. Configurations with services which can not be found are
+ * never cached.
+ */
+public class ServiceCache {
+
+    private static final Log LOGGER = LogFactory.getLog(ServiceCache.class);
+
+    private Util util = new Util();
+
+    private volatile ResolvedServices resolvedServices;
+
+    /**
+     * Returns the services of the configuration, the services are resolved if they are not cached yet or if the
+     * configuration was changed since they were cached.
+     *
+     * @param servicesConfig comma separated services configuration, e.g. "patientService:patientService"
+     * @return unmodifiable map of the services by the names used in the load templates
+     * @throws IllegalArgumentException if some of the services can not be found
+     */
+    public Map<String, Object> getServices(String servicesConfig) {
+        ResolvedServices cached = resolvedServices;
+        if (cached != null && Objects.equals(cached.servicesConfig, servicesConfig)) {
+            return cached.services;
+        }
+
+        Map<String, Object> services = resolve(util.parseStringToMap(servicesConfig));
+        resolvedServices = new ResolvedServices(servicesConfig, services);
+        LOGGER.debug(String.format("Services resolved : %s", services.keySet()));
+        return services;
+    }
+
+    /**
+     * Removes the resolved services, so they are resolved again by the next load
+     */
+    public void invalidate() {
+        resolvedServices = null;
+    }
+
+    public void setUtil(Util util) {
+        this.util = util;
+    }
+
+    private Map<String, Object> resolve(Map<String, String> servicesToLoad) {
+        Map<String, Object> services = new HashMap<>();
+        StringBuilder notFoundServices = new StringBuilder();
+
+        for (Map.Entry<String, String> entry : servicesToLoad.entrySet()) {
+            String serviceKey = entry.getValue();
+
+            // We allow both loading OpenMRS service by providing their class (required for services such a
+            // the idgen service) or by their bean name.
+            Object service = tryLoadingService(serviceKey);
+            if (service == null) {
+                service = tryLoadingBean(serviceKey);
+            }
+
+            if (service == null) {
+                notFoundServices.append(entry.getValue());
+                notFoundServices.append('\n');
+            } else {
+                services.put(entry.getKey(), service);
+            }
+        }
+        // We couldn't find some services
+        if (!notFoundServices.toString().isEmpty()) {
+            throw new IllegalArgumentException(String.format("Didn't load some services %s", notFoundServices));
+        }
+        return Collections.unmodifiableMap(services);
+    }
+
+    private Object tryLoadingService(String serviceKey) {
+        Object service = null;
+        try {
+            Class<?> serviceClass = Thread.currentThread().getContextClassLoader().loadClass(serviceKey);
+            service = ServiceContext.getInstance().getService(serviceClass);
+        } catch (ClassNotFoundException | APIException ex) {
+            LOGGER.debug("Service not found", ex);
+        }
+
+        return service;
+    }
+
+    private Object tryLoadingBean(String beanName) {
+        Object bean = null;
+        try {
+            bean = ServiceContext.getInstance().getApplicationContext().getBean(beanName);
+        } catch (BeansException | APIException ex) {
+            LOGGER.debug("Bean not found", ex);
+        }
+        return bean;
+    }
+
+    private static final class ResolvedServices {
+
+        private final String servicesConfig;
+
+        private final Map<String, Object> services;
+
+        ResolvedServices(String servicesConfig, Map<String, Object> services) {
+            this.servicesConfig = servicesConfig;
+            this.services = services;
+        }
+    }
+}
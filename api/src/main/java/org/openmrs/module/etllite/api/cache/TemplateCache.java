@@ -0,0 +1,178 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.velocity.Template;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.RuntimeSingleton;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.openmrs.module.etllite.api.domain.Mapping;
+import org.openmrs.module.etllite.api.transform.CompiledTransform;
+import org.openmrs.module.etllite.api.transform.TransformCompiler;
+
+import java.io.StringReader;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the parsed Velocity templates of the mappings, so the query, transform and load templates are not parsed
+ * again for every batch. The templates are cached per mapping id and template name and a cached template is used
+ * only as long as the mapping date changed and the template source are the same as at the time it was parsed.
+ * Templates of mappings without id (not saved yet) are never cached. The compiled declarative transforms of the
+ * mappings are kept the same way.
+ */
+public class TemplateCache {
+
+    private static final Log LOGGER = LogFactory.getLog(TemplateCache.class);
+
+    private static final String KEY_SEPARATOR = ":";
+
+    private final Map<String, CachedEntry<Template>> templates = new ConcurrentHashMap<>();
+
+    private final Map<Integer, CachedEntry<CompiledTransform>> transforms = new ConcurrentHashMap<>();
+
+    private final TransformCompiler transformCompiler = new TransformCompiler();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Returns the parsed template of the mapping, the template is parsed and cached if it is not cached yet
+     * or if the mapping was changed since it was cached.
+     *
+     * @param mapping      mapping which owns the template
+     * @param templateName name of the template, e.g. "ETL Transform"
+     * @param source       source of the template
+     * @return parsed template ready to be merged
+     * @throws ParseErrorException if the template can not be parsed
+     */
+    public Template getTemplate(Mapping mapping, String templateName, String source) {
+        if (mapping.getId() == null) {
+            return parse(templateName, source);
+        }
+        String key = mapping.getId() + KEY_SEPARATOR + templateName;
+        CachedEntry<Template> cachedTemplate = templates.get(key);
+        if (cachedTemplate != null && cachedTemplate.isValidFor(mapping.getDateChanged(), source)) {
+            hitCount.incrementAndGet();
+            return cachedTemplate.getValue();
+        }
+
+        missCount.incrementAndGet();
+        Template template = parse(templateName, source);
+        templates.put(key, new CachedEntry<>(mapping.getDateChanged(), source, template));
+        LOGGER.debug(String.format("Template cached, key : %s, hits : %d, misses : %d", key, hitCount.get(),
+                missCount.get()));
+        return template;
+    }
+
+    /**
+     * Returns the compiled declarative transform of the mapping, the transform is compiled and cached if it is not
+     * cached yet or if the mapping was changed since it was cached.
+     *
+     * @param mapping    mapping which owns the transform
+     * @param definition JSON definition of the transform
+     * @return compiled transform
+     * @throws IllegalArgumentException if the definition is not valid
+     */
+    public CompiledTransform getTransform(Mapping mapping, String definition) {
+        if (mapping.getId() == null) {
+            return transformCompiler.compile(definition);
+        }
+        CachedEntry<CompiledTransform> cachedTransform = transforms.get(mapping.getId());
+        if (cachedTransform != null && cachedTransform.isValidFor(mapping.getDateChanged(), definition)) {
+            hitCount.incrementAndGet();
+            return cachedTransform.getValue();
+        }
+
+        missCount.incrementAndGet();
+        CompiledTransform transform = transformCompiler.compile(definition);
+        transforms.put(mapping.getId(), new CachedEntry<>(mapping.getDateChanged(), definition, transform));
+        return transform;
+    }
+
+    /**
+     * Removes all the cached templates of the mapping
+     *
+     * @param mappingId id of the mapping
+     */
+    public void invalidate(Integer mappingId) {
+        if (mappingId == null) {
+            return;
+        }
+        String keyPrefix = mappingId + KEY_SEPARATOR;
+        templates.keySet().removeIf(key -> key.startsWith(keyPrefix));
+        transforms.remove(mappingId);
+    }
+
+    /**
+     * Removes all the cached templates
+     */
+    public void invalidateAll() {
+        templates.clear();
+        transforms.clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int size() {
+        return templates.size() + transforms.size();
+    }
+
+    private Template parse(String templateName, String source) {
+        RuntimeServices runtimeServices = RuntimeSingleton.getRuntimeServices();
+        Template template = new Template();
+        template.setName(templateName);
+        template.setRuntimeServices(runtimeServices);
+        try {
+            template.setData(runtimeServices.parse(new StringReader(source), templateName));
+        } catch (ParseException e) {
+            throw new ParseErrorException(e);
+        }
+        template.initDocument();
+        return template;
+    }
+
+    private static final class CachedEntry<T> {
+
+        private final Date dateChanged;
+
+        private final String source;
+
+        private final T value;
+
+        CachedEntry(Date dateChanged, String source, T value) {
+            this.dateChanged = dateChanged;
+            this.source = source;
+            this.value = value;
+        }
+
+        boolean isValidFor(Date mappingDateChanged, String templateSource) {
+            return Objects.equals(dateChanged, mappingDateChanged) && Objects.equals(source, templateSource);
+        }
+
+        T getValue() {
+            return value;
+        }
+    }
+}
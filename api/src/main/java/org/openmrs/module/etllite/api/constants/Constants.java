@@ -40,6 +40,8 @@ public final class Constants {
 
     public static final String CONTEXT_PARAM_OUTS = "outs";
 
+    public static final String CONTEXT_PARAM_WATERMARK = "watermark";
+
     public static final String SUBJECT_RUNNER = "ETLRunnerJob";
 
     public static final String PARAM_JOB_ID = "JobID";
@@ -62,6 +64,10 @@ public final class Constants {
 
     public static final String ETL_FAILURE_SUBJECT = "etl-failure";
 
+    public static final String ETL_FAILURE_SUMMARY_SUBJECT = "etl-failure-summary";
+
+    public static final String ETL_IMPORT_FAILURE_COUNT = "etl-import.failure_count";
+
     public static final String ETL_IMPORT_JOB_ID = "etl-import-jobId";
 
     public static final String CRON_PROPERTY = "cron";
@@ -76,6 +82,11 @@ public final class Constants {
 
     public static final String INVALID_CONFIG_DB_PASSWORD_MESSAGE = "Password cant't be blank for new config";
 
+    public static final String INVALID_CONFIG_POOL_SIZE_MESSAGE = "Pool size must be greater than zero";
+
+    public static final String INVALID_CONFIG_MAX_CONCURRENT_MAPPINGS_MESSAGE =
+            "Max concurrent mappings must be greater than zero";
+
     public static final String INVALID_ENUM_TYPE_MESSAGE = "Type isn't valid enum type: MYSQL | MSSQL | POSTGRESQL";
 
     public static final String CONFIG_SERVICE_INITIALIZATION_ERROR = "config service initialization error";
@@ -83,6 +94,68 @@ public final class Constants {
     /** The default length (size in bytes) of TEXT datatype in MySQL. */
     public static final int MYSQL_TEXT_DATATYPE_LENGTH = 65535;
 
+    /** The number of rows fetched and processed at once when the mapping does not define the fetch size. */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /** The maximum number of pooled connections of an ETL database if the config does not define it. */
+    public static final int DEFAULT_POOL_SIZE = 10;
+
+    /** The time in milliseconds after which an idle pooled connection is closed. */
+    public static final long DEFAULT_POOL_IDLE_TIMEOUT = 600000L;
+
+    /** The maximum lifetime in milliseconds of a pooled connection. */
+    public static final long DEFAULT_POOL_MAX_LIFETIME = 1800000L;
+
+    /** The number of mappings of an ETL database which may run at once if the config does not define it. */
+    public static final int DEFAULT_MAX_CONCURRENT_MAPPINGS = 4;
+
+    /** The number of rows sent to the database in a single JDBC batch by the batch insert utility. */
+    public static final int DEFAULT_JDBC_BATCH_SIZE = 100;
+
+    /** The maximum number of failed records waiting to be written to the error log. */
+    public static final int DEFAULT_ERROR_QUEUE_CAPACITY = 10000;
+
+    /** The maximum number of failed records written to the error log in a single transaction. */
+    public static final int DEFAULT_ERROR_FLUSH_SIZE = 500;
+
+    /** The time in milliseconds after which the waiting failed records are written to the error log. */
+    public static final long DEFAULT_ERROR_FLUSH_INTERVAL = 1000L;
+
+    /** The time in milliseconds for which the failures of the same template call share their stack trace. */
+    public static final long DEFAULT_ERROR_SUMMARY_INTERVAL = 60000L;
+
+    /** The number of events of a listener handled at once if the listener executor does not define it. */
+    public static final int DEFAULT_LISTENER_MAX_WORKERS = 4;
+
+    /** The maximum number of events of a listener waiting for a worker if the executor does not define it. */
+    public static final int DEFAULT_LISTENER_QUEUE_CAPACITY = 100;
+
+    /** The estimated heap in bytes used by the buffered extract of a mapping before its rows are spilled to disk. */
+    public static final long DEFAULT_EXTRACT_BUFFER_MEMORY = 32L * 1024 * 1024;
+
+    /** The maximum number of extracted batches of a pipelined run waiting to be loaded. */
+    public static final int DEFAULT_PIPELINE_QUEUE_CAPACITY = 4;
+
+    /** The time in milliseconds in which an adaptive batch should be transformed and loaded. */
+    public static final int DEFAULT_TARGET_BATCH_LATENCY = 5000;
+
+    /** The number of key ranges of a partitioned extract if the mapping does not define it. */
+    public static final int DEFAULT_PARTITION_COUNT = 4;
+
+    /** The names of the extract query parameters with the bounds of the key range of a partitioned extract. */
+    public static final String PARAM_PARTITION_FROM = "partitionFrom";
+
+    public static final String PARAM_PARTITION_TO = "partitionTo";
+
+    /** The number of scheduled mappings run at the same time if the job scheduler does not define it. */
+    public static final int DEFAULT_MAX_CONCURRENT_JOBS = 4;
+
+    /** The number of scheduled mappings of the same ETL source run at the same time. */
+    public static final int DEFAULT_MAX_CONCURRENT_JOBS_PER_SOURCE = 2;
+
+    /** The time in milliseconds after the scheduled time after which a firing of a mapping is missed. */
+    public static final long DEFAULT_MISFIRE_THRESHOLD = 60000L;
+
     private Constants() {
         // private. So can't be initialized
     }
@@ -28,6 +28,16 @@ public class ConfigResponse {
 
     private String url;
 
+    private Integer poolSize;
+
+    private Long idleTimeout;
+
+    private Long maxLifetime;
+
+    private String validationQuery;
+
+    private Integer maxConcurrentMappings;
+
     public String getUser() {
         return user;
     }
@@ -67,4 +77,44 @@ public class ConfigResponse {
     public void setUrl(String url) {
         this.url = url;
     }
+
+    public Integer getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public Long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(Long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    public Integer getMaxConcurrentMappings() {
+        return maxConcurrentMappings;
+    }
+
+    public void setMaxConcurrentMappings(Integer maxConcurrentMappings) {
+        this.maxConcurrentMappings = maxConcurrentMappings;
+    }
 }
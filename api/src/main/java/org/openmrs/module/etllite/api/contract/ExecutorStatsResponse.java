@@ -0,0 +1,128 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.contract;
+
+/**
+ * Statistics of the executor of an ETL event listener: the workers, the queue of the waiting events and the time
+ * the events waited for a worker and were handled
+ */
+public class ExecutorStatsResponse {
+
+    private String name;
+
+    private int maxWorkers;
+
+    private int activeWorkers;
+
+    private int queueCapacity;
+
+    private int queueDepth;
+
+    private long completedTasks;
+
+    private long rejectedTasks;
+
+    private double meanWaitMillis;
+
+    private double maxWaitMillis;
+
+    private double meanRunMillis;
+
+    private double maxRunMillis;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public void setMaxWorkers(int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers;
+    }
+
+    public void setActiveWorkers(int activeWorkers) {
+        this.activeWorkers = activeWorkers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    public void setCompletedTasks(long completedTasks) {
+        this.completedTasks = completedTasks;
+    }
+
+    public long getRejectedTasks() {
+        return rejectedTasks;
+    }
+
+    public void setRejectedTasks(long rejectedTasks) {
+        this.rejectedTasks = rejectedTasks;
+    }
+
+    public double getMeanWaitMillis() {
+        return meanWaitMillis;
+    }
+
+    public void setMeanWaitMillis(double meanWaitMillis) {
+        this.meanWaitMillis = meanWaitMillis;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(double maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public double getMeanRunMillis() {
+        return meanRunMillis;
+    }
+
+    public void setMeanRunMillis(double meanRunMillis) {
+        this.meanRunMillis = meanRunMillis;
+    }
+
+    public double getMaxRunMillis() {
+        return maxRunMillis;
+    }
+
+    public void setMaxRunMillis(double maxRunMillis) {
+        this.maxRunMillis = maxRunMillis;
+    }
+}
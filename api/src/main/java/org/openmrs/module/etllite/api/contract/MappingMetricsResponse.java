@@ -0,0 +1,49 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.contract;
+
+import java.util.Map;
+
+/**
+ * Metrics of the stages of an ETL mapping
+ */
+public class MappingMetricsResponse {
+
+    private String source;
+
+    private String mapping;
+
+    private Map<String, StageMetricsResponse> stages;
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getMapping() {
+        return mapping;
+    }
+
+    public void setMapping(String mapping) {
+        this.mapping = mapping;
+    }
+
+    public Map<String, StageMetricsResponse> getStages() {
+        return stages;
+    }
+
+    public void setStages(Map<String, StageMetricsResponse> stages) {
+        this.stages = stages;
+    }
+}
@@ -10,6 +10,8 @@
 
 package org.openmrs.module.etllite.api.contract;
 
+import org.openmrs.module.etllite.api.domain.MappingSettings;
+
 /**
  * Mapping Request Class
  *
@@ -29,10 +31,14 @@ public class MappingRequest {
 
     private String transformTemplate;
 
+    private String transformDefinition;
+
     private int fetchSize;
 
     private int testResultsSize;
 
+    private MappingSettings settings;
+
     public String getName() {
         return name;
     }
@@ -81,6 +87,14 @@ public class MappingRequest {
         this.transformTemplate = transformTemplate;
     }
 
+    public String getTransformDefinition() {
+        return transformDefinition;
+    }
+
+    public void setTransformDefinition(String transformDefinition) {
+        this.transformDefinition = transformDefinition;
+    }
+
     public int getFetchSize() {
         return fetchSize;
     }
@@ -96,4 +110,12 @@ public class MappingRequest {
     public void setTestResultsSize(int testResultsSize) {
         this.testResultsSize = testResultsSize;
     }
+
+    public MappingSettings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(MappingSettings settings) {
+        this.settings = settings;
+    }
 }
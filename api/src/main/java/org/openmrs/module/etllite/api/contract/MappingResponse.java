@@ -10,6 +10,8 @@
 
 package org.openmrs.module.etllite.api.contract;
 
+import org.openmrs.module.etllite.api.domain.MappingSettings;
+
 /**
  * Mapping Response Class
  *
@@ -25,6 +27,8 @@ public class MappingResponse {
 
     private String transformTemplate;
 
+    private String transformDefinition;
+
     private String name;
 
     private String cronExpression;
@@ -35,6 +39,8 @@ public class MappingResponse {
 
     private int testResultsSize;
 
+    private MappingSettings settings;
+
     public Integer getId() {
         return id;
     }
@@ -91,6 +97,14 @@ public class MappingResponse {
         this.query = query;
     }
 
+    public String getTransformDefinition() {
+        return transformDefinition;
+    }
+
+    public void setTransformDefinition(String transformDefinition) {
+        this.transformDefinition = transformDefinition;
+    }
+
     public int getFetchSize() {
         return fetchSize;
     }
@@ -106,4 +120,12 @@ public class MappingResponse {
     public void setTestResultsSize(int testResultsSize) {
         this.testResultsSize = testResultsSize;
     }
+
+    public MappingSettings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(MappingSettings settings) {
+        this.settings = settings;
+    }
 }
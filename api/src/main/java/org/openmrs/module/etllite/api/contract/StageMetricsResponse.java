@@ -0,0 +1,109 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.contract;
+
+import java.util.Map;
+
+/**
+ * Metrics of a single stage of an ETL mapping
+ */
+public class StageMetricsResponse {
+
+    private long batches;
+
+    private long rowsIn;
+
+    private long rowsOut;
+
+    private long errors;
+
+    private double rowsPerSecond;
+
+    private double meanBatchMillis;
+
+    private double maxBatchMillis;
+
+    private Map<String, Long> batchLatency;
+
+    private Double meanTimeToFirstRowMillis;
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public void setBatches(long batches) {
+        this.batches = batches;
+    }
+
+    public long getRowsIn() {
+        return rowsIn;
+    }
+
+    public void setRowsIn(long rowsIn) {
+        this.rowsIn = rowsIn;
+    }
+
+    public long getRowsOut() {
+        return rowsOut;
+    }
+
+    public void setRowsOut(long rowsOut) {
+        this.rowsOut = rowsOut;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public double getMeanBatchMillis() {
+        return meanBatchMillis;
+    }
+
+    public void setMeanBatchMillis(double meanBatchMillis) {
+        this.meanBatchMillis = meanBatchMillis;
+    }
+
+    public double getMaxBatchMillis() {
+        return maxBatchMillis;
+    }
+
+    public void setMaxBatchMillis(double maxBatchMillis) {
+        this.maxBatchMillis = maxBatchMillis;
+    }
+
+    public Map<String, Long> getBatchLatency() {
+        return batchLatency;
+    }
+
+    public void setBatchLatency(Map<String, Long> batchLatency) {
+        this.batchLatency = batchLatency;
+    }
+
+    public Double getMeanTimeToFirstRowMillis() {
+        return meanTimeToFirstRowMillis;
+    }
+
+    public void setMeanTimeToFirstRowMillis(Double meanTimeToFirstRowMillis) {
+        this.meanTimeToFirstRowMillis = meanTimeToFirstRowMillis;
+    }
+}
@@ -28,4 +28,33 @@ public interface ETLLogDao extends OpenmrsDataDAO<ETLLog> {
     void deleteAll();
 
     Date executeQuery(String database, String mapping);
+
+    /**
+     * Find the latest run date of the specified ETL source and mapping among the runs logged before the given log
+     *
+     * @param database ETL source
+     * @param mapping  mapping name
+     * @param logId    the id of the log, the log itself and the later logs are left out
+     * @return the latest run date or null if the mapping was not run before the given log
+     */
+    Date findLastRunOnBefore(String database, String mapping, Integer logId);
+
+    /**
+     * Find the log of the latest run of the specified ETL source and mapping
+     *
+     * @param database ETL source
+     * @param mapping  mapping name
+     * @return the log of the latest run or null if the mapping was never run
+     */
+    ETLLog findLatest(String database, String mapping);
+
+    /**
+     * Marks the job as failed and decreases its load records by the number of failed records in one update, so the
+     * concurrent updates of the log are not lost
+     *
+     * @param jobId         the id of the job log
+     * @param failedRecords the number of failed records
+     * @return the number of updated logs, 0 if the log does not exist or is not visible yet
+     */
+    int markFailedRecords(Integer jobId, int failedRecords);
 }
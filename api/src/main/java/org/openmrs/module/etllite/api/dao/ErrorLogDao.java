@@ -13,6 +13,7 @@ package org.openmrs.module.etllite.api.dao;
 import org.openmrs.api.db.OpenmrsDataDAO;
 import org.openmrs.module.etllite.api.domain.ErrorLog;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -44,6 +45,56 @@ public interface ErrorLogDao extends OpenmrsDataDAO<ErrorLog> {
 
     List<ErrorLog> findByMappingAndBetweenRunDates(String database, String mapping, Date startDate, Date endDate);
 
+    /**
+     * Find a page of the error logs for the specified ETL source and mapping between the job run dates. The error
+     * logs are ordered by their id, so the pages do not overlap.
+     *
+     * @param database    ETL source
+     * @param mapping     mapping name
+     * @param startDate   the earliest job run date
+     * @param endDate     the latest job run date
+     * @param firstResult the index of the first error log of the page
+     * @param maxResults  the maximum number of error logs of the page
+     * @return page of error logs
+     */
+    List<ErrorLog> findByMappingAndBetweenRunDates(String database, String mapping, Date startDate, Date endDate,
+                                                   int firstResult, int maxResults);
+
+    /**
+     * Count the error logs for the specified ETL source and mapping between the job run dates
+     *
+     * @param database  ETL source
+     * @param mapping   mapping name
+     * @param startDate the earliest job run date
+     * @param endDate   the latest job run date
+     * @return number of error logs
+     */
+    long countByMappingAndBetweenRunDates(String database, String mapping, Date startDate, Date endDate);
+
     ErrorLog create(ErrorLog errorLog);
 
+    /**
+     * Find which of the source values already have an error log for the specified ETL source, mapping, source key
+     * and job run date
+     *
+     * @param database     ETL source
+     * @param mapping      mapping name
+     * @param sourceKey    key name to identify the source records
+     * @param sourceValues key values to identify the source records
+     * @param runOn        job run date
+     * @return source values which already have an error log
+     */
+    List<String> findSourceValuesByRunDate(String database, String mapping, String sourceKey,
+                                           Collection<String> sourceValues, Date runOn);
+
+    /**
+     * Inserts the error logs using JDBC batches in the current transaction. The error logs are not attached to the
+     * Hibernate session. Too long error messages are truncated and the error logs of a failed JDBC batch are
+     * inserted one by one, so the error logs which can not be inserted are skipped.
+     *
+     * @param errorLogs error logs to insert
+     * @return number of inserted error logs
+     */
+    int createAll(List<ErrorLog> errorLogs);
+
 }
@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.dao;
+
+import org.openmrs.Visit;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface VisitDao {
+
+    /**
+     * Find the not voided visits of the specified patients. The patients and the visit types of the visits are
+     * fetched by the same queries.
+     *
+     * @param patientUuids UUIDs of the patients
+     * @return visits of the patients
+     */
+    List<Visit> findByPatientUuids(Collection<String> patientUuids);
+}
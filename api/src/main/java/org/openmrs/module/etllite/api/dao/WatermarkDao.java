@@ -0,0 +1,54 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.dao;
+
+import org.openmrs.api.db.OpenmrsDataDAO;
+import org.openmrs.module.etllite.api.domain.Watermark;
+
+public interface WatermarkDao extends OpenmrsDataDAO<Watermark> {
+
+    /**
+     * Find the watermark of the specified ETL source and mapping
+     *
+     * @param database ETL source
+     * @param mapping  mapping name
+     * @return the watermark or null if the mapping has not loaded any rows yet
+     */
+    Watermark findByMapping(String database, String mapping);
+
+    /**
+     * Saves the watermark in the transaction of the batch which advanced it, so the watermark is committed
+     * together with the loaded rows
+     *
+     * @param watermark the watermark to save
+     * @return the saved watermark
+     */
+    Watermark save(Watermark watermark);
+
+    /**
+     * Deletes the watermark of the specified ETL source and mapping, so the next run extracts all the rows again
+     *
+     * @param database ETL source
+     * @param mapping  mapping name
+     */
+    void deleteByMapping(String database, String mapping);
+
+    /**
+     * Moves the watermark of the specified ETL source and mapping to the new source and mapping name, so a renamed
+     * mapping continues after the rows it has already loaded
+     *
+     * @param database    ETL source
+     * @param mapping     mapping name
+     * @param newDatabase the new ETL source
+     * @param newMapping  the new mapping name
+     */
+    void moveMapping(String database, String mapping, String newDatabase, String newMapping);
+}
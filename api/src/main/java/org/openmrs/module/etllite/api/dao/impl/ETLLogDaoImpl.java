@@ -11,6 +11,7 @@
 package org.openmrs.module.etllite.api.dao.impl;
 
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
@@ -74,6 +75,37 @@ public class ETLLogDaoImpl extends HibernateOpenmrsDataDAO<ETLLog> implements ET
         return (Date) crit.uniqueResult();
     }
 
+    @Override
+    public Date findLastRunOnBefore(String database, String mapping, Integer logId) {
+        Criteria crit = getSession().createCriteria(this.mappedClass);
+        crit.setProjection(Projections.max(RUN_ON));
+        crit.add(Restrictions.eq("databaseName", database));
+        crit.add(Restrictions.eq("mapping", mapping));
+        crit.add(Restrictions.lt("id", logId));
+
+        return (Date) crit.uniqueResult();
+    }
+
+    @Override
+    public ETLLog findLatest(String database, String mapping) {
+        Criteria crit = getSession().createCriteria(this.mappedClass);
+        crit.add(Restrictions.eq("databaseName", database));
+        crit.add(Restrictions.eq("mapping", mapping));
+        crit.addOrder(Order.desc("id"));
+        crit.setMaxResults(1);
+
+        return (ETLLog) crit.uniqueResult();
+    }
+
+    @Override
+    public int markFailedRecords(Integer jobId, int failedRecords) {
+        return getSession().createQuery("update etl.Log set jobStatus = false, loadRecords = case "
+                + "when loadRecords > :failedRecords then loadRecords - :failedRecords else 0 end where id = :id")
+                .setParameter("failedRecords", failedRecords)
+                .setParameter("id", jobId)
+                .executeUpdate();
+    }
+
     public void setDbSessionFactory(DbSessionFactory dbSessionFactory) {
         this.dbSessionFactory = dbSessionFactory;
     }
@@ -10,22 +10,54 @@
 
 package org.openmrs.module.etllite.api.dao.impl;
 
+import com.google.common.collect.Lists;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
 import org.openmrs.api.db.hibernate.DbSession;
 import org.openmrs.api.db.hibernate.DbSessionFactory;
 import org.openmrs.api.db.hibernate.HibernateOpenmrsDataDAO;
+import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.dao.ErrorLogDao;
 import org.openmrs.module.etllite.api.domain.ErrorLog;
 import org.openmrs.module.etllite.api.util.DateUtil;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ErrorLogDaoImpl extends HibernateOpenmrsDataDAO<ErrorLog> implements ErrorLogDao {
 
+    private static final String INSERT_SQL = "INSERT INTO etl_error_logs (databaseName, mapping, sourceKey, "
+            + "sourceValue, runOn, stackTrace, errorMessage, uuid, creator, date_created, voided) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Log LOGGER = LogFactory.getLog(ErrorLogDaoImpl.class);
+
+    // the length of the errorMessage column, longer messages are truncated
+    private static final int ERROR_MESSAGE_LENGTH = 255;
+
+    // keeps the IN clause of the lookup below the parameter limits of the databases
+    private static final int MAX_IN_VALUES = 500;
+
     private DbSessionFactory dbSessionFactory;
 
     public ErrorLogDaoImpl() {
@@ -56,20 +88,137 @@ public class ErrorLogDaoImpl extends HibernateOpenmrsDataDAO<ErrorLog> implement
 
     @Override
     public List<ErrorLog> findByMappingAndBetweenRunDates(String database, String mapping, Date startDate, Date endDate) {
-        Criteria crit = getSession().createCriteria(this.mappedClass);
-        crit.add(Restrictions.eq("databaseName", database));
-        crit.add(Restrictions.eq("mapping", mapping));
-        crit.add(Restrictions.between("runOn", startDate, endDate));
+        return createBetweenRunDatesCriteria(database, mapping, startDate, endDate).list();
+    }
+
+    @Override
+    public List<ErrorLog> findByMappingAndBetweenRunDates(String database, String mapping, Date startDate,
+                                                          Date endDate, int firstResult, int maxResults) {
+        Criteria crit = createBetweenRunDatesCriteria(database, mapping, startDate, endDate);
+        crit.addOrder(Order.asc("id"));
+        crit.setFirstResult(firstResult);
+        crit.setMaxResults(maxResults);
 
         return crit.list();
     }
 
+    @Override
+    public long countByMappingAndBetweenRunDates(String database, String mapping, Date startDate, Date endDate) {
+        Criteria crit = createBetweenRunDatesCriteria(database, mapping, startDate, endDate);
+        crit.setProjection(Projections.rowCount());
+
+        return ((Number) crit.uniqueResult()).longValue();
+    }
+
     @Override
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public ErrorLog create(ErrorLog errorLog) {
         return saveOrUpdate(errorLog);
     }
 
+    @Override
+    public List<String> findSourceValuesByRunDate(String database, String mapping, String sourceKey,
+                                                  Collection<String> sourceValues, Date runOn) {
+        List<String> existingValues = new ArrayList<>();
+        for (List<String> values : Lists.partition(new ArrayList<>(sourceValues), MAX_IN_VALUES)) {
+            Criteria crit = getSession().createCriteria(this.mappedClass);
+            crit.add(Restrictions.eq("databaseName", database));
+            crit.add(Restrictions.eq("mapping", mapping));
+            crit.add(Restrictions.eq("sourceKey", sourceKey));
+            crit.add(Restrictions.in("sourceValue", values));
+            crit.add(Restrictions.between("runOn", DateUtil.setTimeOfDay(runOn, 0, 0, 0), runOn));
+            crit.setProjection(Projections.property("sourceValue"));
+            existingValues.addAll(crit.list());
+        }
+        return existingValues;
+    }
+
+    @Override
+    public int createAll(final List<ErrorLog> errorLogs) {
+        final User creator = Context.getAuthenticatedUser();
+        final Timestamp dateCreated = new Timestamp(System.currentTimeMillis());
+        final AtomicInteger insertedRows = new AtomicInteger();
+        getSession().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                for (List<ErrorLog> batch : Lists.partition(errorLogs, Constants.DEFAULT_JDBC_BATCH_SIZE)) {
+                    insertedRows.addAndGet(insertBatch(connection, statement, batch, creator, dateCreated));
+                }
+            }
+        });
+        return insertedRows.get();
+    }
+
+    /**
+     * Inserts the error logs using one JDBC batch. If the batch fails, it is rolled back and the error logs are
+     * inserted one by one, so one invalid error log does not drop the others.
+     */
+    private int insertBatch(Connection connection, PreparedStatement statement, List<ErrorLog> batch, User creator,
+                            Timestamp dateCreated) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            for (ErrorLog errorLog : batch) {
+                setInsertParameters(statement, errorLog, creator, dateCreated);
+                statement.addBatch();
+            }
+            int insertedRows = 0;
+            for (int count : statement.executeBatch()) {
+                // some drivers do not report the number of rows inserted by a batched statement
+                insertedRows += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+            return insertedRows;
+        } catch (BatchUpdateException e) {
+            LOGGER.warn(String.format("Failed to insert a batch of %d error logs, inserting them one by one",
+                    batch.size()), e);
+            statement.clearBatch();
+            connection.rollback(savepoint);
+            return insertOneByOne(connection, statement, batch, creator, dateCreated);
+        }
+    }
+
+    private int insertOneByOne(Connection connection, PreparedStatement statement, List<ErrorLog> batch,
+                               User creator, Timestamp dateCreated) throws SQLException {
+        int insertedRows = 0;
+        for (ErrorLog errorLog : batch) {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                setInsertParameters(statement, errorLog, creator, dateCreated);
+                insertedRows += statement.executeUpdate();
+            } catch (SQLException e) {
+                connection.rollback(savepoint);
+                LOGGER.error(String.format("Failed to insert the error log of the mapping %s, %s : %s",
+                        errorLog.getMapping(), errorLog.getSourceKey(), errorLog.getSourceValue()), e);
+            }
+        }
+        return insertedRows;
+    }
+
+    private Criteria createBetweenRunDatesCriteria(String database, String mapping, Date startDate, Date endDate) {
+        Criteria crit = getSession().createCriteria(this.mappedClass);
+        crit.add(Restrictions.eq("databaseName", database));
+        crit.add(Restrictions.eq("mapping", mapping));
+        crit.add(Restrictions.between("runOn", startDate, endDate));
+        return crit;
+    }
+
+    private void setInsertParameters(PreparedStatement statement, ErrorLog errorLog, User creator,
+                                     Timestamp dateCreated) throws SQLException {
+        statement.setString(1, errorLog.getDatabaseName());
+        statement.setString(2, errorLog.getMapping());
+        statement.setString(3, errorLog.getSourceKey());
+        statement.setString(4, errorLog.getSourceValue());
+        statement.setTimestamp(5, new Timestamp(errorLog.getRunOn().getTime()));
+        statement.setString(6, errorLog.getStackTrace());
+        statement.setString(7, StringUtils.left(errorLog.getErrorMessage(), ERROR_MESSAGE_LENGTH));
+        statement.setString(8, errorLog.getUuid());
+        if (creator == null) {
+            statement.setNull(9, Types.INTEGER);
+        } else {
+            statement.setInt(9, creator.getUserId());
+        }
+        statement.setTimestamp(10, dateCreated);
+        statement.setBoolean(11, false);
+    }
+
     public void setDbSessionFactory(DbSessionFactory dbSessionFactory) {
         this.dbSessionFactory = dbSessionFactory;
     }
@@ -0,0 +1,51 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.dao.impl;
+
+import com.google.common.collect.Lists;
+import org.openmrs.Visit;
+import org.openmrs.api.db.hibernate.DbSession;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.module.etllite.api.dao.VisitDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class VisitDaoImpl implements VisitDao {
+
+    private static final String FIND_BY_PATIENT_UUIDS_HQL = "select v from Visit v join fetch v.patient p "
+            + "join fetch v.visitType where p.uuid in (:patientUuids) and v.voided = false";
+
+    // keeps the IN clause of the lookup below the parameter limits of the databases
+    private static final int MAX_IN_VALUES = 500;
+
+    private DbSessionFactory dbSessionFactory;
+
+    private DbSession getSession() {
+        return dbSessionFactory.getCurrentSession();
+    }
+
+    @Override
+    public List<Visit> findByPatientUuids(Collection<String> patientUuids) {
+        List<Visit> visits = new ArrayList<>();
+        for (List<String> uuids : Lists.partition(new ArrayList<>(patientUuids), MAX_IN_VALUES)) {
+            visits.addAll(getSession().createQuery(FIND_BY_PATIENT_UUIDS_HQL)
+                    .setParameterList("patientUuids", uuids)
+                    .list());
+        }
+        return visits;
+    }
+
+    public void setDbSessionFactory(DbSessionFactory dbSessionFactory) {
+        this.dbSessionFactory = dbSessionFactory;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.dao.impl;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Restrictions;
+import org.openmrs.api.db.hibernate.DbSession;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.api.db.hibernate.HibernateOpenmrsDataDAO;
+import org.openmrs.module.etllite.api.dao.WatermarkDao;
+import org.openmrs.module.etllite.api.domain.Watermark;
+import org.springframework.transaction.annotation.Transactional;
+
+public class WatermarkDaoImpl extends HibernateOpenmrsDataDAO<Watermark> implements WatermarkDao {
+
+    private static final String DATABASE_NAME = "databaseName";
+
+    private static final String MAPPING = "mapping";
+
+    private DbSessionFactory dbSessionFactory;
+
+    public WatermarkDaoImpl() {
+        super(Watermark.class);
+    }
+
+    private DbSession getSession() {
+        return dbSessionFactory.getCurrentSession();
+    }
+
+    @Override
+    public Watermark findByMapping(String database, String mapping) {
+        Criteria crit = getSession().createCriteria(this.mappedClass);
+        crit.add(Restrictions.eq(DATABASE_NAME, database));
+        crit.add(Restrictions.eq(MAPPING, mapping));
+
+        return (Watermark) crit.uniqueResult();
+    }
+
+    @Override
+    @Transactional
+    public Watermark save(Watermark watermark) {
+        return saveOrUpdate(watermark);
+    }
+
+    @Override
+    public void deleteByMapping(String database, String mapping) {
+        getSession().createQuery("delete from etl.Watermark where databaseName = :database and mapping = :mapping")
+                .setParameter("database", database)
+                .setParameter(MAPPING, mapping)
+                .executeUpdate();
+    }
+
+    @Override
+    public void moveMapping(String database, String mapping, String newDatabase, String newMapping) {
+        getSession().createQuery("update etl.Watermark set databaseName = :newDatabase, mapping = :newMapping "
+                + "where databaseName = :database and mapping = :mapping")
+                .setParameter("newDatabase", newDatabase)
+                .setParameter("newMapping", newMapping)
+                .setParameter("database", database)
+                .setParameter(MAPPING, mapping)
+                .executeUpdate();
+    }
+
+    public void setDbSessionFactory(DbSessionFactory dbSessionFactory) {
+        this.dbSessionFactory = dbSessionFactory;
+    }
+}
@@ -15,8 +15,12 @@ import org.openmrs.module.etllite.api.domain.types.DatabaseTypes;
 import org.openmrs.module.etllite.api.validate.ObjectValidator;
 import org.openmrs.module.etllite.api.validate.ValueOfEnum;
 
+import javax.validation.constraints.Min;
+
 import static org.openmrs.module.etllite.api.constants.Constants.INVALID_CONFIG_DB_PASSWORD_MESSAGE;
+import static org.openmrs.module.etllite.api.constants.Constants.INVALID_CONFIG_MAX_CONCURRENT_MAPPINGS_MESSAGE;
 import static org.openmrs.module.etllite.api.constants.Constants.INVALID_CONFIG_NAME_MESSAGE;
+import static org.openmrs.module.etllite.api.constants.Constants.INVALID_CONFIG_POOL_SIZE_MESSAGE;
 import static org.openmrs.module.etllite.api.constants.Constants.INVALID_CONFIG_TYPE_MESSAGE;
 import static org.openmrs.module.etllite.api.constants.Constants.INVALID_CONFIG_URL_MESSAGE;
 import static org.openmrs.module.etllite.api.constants.Constants.INVALID_CONFIG_USER_MESSAGE;
@@ -25,6 +29,8 @@ import static org.openmrs.module.etllite.api.constants.Constants.INVALID_ENUM_TY
 /**
  * Configuration entity, adapted from IVR Module This class encapsulates the ETL database
  * configuration, composed of as database url, username, database type, dbPassword and test query
+ * and the settings of the connection pool which backs the database. Pool settings which are not defined
+ * fall back to the defaults from {@link org.openmrs.module.etllite.api.constants.Constants}.
  *
  * @author nanakapa
  */
@@ -49,6 +55,22 @@ public class Config {
 
   private String query;
 
+  @Min(value = 1, groups = {ValidationStepOne.class, ValidationStepTwo.class},
+      message = INVALID_CONFIG_POOL_SIZE_MESSAGE)
+  private Integer poolSize;
+
+  // in milliseconds
+  private Long idleTimeout;
+
+  // in milliseconds
+  private Long maxLifetime;
+
+  private String validationQuery;
+
+  @Min(value = 1, groups = {ValidationStepOne.class, ValidationStepTwo.class},
+      message = INVALID_CONFIG_MAX_CONCURRENT_MAPPINGS_MESSAGE)
+  private Integer maxConcurrentMappings;
+
   public String getName() {
     return name;
   }
@@ -97,6 +119,46 @@ public class Config {
     this.query = query;
   }
 
+  public Integer getPoolSize() {
+    return poolSize;
+  }
+
+  public void setPoolSize(Integer poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  public Long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout(Long idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public Long getMaxLifetime() {
+    return maxLifetime;
+  }
+
+  public void setMaxLifetime(Long maxLifetime) {
+    this.maxLifetime = maxLifetime;
+  }
+
+  public String getValidationQuery() {
+    return validationQuery;
+  }
+
+  public void setValidationQuery(String validationQuery) {
+    this.validationQuery = validationQuery;
+  }
+
+  public Integer getMaxConcurrentMappings() {
+    return maxConcurrentMappings;
+  }
+
+  public void setMaxConcurrentMappings(Integer maxConcurrentMappings) {
+    this.maxConcurrentMappings = maxConcurrentMappings;
+  }
+
   public void validateUpdate() {
     new ObjectValidator<Config>().validate(this, ValidationStepOne.class);
   }
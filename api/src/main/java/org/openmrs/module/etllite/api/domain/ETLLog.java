@@ -74,6 +74,14 @@ public class ETLLog extends AbstractBaseOpenmrsData {
     @Column
     private boolean jobStatus;
 
+    // the number of extracted rows which are already loaded and committed
+    @Column(nullable = false)
+    private int checkpointOffset;
+
+    // the batch sizes chosen by the adaptive batch sizing and the reasons of their changes
+    @Column(length = 1024)
+    private String batchSizes;
+
     @Override
     public Integer getId() {
         return id;
@@ -188,6 +196,22 @@ public class ETLLog extends AbstractBaseOpenmrsData {
         this.jobStatus = jobStatus;
     }
 
+    public int getCheckpointOffset() {
+        return checkpointOffset;
+    }
+
+    public void setCheckpointOffset(int checkpointOffset) {
+        this.checkpointOffset = checkpointOffset;
+    }
+
+    public String getBatchSizes() {
+        return batchSizes;
+    }
+
+    public void setBatchSizes(String batchSizes) {
+        this.batchSizes = batchSizes;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -13,6 +13,7 @@ package org.openmrs.module.etllite.api.domain;
 import org.openmrs.BaseOpenmrsMetadata;
 
 import javax.persistence.Column;
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -52,6 +53,12 @@ public class Mapping extends BaseOpenmrsMetadata {
     @Column(columnDefinition = TEXT, length = MYSQL_TEXT_DATATYPE_LENGTH)
     private String transformTemplate;
 
+    /**
+     * The JSON declarative transform of the mapping, when it is set it is used instead of the transform template
+     */
+    @Column(columnDefinition = TEXT, length = MYSQL_TEXT_DATATYPE_LENGTH)
+    private String transformDefinition;
+
     @Column(columnDefinition = TEXT, length = MYSQL_TEXT_DATATYPE_LENGTH)
     private String loadTemplate;
 
@@ -64,6 +71,9 @@ public class Mapping extends BaseOpenmrsMetadata {
     @Column(nullable = false)
     private int testResultsSize;
 
+    @Embedded
+    private MappingSettings settings = new MappingSettings();
+
     @Override
     public Integer getId() {
         return id;
@@ -98,6 +108,14 @@ public class Mapping extends BaseOpenmrsMetadata {
         this.transformTemplate = transformTemplate;
     }
 
+    public String getTransformDefinition() {
+        return transformDefinition;
+    }
+
+    public void setTransformDefinition(String transformDefinition) {
+        this.transformDefinition = transformDefinition;
+    }
+
     public String getLoadTemplate() {
         return loadTemplate;
     }
@@ -130,6 +148,14 @@ public class Mapping extends BaseOpenmrsMetadata {
         this.testResultsSize = testResultsSize;
     }
 
+    public MappingSettings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(MappingSettings settings) {
+        this.settings = settings;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
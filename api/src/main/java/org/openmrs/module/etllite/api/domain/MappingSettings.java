@@ -0,0 +1,241 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+/**
+ * This class encapsulates the optional execution settings of the ETL Mapping. The settings are stored
+ * in the etl_mappings table together with the mapping.
+ */
+@Embeddable
+public class MappingSettings implements Serializable {
+
+    private static final long serialVersionUID = 4386120546021399105L;
+
+    /**
+     * The number of batches of a single run which are transformed and loaded at the same time,
+     * 1 means the batches are processed one after another.
+     */
+    @Column(nullable = false)
+    private int parallelism = 1;
+
+    /**
+     * The comma separated names of the mappings of the same ETL database which have to be completed before
+     * this mapping is run, when they are run together.
+     */
+    @Column
+    private String dependsOn;
+
+    /**
+     * The column of the extracted rows whose highest loaded value is stored as the watermark of the mapping
+     * and exposed as $watermark to the extract query.
+     */
+    @Column
+    private String watermarkColumn;
+
+    /**
+     * Whether each batch is loaded and committed in its own transaction. The number of committed rows is recorded
+     * in the run log, so an interrupted run is resumed after the last committed batch.
+     */
+    @Column(nullable = false)
+    private boolean commitEachBatch;
+
+    /**
+     * The number of transformed rows after which the load stage flushes and clears the Hibernate session,
+     * 0 means the session is not cleared until the end of the transaction.
+     */
+    @Column(nullable = false)
+    private int flushInterval;
+
+    /**
+     * Whether the whole extract is read before the rows are transformed and loaded, so the source result set
+     * is not kept open (e.g. to release the locks of the source database) during the run. The rows above
+     * the memory budget of the extract buffer are spilled to a temporary file.
+     */
+    @Column(nullable = false)
+    private boolean bufferExtract;
+
+    /**
+     * Whether the extract, transform and load stages of a run work at the same time on different batches.
+     * The batches are transformed by up to {@link #parallelism} threads and loaded one by one in the extract order.
+     */
+    @Column(nullable = false)
+    private boolean pipelined;
+
+    /**
+     * Whether the batch size of a run adapts to the measured processing time and heap usage, starting from
+     * the fetch size of the mapping.
+     */
+    @Column(nullable = false)
+    private boolean adaptiveBatchSize;
+
+    /**
+     * The minimal size of an adaptive batch, 0 means a tenth of the fetch size.
+     */
+    @Column(nullable = false)
+    private int minBatchSize;
+
+    /**
+     * The maximal size of an adaptive batch, 0 means ten times the fetch size.
+     */
+    @Column(nullable = false)
+    private int maxBatchSize;
+
+    /**
+     * The time in milliseconds in which an adaptive batch should be transformed and loaded, 0 means the default.
+     */
+    @Column(nullable = false)
+    private int targetBatchLatency;
+
+    /**
+     * The column of the extracted rows whose value range is split into key ranges which are extracted at the same
+     * time, each on its own connection. The column has to hold integer numbers, decimal numbers or dates.
+     */
+    @Column
+    private String partitionColumn;
+
+    /**
+     * The number of key ranges of the partition column, 0 means the default.
+     */
+    @Column(nullable = false)
+    private int partitionCount;
+
+    public MappingSettings() {
+    }
+
+    /**
+     * Creates the copy of the settings
+     *
+     * @param settings settings to copy
+     */
+    public MappingSettings(MappingSettings settings) {
+        this.parallelism = settings.parallelism;
+        this.dependsOn = settings.dependsOn;
+        this.watermarkColumn = settings.watermarkColumn;
+        this.commitEachBatch = settings.commitEachBatch;
+        this.flushInterval = settings.flushInterval;
+        this.bufferExtract = settings.bufferExtract;
+        this.pipelined = settings.pipelined;
+        this.adaptiveBatchSize = settings.adaptiveBatchSize;
+        this.minBatchSize = settings.minBatchSize;
+        this.maxBatchSize = settings.maxBatchSize;
+        this.targetBatchLatency = settings.targetBatchLatency;
+        this.partitionColumn = settings.partitionColumn;
+        this.partitionCount = settings.partitionCount;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public String getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(String dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public String getWatermarkColumn() {
+        return watermarkColumn;
+    }
+
+    public void setWatermarkColumn(String watermarkColumn) {
+        this.watermarkColumn = watermarkColumn;
+    }
+
+    public boolean isCommitEachBatch() {
+        return commitEachBatch;
+    }
+
+    public void setCommitEachBatch(boolean commitEachBatch) {
+        this.commitEachBatch = commitEachBatch;
+    }
+
+    public int getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public boolean isBufferExtract() {
+        return bufferExtract;
+    }
+
+    public void setBufferExtract(boolean bufferExtract) {
+        this.bufferExtract = bufferExtract;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public boolean isAdaptiveBatchSize() {
+        return adaptiveBatchSize;
+    }
+
+    public void setAdaptiveBatchSize(boolean adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getTargetBatchLatency() {
+        return targetBatchLatency;
+    }
+
+    public void setTargetBatchLatency(int targetBatchLatency) {
+        this.targetBatchLatency = targetBatchLatency;
+    }
+
+    public String getPartitionColumn() {
+        return partitionColumn;
+    }
+
+    public void setPartitionColumn(String partitionColumn) {
+        this.partitionColumn = partitionColumn;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+}
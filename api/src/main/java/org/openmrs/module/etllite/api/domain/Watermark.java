@@ -0,0 +1,101 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * Watermark stores the highest value of the watermark column of the ETL Mapping which was already loaded,
+ * so the next run can extract only the rows added since then.
+ */
+
+@Entity(name = "etl.Watermark")
+@Table(name = "etl_watermarks")
+public class Watermark extends AbstractBaseOpenmrsData {
+
+    private static final long serialVersionUID = 2904981617364208374L;
+
+    @Id
+    @GeneratedValue
+    @Column(name = "etl_watermarks_id")
+    private Integer id;
+
+    @Column(nullable = false)
+    private String databaseName;
+
+    @Column(nullable = false)
+    private String mapping;
+
+    @Column
+    private String lastValue;
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public void setDatabaseName(String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    public String getMapping() {
+        return mapping;
+    }
+
+    public void setMapping(String mapping) {
+        this.mapping = mapping;
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    public void setLastValue(String lastValue) {
+        this.lastValue = lastValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Watermark watermark = (Watermark) o;
+        return Objects.equals(this.id, watermark.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "Watermark{" + "id=" + id + ", databaseName='" + databaseName + '\'' + ", mapping='" + mapping + '\''
+                + ", lastValue='" + lastValue + '\'' + '}';
+    }
+}
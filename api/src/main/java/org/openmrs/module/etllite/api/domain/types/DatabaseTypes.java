@@ -17,9 +17,36 @@ package org.openmrs.module.etllite.api.domain.types;
  */
 public enum DatabaseTypes {
 
-    MYSQL("com.mysql.jdbc.Driver"),
+    MYSQL("com.mysql.jdbc.Driver") {
+        @Override
+        public int getStreamingFetchSize(int fetchSize) {
+            // Connector/J buffers the whole result set unless the fetch size is Integer.MIN_VALUE
+            return Integer.MIN_VALUE;
+        }
 
-    MSSQL("com.microsoft.sqlserver.jdbc.SQLServerDriver"),
+        @Override
+        public String limitQuery(String query, int maxRows) {
+            // the query is not wrapped, because older MySQL versions materialize the whole derived table
+            return String.format("%s\nLIMIT %d", trimQuery(query), maxRows);
+        }
+
+        @Override
+        public String quoteIdentifier(String identifier) {
+            return quote(identifier, '`', '`');
+        }
+    },
+
+    MSSQL("com.microsoft.sqlserver.jdbc.SQLServerDriver") {
+        @Override
+        public String limitQuery(String query, int maxRows) {
+            return String.format("SELECT TOP %d * FROM (\n%s\n) limited_query", maxRows, trimQuery(query));
+        }
+
+        @Override
+        public String quoteIdentifier(String identifier) {
+            return quote(identifier, '[', ']');
+        }
+    },
 
     POSTGRESQL("org.postgresql.Driver");
 
@@ -29,6 +56,111 @@ public enum DatabaseTypes {
         this.name = name;
     }
 
+    /**
+     * Returns the JDBC fetch size which makes the driver stream the rows of the result set.
+     *
+     * @param fetchSize number of rows which should be fetched at once
+     * @return fetch size for the driver of this database type
+     */
+    public int getStreamingFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+
+    /**
+     * Returns the query which returns at most the given number of the rows of the given query. The query
+     * can not be limited this way if it already limits its rows, or if the clause used by the database type can
+     * not follow it (e.g. ORDER BY in a derived table of SQL Server), the database rejects the limited query then.
+     *
+     * @param query   the select query
+     * @param maxRows the maximum number of rows
+     * @return the limited query
+     */
+    public String limitQuery(String query, int maxRows) {
+        // the line break ends a trailing line comment of the query
+        return String.format("%s\nFETCH FIRST %d ROWS ONLY", trimQuery(query), maxRows);
+    }
+
+    /**
+     * Returns the query which selects the lowest and the highest value of the column among the rows of the given
+     * query, as the minValue and maxValue columns.
+     *
+     * @param query  the select query
+     * @param column the label of the column of the query
+     * @return the bounds query
+     */
+    public String boundsQuery(String query, String column) {
+        String quotedColumn = quoteIdentifier(column);
+        return String.format("SELECT MIN(%s) AS minValue, MAX(%s) AS maxValue FROM (\n%s\n) bounds_query",
+                quotedColumn, quotedColumn, trimQuery(query));
+    }
+
+    /**
+     * Returns the query which selects the rows of the given query whose column value is in the key range given by
+     * the named parameters. The range includes its lower bound and excludes its upper bound, unless it is the last
+     * range. The rows whose column value is null are selected by the null range.
+     *
+     * @param query          the select query
+     * @param column         the label of the column of the query
+     * @param fromParameter  the name of the parameter with the lower bound of the range
+     * @param toParameter    the name of the parameter with the upper bound of the range
+     * @param rangeType      the type of the range
+     * @return the range query
+     */
+    public String rangeQuery(String query, String column, String fromParameter, String toParameter,
+                             KeyRangeType rangeType) {
+        String quotedColumn = quoteIdentifier(column);
+        String predicate;
+        switch (rangeType) {
+            case NULL:
+                predicate = String.format("%s IS NULL", quotedColumn);
+                break;
+            case LAST:
+                predicate = String.format("%s >= :%s AND %s <= :%s", quotedColumn, fromParameter, quotedColumn,
+                        toParameter);
+                break;
+            default:
+                predicate = String.format("%s >= :%s AND %s < :%s", quotedColumn, fromParameter, quotedColumn,
+                        toParameter);
+        }
+        return String.format("SELECT * FROM (\n%s\n) range_query WHERE %s", trimQuery(query), predicate);
+    }
+
+    /**
+     * Returns the quoted identifier, e.g. a column name
+     *
+     * @param identifier the identifier
+     * @return the quoted identifier
+     */
+    public String quoteIdentifier(String identifier) {
+        return quote(identifier, '"', '"');
+    }
+
+    /**
+     * The types of the key ranges of {@link #rangeQuery(String, String, String, String, KeyRangeType)}
+     */
+    public enum KeyRangeType {
+
+        /** The range includes its lower bound and excludes its upper bound. */
+        INNER,
+
+        /** The range includes both of its bounds. */
+        LAST,
+
+        /** The range of the null values. */
+        NULL
+    }
+
+    private static String quote(String identifier, char opening, char closing) {
+        if (identifier.indexOf(opening) >= 0 || identifier.indexOf(closing) >= 0) {
+            throw new IllegalArgumentException(String.format("Invalid identifier: %s", identifier));
+        }
+        return opening + identifier + closing;
+    }
+
+    private static String trimQuery(String query) {
+        return query.trim().replaceAll("[;\\s]+$", "");
+    }
+
     @Override
     public String toString() {
         return name;
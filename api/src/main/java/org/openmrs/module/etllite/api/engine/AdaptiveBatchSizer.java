@@ -0,0 +1,246 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Adapts the batch size of a run between the given bounds. The sizer keeps the moving average of the time
+ * the transform and load stages spend on a row and sizes the next batch, so it is processed in about the target
+ * latency. The batch size at most doubles or halves at once.
+ * <p>
+ * The batch size is halved when a batch failed, when the heap left used after the last garbage collections
+ * is above {@value #HEAP_SHRINK_THRESHOLD} of the maximum heap, or when the moving average of the share of
+ * the failed records is above {@value #ERROR_RATE_SHRINK_THRESHOLD}. It does not grow while the heap usage is
+ * above {@value #HEAP_GROWTH_THRESHOLD} or the error rate is above {@value #ERROR_RATE_GROWTH_THRESHOLD}. Every
+ * change of the batch size is recorded together with its reason, see {@link #getHistory()}.
+ * <p>
+ * The sizer is thread safe, the batches of a parallel run report their processing from several threads.
+ */
+public class AdaptiveBatchSizer implements BatchSizer {
+
+    /** The heap usage after garbage collection above which the batch size is halved. */
+    static final double HEAP_SHRINK_THRESHOLD = 0.85;
+
+    /** The heap usage after garbage collection above which the batch size does not grow. */
+    static final double HEAP_GROWTH_THRESHOLD = 0.7;
+
+    /** The moving average of the share of the failed records above which the batch size is halved. */
+    static final double ERROR_RATE_SHRINK_THRESHOLD = 0.1;
+
+    /** The moving average of the share of the failed records above which the batch size does not grow. */
+    static final double ERROR_RATE_GROWTH_THRESHOLD = 0.01;
+
+    /** The weight of the newest measurement in the moving average of the time per row. */
+    private static final double SMOOTHING = 0.3;
+
+    /** The batch size is not changed when the ideal batch size differs less than by this fraction. */
+    private static final double TOLERANCE = 0.1;
+
+    /** The maximum number of the recorded batch size changes, the last change is always recorded. */
+    private static final int MAX_HISTORY = 40;
+
+    /** The maximum length of the returned history, the length of the batch sizes column of the run log. */
+    static final int MAX_HISTORY_LENGTH = 1024;
+
+    private static final String SEPARATOR = ", ";
+
+    private static final String OMISSION = " ... ";
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long targetLatencyNanos;
+
+    private final DoubleSupplier heapUsage;
+
+    private final double[] rowNanos = new double[ETLStage.values().length];
+
+    private final List<String> history = new ArrayList<>();
+
+    private boolean historyTruncated;
+
+    private int batchSize;
+
+    private int failures;
+
+    private double errorRate;
+
+    /**
+     * Creates the sizer which reads the heap usage from the memory pool MXBeans
+     *
+     * @param initialBatchSize    the size of the first batch
+     * @param minBatchSize        the minimal batch size
+     * @param maxBatchSize        the maximal batch size
+     * @param targetLatencyMillis the time in milliseconds in which a batch should be transformed and loaded
+     */
+    public AdaptiveBatchSizer(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetLatencyMillis) {
+        this(initialBatchSize, minBatchSize, maxBatchSize, targetLatencyMillis, AdaptiveBatchSizer::readHeapUsage);
+    }
+
+    AdaptiveBatchSizer(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetLatencyMillis,
+                       DoubleSupplier heapUsage) {
+        if (minBatchSize <= 0 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException(String.format("Invalid batch size bounds: %d - %d",
+                    minBatchSize, maxBatchSize));
+        }
+        if (targetLatencyMillis <= 0) {
+            throw new IllegalArgumentException("target latency must be greater than zero");
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetLatencyNanos = targetLatencyMillis * 1_000_000L;
+        this.heapUsage = heapUsage;
+        this.batchSize = clamp(initialBatchSize);
+        Arrays.fill(rowNanos, Double.NaN);
+        history.add(String.valueOf(batchSize));
+    }
+
+    @Override
+    public synchronized int nextBatchSize() {
+        double heap = heapUsage.getAsDouble();
+        if (failures > 0) {
+            failures = 0;
+            resize(batchSize / 2, "errors");
+        } else if (heap > HEAP_SHRINK_THRESHOLD) {
+            resize(batchSize / 2, heapReason(heap));
+        } else if (errorRate > ERROR_RATE_SHRINK_THRESHOLD) {
+            resize(batchSize / 2, errorRateReason(errorRate));
+            errorRate = 0;
+        } else {
+            double nanosPerRow = getNanosPerRow();
+            if (nanosPerRow > 0) {
+                long idealBatchSize = Math.round(targetLatencyNanos / nanosPerRow);
+                int next = (int) Math.max(batchSize / 2, Math.min(idealBatchSize, 2L * batchSize));
+                if (next > batchSize && (heap > HEAP_GROWTH_THRESHOLD || errorRate > ERROR_RATE_GROWTH_THRESHOLD)) {
+                    next = batchSize;
+                }
+                if (Math.abs(next - batchSize) >= batchSize * TOLERANCE) {
+                    resize(next, "latency");
+                }
+            }
+        }
+        return batchSize;
+    }
+
+    @Override
+    public synchronized void batchProcessed(ETLStage stage, int rows, long nanos) {
+        if (rows <= 0) {
+            return;
+        }
+        double nanosPerRow = (double) nanos / rows;
+        double average = rowNanos[stage.ordinal()];
+        rowNanos[stage.ordinal()] = Double.isNaN(average) ? nanosPerRow
+                : SMOOTHING * nanosPerRow + (1 - SMOOTHING) * average;
+    }
+
+    @Override
+    public synchronized void recordsFailed(int rows, int failedRecords) {
+        if (rows <= 0) {
+            return;
+        }
+        double rate = Math.min(1.0, (double) failedRecords / rows);
+        errorRate = SMOOTHING * rate + (1 - SMOOTHING) * errorRate;
+    }
+
+    @Override
+    public synchronized void batchFailed() {
+        failures++;
+    }
+
+    /**
+     * Returns the batch sizes chosen so far with the reason of each change, e.g. "1000, 2000 (latency),
+     * 1000 (heap 90%)". When there were too many changes, only the first ones and the last one are returned, the
+     * history is never longer than {@link #MAX_HISTORY_LENGTH}.
+     */
+    public synchronized String getHistory() {
+        String all = String.join(SEPARATOR, history);
+        if (!historyTruncated && all.length() <= MAX_HISTORY_LENGTH) {
+            return all;
+        }
+        String last = history.get(history.size() - 1);
+        StringBuilder first = new StringBuilder(history.get(0));
+        for (String entry : history.subList(1, history.size() - 1)) {
+            if (first.length() + SEPARATOR.length() + entry.length() + OMISSION.length() + last.length()
+                    > MAX_HISTORY_LENGTH) {
+                break;
+            }
+            first.append(SEPARATOR).append(entry);
+        }
+        return first + OMISSION + last;
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    private void resize(int next, String reason) {
+        int clamped = clamp(next);
+        if (clamped == batchSize) {
+            return;
+        }
+        batchSize = clamped;
+        String entry = String.format("%d (%s)", batchSize, reason);
+        if (history.size() < MAX_HISTORY) {
+            history.add(entry);
+        } else {
+            history.set(history.size() - 1, entry);
+            historyTruncated = true;
+        }
+    }
+
+    private double getNanosPerRow() {
+        double total = 0;
+        for (double nanos : rowNanos) {
+            if (!Double.isNaN(nanos)) {
+                total += nanos;
+            }
+        }
+        return total;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+
+    private static String heapReason(double heap) {
+        return String.format("heap %d%%", Math.round(heap * 100));
+    }
+
+    private static String errorRateReason(double errorRate) {
+        return String.format("error rate %d%%", Math.round(errorRate * 100));
+    }
+
+    /**
+     * Returns the highest usage of the heap memory pools after their last garbage collection. Unlike the current
+     * usage, it does not count the garbage which was not collected yet.
+     */
+    private static double readHeapUsage() {
+        double usage = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage collectionUsage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (collectionUsage != null && collectionUsage.getMax() > 0) {
+                usage = Math.max(usage, (double) collectionUsage.getUsed() / collectionUsage.getMax());
+            }
+        }
+        return usage;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives the extracted rows batch by batch while the source result set is being streamed.
+ */
+public interface BatchHandler {
+
+    /**
+     * Handles a single batch of extracted rows
+     *
+     * @param rows extracted rows of the batch, never empty
+     * @throws ETLException             if there is any error while processing the batch
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    void handle(List<Map<String, Object>> rows) throws ETLException, MappingNotFoundException;
+}
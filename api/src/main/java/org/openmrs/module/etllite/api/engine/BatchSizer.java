@@ -0,0 +1,68 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+
+/**
+ * Decides the number of rows of the next extracted batch. The processing of the batches is reported back,
+ * so the sizer can adapt the next batch sizes to it.
+ */
+public interface BatchSizer {
+
+    /**
+     * Returns the size of the next batch, called before the batch is collected
+     *
+     * @return the number of rows of the next batch, always greater than zero
+     */
+    int nextBatchSize();
+
+    /**
+     * Records the time a stage spent processing a batch
+     *
+     * @param stage the stage which processed the batch
+     * @param rows  the number of rows of the batch
+     * @param nanos the processing time in nanoseconds
+     */
+    default void batchProcessed(ETLStage stage, int rows, long nanos) {
+        // the fixed batch size does not depend on the processing
+    }
+
+    /**
+     * Records the records of a batch which failed in a stage, but did not fail the whole batch
+     *
+     * @param rows          the number of rows of the batch
+     * @param failedRecords the number of the failed records
+     */
+    default void recordsFailed(int rows, int failedRecords) {
+        // the fixed batch size does not depend on the processing
+    }
+
+    /**
+     * Records a batch whose processing failed
+     */
+    default void batchFailed() {
+        // the fixed batch size does not depend on the processing
+    }
+
+    /**
+     * Returns the sizer which always returns the same batch size
+     *
+     * @param batchSize the batch size
+     * @return fixed batch sizer
+     */
+    static BatchSizer fixed(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be greater than zero");
+        }
+        return () -> batchSize;
+    }
+}
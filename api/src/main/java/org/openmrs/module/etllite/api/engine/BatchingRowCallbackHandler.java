@@ -0,0 +1,119 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.ETLRuntimeException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the rows of a streamed result set into batches and hands every full batch over to a
+ * {@link BatchHandler}. Only the current batch is kept in memory, so the memory footprint depends on
+ * the batch size and not on the size of the result set. The rows are mapped to {@link CompactRow}s which share
+ * the column names of the result set. The size of each batch is taken from the {@link BatchSizer} when
+ * the batch is started.
+ * <p>
+ * Errors thrown by the batch handler while the result set is being read are wrapped in
+ * {@link ETLRuntimeException}, because {@link RowCallbackHandler} does not allow checked exceptions.
+ */
+public class BatchingRowCallbackHandler implements RowCallbackHandler {
+
+    private final RowMapper<Map<String, Object>> rowMapper = new CompactRowMapper();
+
+    private final BatchSizer batchSizer;
+
+    private final BatchHandler batchHandler;
+
+    private int batchSize;
+
+    private List<Map<String, Object>> batch;
+
+    private int rowCount;
+
+    private int batchCount;
+
+    private long firstRowTime;
+
+    public BatchingRowCallbackHandler(int batchSize, BatchHandler batchHandler) {
+        this(BatchSizer.fixed(batchSize), batchHandler);
+    }
+
+    public BatchingRowCallbackHandler(BatchSizer batchSizer, BatchHandler batchHandler) {
+        this.batchSizer = batchSizer;
+        this.batchHandler = batchHandler;
+        this.batch = newBatch();
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        if (rowCount == 0) {
+            firstRowTime = System.nanoTime();
+        }
+        batch.add(rowMapper.mapRow(rs, rowCount));
+        rowCount++;
+        if (batch.size() >= batchSize) {
+            try {
+                handleBatch();
+            } catch (ETLException | MappingNotFoundException e) {
+                throw new ETLRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Hands the last, incomplete batch over to the batch handler. Must be called once the whole result
+     * set was read.
+     *
+     * @throws ETLException             if there is any error while processing the batch
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    public void flush() throws ETLException, MappingNotFoundException {
+        if (!batch.isEmpty()) {
+            handleBatch();
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when the first row was read, 0 if the result set was empty
+     */
+    public long getFirstRowTime() {
+        return firstRowTime;
+    }
+
+    private void handleBatch() throws ETLException, MappingNotFoundException {
+        List<Map<String, Object>> fullBatch = batch;
+        batchCount++;
+        batchHandler.handle(fullBatch);
+        // the next batch is sized after the previous one was handed over, so its processing can be taken into account
+        batch = newBatch();
+    }
+
+    private List<Map<String, Object>> newBatch() {
+        batchSize = batchSizer.nextBatchSize();
+        return new ArrayList<>(batchSize);
+    }
+}
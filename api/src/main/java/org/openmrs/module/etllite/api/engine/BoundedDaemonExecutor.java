@@ -0,0 +1,228 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.metrics.Histogram;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executes the tasks with a bounded number of workers. The tasks wait for a free worker in a bounded queue and the
+ * tasks which do not fit into the queue are handled according to the rejection policy. Every task is still run by
+ * the task executor, by default in a new daemon thread with its own OpenMRS session, and its worker waits until it
+ * is finished, so at most the configured number of tasks run at the same time.
+ */
+public class BoundedDaemonExecutor implements Executor {
+
+    private static final Log LOGGER = LogFactory.getLog(BoundedDaemonExecutor.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private final Histogram waitTime = new Histogram();
+
+    private final Histogram runTime = new Histogram();
+
+    private final LongAdder rejectedTasks = new LongAdder();
+
+    private String name = BoundedDaemonExecutor.class.getSimpleName();
+
+    private int maxWorkers = Constants.DEFAULT_LISTENER_MAX_WORKERS;
+
+    private int queueCapacity = Constants.DEFAULT_LISTENER_QUEUE_CAPACITY;
+
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+
+    private Executor taskExecutor = new DaemonExecutor();
+
+    private ThreadPoolExecutor workers;
+
+    /**
+     * The handling of the tasks which do not fit into the queue
+     */
+    public enum RejectionPolicy {
+
+        /**
+         * The task is rejected with <code>RejectedExecutionException</code>
+         */
+        ABORT(new ThreadPoolExecutor.AbortPolicy()),
+
+        /**
+         * The task is run by the submitting thread, which slows down the producer of the tasks
+         */
+        CALLER_RUNS(new ThreadPoolExecutor.CallerRunsPolicy()),
+
+        /**
+         * The task is dropped
+         */
+        DISCARD(new ThreadPoolExecutor.DiscardPolicy()),
+
+        /**
+         * The oldest waiting task is dropped and the task is queued again
+         */
+        DISCARD_OLDEST(new ThreadPoolExecutor.DiscardOldestPolicy());
+
+        private final RejectedExecutionHandler handler;
+
+        RejectionPolicy(RejectedExecutionHandler handler) {
+            this.handler = handler;
+        }
+
+        public RejectedExecutionHandler getHandler() {
+            return handler;
+        }
+    }
+
+    /**
+     * Creates the workers, called by Spring once the properties are set
+     */
+    public void initialize() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, String.format("%s-%d", name, threadNumber.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+        RejectedExecutionHandler rejectedExecutionHandler = (runnable, executor) -> {
+            rejectedTasks.increment();
+            LOGGER.warn(String.format("The queue of %s is full, applying the %s policy", name, rejectionPolicy));
+            rejectionPolicy.getHandler().rejectedExecution(runnable, executor);
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxWorkers, maxWorkers, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), threadFactory, rejectedExecutionHandler);
+        executor.allowCoreThreadTimeOut(true);
+        workers = executor;
+    }
+
+    /**
+     * Stops accepting new tasks, the queued tasks are still run
+     */
+    public void destroy() {
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (workers == null) {
+            throw new RejectedExecutionException(String.format("%s is not initialized", name));
+        }
+        long submitted = System.nanoTime();
+        workers.execute(() -> {
+            long started = System.nanoTime();
+            waitTime.record(started - submitted);
+            try {
+                runAndWait(task);
+            } finally {
+                runTime.record(System.nanoTime() - started);
+            }
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public void setMaxWorkers(int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    public void setTaskExecutor(Executor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    public int getQueueDepth() {
+        return workers == null ? 0 : workers.getQueue().size();
+    }
+
+    public int getActiveWorkers() {
+        return workers == null ? 0 : workers.getActiveCount();
+    }
+
+    public long getCompletedTasks() {
+        return workers == null ? 0 : workers.getCompletedTaskCount();
+    }
+
+    public long getRejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    /**
+     * Returns the time the tasks spent in the queue before a worker took them
+     *
+     * @return the histogram of the waiting times
+     */
+    public Histogram getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Returns the time the workers spent on the tasks
+     *
+     * @return the histogram of the running times
+     */
+    public Histogram getRunTime() {
+        return runTime;
+    }
+
+    private void runAndWait(Runnable task) {
+        CountDownLatch finished = new CountDownLatch(1);
+        taskExecutor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                finished.countDown();
+            }
+        });
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            LOGGER.warn(String.format("%s was interrupted while waiting for a task", name));
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.ETLRuntimeException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Processes each batch in its own transaction and records the checkpoint of the run in the same transaction,
+ * so the run log always tells how many extracted rows are committed. The rows covered by the checkpoint of an
+ * interrupted run are skipped, the run continues with the first row which was not committed.
+ */
+public class CheckpointBatchHandler implements BatchHandler {
+
+    private final ETLBatchProcessor batchProcessor;
+
+    private final TransactionOperations transactionOperations;
+
+    private int rowsToSkip;
+
+    public CheckpointBatchHandler(ETLBatchProcessor batchProcessor, TransactionOperations transactionOperations,
+                                  int checkpoint) {
+        this.batchProcessor = batchProcessor;
+        this.transactionOperations = transactionOperations;
+        this.rowsToSkip = checkpoint;
+    }
+
+    @Override
+    public void handle(List<Map<String, Object>> rows) throws ETLException, MappingNotFoundException {
+        int skipped = Math.min(rowsToSkip, rows.size());
+        rowsToSkip -= skipped;
+        if (skipped == rows.size()) {
+            return;
+        }
+        List<Map<String, Object>> rowsToProcess = rows.subList(skipped, rows.size());
+
+        try {
+            transactionOperations.execute(status -> {
+                process(rowsToProcess);
+                return null;
+            });
+        } catch (ETLRuntimeException e) {
+            e.rethrowCause();
+        }
+    }
+
+    private void process(List<Map<String, Object>> rows) {
+        try {
+            batchProcessor.handle(rows);
+            batchProcessor.checkpoint(rows.size());
+        } catch (ETLException | MappingNotFoundException e) {
+            // rolls back the transaction of the batch, the checked exception is thrown again by handle
+            throw new ETLRuntimeException(e.getMessage(), e);
+        }
+    }
+}
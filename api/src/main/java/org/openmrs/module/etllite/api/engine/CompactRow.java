@@ -0,0 +1,272 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Extracted row which keeps its values in a plain array and shares the column names with the other rows
+ * of the result set through the {@link RowHeader}, instead of the hash table and the key index built for
+ * every row by Spring's <code>queryForList</code>. The row is a complete {@link Map}, so the templates
+ * keep using <code>$row.get("column")</code>. The columns are looked up case-insensitively and the columns
+ * which are not in the header (put by the templates) are kept in a separate map.
+ */
+public class CompactRow extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = -6127404567372416690L;
+
+    private final RowHeader header;
+
+    private final Object[] values;
+
+    private int removedCount;
+
+    private Map<String, Object> extraValues;
+
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
+    CompactRow(RowHeader header, Object[] values) {
+        this.header = header;
+        this.values = values;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = header.indexOf(key);
+        if (index >= 0) {
+            return valueOf(values[index]);
+        }
+        return extraValues == null ? null : extraValues.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = header.indexOf(key);
+        if (index >= 0) {
+            return values[index] != Removed.VALUE;
+        }
+        return extraValues != null && extraValues.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = header.indexOf(key);
+        if (index < 0) {
+            return getExtraValues().put(key, value);
+        }
+        Object previous = values[index];
+        if (previous == Removed.VALUE) {
+            removedCount--;
+        }
+        values[index] = value;
+        return valueOf(previous);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = header.indexOf(key);
+        if (index < 0) {
+            return extraValues == null ? null : extraValues.remove(key);
+        }
+        return removeAt(index);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, Removed.VALUE);
+        removedCount = values.length;
+        extraValues = null;
+    }
+
+    @Override
+    public int size() {
+        return values.length - removedCount + (extraValues == null ? 0 : extraValues.size());
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    public RowHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Checks if the row has exactly the columns of its header, i.e. no column was removed or added
+     */
+    boolean hasHeaderColumnsOnly() {
+        return removedCount == 0 && (extraValues == null || extraValues.isEmpty());
+    }
+
+    /**
+     * Returns the value at the given position of the header
+     */
+    Object getValue(int index) {
+        return valueOf(values[index]);
+    }
+
+    private Object removeAt(int index) {
+        Object previous = values[index];
+        if (previous != Removed.VALUE) {
+            values[index] = Removed.VALUE;
+            removedCount++;
+        }
+        return valueOf(previous);
+    }
+
+    private Map<String, Object> getExtraValues() {
+        if (extraValues == null) {
+            extraValues = new LinkedCaseInsensitiveMap<>();
+        }
+        return extraValues;
+    }
+
+    private static Object valueOf(Object value) {
+        return value == Removed.VALUE ? null : value;
+    }
+
+    /**
+     * Marks the removed columns of the header, an enum so the marker stays the same after deserialization
+     */
+    private enum Removed {
+        VALUE
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return CompactRow.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CompactRow.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int nextIndex = nextIndexFrom(0);
+
+        private int lastIndex = -1;
+
+        private Iterator<Map.Entry<String, Object>> extraIterator;
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < values.length || getExtraIterator().hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (nextIndex < values.length) {
+                lastIndex = nextIndex;
+                nextIndex = nextIndexFrom(nextIndex + 1);
+                return new ColumnEntry(lastIndex);
+            }
+            lastIndex = -1;
+            if (!getExtraIterator().hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return extraIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastIndex >= 0) {
+                removeAt(lastIndex);
+                lastIndex = -1;
+            } else {
+                getExtraIterator().remove();
+            }
+        }
+
+        private int nextIndexFrom(int index) {
+            int next = index;
+            while (next < values.length && values[next] == Removed.VALUE) {
+                next++;
+            }
+            return next;
+        }
+
+        private Iterator<Map.Entry<String, Object>> getExtraIterator() {
+            if (extraIterator == null) {
+                extraIterator = extraValues == null ? Collections.<Map.Entry<String, Object>>emptyIterator()
+                        : extraValues.entrySet().iterator();
+            }
+            return extraIterator;
+        }
+    }
+
+    private final class ColumnEntry implements Map.Entry<String, Object> {
+
+        private final int index;
+
+        ColumnEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return header.getColumnName(index);
+        }
+
+        @Override
+        public Object getValue() {
+            return valueOf(values[index]);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(getKey(), value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+            return getKey().equals(that.getKey()) && Objects.equals(getValue(), that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Maps the rows of a result set to {@link CompactRow}s sharing a single {@link RowHeader}. The values are read
+ * the same way as by Spring's <code>ColumnMapRowMapper</code>. The header is read from the first row, so a new
+ * mapper has to be used for every query.
+ */
+public class CompactRowMapper implements RowMapper<Map<String, Object>> {
+
+    private RowHeader header;
+
+    @Override
+    public Map<String, Object> mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (header == null) {
+            header = RowHeader.of(rs.getMetaData());
+        }
+        Object[] values = new Object[header.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = JdbcUtils.getResultSetValue(rs, header.getResultSetIndex(i));
+        }
+        return new CompactRow(header, values);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.etllite.api.event.ETLEventListenerFactory;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executes every task in a new daemon thread. Each task gets its own OpenMRS session which is
+ * authenticated as the daemon user and closed once the task is finished.
+ */
+public class DaemonExecutor implements Executor {
+
+    @Override
+    public void execute(Runnable task) {
+        Daemon.runInDaemonThread(task, ETLEventListenerFactory.getDaemonToken());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.etllite.api.dao.ETLLogDao;
+import org.openmrs.module.etllite.api.domain.ETLLog;
+import org.openmrs.module.etllite.api.event.ETLExceptionEventHandler;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+import org.openmrs.module.etllite.api.service.ETLService;
+import org.openmrs.module.etllite.api.util.DateUtil;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transforms and loads the batches of a single ETL run and keeps the counters of the run log up to date
+ * while the extracted rows are streamed. The batches may be processed by several threads at the same time,
+ * the run log is only updated while holding its lock.
+ */
+public class ETLBatchProcessor implements BatchHandler {
+
+    private static final Log LOGGER = LogFactory.getLog(ETLBatchProcessor.class);
+
+    private final ETLService etlService;
+
+    private final ETLLogDao etlLogDao;
+
+    private final ETLLog etlLog;
+
+    private final Map<String, Object> params;
+
+    private volatile Integer jobId;
+
+    private boolean logCreated;
+
+    private WatermarkTracker watermarkTracker;
+
+    private BatchSizer batchSizer;
+
+    public ETLBatchProcessor(ETLService etlService, ETLLogDao etlLogDao, ETLLog etlLog, Map<String, Object> params) {
+        this.etlService = etlService;
+        this.etlLogDao = etlLogDao;
+        this.etlLog = etlLog;
+        this.params = params;
+    }
+
+    @Override
+    public void handle(List<Map<String, Object>> rows) throws ETLException, MappingNotFoundException {
+        createLogIfNeeded();
+        LOGGER.info(String.format("Processing records with batch size : = %d", rows.size()));
+
+        load(rows, transform(rows));
+    }
+
+    /**
+     * Transforms the batch and records the transformed rows in the run log
+     *
+     * @param rows extracted rows of the batch
+     * @return transformed rows
+     * @throws ETLException             if there is any error while transforming the batch
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    public List<Map<String, Object>> transform(List<Map<String, Object>> rows)
+            throws ETLException, MappingNotFoundException {
+        //Transform the extracted rows based on the transform velocity template
+        long start = System.nanoTime();
+        int failures = ETLExceptionEventHandler.getFailureCount();
+        List<Map<String, Object>> transformedRows;
+        try {
+            transformedRows = etlService.transform(etlLog.getMapping(), params, rows);
+        } catch (ETLException | MappingNotFoundException | RuntimeException e) {
+            batchFailed();
+            throw e;
+        }
+        batchProcessed(ETLStage.TRANSFORM, rows.size(), start, failures);
+        synchronized (etlLog) {
+            etlLog.setTransformedRecords(etlLog.getTransformedRecords() + rows.size());
+            etlLog.setTransformEndTime(DateUtil.now());
+        }
+        return transformedRows;
+    }
+
+    /**
+     * Loads the transformed batch and records the loaded rows in the run log
+     *
+     * @param rows            extracted rows of the batch
+     * @param transformedRows transformed rows of the batch
+     * @throws ETLException             if there is any error while loading the batch
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    public void load(List<Map<String, Object>> rows, List<Map<String, Object>> transformedRows)
+            throws ETLException, MappingNotFoundException {
+        synchronized (etlLog) {
+            //Increase the number of load records by the batch size and in case of error reduce the load count
+            etlLog.setLoadRecords(etlLog.getLoadRecords() + rows.size());
+        }
+        //Load the transformed data using spring services into the target system
+        long start = System.nanoTime();
+        int failures = ETLExceptionEventHandler.getFailureCount();
+        try {
+            etlService.load(etlLog.getMapping(), params, rows, transformedRows, jobId);
+        } catch (ETLException | MappingNotFoundException | RuntimeException e) {
+            batchFailed();
+            throw e;
+        }
+        batchProcessed(ETLStage.LOAD, rows.size(), start, failures);
+        if (watermarkTracker != null) {
+            watermarkTracker.batchLoaded(rows);
+        }
+    }
+
+    /**
+     * Creates the run log unless it was already created by a previous batch. The log is created only after
+     * the extract query was evaluated, so that the current run does not change the last run date used by the query.
+     * The log of a resumed run already exists, its query leaves the log out of the last run date.
+     */
+    public void createLogIfNeeded() {
+        synchronized (etlLog) {
+            if (!logCreated) {
+                jobId = etlLogDao.create(etlLog).getId();
+                logCreated = true;
+            }
+        }
+    }
+
+    /**
+     * Creates the run log in a transaction of its own unless it was already created. The log is committed before
+     * the batches are loaded and checkpointed in their own transactions by the other threads, which would otherwise
+     * wait for the lock of the uncommitted log row.
+     *
+     * @param transactionOperations the template of the new transaction
+     */
+    public void createLogIfNeeded(TransactionOperations transactionOperations) {
+        synchronized (etlLog) {
+            if (!logCreated) {
+                transactionOperations.execute(status -> {
+                    createLogIfNeeded();
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * Records the loaded rows in the checkpoint of the run log, so an interrupted run can be resumed after them.
+     *
+     * @param loadedRows the number of loaded rows
+     */
+    public void checkpoint(int loadedRows) {
+        synchronized (etlLog) {
+            etlLog.setCheckpointOffset(etlLog.getCheckpointOffset() + loadedRows);
+            etlLogDao.update(etlLog);
+        }
+    }
+
+    public void setWatermarkTracker(WatermarkTracker watermarkTracker) {
+        this.watermarkTracker = watermarkTracker;
+    }
+
+    public BatchSizer getBatchSizer() {
+        return batchSizer;
+    }
+
+    public void setBatchSizer(BatchSizer batchSizer) {
+        this.batchSizer = batchSizer;
+    }
+
+    private void batchProcessed(ETLStage stage, int rows, long start, int failuresBefore) {
+        if (batchSizer != null) {
+            batchSizer.batchProcessed(stage, rows, System.nanoTime() - start);
+            batchSizer.recordsFailed(rows, ETLExceptionEventHandler.getFailureCount() - failuresBefore);
+        }
+    }
+
+    private void batchFailed() {
+        if (batchSizer != null) {
+            batchSizer.batchFailed();
+        }
+    }
+}
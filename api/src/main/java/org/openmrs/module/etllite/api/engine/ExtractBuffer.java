@@ -0,0 +1,348 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the whole extract of a mapping, so the source result set can be read to the end and closed before
+ * the rows are transformed and loaded. The rows are kept on the heap up to the memory budget, the rest of the
+ * rows is spilled to a temporary file in a compact binary encoding: every row refers to its {@link RowHeader},
+ * which stays on the heap, and every value is written as its type followed by the value. The spilled rows are read
+ * back through memory-mapped windows of the file, batch by batch, so only a single batch of the spilled rows
+ * is on the heap at once.
+ * <p>
+ * The buffer is filled by the extract as a {@link BatchHandler}, then its rows are handed over by
+ * {@link #forEachBatch(int, BatchHandler)} in the extracted order. The buffer has to be closed to delete
+ * the temporary file.
+ */
+public class ExtractBuffer implements BatchHandler, Closeable {
+
+    private static final Log LOGGER = LogFactory.getLog(ExtractBuffer.class);
+
+    /** The estimated heap of the row itself and its values array, without the values. */
+    private static final int ROW_HEAP_SIZE = 48;
+
+    /** The heap of a reference to a value of the row. */
+    private static final int REFERENCE_HEAP_SIZE = 8;
+
+    private static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private static final String FILE_PREFIX = "etllite-extract-";
+
+    private static final String FILE_SUFFIX = ".bin";
+
+    private final long memoryBudget;
+
+    private final Path directory;
+
+    private final long windowSize;
+
+    private final List<Map<String, Object>> heapRows = new ArrayList<>();
+
+    private final List<RowHeader> headers = new ArrayList<>();
+
+    private final Map<RowHeader, Integer> headerIds = new IdentityHashMap<>();
+
+    private final Map<List<String>, RowHeader> keyHeaders = new HashMap<>();
+
+    private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream rowOut = new DataOutputStream(rowBytes);
+
+    private long heapBytes;
+
+    private int rowCount;
+
+    // the size of the batch currently collected by forEachBatch
+    private int batchSize;
+
+    private int spilledRowCount;
+
+    private Path spillFile;
+
+    private DataOutputStream spillOut;
+
+    /**
+     * Creates the buffer which spills the rows to a temporary file in the default temporary directory
+     *
+     * @param memoryBudget estimated heap in bytes which may be used by the rows kept on the heap
+     */
+    public ExtractBuffer(long memoryBudget) {
+        this(memoryBudget, null);
+    }
+
+    /**
+     * Creates the buffer
+     *
+     * @param memoryBudget estimated heap in bytes which may be used by the rows kept on the heap
+     * @param directory    directory of the temporary file, the default temporary directory if null
+     */
+    public ExtractBuffer(long memoryBudget, Path directory) {
+        this(memoryBudget, directory, DEFAULT_WINDOW_SIZE);
+    }
+
+    ExtractBuffer(long memoryBudget, Path directory, long windowSize) {
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public void handle(List<Map<String, Object>> rows) throws ETLException {
+        try {
+            for (Map<String, Object> row : rows) {
+                add(row);
+            }
+        } catch (IOException e) {
+            throw new ETLException("Could not spill the extracted rows to disk", e);
+        }
+    }
+
+    /**
+     * Adds the row to the buffer, once the memory budget is used the row and all the following rows are spilled
+     *
+     * @param row extracted row
+     * @throws IOException  if the row can not be written to the temporary file
+     * @throws ETLException if a value of the spilled row can not be serialized
+     */
+    public void add(Map<String, Object> row) throws IOException, ETLException {
+        rowCount++;
+        if (spillOut == null) {
+            long rowSize = estimateSize(row);
+            if (heapBytes + rowSize <= memoryBudget) {
+                heapRows.add(row);
+                heapBytes += rowSize;
+                return;
+            }
+            openSpillFile();
+        }
+        spill(row);
+    }
+
+    /**
+     * Hands all the buffered rows over to the batch handler in the order they were added. The rows kept on the
+     * heap are released as they are handed over, so the buffer can be iterated only once.
+     *
+     * @param batchSize    maximum number of rows of a batch
+     * @param batchHandler handler of the batches
+     * @throws ETLException             if the spilled rows can not be read or the handler fails
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    public void forEachBatch(int batchSize, BatchHandler batchHandler) throws ETLException, MappingNotFoundException {
+        forEachBatch(BatchSizer.fixed(batchSize), batchHandler);
+    }
+
+    /**
+     * Hands all the buffered rows over to the batch handler in the order they were added, the size of each batch
+     * is taken from the batch sizer when the batch is started.
+     *
+     * @param batchSizer   sizer of the batches
+     * @param batchHandler handler of the batches
+     * @throws ETLException             if the spilled rows can not be read or the handler fails
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     * @see #forEachBatch(int, BatchHandler)
+     */
+    public void forEachBatch(BatchSizer batchSizer, BatchHandler batchHandler)
+            throws ETLException, MappingNotFoundException {
+        List<Map<String, Object>> batch = newBatch(batchSizer);
+        for (int i = 0; i < heapRows.size(); i++) {
+            batch.add(heapRows.set(i, null));
+            batch = handleIfFull(batch, batchSizer, batchHandler);
+        }
+        heapRows.clear();
+        heapBytes = 0;
+        if (spillFile != null) {
+            try {
+                spillOut.close();
+                batch = readSpilledRows(batch, batchSizer, batchHandler);
+            } catch (IOException e) {
+                throw new ETLException("Could not read the extracted rows spilled to disk", e);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batchHandler.handle(batch);
+        }
+    }
+
+    /**
+     * Deletes the temporary file
+     */
+    @Override
+    public void close() {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            spillOut.close();
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not delete the extract buffer file %s", spillFile), e);
+            spillFile.toFile().deleteOnExit();
+        }
+        spillFile = null;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getSpilledRowCount() {
+        return spilledRowCount;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    private List<Map<String, Object>> handleIfFull(List<Map<String, Object>> batch, BatchSizer batchSizer,
+                                                   BatchHandler batchHandler)
+            throws ETLException, MappingNotFoundException {
+        if (batch.size() < batchSize) {
+            return batch;
+        }
+        batchHandler.handle(batch);
+        return newBatch(batchSizer);
+    }
+
+    private List<Map<String, Object>> newBatch(BatchSizer batchSizer) {
+        batchSize = batchSizer.nextBatchSize();
+        return new ArrayList<>(batchSize);
+    }
+
+    private List<Map<String, Object>> readSpilledRows(List<Map<String, Object>> firstBatch, BatchSizer batchSizer,
+                                                      BatchHandler batchHandler)
+            throws IOException, ETLException, MappingNotFoundException {
+        List<Map<String, Object>> batch = firstBatch;
+        try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long windowStart = 0;
+            MappedByteBuffer window = map(channel, windowStart, Integer.BYTES);
+            while (windowStart + window.position() < fileSize) {
+                if (window.remaining() < Integer.BYTES
+                        || window.remaining() < Integer.BYTES + window.getInt(window.position())) {
+                    windowStart += window.position();
+                    window = map(channel, windowStart, Integer.BYTES + readLength(channel, windowStart));
+                }
+                window.getInt();
+                batch.add(decode(window));
+                batch = handleIfFull(batch, batchSizer, batchHandler);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Maps the window of the file which starts at the given position and contains at least the given
+     * number of bytes
+     */
+    private MappedByteBuffer map(FileChannel channel, long position, int minLength) throws IOException {
+        long length = Math.min(Math.max(windowSize, minLength), channel.size() - position);
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    private int readLength(FileChannel channel, long position) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        while (length.hasRemaining()) {
+            if (channel.read(length, position + length.position()) < 0) {
+                throw new IOException("The extract buffer file is truncated");
+            }
+        }
+        length.flip();
+        return length.getInt();
+    }
+
+    private void openSpillFile() throws IOException {
+        spillFile = directory == null ? Files.createTempFile(FILE_PREFIX, FILE_SUFFIX)
+                : Files.createTempFile(directory, FILE_PREFIX, FILE_SUFFIX);
+        spillOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+        LOGGER.debug(String.format("The extract exceeded %d bytes, spilling the rows to %s", memoryBudget,
+                spillFile));
+    }
+
+    private void spill(Map<String, Object> row) throws IOException, ETLException {
+        rowBytes.reset();
+        RowHeader header = headerOf(row);
+        rowOut.writeInt(headerIds.get(header));
+        boolean compactRow = row instanceof CompactRow && ((CompactRow) row).getHeader() == header;
+        for (int i = 0; i < header.size(); i++) {
+            Object value = compactRow ? ((CompactRow) row).getValue(i) : row.get(header.getColumnName(i));
+            value = ValueCodec.writableValue(value);
+            try {
+                ValueCodec.of(value).write(rowOut, value);
+            } catch (NotSerializableException e) {
+                throw new ETLException(String.format("The value of the column %s of type %s can not be spilled to "
+                        + "disk, it is not serializable", header.getColumnName(i), value.getClass().getName()), e);
+            }
+        }
+        spillOut.writeInt(rowBytes.size());
+        rowBytes.writeTo(spillOut);
+        spilledRowCount++;
+    }
+
+    private Map<String, Object> decode(ByteBuffer buffer) throws IOException {
+        RowHeader header = headers.get(buffer.getInt());
+        Object[] values = new Object[header.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ValueCodec.of(buffer.get()).read(buffer);
+        }
+        return new CompactRow(header, values);
+    }
+
+    /**
+     * Returns the header of the row, the compact rows which have only the columns of their header share it,
+     * the headers of the other rows are shared by the rows with the same columns
+     */
+    private RowHeader headerOf(Map<String, Object> row) {
+        RowHeader header;
+        if (row instanceof CompactRow && ((CompactRow) row).hasHeaderColumnsOnly()) {
+            header = ((CompactRow) row).getHeader();
+        } else {
+            List<String> columnNames = new ArrayList<>(row.keySet());
+            header = keyHeaders.computeIfAbsent(columnNames,
+                    names -> RowHeader.of(names.toArray(new String[names.size()])));
+        }
+        if (!headerIds.containsKey(header)) {
+            headerIds.put(header, headers.size());
+            headers.add(header);
+        }
+        return header;
+    }
+
+    private static long estimateSize(Map<String, Object> row) {
+        long size = ROW_HEAP_SIZE;
+        for (Object value : row.values()) {
+            size += REFERENCE_HEAP_SIZE + ValueCodec.of(value).estimateSize(value);
+        }
+        return size;
+    }
+}
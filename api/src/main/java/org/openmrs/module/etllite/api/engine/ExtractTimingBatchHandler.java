@@ -0,0 +1,53 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.openmrs.module.etllite.api.metrics.ETLMetricsRegistry;
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the time spent on reading each batch from the result set as the extract latency of the batch. The time
+ * spent by the delegate on processing the batch is not included.
+ */
+public class ExtractTimingBatchHandler implements BatchHandler {
+
+    private final ETLMetricsRegistry metricsRegistry;
+
+    private final String source;
+
+    private final String mapping;
+
+    private final BatchHandler delegate;
+
+    private long fetchStart;
+
+    public ExtractTimingBatchHandler(ETLMetricsRegistry metricsRegistry, String source, String mapping,
+                                     BatchHandler delegate) {
+        this.metricsRegistry = metricsRegistry;
+        this.source = source;
+        this.mapping = mapping;
+        this.delegate = delegate;
+        this.fetchStart = System.nanoTime();
+    }
+
+    @Override
+    public void handle(List<Map<String, Object>> rows) throws ETLException, MappingNotFoundException {
+        metricsRegistry.recordBatch(source, mapping, ETLStage.EXTRACT, System.nanoTime() - fetchStart,
+                rows.size(), rows.size());
+        delegate.handle(rows);
+        fetchStart = System.nanoTime();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.domain.types.DatabaseTypes.KeyRangeType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A range of the values of the partition column of an extract query. The ranges returned by
+ * {@link #split(Object, Object, int)} cover all the values between the bounds together with the null values.
+ */
+public final class KeyRange {
+
+    private static final MathContext WIDTH_CONTEXT = new MathContext(16, RoundingMode.DOWN);
+
+    private final Object from;
+
+    private final Object to;
+
+    private final KeyRangeType type;
+
+    private KeyRange(Object from, Object to, KeyRangeType type) {
+        this.from = from;
+        this.to = to;
+        this.type = type;
+    }
+
+    /**
+     * Splits the values between the lowest and the highest value of the partition column into at most the given
+     * number of ranges of the same width, followed by the range of the null values. The integer numbers which fit
+     * into a long, decimal numbers and dates can be split. The given bounds themselves are the outer bounds of the
+     * ranges, so no value is lost by the rounding of the bounds, e.g. the nanoseconds of a timestamp.
+     *
+     * @param min   the lowest value, null if the column has no values
+     * @param max   the highest value, null if the column has no values
+     * @param count the maximum number of ranges of the values
+     * @return the key ranges
+     * @throws IllegalArgumentException if the values can not be split
+     */
+    public static List<KeyRange> split(Object min, Object max, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be greater than zero");
+        }
+        List<KeyRange> ranges = new ArrayList<>();
+        if (min != null && max != null) {
+            List<KeyRange> valueRanges = new ArrayList<>();
+            if (isInteger(min) && isInteger(max)) {
+                splitIntegers(toLong(min), toLong(max), count, valueRanges);
+            } else if (min instanceof Number && max instanceof Number) {
+                splitDecimals(toBigDecimal((Number) min), toBigDecimal((Number) max), count, valueRanges);
+            } else if (min instanceof Date && max instanceof Date) {
+                splitDates(((Date) min).getTime(), ((Date) max).getTime(), count, valueRanges);
+            } else {
+                throw new IllegalArgumentException(String.format("The values of the type %s can not be split",
+                        min.getClass().getName()));
+            }
+            KeyRange first = valueRanges.get(0);
+            valueRanges.set(0, new KeyRange(min, first.to, first.type));
+            KeyRange last = valueRanges.get(valueRanges.size() - 1);
+            valueRanges.set(valueRanges.size() - 1, new KeyRange(last.from, max, last.type));
+            ranges.addAll(valueRanges);
+        }
+        ranges.add(new KeyRange(null, null, KeyRangeType.NULL));
+        return ranges;
+    }
+
+    public Object getFrom() {
+        return from;
+    }
+
+    public Object getTo() {
+        return to;
+    }
+
+    public KeyRangeType getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return type == KeyRangeType.NULL ? "[null]" : String.format("[%s, %s%s", from, to,
+                type == KeyRangeType.LAST ? "]" : ")");
+    }
+
+    private static void splitIntegers(long min, long max, int count, List<KeyRange> ranges) {
+        BigInteger span = BigInteger.valueOf(max).subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+        // the width of the ranges is rounded up, so the last range is not wider than the others
+        long width = span.add(BigInteger.valueOf(count - 1L)).divide(BigInteger.valueOf(count)).longValue();
+        long from = min;
+        for (int i = 1; i < count && max - from >= width; i++) {
+            ranges.add(new KeyRange(from, from + width, KeyRangeType.INNER));
+            from += width;
+        }
+        ranges.add(new KeyRange(from, max, KeyRangeType.LAST));
+    }
+
+    private static void splitDecimals(BigDecimal min, BigDecimal max, int count, List<KeyRange> ranges) {
+        // the width is rounded down, so the inner bounds stay below the highest value
+        BigDecimal width = max.subtract(min).divide(BigDecimal.valueOf(count), WIDTH_CONTEXT);
+        BigDecimal from = min;
+        for (int i = 1; i < count && width.signum() > 0; i++) {
+            BigDecimal to = from.add(width);
+            ranges.add(new KeyRange(from, to, KeyRangeType.INNER));
+            from = to;
+        }
+        ranges.add(new KeyRange(from, max, KeyRangeType.LAST));
+    }
+
+    private static void splitDates(long min, long max, int count, List<KeyRange> ranges) {
+        List<KeyRange> millisRanges = new ArrayList<>();
+        splitIntegers(min, max, count, millisRanges);
+        for (KeyRange range : millisRanges) {
+            ranges.add(new KeyRange(new Timestamp((Long) range.from), new Timestamp((Long) range.to), range.type));
+        }
+    }
+
+    private static long toLong(Object value) {
+        try {
+            if (value instanceof BigDecimal) {
+                return ((BigDecimal) value).toBigIntegerExact().longValueExact();
+            }
+            if (value instanceof BigInteger) {
+                return ((BigInteger) value).longValueExact();
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format("The value %s does not fit into a long", value), e);
+        }
+        return ((Number) value).longValue();
+    }
+
+    private static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    private static boolean isInteger(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).stripTrailingZeros().scale() <= 0;
+        }
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger;
+    }
+}
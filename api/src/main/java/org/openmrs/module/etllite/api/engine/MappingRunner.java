@@ -0,0 +1,152 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.service.ETLService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs the ETL of several mappings of the same ETL database. The mappings are run at the same time on the executor,
+ * up to the given number of mappings at once. A mapping which depends on other mappings of the same run is started
+ * only after all of them are completed, no matter if they succeeded or not. Mappings which are part of a dependency
+ * cycle are run one after another in the requested order once all the other mappings are completed.
+ */
+public class MappingRunner {
+
+    private static final Log LOGGER = LogFactory.getLog(MappingRunner.class);
+
+    private final ETLService etlService;
+
+    private final Executor executor;
+
+    private final int maxConcurrentMappings;
+
+    public MappingRunner(ETLService etlService, Executor executor, int maxConcurrentMappings) {
+        if (maxConcurrentMappings <= 0) {
+            throw new IllegalArgumentException("maxConcurrentMappings must be greater than zero");
+        }
+        this.etlService = etlService;
+        this.executor = executor;
+        this.maxConcurrentMappings = maxConcurrentMappings;
+    }
+
+    /**
+     * Runs the ETL of the mappings and waits until all of them are completed.
+     *
+     * @param mappings     the names of the mappings to run, the mappings are started in this order
+     * @param dependencies the names of the mappings which each mapping depends on, mappings which are not
+     *                     part of this run are ignored
+     * @param params       the parameters of the ETL run
+     * @throws ETLException if the thread was interrupted while waiting for the mappings
+     */
+    public void run(List<String> mappings, Map<String, Set<String>> dependencies, Map<String, Object> params)
+            throws ETLException {
+        Set<String> toRun = new LinkedHashSet<>(mappings);
+        Map<String, Set<String>> pending = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        for (String mapping : toRun) {
+            addMapping(mapping, dependencies, toRun, pending, dependents, ready);
+        }
+
+        BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        int running = 0;
+        while (!ready.isEmpty() || running > 0) {
+            while (!ready.isEmpty() && running < maxConcurrentMappings) {
+                String mapping = ready.poll();
+                running++;
+                executor.execute(() -> runMapping(mapping, params, completed));
+            }
+            String mapping = take(completed);
+            running--;
+            for (String dependent : dependents.getOrDefault(mapping, Collections.emptyList())) {
+                releaseDependent(dependent, mapping, pending, ready);
+            }
+        }
+
+        for (String mapping : toRun) {
+            if (pending.containsKey(mapping)) {
+                LOGGER.error(String.format("Mapping %s is part of a dependency cycle, it is run after the other "
+                        + "mappings", mapping));
+                doETL(mapping, params);
+            }
+        }
+    }
+
+    private void addMapping(String mapping, Map<String, Set<String>> dependencies, Set<String> toRun,
+                            Map<String, Set<String>> pending, Map<String, List<String>> dependents,
+                            Deque<String> ready) {
+        Set<String> mappingDependencies = new HashSet<>(dependencies.getOrDefault(mapping, Collections.emptySet()));
+        mappingDependencies.retainAll(toRun);
+        mappingDependencies.remove(mapping);
+        for (String dependency : mappingDependencies) {
+            dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(mapping);
+        }
+        if (mappingDependencies.isEmpty()) {
+            ready.add(mapping);
+        } else {
+            pending.put(mapping, mappingDependencies);
+        }
+    }
+
+    private void releaseDependent(String dependent, String completedMapping, Map<String, Set<String>> pending,
+                                  Deque<String> ready) {
+        Set<String> dependentDependencies = pending.get(dependent);
+        dependentDependencies.remove(completedMapping);
+        if (dependentDependencies.isEmpty()) {
+            pending.remove(dependent);
+            ready.add(dependent);
+        }
+    }
+
+    private void runMapping(String mapping, Map<String, Object> params, BlockingQueue<String> completed) {
+        try {
+            doETL(mapping, params);
+        } finally {
+            completed.add(mapping);
+        }
+    }
+
+    private void doETL(String mapping, Map<String, Object> params) {
+        LOGGER.debug(String.format("ETL started for mapping : %s", mapping));
+        try {
+            // every mapping gets its own copy, so the templates of a mapping can not affect the other mappings
+            etlService.doETL(mapping, new HashMap<>(params));
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("ETL error executing mapping : %s", mapping), e);
+        }
+    }
+
+    private String take(BlockingQueue<String> completed) throws ETLException {
+        try {
+            return completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ETLException("Interrupted while waiting for the mappings to be completed", e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands the batches over to another {@link BatchHandler} which runs on the given executor, so several batches
+ * are processed at the same time. At most {@code parallelism} batches are processed at once, the caller is blocked
+ * until one of the batches is finished, so the extract can not get far ahead of the processing.
+ * <p>
+ * The first error thrown by the batch handler stops the hand over of the next batches and is thrown
+ * again by {@link #handle(List)} or {@link #checkFailure()}.
+ */
+public class ParallelBatchHandler implements BatchHandler {
+
+    private final BatchHandler batchHandler;
+
+    private final Executor executor;
+
+    private final int parallelism;
+
+    private final Semaphore permits;
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    public ParallelBatchHandler(BatchHandler batchHandler, Executor executor, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be greater than zero");
+        }
+        this.batchHandler = batchHandler;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.permits = new Semaphore(parallelism);
+    }
+
+    @Override
+    public void handle(List<Map<String, Object>> rows) throws ETLException, MappingNotFoundException {
+        checkFailure();
+        acquire(1);
+        try {
+            executor.execute(() -> process(rows));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until all the batches handed over so far are processed.
+     *
+     * @throws ETLException if the waiting thread was interrupted
+     */
+    public void awaitTermination() throws ETLException {
+        acquire(parallelism);
+        permits.release(parallelism);
+    }
+
+    /**
+     * Throws the first error thrown while processing the batches, if there was any.
+     *
+     * @throws ETLException             if there was any error while processing the batches
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    public void checkFailure() throws ETLException, MappingNotFoundException {
+        Exception e = failure.get();
+        if (e instanceof ETLException) {
+            throw (ETLException) e;
+        }
+        if (e instanceof MappingNotFoundException) {
+            throw (MappingNotFoundException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    private void process(List<Map<String, Object>> rows) {
+        try {
+            batchHandler.handle(rows);
+        } catch (ETLException | MappingNotFoundException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire(int count) throws ETLException {
+        try {
+            permits.acquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ETLException("Interrupted while waiting for the batches to be processed", e);
+        }
+    }
+}
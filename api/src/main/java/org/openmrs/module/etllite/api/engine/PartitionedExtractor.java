@@ -0,0 +1,195 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads the partitions of an extract at the same time and hands their batches over to a single {@link BatchHandler}.
+ * Every partition is read on the executor, e.g. a key range of the extract query on its own connection, and its
+ * batches are put into a bounded queue. The thread which calls {@link #extract(List, BatchHandler)} takes the
+ * batches from the queue and hands them over to the batch handler one by one, so the batch handler does not have
+ * to be thread safe. The batches of different partitions are interleaved in no particular order.
+ * <p>
+ * When the queue is full the partition readers wait, so the extract can not get far ahead of the processing.
+ * The first error of a partition reader or of the batch handler, or the interruption of the calling thread, stops
+ * the other partition readers on their next batch and is thrown by {@link #extract(List, BatchHandler)} once all
+ * the partition readers stopped.
+ */
+public class PartitionedExtractor {
+
+    // compared by identity, so it can not be mistaken for an empty batch
+    private static final List<Map<String, Object>> PARTITION_END = Collections.unmodifiableList(new ArrayList<>());
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+    private final Executor executor;
+
+    private final int queueCapacity;
+
+    /**
+     * Reads a single partition of the extract
+     */
+    @FunctionalInterface
+    public interface PartitionReader {
+
+        /**
+         * Reads the rows of the partition and hands them over to the batch handler in batches
+         *
+         * @param batchHandler handler of the batches of the partition
+         * @throws ETLException             if the partition can not be read or the batch handler fails
+         * @throws MappingNotFoundException if the mapping does not exists in database
+         */
+        void read(BatchHandler batchHandler) throws ETLException, MappingNotFoundException;
+    }
+
+    public PartitionedExtractor(Executor executor, int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be greater than zero");
+        }
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Reads all the partitions at the same time and hands their batches over to the batch handler in the calling
+     * thread.
+     *
+     * @param partitionReaders readers of the partitions
+     * @param batchHandler     handler of the batches of all the partitions
+     * @return the number of rows handed over to the batch handler
+     * @throws ETLException             if a partition can not be read, the batch handler fails or the calling thread
+     *                                  was interrupted
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    public int extract(List<PartitionReader> partitionReaders, BatchHandler batchHandler)
+            throws ETLException, MappingNotFoundException {
+        Extraction extraction = new Extraction();
+        int started = 0;
+        try {
+            for (PartitionReader partitionReader : partitionReaders) {
+                executor.execute(() -> extraction.read(partitionReader));
+                started++;
+            }
+        } catch (RuntimeException e) {
+            extraction.fail(e);
+        }
+        int rowCount = extraction.handleBatches(started, batchHandler);
+        extraction.checkFailure();
+        return rowCount;
+    }
+
+    /**
+     * The state of a single extract shared by the partition readers and the calling thread
+     */
+    private final class Extraction {
+
+        private final BlockingQueue<List<Map<String, Object>>> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        private void read(PartitionReader partitionReader) {
+            try {
+                partitionReader.read(this::put);
+            } catch (ETLException | MappingNotFoundException | RuntimeException e) {
+                fail(e);
+            } finally {
+                // the calling thread keeps taking the batches until all the partitions ended, so the end always fits
+                Uninterruptibles.putUninterruptibly(queue, PARTITION_END);
+            }
+        }
+
+        private void put(List<Map<String, Object>> rows) throws ETLException {
+            try {
+                while (!queue.offer(rows, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkCancelled();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ETLException("Interrupted while reading the partition", e);
+            }
+            checkCancelled();
+        }
+
+        private void checkCancelled() throws ETLException {
+            if (failure.get() != null) {
+                throw new ETLException("The partition is not read, because the extract failed", null);
+            }
+        }
+
+        /**
+         * Hands the batches over to the batch handler until all the started partition readers ended. After the first
+         * error the batches are only taken from the queue, so the partition readers are not blocked on the full queue.
+         */
+        private int handleBatches(int partitionCount, BatchHandler batchHandler) {
+            int rowCount = 0;
+            int endedPartitions = 0;
+            boolean interrupted = false;
+            while (endedPartitions < partitionCount) {
+                List<Map<String, Object>> rows;
+                try {
+                    rows = queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    fail(new ETLException("Interrupted while extracting the partitions", e));
+                    continue;
+                }
+                if (rows == PARTITION_END) {
+                    endedPartitions++;
+                } else if (failure.get() == null) {
+                    rowCount += rows.size();
+                    handle(batchHandler, rows);
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return rowCount;
+        }
+
+        private void handle(BatchHandler batchHandler, List<Map<String, Object>> rows) {
+            try {
+                batchHandler.handle(rows);
+            } catch (ETLException | MappingNotFoundException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Exception e) {
+            failure.compareAndSet(null, e);
+        }
+
+        private void checkFailure() throws ETLException, MappingNotFoundException {
+            Exception e = failure.get();
+            if (e instanceof ETLException) {
+                throw (ETLException) e;
+            }
+            if (e instanceof MappingNotFoundException) {
+                throw (MappingNotFoundException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+        }
+    }
+}
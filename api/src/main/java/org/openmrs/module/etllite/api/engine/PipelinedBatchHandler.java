@@ -0,0 +1,278 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.ETLRuntimeException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the extract, transform and load stages of a run at the same time on different batches. The extract stage
+ * is the thread which hands the batches over to {@link #handle(List)}, each batch is transformed on the executor
+ * by one of at most {@code transformWorkers} threads and then loaded by the single load stage thread in the order
+ * the batches were extracted.
+ * <p>
+ * The stages are connected by a bounded queue of the extracted batches. When the load stage falls behind the queue
+ * is full and the extract stage is blocked, when all the transform workers are busy the extract stage is blocked
+ * as well, so at most {@code transformWorkers + queueCapacity} batches are held in memory.
+ * <p>
+ * The first error of any stage, or the interruption of the extract or load thread, cancels the run: the next
+ * batches are neither transformed nor loaded, the extract stage fails on the next batch and the error is thrown
+ * again by {@link #handle(List)} or {@link #checkFailure()}. {@link #awaitTermination()} has to be called when the
+ * extract is finished, even when it failed, to stop the load stage.
+ */
+public class PipelinedBatchHandler implements BatchHandler {
+
+    private static final PendingBatch END = new PendingBatch(Collections.emptyList());
+
+    private final ETLBatchProcessor batchProcessor;
+
+    private final Executor executor;
+
+    private final int transformWorkers;
+
+    private final Semaphore transformPermits;
+
+    private final BlockingQueue<PendingBatch> queue;
+
+    private final CountDownLatch loadFinished = new CountDownLatch(1);
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private TransactionOperations transactionOperations;
+
+    private int rowsToSkip;
+
+    public PipelinedBatchHandler(ETLBatchProcessor batchProcessor, Executor executor, int transformWorkers,
+                                 int queueCapacity) {
+        if (transformWorkers <= 0) {
+            throw new IllegalArgumentException("transformWorkers must be greater than zero");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be greater than zero");
+        }
+        this.batchProcessor = batchProcessor;
+        this.executor = executor;
+        this.transformWorkers = transformWorkers;
+        this.transformPermits = new Semaphore(transformWorkers);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Makes the load stage load each batch in its own transaction and record the checkpoint of the run in the same
+     * transaction, like {@link CheckpointBatchHandler}. The rows covered by the checkpoint are skipped.
+     *
+     * @param transactionOperations the template of the batch transactions
+     * @param checkpoint            the number of rows committed by the interrupted run
+     */
+    public void commitEachBatch(TransactionOperations transactionOperations, int checkpoint) {
+        this.transactionOperations = transactionOperations;
+        this.rowsToSkip = checkpoint;
+    }
+
+    /**
+     * Starts the load stage on the executor.
+     */
+    public void start() {
+        try {
+            executor.execute(this::runLoadStage);
+        } catch (RuntimeException e) {
+            loadFinished.countDown();
+            throw e;
+        }
+    }
+
+    @Override
+    public void handle(List<Map<String, Object>> rows) throws ETLException, MappingNotFoundException {
+        checkFailure();
+        int skipped = Math.min(rowsToSkip, rows.size());
+        rowsToSkip -= skipped;
+        if (skipped == rows.size()) {
+            return;
+        }
+        PendingBatch batch = new PendingBatch(rows.subList(skipped, rows.size()));
+        // the run log has to exist before the batch is handed over to the other threads, when the batches are loaded
+        // in their own transactions it has to be committed as well
+        if (transactionOperations == null) {
+            batchProcessor.createLogIfNeeded();
+        } else {
+            batchProcessor.createLogIfNeeded(transactionOperations);
+        }
+
+        try {
+            transformPermits.acquire();
+            try {
+                executor.execute(() -> transform(batch));
+            } catch (RuntimeException e) {
+                transformPermits.release();
+                throw e;
+            }
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ETLException interrupted = new ETLException("Interrupted while extracting the batches", e);
+            failure.compareAndSet(null, interrupted);
+            throw interrupted;
+        }
+    }
+
+    /**
+     * Waits until all the batches handed over so far are loaded, or discarded after an error, and stops the load
+     * stage. The waiting is not interrupted, the interruption of the waiting thread cancels the loading
+     * of the remaining batches instead.
+     */
+    public void awaitTermination() {
+        boolean interrupted = Thread.interrupted();
+        if (interrupted) {
+            failure.compareAndSet(null, new ETLException("Interrupted while loading the batches", null));
+        }
+        Uninterruptibles.putUninterruptibly(queue, END);
+        Uninterruptibles.awaitUninterruptibly(loadFinished);
+        transformPermits.acquireUninterruptibly(transformWorkers);
+        transformPermits.release(transformWorkers);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throws the first error of the stages, if there was any.
+     *
+     * @throws ETLException             if there was any error while processing the batches
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     */
+    public void checkFailure() throws ETLException, MappingNotFoundException {
+        Exception e = failure.get();
+        if (e instanceof ETLException) {
+            throw (ETLException) e;
+        }
+        if (e instanceof MappingNotFoundException) {
+            throw (MappingNotFoundException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    private void transform(PendingBatch batch) {
+        try {
+            if (failure.get() == null) {
+                batch.transformedRows.complete(batchProcessor.transform(batch.rows));
+            } else {
+                batch.transformedRows.cancel(false);
+            }
+        } catch (ETLException | MappingNotFoundException | RuntimeException e) {
+            batch.transformedRows.completeExceptionally(e);
+        } finally {
+            transformPermits.release();
+        }
+    }
+
+    /**
+     * Loads the queued batches until the end of the extract. The load stage keeps taking the batches after an error,
+     * so the extract stage is never blocked on the full queue.
+     */
+    private void runLoadStage() {
+        try {
+            PendingBatch batch;
+            while ((batch = take()) != END) {
+                if (failure.get() == null) {
+                    load(batch);
+                }
+            }
+        } finally {
+            loadFinished.countDown();
+        }
+    }
+
+    private PendingBatch take() {
+        while (true) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, new ETLException("Interrupted while loading the batches", e));
+            }
+        }
+    }
+
+    private void load(PendingBatch batch) {
+        try {
+            List<Map<String, Object>> transformedRows = batch.awaitTransform();
+            if (transactionOperations == null) {
+                batchProcessor.load(batch.rows, transformedRows);
+            } else {
+                loadInTransaction(batch.rows, transformedRows);
+            }
+        } catch (ETLException | MappingNotFoundException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void loadInTransaction(List<Map<String, Object>> rows, List<Map<String, Object>> transformedRows)
+            throws ETLException, MappingNotFoundException {
+        try {
+            transactionOperations.execute(status -> {
+                try {
+                    batchProcessor.load(rows, transformedRows);
+                    batchProcessor.checkpoint(rows.size());
+                } catch (ETLException | MappingNotFoundException e) {
+                    // rolls back the transaction of the batch, the checked exception is thrown again below
+                    throw new ETLRuntimeException(e.getMessage(), e);
+                }
+                return null;
+            });
+        } catch (ETLRuntimeException e) {
+            e.rethrowCause();
+        }
+    }
+
+    /**
+     * The extracted batch waiting in the queue together with the result of its transform.
+     */
+    private static final class PendingBatch {
+
+        private final List<Map<String, Object>> rows;
+
+        private final CompletableFuture<List<Map<String, Object>>> transformedRows = new CompletableFuture<>();
+
+        private PendingBatch(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        private List<Map<String, Object>> awaitTransform() throws ETLException, MappingNotFoundException {
+            try {
+                return Uninterruptibles.getUninterruptibly(transformedRows);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ETLException) {
+                    throw (ETLException) e.getCause();
+                }
+                if (e.getCause() instanceof MappingNotFoundException) {
+                    throw (MappingNotFoundException) e.getCause();
+                }
+                throw new ETLRuntimeException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.Serializable;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The column names of a result set shared by all its {@link CompactRow}s. The columns are looked up
+ * case-insensitively like the keys of the rows returned by Spring's <code>queryForList</code>. When several
+ * columns have the same name, the name is kept once and the value of the last column is used.
+ */
+public final class RowHeader implements Serializable {
+
+    private static final long serialVersionUID = 2915672330146716341L;
+
+    private final String[] columnNames;
+
+    private final int[] resultSetIndexes;
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    private final Map<String, Integer> lowerCaseIndexes = new HashMap<>();
+
+    private RowHeader(List<String> labels) {
+        List<String> names = new ArrayList<>(labels.size());
+        int[] columnIndexes = new int[labels.size()];
+        for (int i = 0; i < labels.size(); i++) {
+            String label = labels.get(i);
+            Integer index = lowerCaseIndexes.get(toLowerCase(label));
+            if (index == null) {
+                index = names.size();
+                names.add(label);
+                indexes.put(label, index);
+                lowerCaseIndexes.put(toLowerCase(label), index);
+            }
+            columnIndexes[index] = i + 1;
+        }
+        this.columnNames = names.toArray(new String[names.size()]);
+        this.resultSetIndexes = Arrays.copyOf(columnIndexes, columnNames.length);
+    }
+
+    /**
+     * Creates the header of the result set
+     *
+     * @param metaData meta data of the result set
+     * @return the header
+     * @throws SQLException if the meta data can not be read
+     */
+    public static RowHeader of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        List<String> labels = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            labels.add(JdbcUtils.lookupColumnName(metaData, i));
+        }
+        return new RowHeader(labels);
+    }
+
+    /**
+     * Creates the header of the given column names
+     *
+     * @param columnNames names of the columns
+     * @return the header
+     */
+    public static RowHeader of(String... columnNames) {
+        return new RowHeader(Arrays.asList(columnNames));
+    }
+
+    /**
+     * Returns the position of the column in the rows, the exact name is looked up first so the lookups
+     * which use the name of the result set do not convert the name
+     *
+     * @param columnName name of the column, case insensitive
+     * @return position of the column, -1 if there is no such column
+     */
+    public int indexOf(Object columnName) {
+        if (!(columnName instanceof String)) {
+            return -1;
+        }
+        Integer index = indexes.get(columnName);
+        if (index == null) {
+            index = lowerCaseIndexes.get(toLowerCase((String) columnName));
+        }
+        return index == null ? -1 : index;
+    }
+
+    public String getColumnName(int index) {
+        return columnNames[index];
+    }
+
+    /**
+     * Returns the index of the result set column whose value is stored at the given position of the rows
+     *
+     * @param index position of the column in the rows
+     * @return 1-based index of the result set column
+     */
+    public int getResultSetIndex(int index) {
+        return resultSetIndexes[index];
+    }
+
+    public int size() {
+        return columnNames.length;
+    }
+
+    private static String toLowerCase(String columnName) {
+        return columnName.toLowerCase(Locale.getDefault());
+    }
+}
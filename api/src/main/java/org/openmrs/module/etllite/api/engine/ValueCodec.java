@@ -0,0 +1,343 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary encodings of the values of the spilled rows of the {@link ExtractBuffer}. Every value is written as
+ * the ordinal of its codec followed by the value, the values of other types than the JDBC ones are written
+ * using the Java serialization. The LOBs are read into strings and byte arrays before they are written, see
+ * {@link #writableValue(Object)}.
+ */
+enum ValueCodec {
+
+    NULL(null, 0) {
+        @Override
+        void writeValue(DataOutput out, Object value) {
+            // only the codec is written
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return null;
+        }
+    },
+    STRING(String.class, 40) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return new String(readBytes(buffer), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        long estimateSize(Object value) {
+            return heapSize() + 2L * ((String) value).length();
+        }
+    },
+    INTEGER(Integer.class, 16) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeInt((Integer) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    },
+    LONG(Long.class, 24) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeLong((Long) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    },
+    SHORT(Short.class, 16) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeShort((Short) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return buffer.getShort();
+        }
+    },
+    BYTE(Byte.class, 16) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeByte((Byte) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return buffer.get();
+        }
+    },
+    DOUBLE(Double.class, 24) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeDouble((Double) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+    },
+    FLOAT(Float.class, 16) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeFloat((Float) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return buffer.getFloat();
+        }
+    },
+    BOOLEAN(Boolean.class, 16) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeBoolean((Boolean) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return buffer.get() != 0;
+        }
+    },
+    BIG_DECIMAL(BigDecimal.class, 72) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeInt(decimal.scale());
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            int scale = buffer.getInt();
+            return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+        }
+    },
+    TIMESTAMP(Timestamp.class, 32) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            Timestamp timestamp = (Timestamp) value;
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            Timestamp timestamp = new Timestamp(buffer.getLong());
+            timestamp.setNanos(buffer.getInt());
+            return timestamp;
+        }
+    },
+    SQL_DATE(java.sql.Date.class, 24) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeLong(((Date) value).getTime());
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return new java.sql.Date(buffer.getLong());
+        }
+    },
+    SQL_TIME(Time.class, 24) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeLong(((Date) value).getTime());
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return new Time(buffer.getLong());
+        }
+    },
+    DATE(Date.class, 24) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            out.writeLong(((Date) value).getTime());
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return new Date(buffer.getLong());
+        }
+    },
+    BYTES(byte[].class, 16) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            writeBytes(out, (byte[]) value);
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) {
+            return readBytes(buffer);
+        }
+
+        @Override
+        long estimateSize(Object value) {
+            return heapSize() + ((byte[]) value).length;
+        }
+    },
+    SERIALIZED(null, 64) {
+        @Override
+        void writeValue(DataOutput out, Object value) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                objectOut.writeObject(value);
+            }
+            writeBytes(out, bytes.toByteArray());
+        }
+
+        @Override
+        Object read(ByteBuffer buffer) throws IOException {
+            try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(readBytes(buffer)))) {
+                return objectIn.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Could not read the spilled value", e);
+            }
+        }
+    };
+
+    private static final Map<Class<?>, ValueCodec> CODECS = new HashMap<>();
+
+    private static final ValueCodec[] VALUES = values();
+
+    static {
+        for (ValueCodec codec : VALUES) {
+            if (codec.type != null) {
+                CODECS.put(codec.type, codec);
+            }
+        }
+    }
+
+    private final Class<?> type;
+
+    private final int heapSize;
+
+    ValueCodec(Class<?> type, int heapSize) {
+        this.type = type;
+        this.heapSize = heapSize;
+    }
+
+    /**
+     * Returns the codec of the value
+     */
+    static ValueCodec of(Object value) {
+        if (value == null) {
+            return NULL;
+        }
+        ValueCodec codec = CODECS.get(value.getClass());
+        return codec == null ? SERIALIZED : codec;
+    }
+
+    /**
+     * Returns the value which can be written by the codecs. The LOBs are read into a string or a byte array,
+     * because they are not serializable and can not be read after the result set is closed.
+     *
+     * @throws IOException if the LOB can not be read
+     */
+    static Object writableValue(Object value) throws IOException {
+        try {
+            if (value instanceof Clob) {
+                Clob clob = (Clob) value;
+                return clob.getSubString(1, toLength(clob.length()));
+            }
+            if (value instanceof Blob) {
+                Blob blob = (Blob) value;
+                return blob.getBytes(1, toLength(blob.length()));
+            }
+            return value;
+        } catch (SQLException e) {
+            throw new IOException("Could not read the LOB value", e);
+        }
+    }
+
+    /**
+     * Returns the codec written with the given ordinal
+     */
+    static ValueCodec of(byte ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Writes the ordinal of the codec and the value
+     */
+    void write(DataOutput out, Object value) throws IOException {
+        out.writeByte(ordinal());
+        writeValue(out, value);
+    }
+
+    /**
+     * Returns the estimated number of bytes of the heap used by the value
+     */
+    long estimateSize(Object value) {
+        return heapSize;
+    }
+
+    int heapSize() {
+        return heapSize;
+    }
+
+    abstract void writeValue(DataOutput out, Object value) throws IOException;
+
+    abstract Object read(ByteBuffer buffer) throws IOException;
+
+    private static int toLength(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(String.format("The LOB value of %d bytes is too large to be spilled", length));
+        }
+        return (int) length;
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.openmrs.module.etllite.api.dao.WatermarkDao;
+import org.openmrs.module.etllite.api.domain.Watermark;
+import org.openmrs.module.etllite.api.util.DateUtil;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the highest value of the watermark column among the loaded rows of a single ETL run and stores
+ * it as the watermark of the mapping. The watermark is stored after every loaded batch, unless the batches are
+ * loaded in parallel. A batch may then be loaded before the batches extracted earlier, so the watermark is stored
+ * only once all the batches are loaded.
+ */
+public class WatermarkTracker {
+
+    private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+    private final WatermarkDao watermarkDao;
+
+    private final String database;
+
+    private final String mapping;
+
+    private final String column;
+
+    private final boolean saveEachBatch;
+
+    private Comparable<Object> highestValue;
+
+    private boolean changed;
+
+    public WatermarkTracker(WatermarkDao watermarkDao, String database, String mapping, String column,
+                            boolean saveEachBatch) {
+        this.watermarkDao = watermarkDao;
+        this.database = database;
+        this.mapping = mapping;
+        this.column = column;
+        this.saveEachBatch = saveEachBatch;
+    }
+
+    /**
+     * Advances the watermark to the highest value of the watermark column among the loaded rows.
+     *
+     * @param rows the extracted rows of the loaded batch
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void batchLoaded(List<Map<String, Object>> rows) {
+        for (Map<String, Object> row : rows) {
+            Object value = row.get(column);
+            if (value instanceof Comparable && (highestValue == null || highestValue.compareTo(value) < 0)) {
+                highestValue = (Comparable<Object>) value;
+                changed = true;
+            }
+        }
+        if (saveEachBatch) {
+            save();
+        }
+    }
+
+    /**
+     * Stores the watermark of the mapping unless it was not advanced since it was stored last time.
+     */
+    public synchronized void save() {
+        if (!changed) {
+            return;
+        }
+        Watermark watermark = watermarkDao.findByMapping(database, mapping);
+        if (watermark == null) {
+            watermark = new Watermark();
+            watermark.setDatabaseName(database);
+            watermark.setMapping(mapping);
+        }
+        watermark.setLastValue(format(highestValue));
+        watermarkDao.save(watermark);
+        changed = false;
+    }
+
+    private String format(Object value) {
+        // java.sql.Date and java.sql.Timestamp are already formatted in the JDBC escape format
+        if (value != null && value.getClass() == Date.class) {
+            return DateUtil.dateToString((Date) value, DATE_TIME_FORMAT, DateUtil.getLocalTimeZone());
+        }
+        return String.valueOf(value);
+    }
+}
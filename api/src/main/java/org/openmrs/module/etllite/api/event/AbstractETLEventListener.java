@@ -20,18 +20,26 @@ import javax.jms.Message;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public abstract class AbstractETLEventListener implements ETLEventListener {
 
   private DaemonToken daemonToken;
 
+  private Executor executor;
+
   @Override
   public void onMessage(Message message) {
     try {
       // OpenMRS event module uses underneath MapMessage to construct Message. For some reason retrieving properties
       // from Message interface doesn't work and we have to map object to MapMessage.
       final Map<String, Object> properties = getProperties((MapMessage) message);
-      Daemon.runInDaemonThread(() -> handleEvent(properties), daemonToken);
+      // The listeners with an executor handle a bounded number of events at once, the other events wait in its queue
+      if (executor == null) {
+        Daemon.runInDaemonThread(() -> handleEvent(properties), daemonToken);
+      } else {
+        executor.execute(() -> handleEvent(properties));
+      }
     } catch (JMSException ex) {
       throw new ETLRuntimeException("Error during handling ETL event", ex);
     }
@@ -42,6 +50,10 @@ public abstract class AbstractETLEventListener implements ETLEventListener {
     this.daemonToken = daemonToken;
   }
 
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
   protected abstract void handleEvent(Map<String, Object> properties);
 
   private Map<String, Object> getProperties(MapMessage mapMessage) throws JMSException {
@@ -0,0 +1,208 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.event;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.domain.ETLLog;
+import org.openmrs.module.etllite.api.service.ETLEventService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes the records failed in the transform and load templates to the error persistence within the same process,
+ * without sending an event for each of them. Each failed record is persisted with the stack trace of its own
+ * exception, while the failures of the same mapping, class and method are counted in one summary until the end of
+ * the summary interval. At the end of each interval one summary event with the number of failures and the stack
+ * trace of the first failure is optionally sent for each mapping, class and method, so other modules can still
+ * follow the failures.
+ */
+public class ETLErrorChannel {
+
+    private static final Log LOGGER = LogFactory.getLog(ETLErrorChannel.class);
+
+    private static final String KEY_SEPARATOR = "|";
+
+    private final ConcurrentMap<String, ErrorSummary> summaries = new ConcurrentHashMap<>();
+
+    private long summaryInterval = Constants.DEFAULT_ERROR_SUMMARY_INTERVAL;
+
+    private boolean summaryEventsEnabled = true;
+
+    private ScheduledExecutorService scheduler;
+
+    private Executor summaryExecutor;
+
+    private ETLErrorPersistence errorPersistence;
+
+    private ETLEventService etlEventService;
+
+    /**
+     * Starts the periodic closing of the summaries
+     */
+    public void initialize() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, Constants.PROJECT_ID + "-error-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> summaryExecutor.execute(this::publishSummaries), summaryInterval,
+                summaryInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic closing of the summaries
+     */
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Passes the failed record to the error persistence
+     *
+     * @param clazz      the class from which the exception was thrown
+     * @param method     the method from which the exception was thrown
+     * @param e          the exception
+     * @param properties properties of the failed record, e.g. the job id, mapping and source key
+     */
+    public void publish(Class<?> clazz, String method, Exception e, Map<String, Object> properties) {
+        String message = "Class : " + clazz + " Method : " + method;
+        String key = properties.get(Constants.ETL_IMPORT_DATABASE) + KEY_SEPARATOR
+                + properties.get(Constants.ETL_IMPORT_MAPPING) + KEY_SEPARATOR + message;
+        String stackTrace = ExceptionUtils.getStackTrace(e);
+        // the summary is counted within compute, so a summary which is being closed can not miss the failure
+        summaries.compute(key, (k, summary) -> {
+            ErrorSummary counted = summary == null ? new ErrorSummary(properties, message, stackTrace) : summary;
+            counted.increment();
+            return counted;
+        });
+
+        Map<String, Object> failedRecord = new HashMap<>(properties);
+        failedRecord.put(Constants.ETL_IMPORT_FAILURE_MESSAGE, message);
+        failedRecord.put(Constants.ETL_IMPORT_FAILURE_STACKTRACE, stackTrace);
+        errorPersistence.persistError(failedRecord);
+    }
+
+    /**
+     * Applies the failed records of the job to the given log while the job is running
+     *
+     * @param etlLog the log of the running job
+     */
+    public void registerRunningJob(ETLLog etlLog) {
+        errorPersistence.registerRunningJob(etlLog);
+    }
+
+    /**
+     * Applies the failed records of the job to its log row from now on
+     *
+     * @param etlLog the log of the job which is about to be saved for the last time
+     */
+    public void unregisterRunningJob(ETLLog etlLog) {
+        errorPersistence.unregisterRunningJob(etlLog);
+    }
+
+    /**
+     * Closes the current summaries and sends one summary event for each of them if the summary events are enabled
+     */
+    public void publishSummaries() {
+        List<ErrorSummary> closedSummaries = new ArrayList<>();
+        for (String key : new ArrayList<>(summaries.keySet())) {
+            // the removal is atomic with the counting in publish, the later failures start a new summary
+            ErrorSummary summary = summaries.remove(key);
+            if (summary != null) {
+                closedSummaries.add(summary);
+            }
+        }
+        if (!summaryEventsEnabled) {
+            return;
+        }
+        for (ErrorSummary summary : closedSummaries) {
+            try {
+                etlEventService.sendEventMessage(
+                        new ETLEvent(Constants.ETL_FAILURE_SUMMARY_SUBJECT, summary.toEventParameters()));
+            } catch (RuntimeException ex) {
+                LOGGER.error("Failed to send the ETL failure summary event", ex);
+            }
+        }
+    }
+
+    public void setSummaryInterval(long summaryInterval) {
+        this.summaryInterval = summaryInterval;
+    }
+
+    public void setSummaryEventsEnabled(boolean summaryEventsEnabled) {
+        this.summaryEventsEnabled = summaryEventsEnabled;
+    }
+
+    public void setSummaryExecutor(Executor summaryExecutor) {
+        this.summaryExecutor = summaryExecutor;
+    }
+
+    public void setErrorPersistence(ETLErrorPersistence errorPersistence) {
+        this.errorPersistence = errorPersistence;
+    }
+
+    public void setEtlEventService(ETLEventService etlEventService) {
+        this.etlEventService = etlEventService;
+    }
+
+    private static final class ErrorSummary {
+
+        private final Object database;
+
+        private final Object mapping;
+
+        private final String message;
+
+        private final String stackTrace;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        ErrorSummary(Map<String, Object> properties, String message, String stackTrace) {
+            this.database = properties.get(Constants.ETL_IMPORT_DATABASE);
+            this.mapping = properties.get(Constants.ETL_IMPORT_MAPPING);
+            this.message = message;
+            this.stackTrace = stackTrace;
+        }
+
+        void increment() {
+            count.incrementAndGet();
+        }
+
+        Map<String, Object> toEventParameters() {
+            Map<String, Object> params = new HashMap<>();
+            params.put(Constants.ETL_IMPORT_FAILURE_MESSAGE, message);
+            params.put(Constants.ETL_IMPORT_FAILURE_STACKTRACE, stackTrace);
+            params.put(Constants.ETL_IMPORT_FAILURE_COUNT, count.get());
+            if (database != null) {
+                params.put(Constants.ETL_IMPORT_DATABASE, database);
+            }
+            if (mapping != null) {
+                params.put(Constants.ETL_IMPORT_MAPPING, mapping);
+            }
+            return params;
+        }
+    }
+}
@@ -10,9 +10,26 @@
 
 package org.openmrs.module.etllite.api.event;
 
+import org.openmrs.module.etllite.api.domain.ETLLog;
+
 import java.util.Map;
 
 public interface ETLErrorPersistence {
 
     void persistError(Map<String, Object> properties);
+
+    /**
+     * Applies the failed records of the job to the given log of the running job instead of its log row, the log is
+     * saved by the job itself
+     *
+     * @param etlLog the log of the running job
+     */
+    void registerRunningJob(ETLLog etlLog);
+
+    /**
+     * Applies the failed records of the job reported from now on to its log row
+     *
+     * @param etlLog the log of the job which is about to be saved for the last time
+     */
+    void unregisterRunningJob(ETLLog etlLog);
 }
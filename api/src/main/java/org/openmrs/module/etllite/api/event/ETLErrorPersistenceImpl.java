@@ -10,6 +10,8 @@
 
 package org.openmrs.module.etllite.api.event;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.dao.ETLLogDao;
@@ -17,55 +19,377 @@ import org.openmrs.module.etllite.api.dao.ErrorLogDao;
 import org.openmrs.module.etllite.api.domain.ETLLog;
 import org.openmrs.module.etllite.api.domain.ErrorLog;
 import org.openmrs.module.etllite.api.util.DateUtil;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Writes the failed records to the error log in the background. The failed records are queued in a bounded,
+ * lock-free queue and written in batches, each batch in its own transaction: the records already logged on the same
+ * day are looked up with one query per mapping, the new error logs are inserted using JDBC batches and the load
+ * records of each job are decreased once by the number of its new error logs. The same record failing again before
+ * it is written is ignored. When the queue is full, the thread reporting the failure writes the waiting records
+ * itself.
+ * <p>
+ * The failed records of a running job are applied to its log in memory, because the job saves its log over the log
+ * row. The failed records of the other jobs are applied to the log row in one update, the failed records of a job
+ * whose log row is not visible yet are kept and applied by the next writes.
+ */
 public class ETLErrorPersistenceImpl implements ETLErrorPersistence {
 
-    private final Object lock = new Object();
+    private static final Log LOGGER = LogFactory.getLog(ETLErrorPersistenceImpl.class);
+
+    private static final String KEY_SEPARATOR = "|";
+
+    private static final String RUN_DAY_FORMAT = "yyyy-MM-dd";
+
+    private static final long SHUTDOWN_FLUSH_TIMEOUT = 30000L;
+
+    private static final long UNAPPLIED_FAILURES_TIMEOUT = 3600000L;
+
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final Queue<FailedRecord> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final List<ETLLog> runningJobs = new CopyOnWriteArrayList<>();
+
+    private final ConcurrentMap<Integer, UnappliedFailures> unappliedFailures = new ConcurrentHashMap<>();
+
+    private int queueCapacity = Constants.DEFAULT_ERROR_QUEUE_CAPACITY;
+
+    private int flushSize = Constants.DEFAULT_ERROR_FLUSH_SIZE;
+
+    private long flushInterval = Constants.DEFAULT_ERROR_FLUSH_INTERVAL;
+
+    private ScheduledExecutorService scheduler;
+
+    private Executor flushExecutor;
+
+    private TransactionOperations transactionTemplate;
 
     private ErrorLogDao errorLogDao;
+
     private ETLLogDao etlLogDao;
 
-    @Transactional
+    /**
+     * Starts the periodic writing of the waiting failed records
+     */
+    public void initialize() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, Constants.PROJECT_ID + "-error-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scheduleFlush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic writing and writes the failed records which are still waiting. The records are written by
+     * the flush executor, because the shutting down thread has no OpenMRS session.
+     */
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        CountDownLatch flushed = new CountDownLatch(1);
+        try {
+            flushExecutor.execute(() -> {
+                try {
+                    flushAndLogFailure();
+                } finally {
+                    flushed.countDown();
+                }
+            });
+            if (!flushed.await(SHUTDOWN_FLUSH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOGGER.error(String.format("%d error logs were not written on shutdown", queueSize.get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error(String.format("Interrupted while writing %d error logs on shutdown", queueSize.get()), e);
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Failed to write %d error logs on shutdown", queueSize.get()), e);
+        }
+    }
+
+    @Override
     public void persistError(Map<String, Object> properties) {
+        ErrorLog errorLog = new ErrorLog();
+        errorLog.setDatabaseName((String) properties.get(Constants.ETL_IMPORT_DATABASE));
+        errorLog.setMapping((String) properties.get(Constants.ETL_IMPORT_MAPPING));
+        errorLog.setSourceKey((String) properties.get(Constants.ETL_IMPORT_SOURCE_KEY));
+        errorLog.setSourceValue((String) properties.get(Constants.ETL_IMPORT_SOURCE_VALUE));
+        errorLog.setErrorMessage((String) properties.get(Constants.ETL_IMPORT_FAILURE_MESSAGE));
+        errorLog.setStackTrace((String) properties.get(Constants.ETL_IMPORT_FAILURE_STACKTRACE));
+        errorLog.setRunOn(DateUtil.getDateWithLocalTimeZone(new Date()));
+
+        FailedRecord failedRecord = new FailedRecord(errorLog, (Integer) properties.get(Constants.ETL_IMPORT_JOB_ID));
+        if (!pendingKeys.add(failedRecord.getKey())) {
+            return;
+        }
+        while (!enqueue(failedRecord)) {
+            // the failure must not reach the template which reported the failed record
+            flushAndLogFailure();
+        }
+        if (queueSize.get() >= flushSize) {
+            scheduleFlush();
+        }
+    }
+
+    @Override
+    public void registerRunningJob(ETLLog etlLog) {
+        runningJobs.add(etlLog);
+    }
+
+    @Override
+    public void unregisterRunningJob(ETLLog etlLog) {
+        // the failed records are applied to the log while holding its lock, so none of them is applied after it
+        synchronized (etlLog) {
+            // the logs are compared by id, which is not assigned until the log is created
+            runningJobs.removeIf(runningJob -> runningJob == etlLog);
+        }
+    }
+
+    /**
+     * Writes all the waiting failed records in the calling thread
+     */
+    public void flush() {
+        List<FailedRecord> batch = new ArrayList<>();
+        while (dequeue(batch) > 0) {
+            write(batch);
+            batch.clear();
+        }
+        if (!unappliedFailures.isEmpty()) {
+            transactionTemplate.execute(status -> {
+                applyUnappliedFailures();
+                return null;
+            });
+        }
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setFlushSize(int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public void setFlushExecutor(Executor flushExecutor) {
+        this.flushExecutor = flushExecutor;
+    }
+
+    public void setTransactionTemplate(TransactionOperations transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void setErrorLogDao(ErrorLogDao errorLogDao) {
+        this.errorLogDao = errorLogDao;
+    }
+
+    public void setEtlLogDao(ETLLogDao etlLogDao) {
+        this.etlLogDao = etlLogDao;
+    }
+
+    /**
+     * Hands the writing of the waiting failed records over to the flush executor, unless it is already running
+     */
+    private void scheduleFlush() {
+        if ((queueSize.get() == 0 && unappliedFailures.isEmpty()) || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        flushExecutor.execute(() -> {
+            try {
+                flushAndLogFailure();
+            } finally {
+                flushing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes the waiting failed records, the records of a batch which can not be written are dropped
+     */
+    private void flushAndLogFailure() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write the error logs", e);
+        }
+    }
+
+    /**
+     * Adds the failed record to the queue unless the queue is full
+     */
+    private boolean enqueue(FailedRecord failedRecord) {
+        if (queueSize.incrementAndGet() > queueCapacity) {
+            queueSize.decrementAndGet();
+            return false;
+        }
+        queue.offer(failedRecord);
+        return true;
+    }
 
-        Integer jobId = (Integer) properties.get(Constants.ETL_IMPORT_JOB_ID);
-        String errorMessage = (String) properties.get(Constants.ETL_IMPORT_FAILURE_MESSAGE);
-        String stackTrace = (String) properties.get(Constants.ETL_IMPORT_FAILURE_STACKTRACE);
-        String database = (String) properties.get(Constants.ETL_IMPORT_DATABASE);
-        String mapping = (String) properties.get(Constants.ETL_IMPORT_MAPPING);
-        String sourceKey = (String) properties.get(Constants.ETL_IMPORT_SOURCE_KEY);
-        String sourceValue = (String) properties.get(Constants.ETL_IMPORT_SOURCE_VALUE);
-
-
-        synchronized (lock) {
-            ErrorLog existingRecord = getErrorLogDao().findBySourceKeyAndRunDate(
-                    database, mapping, sourceKey, sourceValue, DateUtil.getDateWithLocalTimeZone(new Date()));
-
-            if (null == existingRecord) {
-                ErrorLog errorLog = new ErrorLog();
-                errorLog.setDatabaseName(database);
-                errorLog.setMapping(mapping);
-                errorLog.setSourceKey(sourceKey);
-                errorLog.setSourceValue(sourceValue);
-                errorLog.setErrorMessage(errorMessage);
-                errorLog.setRunOn(DateUtil.getDateWithLocalTimeZone(new Date()));
-                errorLog.setStackTrace(stackTrace);
-                getErrorLogDao().create(errorLog);
-
-                // update etl log table with job status and update load records count
-                ETLLog etlLog = getEtlLogDao().findById(jobId);
-                if (null != etlLog) {
+    /**
+     * Moves at most flush size failed records from the queue to the batch
+     */
+    private int dequeue(List<FailedRecord> batch) {
+        int count = 0;
+        FailedRecord failedRecord;
+        while (count < flushSize && (failedRecord = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            batch.add(failedRecord);
+            count++;
+        }
+        return count;
+    }
+
+    private void write(final List<FailedRecord> batch) {
+        try {
+            transactionTemplate.execute(status -> {
+                writeInTransaction(batch);
+                return null;
+            });
+        } finally {
+            for (FailedRecord failedRecord : batch) {
+                pendingKeys.remove(failedRecord.getKey());
+            }
+        }
+    }
+
+    private void writeInTransaction(List<FailedRecord> batch) {
+        List<ErrorLog> newErrorLogs = new ArrayList<>();
+        Map<Integer, Integer> failedRecordsByJob = new HashMap<>();
+
+        for (List<FailedRecord> group : groupBySourceKey(batch).values()) {
+            ErrorLog first = group.get(0).getErrorLog();
+            Set<String> sourceValues = new HashSet<>();
+            Date lastRunOn = first.getRunOn();
+            for (FailedRecord failedRecord : group) {
+                sourceValues.add(failedRecord.getErrorLog().getSourceValue());
+                if (failedRecord.getErrorLog().getRunOn().after(lastRunOn)) {
+                    lastRunOn = failedRecord.getErrorLog().getRunOn();
+                }
+            }
+            Set<String> existingValues = new HashSet<>(getErrorLogDao().findSourceValuesByRunDate(
+                    first.getDatabaseName(), first.getMapping(), first.getSourceKey(), sourceValues, lastRunOn));
+
+            for (FailedRecord failedRecord : group) {
+                if (!existingValues.contains(failedRecord.getErrorLog().getSourceValue())) {
+                    newErrorLogs.add(failedRecord.getErrorLog());
+                    if (failedRecord.getJobId() != null) {
+                        failedRecordsByJob.merge(failedRecord.getJobId(), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        if (!newErrorLogs.isEmpty()) {
+            getErrorLogDao().createAll(newErrorLogs);
+        }
+        for (Map.Entry<Integer, Integer> entry : failedRecordsByJob.entrySet()) {
+            updateJob(entry.getKey(), entry.getValue());
+        }
+        LOGGER.debug(String.format("Error logs written : %d of %d failed records", newErrorLogs.size(), batch.size()));
+    }
+
+    /**
+     * Marks the job as failed and decreases its load records by the number of failed records. The failed records of
+     * a job whose log row is not visible yet are kept for the next writes.
+     */
+    private void updateJob(Integer jobId, int failedRecords) {
+        if (!updateRunningJob(jobId, failedRecords) && getEtlLogDao().markFailedRecords(jobId, failedRecords) == 0) {
+            unappliedFailures.merge(jobId, new UnappliedFailures(failedRecords), UnappliedFailures::add);
+        }
+    }
+
+    /**
+     * Applies the failed records to the log of the running job, returns false if the job is not running
+     */
+    private boolean updateRunningJob(Integer jobId, int failedRecords) {
+        for (ETLLog etlLog : runningJobs) {
+            synchronized (etlLog) {
+                if (jobId.equals(etlLog.getId()) && isRunning(etlLog)) {
                     etlLog.setJobStatus(false);
-                    etlLog.setLoadRecords(0 != etlLog.getLoadRecords() ?
-                            etlLog.getLoadRecords() - 1 : etlLog.getLoadRecords());
-                    getEtlLogDao().update(etlLog);
+                    etlLog.setLoadRecords(Math.max(etlLog.getLoadRecords() - failedRecords, 0));
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    private boolean isRunning(ETLLog etlLog) {
+        for (ETLLog runningJob : runningJobs) {
+            if (runningJob == etlLog) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the kept failed records to the jobs, the failed records of a job whose log row does not show up within
+     * the timeout are dropped
+     */
+    private void applyUnappliedFailures() {
+        long now = System.currentTimeMillis();
+        for (Integer jobId : new ArrayList<>(unappliedFailures.keySet())) {
+            UnappliedFailures failures = unappliedFailures.remove(jobId);
+            if (failures == null) {
+                continue;
+            }
+            if (now - failures.getSince() > UNAPPLIED_FAILURES_TIMEOUT) {
+                LOGGER.error(String.format("%d failed records were not applied to the missing job log %d",
+                        failures.getFailedRecords(), jobId));
+                continue;
+            }
+            if (!updateRunningJob(jobId, failures.getFailedRecords())
+                    && getEtlLogDao().markFailedRecords(jobId, failures.getFailedRecords()) == 0) {
+                unappliedFailures.merge(jobId, failures, UnappliedFailures::add);
+            }
+        }
+    }
+
+    /**
+     * Groups the failed records of the same ETL source, mapping, source key and run day
+     */
+    private Map<String, List<FailedRecord>> groupBySourceKey(List<FailedRecord> batch) {
+        Map<String, List<FailedRecord>> groups = new LinkedHashMap<>();
+        for (FailedRecord failedRecord : batch) {
+            ErrorLog errorLog = failedRecord.getErrorLog();
+            String groupKey = String.join(KEY_SEPARATOR, Arrays.asList(errorLog.getDatabaseName(),
+                    errorLog.getMapping(), errorLog.getSourceKey(), failedRecord.getRunDay()));
+            groups.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(failedRecord);
+        }
+        return groups;
     }
 
     private ErrorLogDao getErrorLogDao() {
@@ -81,4 +405,67 @@ public class ETLErrorPersistenceImpl implements ETLErrorPersistence {
         }
         return etlLogDao;
     }
+
+    private static final class UnappliedFailures {
+
+        private final int failedRecords;
+
+        private final long since;
+
+        UnappliedFailures(int failedRecords) {
+            this(failedRecords, System.currentTimeMillis());
+        }
+
+        private UnappliedFailures(int failedRecords, long since) {
+            this.failedRecords = failedRecords;
+            this.since = since;
+        }
+
+        UnappliedFailures add(UnappliedFailures other) {
+            return new UnappliedFailures(failedRecords + other.failedRecords, Math.min(since, other.since));
+        }
+
+        int getFailedRecords() {
+            return failedRecords;
+        }
+
+        long getSince() {
+            return since;
+        }
+    }
+
+    private static final class FailedRecord {
+
+        private final ErrorLog errorLog;
+
+        private final Integer jobId;
+
+        private final String runDay;
+
+        private final String key;
+
+        FailedRecord(ErrorLog errorLog, Integer jobId) {
+            this.errorLog = errorLog;
+            this.jobId = jobId;
+            this.runDay = DateUtil.dateToString(errorLog.getRunOn(), RUN_DAY_FORMAT, DateUtil.getLocalTimeZone());
+            this.key = String.join(KEY_SEPARATOR, Arrays.asList(errorLog.getDatabaseName(), errorLog.getMapping(),
+                    errorLog.getSourceKey(), errorLog.getSourceValue(), runDay));
+        }
+
+        ErrorLog getErrorLog() {
+            return errorLog;
+        }
+
+        Integer getJobId() {
+            return jobId;
+        }
+
+        String getRunDay() {
+            return runDay;
+        }
+
+        String getKey() {
+            return key;
+        }
+    }
 }
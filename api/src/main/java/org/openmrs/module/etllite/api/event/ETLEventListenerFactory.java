@@ -53,6 +53,10 @@ public final class ETLEventListenerFactory {
         }
     }
 
+    public static DaemonToken getDaemonToken() {
+        return daemonToken;
+    }
+
     public static void setDaemonToken(DaemonToken daemonToken) {
         ETLEventListenerFactory.daemonToken = daemonToken;
         synchronized (LISTENER_LOCK) {
@@ -10,21 +10,22 @@
 
 package org.openmrs.module.etllite.api.event;
 
-import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.velocity.app.event.MethodExceptionEventHandler;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.util.ContextAware;
 import org.openmrs.module.etllite.api.constants.Constants;
-import org.openmrs.module.etllite.api.service.ETLEventService;
 
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Handles exceptions thrown from transform and load velocity templates while invoking ETL util
- * methods or Spring services. Also create events for failed records
+ * methods or Spring services. Also passes the failed records to the error channel. A new handler
+ * is used for each velocity context, because velocity sets the context of the handler before
+ * each event. The failures are also counted per thread, so the batch processor can pass the error rate
+ * of a batch to its batch sizer.
  *
  * @author nanakapa
  */
@@ -34,11 +35,18 @@ public class ETLExceptionEventHandler implements MethodExceptionEventHandler, Co
 
     private static final String SOURCE_VALUE = "sourceValue";
 
+    /** The number of the failures handled in the current thread, the templates are evaluated in the caller thread. */
+    private static final ThreadLocal<int[]> FAILURES = ThreadLocal.withInitial(() -> new int[1]);
+
     private Context etlContext;
 
     private static final Log LOGGER = LogFactory.getLog(ETLExceptionEventHandler.class);
 
-    private ETLEventService etlEventService;
+    private final ETLErrorChannel errorChannel;
+
+    public ETLExceptionEventHandler(ETLErrorChannel errorChannel) {
+        this.errorChannel = errorChannel;
+    }
 
     /**
      * This method will be triggered whenever an exception is thrown from the transform or load
@@ -52,32 +60,37 @@ public class ETLExceptionEventHandler implements MethodExceptionEventHandler, Co
     @SuppressWarnings("rawtypes")
     public Object methodException(Class clazz, String method, Exception e) {
         LOGGER.error(String.format("Class : %s, method : %s with exception %s . Please check the logs", clazz, method, e));
-        final String meta = "Class : " + clazz + " Method : " + method;
-        createETLFailureEvent(e, meta);
+        FAILURES.get()[0]++;
+        if (errorChannel != null) {
+            errorChannel.publish(clazz, method, e, getFailedRecordProperties());
+        }
         return null;
     }
 
+    /**
+     * Returns the number of the failures handled in the current thread since it started. The difference of two
+     * calls is the number of the records which failed in between.
+     *
+     * @return the number of the handled failures
+     */
+    public static int getFailureCount() {
+        return FAILURES.get()[0];
+    }
+
     @Override
     public void setContext(Context context) {
         etlContext = context;
     }
 
-    public void setEtlEventService(ETLEventService etlEventService) {
-        this.etlEventService = etlEventService;
-    }
-
     /**
-     * Create events for failed records so that failed events will be processed and inserted into
-     * error log table
+     * Collects the properties of the failed record from the velocity context, so the failed record
+     * can be inserted into error log table
      *
-     * @param e
-     * @param message
+     * @return properties of the failed record
      */
-    private void createETLFailureEvent(Exception e, String message) {
+    private Map<String, Object> getFailedRecordProperties() {
         Map<String, Object> params = new HashMap<>();
 
-        params.put(Constants.ETL_IMPORT_FAILURE_MESSAGE, message);
-        params.put(Constants.ETL_IMPORT_FAILURE_STACKTRACE, ExceptionUtils.getStackTrace(e));
         params.put(Constants.ETL_IMPORT_JOB_ID, etlContext.get(Constants.ETL_IMPORT_JOB_ID));
 
         if (etlContext.containsKey(Constants.PARAM_DATABASE)) {
@@ -92,6 +105,6 @@ public class ETLExceptionEventHandler implements MethodExceptionEventHandler, Co
         if (etlContext.containsKey(SOURCE_VALUE)) {
             params.put(Constants.ETL_IMPORT_SOURCE_VALUE, etlContext.get(SOURCE_VALUE));
         }
-        etlEventService.sendEventMessage(new ETLEvent(Constants.ETL_FAILURE_SUBJECT, params));
+        return params;
     }
 }
@@ -9,14 +9,23 @@
  */
 
 package org.openmrs.module.etllite.api.event;
-
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.domain.Mapping;
+import org.openmrs.module.etllite.api.engine.MappingRunner;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.service.ConfigService;
 import org.openmrs.module.etllite.api.service.ETLService;
+import org.openmrs.module.etllite.api.service.MappingService;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 public class ETLImportDataEventListener extends AbstractETLEventListener {
 
@@ -24,10 +33,28 @@ public class ETLImportDataEventListener extends AbstractETLEventListener {
 
     private ETLService etlService;
 
+    private MappingService mappingService;
+
+    private ConfigService configService;
+
+    private Executor mappingExecutor;
+
     public void setEtlService(ETLService etlService) {
         this.etlService = etlService;
     }
 
+    public void setMappingService(MappingService mappingService) {
+        this.mappingService = mappingService;
+    }
+
+    public void setConfigService(ConfigService configService) {
+        this.configService = configService;
+    }
+
+    public void setMappingExecutor(Executor mappingExecutor) {
+        this.mappingExecutor = mappingExecutor;
+    }
+
     @Override
     public String getSubject() {
         return Constants.ETL_EVENT_IMPORT_DATA;
@@ -38,9 +65,33 @@ public class ETLImportDataEventListener extends AbstractETLEventListener {
         LOGGER.debug("ETL Handler method invoked");
 
         List<String> mappings = (List<String>) properties.get(Constants.PARAM_MAPPINGS);
-        for (String mapping : mappings) {
-            LOGGER.debug(String.format("ETL started for mapping : %s", mapping));
-            etlService.doETL(mapping, properties);
+        String source = (String) properties.get(Constants.PARAM_SOURCE);
+
+        // The mappings run at the same time up to the limit of the ETL database, a mapping waits
+        // for the mappings it depends on
+        MappingRunner mappingRunner = new MappingRunner(etlService, mappingExecutor,
+                configService.getMaxConcurrentMappings(source));
+        try {
+            mappingRunner.run(mappings, getDependencies(source), properties);
+        } catch (ETLException e) {
+            LOGGER.error(String.format("ETL error executing mappings : %s", mappings), e);
+        }
+    }
+
+    private Map<String, Set<String>> getDependencies(String source) {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        if (source == null) {
+            return dependencies;
+        }
+        for (Mapping mapping : mappingService.findBySource(source)) {
+            if (mapping.getSettings() != null && StringUtils.isNotBlank(mapping.getSettings().getDependsOn())) {
+                Set<String> mappingDependencies = new HashSet<>();
+                for (String dependency : mapping.getSettings().getDependsOn().split(",")) {
+                    mappingDependencies.add(dependency.trim());
+                }
+                dependencies.put(mapping.getName(), mappingDependencies);
+            }
         }
+        return dependencies;
     }
 }
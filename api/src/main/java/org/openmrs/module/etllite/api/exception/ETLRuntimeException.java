@@ -25,4 +25,20 @@ public class ETLRuntimeException extends RuntimeException {
     public ETLRuntimeException(String message, Throwable throwable) {
         super(message, throwable);
     }
+
+    /**
+     * Throws the checked ETL exception wrapped by this exception, or this exception if it wraps any other error.
+     *
+     * @throws ETLException             if this exception wraps an ETL error
+     * @throws MappingNotFoundException if this exception wraps a missing mapping error
+     */
+    public void rethrowCause() throws ETLException, MappingNotFoundException {
+        if (getCause() instanceof ETLException) {
+            throw (ETLException) getCause();
+        }
+        if (getCause() instanceof MappingNotFoundException) {
+            throw (MappingNotFoundException) getCause();
+        }
+        throw this;
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.metrics;
+
+import org.openmrs.module.etllite.api.engine.BoundedDaemonExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the timing and throughput metrics of the ETL runs in memory, per mapping and stage. The metrics are
+ * collected since the start of the module or the last reset and are not persisted.
+ */
+public class ETLMetricsRegistry {
+
+    private static final String KEY_SEPARATOR = ":";
+
+    private final ConcurrentMap<String, MappingMetrics> metrics = new ConcurrentHashMap<>();
+
+    private List<BoundedDaemonExecutor> executors = new ArrayList<>();
+
+    /**
+     * Records a batch processed by a stage of the mapping
+     *
+     * @param source  the ETL database of the mapping
+     * @param mapping the name of the mapping
+     * @param stage   the stage which processed the batch
+     * @param nanos   the time spent on the batch in nanoseconds
+     * @param rowsIn  the number of rows which entered the stage
+     * @param rowsOut the number of rows produced by the stage
+     */
+    public void recordBatch(String source, String mapping, ETLStage stage, long nanos, int rowsIn, int rowsOut) {
+        getMappingMetrics(source, mapping).getStage(stage).recordBatch(nanos, rowsIn, rowsOut);
+    }
+
+    /**
+     * Records an error of a stage of the mapping
+     *
+     * @param source  the ETL database of the mapping
+     * @param mapping the name of the mapping
+     * @param stage   the stage which failed
+     */
+    public void recordError(String source, String mapping, ETLStage stage) {
+        getMappingMetrics(source, mapping).getStage(stage).recordError();
+    }
+
+    /**
+     * Records the time between the start of the extract query and the first extracted row
+     *
+     * @param source  the ETL database of the mapping
+     * @param mapping the name of the mapping
+     * @param nanos   the time to the first row in nanoseconds
+     */
+    public void recordTimeToFirstRow(String source, String mapping, long nanos) {
+        getMappingMetrics(source, mapping).getStage(ETLStage.EXTRACT).recordTimeToFirstRow(nanos);
+    }
+
+    /**
+     * Returns the metrics of the mapping, the metrics are created when the mapping is used for the first time
+     *
+     * @param source  the ETL database of the mapping
+     * @param mapping the name of the mapping
+     * @return the metrics of the mapping
+     */
+    public MappingMetrics getMappingMetrics(String source, String mapping) {
+        return metrics.computeIfAbsent(source + KEY_SEPARATOR + mapping, key -> new MappingMetrics(source, mapping));
+    }
+
+    /**
+     * Returns the metrics of all mappings which were run since the last reset
+     *
+     * @return the metrics of the mappings
+     */
+    public Collection<MappingMetrics> getAllMetrics() {
+        List<MappingMetrics> result = new ArrayList<>(metrics.values());
+        result.sort((first, second) -> (first.getSource() + KEY_SEPARATOR + first.getMapping())
+                .compareTo(second.getSource() + KEY_SEPARATOR + second.getMapping()));
+        return result;
+    }
+
+    /**
+     * Returns the executors of the ETL event listeners, their statistics are read from the executors directly
+     *
+     * @return the executors of the listeners
+     */
+    public List<BoundedDaemonExecutor> getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(List<BoundedDaemonExecutor> executors) {
+        this.executors = executors;
+    }
+
+    /**
+     * Removes the metrics of all mappings
+     */
+    public void reset() {
+        metrics.clear();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the recorded durations in fixed buckets. The buckets are bounded, so the histogram takes the same memory
+ * regardless of the number of recorded values, and it can be updated by several threads at the same time.
+ */
+public class Histogram {
+
+    /**
+     * The upper bounds of the buckets in milliseconds, the last bucket has no upper bound
+     */
+    private static final long[] BUCKET_BOUNDS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000, 60000};
+
+    private static final String OVERFLOW_BUCKET = "+Inf";
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a single duration
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getMeanMillis() {
+        long samples = getCount();
+        return samples == 0 ? 0 : toMillis(getTotalNanos()) / samples;
+    }
+
+    public double getMaxMillis() {
+        return toMillis(maxNanos.get());
+    }
+
+    /**
+     * Returns the number of recorded durations of each bucket keyed by the upper bound of the bucket in milliseconds
+     *
+     * @return the counts of the buckets in ascending order of the bounds
+     */
+    public Map<String, Long> getBuckets() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            result.put(String.valueOf(BUCKET_BOUNDS[i]), buckets.get(i));
+        }
+        result.put(OVERFLOW_BUCKET, buckets.get(BUCKET_BOUNDS.length));
+        return result;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The metrics of all stages of a single mapping
+ */
+public class MappingMetrics {
+
+    private final String source;
+
+    private final String mapping;
+
+    private final Map<ETLStage, StageMetrics> stages = new EnumMap<>(ETLStage.class);
+
+    public MappingMetrics(String source, String mapping) {
+        this.source = source;
+        this.mapping = mapping;
+        for (ETLStage stage : ETLStage.values()) {
+            stages.put(stage, new StageMetrics());
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getMapping() {
+        return mapping;
+    }
+
+    public StageMetrics getStage(ETLStage stage) {
+        return stages.get(stage);
+    }
+}
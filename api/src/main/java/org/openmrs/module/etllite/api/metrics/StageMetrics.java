@@ -0,0 +1,82 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a single stage of a mapping: the latency of the batches, the number of rows which entered and
+ * left the stage and the number of errors. The extract stage records also the time to the first extracted row.
+ */
+public class StageMetrics {
+
+    private final Histogram batchLatency = new Histogram();
+
+    private final Histogram timeToFirstRow = new Histogram();
+
+    private final LongAdder rowsIn = new LongAdder();
+
+    private final LongAdder rowsOut = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Records a processed batch
+     *
+     * @param nanos   the time spent on the batch in nanoseconds
+     * @param rowsIn  the number of rows which entered the stage
+     * @param rowsOut the number of rows produced by the stage
+     */
+    public void recordBatch(long nanos, int rowsIn, int rowsOut) {
+        batchLatency.record(nanos);
+        this.rowsIn.add(rowsIn);
+        this.rowsOut.add(rowsOut);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public void recordTimeToFirstRow(long nanos) {
+        timeToFirstRow.record(nanos);
+    }
+
+    public Histogram getBatchLatency() {
+        return batchLatency;
+    }
+
+    public Histogram getTimeToFirstRow() {
+        return timeToFirstRow;
+    }
+
+    public long getRowsIn() {
+        return rowsIn.sum();
+    }
+
+    public long getRowsOut() {
+        return rowsOut.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of rows which entered the stage per second of the time spent on the batches
+     *
+     * @return the throughput of the stage, 0 if no batch was recorded
+     */
+    public double getRowsPerSecond() {
+        long totalNanos = batchLatency.getTotalNanos();
+        return totalNanos == 0 ? 0 : getRowsIn() * (double) TimeUnit.SECONDS.toNanos(1) / totalNanos;
+    }
+}
@@ -14,6 +14,7 @@ import org.openmrs.annotation.Authorized;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.module.etllite.api.contract.ConfigRequestWrapper;
 import org.openmrs.module.etllite.api.domain.Config;
+import org.openmrs.module.etllite.api.domain.types.DatabaseTypes;
 import org.openmrs.module.etllite.api.util.PrivilegeConstants;
 
 import javax.sql.DataSource;
@@ -85,6 +86,24 @@ public interface ConfigService extends OpenmrsService {
     @Authorized(PrivilegeConstants.ETL_SETTINGS_PRIVILEGE)
     DataSource getDataSource(String name);
 
+    /**
+     * This method fetches the database type of the specified ETL database
+     *
+     * @param name ETL database configuration name
+     * @return database type or null if the ETL database does not exist
+     */
+    @Authorized(PrivilegeConstants.ETL_SETTINGS_PRIVILEGE)
+    DatabaseTypes getDatabaseType(String name);
+
+    /**
+     * This method fetches the number of mappings of the specified ETL database which may run at the same time
+     *
+     * @param name ETL database configuration name
+     * @return the limit defined by the configuration or the default limit if it is not defined
+     */
+    @Authorized(PrivilegeConstants.ETL_SETTINGS_PRIVILEGE)
+    int getMaxConcurrentMappings(String name);
+
     /**
      * This method tests the ETL database connection by using the parameters defined while creating
      * the ETL database settings
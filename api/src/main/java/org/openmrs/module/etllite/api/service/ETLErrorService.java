@@ -16,5 +16,42 @@ import java.util.Date;
 import java.util.List;
 
 public interface ETLErrorService {
+
+    /**
+     * Finds the failed visits of the mapping between the run dates for which the visit has not been created since
+     *
+     * @param databaseName ETL source
+     * @param mappingName  mapping name
+     * @param startDate    the earliest job run date
+     * @param endDate      the latest job run date
+     * @return the visits which are still missing
+     */
     List<VisitErrorLog> getVisitErrorLogs(String databaseName, String mappingName, Date startDate, Date endDate);
+
+    /**
+     * Finds the failed visits of a page of the error logs of the mapping between the run dates for which the visit
+     * has not been created since. A page may return fewer visits than the page size as the already created visits
+     * are left out, so the caller reads the pages until it reaches the number of the error logs.
+     *
+     * @param databaseName ETL source
+     * @param mappingName  mapping name
+     * @param startDate    the earliest job run date
+     * @param endDate      the latest job run date
+     * @param firstResult  the index of the first error log of the page
+     * @param maxResults   the maximum number of error logs of the page
+     * @return the visits of the page which are still missing
+     */
+    List<VisitErrorLog> getVisitErrorLogs(String databaseName, String mappingName, Date startDate, Date endDate,
+                                          int firstResult, int maxResults);
+
+    /**
+     * Counts the error logs of the mapping between the run dates, which are the pages of the failed visits read from
+     *
+     * @param databaseName ETL source
+     * @param mappingName  mapping name
+     * @param startDate    the earliest job run date
+     * @param endDate      the latest job run date
+     * @return the number of error logs
+     */
+    long getErrorLogCount(String databaseName, String mappingName, Date startDate, Date endDate);
 }
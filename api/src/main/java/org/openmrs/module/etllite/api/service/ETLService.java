@@ -10,6 +10,7 @@
 
 package org.openmrs.module.etllite.api.service;
 
+import org.openmrs.module.etllite.api.engine.BatchHandler;
 import org.openmrs.module.etllite.api.exception.ETLException;
 import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
 
@@ -37,13 +38,45 @@ public interface ETLService {
             IOException;
 
     /**
-     * Transforms the extracted data using transform velocity template associated with the mapping.
+     * Extracts at most the given number of rows from the data source associated with the mapping, e.g. to preview
+     * the mapping. The limit is pushed down into the extract query in the dialect of the database type
+     * of the source, so the source database does not produce the rest of the rows.
+     *
+     * @param mappingName mapping name
+     * @param params      parameters required for ETL
+     * @param maxRows     the maximum number of extracted rows
+     * @return at most maxRows rows extracted using the query defined in the mapping
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     * @throws IOException              if issue with evaluate template
+     */
+    List<Map<String, Object>> extract(String mappingName, Map<String, Object> params, int maxRows)
+            throws MappingNotFoundException, IOException;
+
+    /**
+     * Extracts data from the data source associated with the mapping and streams it to the batch handler in batches
+     * of the mapping fetch size, so the whole result set is never held in memory.
+     *
+     * @param mappingName  mapping name
+     * @param params       parameters required for ETL
+     * @param batchHandler handler invoked for every batch of extracted rows
+     * @return number of extracted rows
+     * @throws MappingNotFoundException if the mapping does not exists in database
+     * @throws IOException              if issue with evaluate template
+     * @throws ETLException             if the batch handler fails to process a batch
+     */
+    int extractInBatches(String mappingName, Map<String, Object> params, BatchHandler batchHandler)
+            throws MappingNotFoundException, IOException, ETLException;
+
+    /**
+     * Transforms the extracted data using transform velocity template associated with the mapping. When the mapping
+     * defines the declarative transform, the compiled declarative transform is used instead of the template.
      *
      * @param mappingName mapping name
      * @param params      parameters required for ETL
      * @param rows        data extracted using the extract method
      * @return data transformed data using velocity transform template
      * @throws MappingNotFoundException if the mapping does not exists in database
+     * @throws ETLException             if the template or the declarative transform can not be evaluated
      */
     List<Map<String, Object>> transform(String mappingName, Map<String, Object> params, List<Map<String, Object>> rows)
             throws ETLException, MappingNotFoundException;
@@ -63,7 +96,8 @@ public interface ETLService {
               List<Map<String, Object>> outs, Integer jobId) throws ETLException, MappingNotFoundException;
 
     /**
-     * Invokes the complete ETL process and calls extract, transform and load methods in order.
+     * Invokes the complete ETL process. The extracted rows are streamed and every batch is transformed and loaded
+     * before the next one is read. A mapping which is already running, e.g. started by its schedule, is skipped.
      *
      * @param mappingName mapping name
      * @param params      parameters required for ETL
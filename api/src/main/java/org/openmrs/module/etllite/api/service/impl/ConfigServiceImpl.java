@@ -13,12 +13,15 @@ package org.openmrs.module.etllite.api.service.impl;
 import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
 import com.google.gson.reflect.TypeToken;
+import com.zaxxer.hikari.HikariDataSource;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.APIException;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.etllite.api.builder.ConfigBuilder;
+import org.openmrs.module.etllite.api.cache.ServiceCache;
 import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.contract.ConfigRequestWrapper;
 import org.openmrs.module.etllite.api.domain.Config;
@@ -28,7 +31,6 @@ import org.openmrs.module.etllite.api.service.ConfigService;
 import org.openmrs.module.etllite.api.service.SettingsManagerService;
 import org.openmrs.module.etllite.api.util.ResourceUtil;
 import org.springframework.core.io.ByteArrayResource;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import javax.sql.DataSource;
 import java.io.IOException;
@@ -38,6 +40,7 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,11 +62,15 @@ public class ConfigServiceImpl extends BaseOpenmrsService implements ConfigServi
   // Manages the list of spring services
   private String springServices;
 
-  // Manages the list of data sources for the ETL databases
-  private Map<String, DriverManagerDataSource> dataSources = new HashMap<>();
+  // Manages the list of connection pools for the ETL databases
+  private Map<String, HikariDataSource> dataSources = new HashMap<>();
+
+  // Manages the settings each connection pool was created with
+  private final Map<String, List<Object>> dataSourceSettings = new HashMap<>();
 
   private SettingsManagerService settingsManagerService;
   private ConfigBuilder configBuilder;
+  private ServiceCache serviceCache;
 
   public void initialize() {
     synchronized (configs) {
@@ -76,6 +83,15 @@ public class ConfigServiceImpl extends BaseOpenmrsService implements ConfigServi
     }
   }
 
+  /**
+   * Closes the connection pools of all ETL databases, called when the module is stopped.
+   */
+  public void destroy() {
+    synchronized (configs) {
+      closeDataSources(new ArrayList<>(dataSources.keySet()));
+    }
+  }
+
   public void setSettingsManagerService(SettingsManagerService settingsManagerService) {
     this.settingsManagerService = settingsManagerService;
   }
@@ -84,6 +100,10 @@ public class ConfigServiceImpl extends BaseOpenmrsService implements ConfigServi
     this.configBuilder = configBuilder;
   }
 
+  public void setServiceCache(ServiceCache serviceCache) {
+    this.serviceCache = serviceCache;
+  }
+
   @Override
   public Config getConfig(String name) {
     synchronized (configs) {
@@ -127,6 +147,8 @@ public class ConfigServiceImpl extends BaseOpenmrsService implements ConfigServi
 
       loadConfigs();
       setUpDataSources();
+      // the saved services are resolved again, even if their configuration did not change
+      serviceCache.invalidate();
     }
   }
 
@@ -135,6 +157,7 @@ public class ConfigServiceImpl extends BaseOpenmrsService implements ConfigServi
     synchronized (configs) {
       if (hasConfig(name)) {
         configs.remove(name);
+        closeDataSources(Arrays.asList(name));
       }
     }
   }
@@ -144,28 +167,48 @@ public class ConfigServiceImpl extends BaseOpenmrsService implements ConfigServi
     synchronized (configs) {
       if (!configs.isEmpty()) {
         configs.clear();
+        closeDataSources(new ArrayList<>(dataSources.keySet()));
       }
     }
   }
 
   @Override
   public DataSource getDataSource(String name) {
-    return dataSources.get(name);
+    synchronized (configs) {
+      return dataSources.get(name);
+    }
+  }
+
+  @Override
+  public DatabaseTypes getDatabaseType(String name) {
+    synchronized (configs) {
+      Config config = configs.get(name);
+      return config == null || config.getType() == null ? null : DatabaseTypes.valueOf(config.getType());
+    }
+  }
+
+  @Override
+  public int getMaxConcurrentMappings(String name) {
+    synchronized (configs) {
+      Config config = configs.get(name);
+      return config == null || config.getMaxConcurrentMappings() == null ? Constants.DEFAULT_MAX_CONCURRENT_MAPPINGS
+          : config.getMaxConcurrentMappings();
+    }
   }
 
   @Override
   public boolean testDatabase(String name) {
     Config database = getConfig(name);
-    DriverManagerDataSource basicDataSource = dataSources.get(database.getName());
+    DataSource dataSource = getDataSource(database.getName());
 
-    if (null == basicDataSource) {
+    if (null == dataSource) {
       throw new IllegalArgumentException(ERROR_MESSAGE);
     }
     Connection connection = null;
     CallableStatement callableStatement = null;
 
     try {
-      connection = basicDataSource.getConnection();
+      connection = dataSource.getConnection();
       callableStatement = connection.prepareCall(database.getQuery());
       return callableStatement.execute();
     } catch (SQLException sqlException) {
@@ -227,18 +270,58 @@ public class ConfigServiceImpl extends BaseOpenmrsService implements ConfigServi
   }
 
   /**
-   * Reload the datasources Map during application load/add/update/delete database configurations.
+   * Reload the datasources Map during application load/add/update/delete database configurations. The connection
+   * pools of unchanged configurations are kept, pools of changed or removed configurations are closed and rebuilt.
    */
   private void setUpDataSources() {
-    List<Config> configList = new ArrayList<>(configs.values());
-    for (Config database : configList) {
-      DriverManagerDataSource dataSource = new DriverManagerDataSource();
-      dataSource.setDriverClassName(DatabaseTypes.valueOf(database.getType()).toString());
-      dataSource.setUrl(database.getUrl());
-      dataSource.setUsername(database.getUser());
-      dataSource.setPassword(configBuilder.decryptPassword(database.getDbPassword()));
-
-      dataSources.put(database.getName(), dataSource);
+    List<String> removedDataSources = new ArrayList<>(dataSources.keySet());
+    removedDataSources.removeAll(configs.keySet());
+    closeDataSources(removedDataSources);
+
+    for (Config database : configs.values()) {
+      List<Object> settings = getDataSourceSettings(database);
+      if (!settings.equals(dataSourceSettings.get(database.getName()))) {
+        closeDataSources(Arrays.asList(database.getName()));
+        dataSources.put(database.getName(), createDataSource(database));
+        dataSourceSettings.put(database.getName(), settings);
+      }
+    }
+  }
+
+  private HikariDataSource createDataSource(Config database) {
+    // the pool is started with the first connection request, so unreachable databases do not break the config load
+    HikariDataSource dataSource = new HikariDataSource();
+    dataSource.setPoolName(Constants.PROJECT_ID + "-" + database.getName());
+    dataSource.setDriverClassName(DatabaseTypes.valueOf(database.getType()).toString());
+    dataSource.setJdbcUrl(database.getUrl());
+    dataSource.setUsername(database.getUser());
+    dataSource.setPassword(configBuilder.decryptPassword(database.getDbPassword()));
+    dataSource.setMaximumPoolSize(
+        database.getPoolSize() != null ? database.getPoolSize() : Constants.DEFAULT_POOL_SIZE);
+    // idle connections are closed after the idle timeout, so no connections are held between the ETL runs
+    dataSource.setMinimumIdle(0);
+    dataSource.setIdleTimeout(
+        database.getIdleTimeout() != null ? database.getIdleTimeout() : Constants.DEFAULT_POOL_IDLE_TIMEOUT);
+    dataSource.setMaxLifetime(
+        database.getMaxLifetime() != null ? database.getMaxLifetime() : Constants.DEFAULT_POOL_MAX_LIFETIME);
+    if (StringUtils.isNotBlank(database.getValidationQuery())) {
+      dataSource.setConnectionTestQuery(database.getValidationQuery());
+    }
+    return dataSource;
+  }
+
+  private List<Object> getDataSourceSettings(Config database) {
+    return Arrays.asList(database.getType(), database.getUrl(), database.getUser(), database.getDbPassword(),
+        database.getPoolSize(), database.getIdleTimeout(), database.getMaxLifetime(), database.getValidationQuery());
+  }
+
+  private void closeDataSources(List<String> names) {
+    for (String name : names) {
+      HikariDataSource dataSource = dataSources.remove(name);
+      dataSourceSettings.remove(name);
+      if (dataSource != null) {
+        dataSource.close();
+      }
     }
   }
 
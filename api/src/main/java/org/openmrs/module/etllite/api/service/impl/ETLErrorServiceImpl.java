@@ -14,6 +14,7 @@ import org.openmrs.Visit;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.etllite.api.dao.ErrorLogDao;
+import org.openmrs.module.etllite.api.dao.VisitDao;
 import org.openmrs.module.etllite.api.domain.ErrorLog;
 import org.openmrs.module.etllite.api.domain.VisitErrorLog;
 import org.openmrs.module.etllite.api.service.ETLErrorService;
@@ -21,44 +22,110 @@ import org.openmrs.module.etllite.api.util.ETLUtil;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ETLErrorServiceImpl extends BaseOpenmrsService implements ETLErrorService {
 
     private static final String SOURCE_VALUE_SEPARATOR = "~";
 
+    private static final String VISIT_KEY_SEPARATOR = "|";
+
+    private static final String DOSING_DATE_FORMAT = "dd-MMM-yy";
+
+    private ETLUtil etlUtil = new ETLUtil();
+
     private ErrorLogDao errorLogDao;
 
+    private VisitDao visitDao;
+
     @Override
     public List<VisitErrorLog> getVisitErrorLogs(String databaseName, String mappingName,
                                                  Date startDate, Date endDate) {
-        ETLUtil etlUtil = new ETLUtil();
-        List<ErrorLog> logs = getErrorLogDao()
-            .findByMappingAndBetweenRunDates(databaseName, mappingName, startDate, endDate);
-        List<VisitErrorLog> result = new ArrayList<>();
+        return getMissingVisits(getErrorLogDao()
+            .findByMappingAndBetweenRunDates(databaseName, mappingName, startDate, endDate));
+    }
+
+    @Override
+    public List<VisitErrorLog> getVisitErrorLogs(String databaseName, String mappingName, Date startDate,
+                                                 Date endDate, int firstResult, int maxResults) {
+        return getMissingVisits(getErrorLogDao().findByMappingAndBetweenRunDates(databaseName, mappingName,
+            startDate, endDate, firstResult, maxResults));
+    }
+
+    @Override
+    public long getErrorLogCount(String databaseName, String mappingName, Date startDate, Date endDate) {
+        return getErrorLogDao().countByMappingAndBetweenRunDates(databaseName, mappingName, startDate, endDate);
+    }
+
+    public void setEtlUtil(ETLUtil etlUtil) {
+        this.etlUtil = etlUtil;
+    }
+
+    public void setErrorLogDao(ErrorLogDao errorLogDao) {
+        this.errorLogDao = errorLogDao;
+    }
+
+    public void setVisitDao(VisitDao visitDao) {
+        this.visitDao = visitDao;
+    }
+
+    /**
+     * Reconciles the error logs with the visits of their patients, the visits of all the patients are read at once
+     * and indexed by the patient, visit type and start date
+     */
+    private List<VisitErrorLog> getMissingVisits(List<ErrorLog> logs) {
+        List<String[]> sourceValues = new ArrayList<>(logs.size());
+        Set<String> patientUuids = new HashSet<>();
         for (ErrorLog errorLog : logs) {
             String[] parts = errorLog.getSourceValue().split(SOURCE_VALUE_SEPARATOR);
-            List<Visit> visitsByPatient = Context.getVisitService().getVisitsByPatient(
-                Context.getPatientService().getPatientByUuid(parts[0]));
-            boolean alreadyExists = false;
-            for (Visit visit : visitsByPatient) {
-                if (visit.getVisitType().getName().toLowerCase().equals(parts[1].toLowerCase())
-                    && visit.getStartDatetime().getTime() == etlUtil.stringToDate(parts[2], "dd-MMM-yy").getTime()) {
-                    alreadyExists = true;
-                    break;
-                }
+            sourceValues.add(parts);
+            patientUuids.add(parts[0]);
+        }
+
+        Set<String> existingVisits = new HashSet<>();
+        if (!patientUuids.isEmpty()) {
+            for (Visit visit : getVisitDao().findByPatientUuids(patientUuids)) {
+                existingVisits.add(getVisitKey(visit.getPatient().getUuid(), visit.getVisitType().getName(),
+                    visit.getStartDatetime()));
             }
-            if (!alreadyExists) {
+        }
+
+        // the error logs of a period share few dosing dates, so each of them is parsed once
+        Map<String, Date> dosingDates = new HashMap<>();
+        List<VisitErrorLog> result = new ArrayList<>();
+        for (String[] parts : sourceValues) {
+            if (!dosingDates.containsKey(parts[2])) {
+                dosingDates.put(parts[2], etlUtil.stringToDate(parts[2], DOSING_DATE_FORMAT));
+            }
+            Date dosingDate = dosingDates.get(parts[2]);
+            // a dosing date which can not be parsed matches no visit
+            if (dosingDate == null || !existingVisits.contains(getVisitKey(parts[0], parts[1], dosingDate))) {
                 result.add(new VisitErrorLog(parts[0], parts[1], parts[2]));
             }
         }
         return result;
     }
 
+    private String getVisitKey(String patientUuid, String visitType, Date startDate) {
+        return patientUuid + VISIT_KEY_SEPARATOR + visitType.toLowerCase() + VISIT_KEY_SEPARATOR
+            + startDate.getTime();
+    }
+
     private ErrorLogDao getErrorLogDao() {
         if (errorLogDao == null) {
             errorLogDao = Context.getRegisteredComponent("etllite.ErrorLogDao", ErrorLogDao.class);
         }
         return errorLogDao;
     }
+
+    private VisitDao getVisitDao() {
+        if (visitDao == null) {
+            visitDao = Context.getRegisteredComponent("etllite.VisitDao", VisitDao.class);
+        }
+        return visitDao;
+    }
 }
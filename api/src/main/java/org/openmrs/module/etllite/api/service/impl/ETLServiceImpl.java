@@ -11,6 +11,7 @@
 package org.openmrs.module.etllite.api.service.impl;
 
 import com.google.common.collect.Lists;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.velocity.VelocityContext;
@@ -18,30 +19,57 @@ import org.apache.velocity.app.Velocity;
 import org.apache.velocity.app.event.EventCartridge;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.log.Log4JLogChute;
-import org.openmrs.api.APIException;
-import org.openmrs.api.context.ServiceContext;
+import org.openmrs.module.etllite.api.cache.MappingCache;
+import org.openmrs.module.etllite.api.cache.ServiceCache;
+import org.openmrs.module.etllite.api.cache.TemplateCache;
 import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.dao.ETLLogDao;
 import org.openmrs.module.etllite.api.dao.MappingDao;
+import org.openmrs.module.etllite.api.dao.WatermarkDao;
 import org.openmrs.module.etllite.api.domain.ETLLog;
 import org.openmrs.module.etllite.api.domain.Mapping;
+import org.openmrs.module.etllite.api.domain.MappingSettings;
+import org.openmrs.module.etllite.api.domain.Watermark;
+import org.openmrs.module.etllite.api.domain.types.DatabaseTypes;
+import org.openmrs.module.etllite.api.engine.AdaptiveBatchSizer;
+import org.openmrs.module.etllite.api.engine.BatchHandler;
+import org.openmrs.module.etllite.api.engine.BatchSizer;
+import org.openmrs.module.etllite.api.engine.BatchingRowCallbackHandler;
+import org.openmrs.module.etllite.api.engine.CheckpointBatchHandler;
+import org.openmrs.module.etllite.api.engine.CompactRowMapper;
+import org.openmrs.module.etllite.api.engine.ETLBatchProcessor;
+import org.openmrs.module.etllite.api.engine.ExtractBuffer;
+import org.openmrs.module.etllite.api.engine.ExtractTimingBatchHandler;
+import org.openmrs.module.etllite.api.engine.KeyRange;
+import org.openmrs.module.etllite.api.engine.ParallelBatchHandler;
+import org.openmrs.module.etllite.api.engine.PartitionedExtractor;
+import org.openmrs.module.etllite.api.engine.PipelinedBatchHandler;
+import org.openmrs.module.etllite.api.engine.WatermarkTracker;
+import org.openmrs.module.etllite.api.event.ETLErrorChannel;
 import org.openmrs.module.etllite.api.event.ETLExceptionEventHandler;
 import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.ETLRuntimeException;
 import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.openmrs.module.etllite.api.metrics.ETLMetricsRegistry;
+import org.openmrs.module.etllite.api.metrics.ETLStage;
 import org.openmrs.module.etllite.api.service.ConfigService;
 import org.openmrs.module.etllite.api.service.ETLService;
+import org.openmrs.module.etllite.api.task.ETLTaskUtil;
 import org.openmrs.module.etllite.api.util.DateUtil;
 import org.openmrs.module.etllite.api.util.ETLUtil;
 import org.openmrs.module.etllite.api.util.Util;
-import org.springframework.beans.BeansException;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
 import javax.sql.DataSource;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -50,13 +78,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * ETLService Implementation
  *
  * @author nanakapa
  */
-public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLService {
+public class ETLServiceImpl implements ETLService {
 
     private static final Log LOGGER = LogFactory.getLog(ETLServiceImpl.class);
 
@@ -82,7 +113,30 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
 
     private ETLLogDao etlLogDao;
 
-    private Map<String, String> beansToLoad = new HashMap<>();
+    private WatermarkDao watermarkDao;
+
+    private TemplateCache templateCache;
+
+    private MappingCache mappingCache = new MappingCache();
+
+    private ServiceCache serviceCache = new ServiceCache();
+
+    private ETLErrorChannel errorChannel;
+
+    private Executor batchExecutor;
+
+    // The mappings which are being run, a mapping is never run twice at the same time, no matter who started it
+    private final Set<String> runningMappings = ConcurrentHashMap.newKeySet();
+
+    private TransactionOperations batchTransactionTemplate;
+
+    private ETLMetricsRegistry metricsRegistry = new ETLMetricsRegistry();
+
+    private long extractBufferMemory = Constants.DEFAULT_EXTRACT_BUFFER_MEMORY;
+
+    private String extractBufferDirectory;
+
+    private int pipelineQueueCapacity = Constants.DEFAULT_PIPELINE_QUEUE_CAPACITY;
 
     public void initialize() {
         try {
@@ -105,12 +159,7 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
             throws MappingNotFoundException, IOException {
 
         Mapping mapping = findMapping(mappingName, params);
-
-        VelocityContext context = new VelocityContext();
-        context.put(Constants.CONTEXT_PARAM_PARAMS, params);
-        context.put("lastRunDate", getLastRunDate(mapping.getSource(), mapping.getName()));
-        loadUtilsInContext(context);
-        String query = evalTemplate(mapping.getQuery(), context, ETL_EXTRACT);
+        String query = evalExtractQuery(mapping, params);
 
         LOGGER.debug(String.format("[E] started, mapping : %s", mappingName));
 
@@ -119,13 +168,98 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
         NamedParameterJdbcTemplate template = util.getNamedParameterJdbcTemplate(dataSource, mapping.getFetchSize());
 
         SqlParameterSource namedParameters = new MapSqlParameterSource(params);
-        List<Map<String, Object>> rows = template.queryForList(query, namedParameters);
+        List<Map<String, Object>> rows = template.query(query, namedParameters, new CompactRowMapper());
+
+        LOGGER.debug(String.format("[E] completed, mapping : %s, extracted rows: %d ", mappingName, rows.size()));
+
+        return rows;
+    }
+
+    @Override
+    @Transactional(noRollbackFor = {MappingNotFoundException.class, IOException.class})
+    public List<Map<String, Object>> extract(String mappingName, Map<String, Object> params, int maxRows)
+            throws MappingNotFoundException, IOException {
+        if (maxRows <= 0) {
+            throw new IllegalArgumentException("maxRows must be greater than zero");
+        }
+        Mapping mapping = findMapping(mappingName, params);
+        String query = evalExtractQuery(mapping, params);
+
+        LOGGER.debug(String.format("[E] started, mapping : %s, max rows: %d", mappingName, maxRows));
+
+        DataSource dataSource = configService.getDataSource(mapping.getSource());
+        DatabaseTypes databaseType = configService.getDatabaseType(mapping.getSource());
+        // the driver stops reading after maxRows rows even if the limit can not be pushed down into the query
+        NamedParameterJdbcTemplate template = util.getLimitedJdbcTemplate(dataSource, maxRows);
+        SqlParameterSource namedParameters = new MapSqlParameterSource(params);
+
+        List<Map<String, Object>> rows = null;
+        if (databaseType != null) {
+            try {
+                rows = template.query(databaseType.limitQuery(query, maxRows), namedParameters,
+                        new CompactRowMapper());
+            } catch (DataAccessException e) {
+                LOGGER.warn(String.format("The row limit can not be added to the extract query of the mapping %s, "
+                        + "the query is run without it: %s", mappingName, e.getMessage()));
+            }
+        }
+        if (rows == null) {
+            rows = template.query(query, namedParameters, new CompactRowMapper());
+        }
 
         LOGGER.debug(String.format("[E] completed, mapping : %s, extracted rows: %d ", mappingName, rows.size()));
 
         return rows;
     }
 
+    @Override
+    @Transactional(noRollbackFor = {MappingNotFoundException.class, IOException.class, ETLException.class})
+    public int extractInBatches(String mappingName, Map<String, Object> params, BatchHandler batchHandler)
+            throws MappingNotFoundException, IOException, ETLException {
+
+        Mapping mapping = findMapping(mappingName, params);
+        return extractInBatches(mapping, params, BatchSizer.fixed(getFetchSize(mapping)), batchHandler);
+    }
+
+    private int extractInBatches(Mapping mapping, Map<String, Object> params, BatchSizer batchSizer,
+                                 BatchHandler batchHandler) throws MappingNotFoundException, IOException, ETLException {
+        String mappingName = mapping.getName();
+        String query = evalExtractQuery(mapping, params);
+
+        LOGGER.debug(String.format("[E] started in batches, mapping : %s", mappingName));
+
+        List<KeyRange> keyRanges = isPartitioned(mapping) ? findKeyRanges(mapping, query, params) : null;
+        if (keyRanges != null) {
+            return extractPartitioned(mapping, query, params, keyRanges, batchSizer, batchHandler);
+        }
+
+        DataSource dataSource = configService.getDataSource(mapping.getSource());
+        NamedParameterJdbcTemplate template = util.getStreamingJdbcTemplate(dataSource, getFetchSize(mapping),
+                configService.getDatabaseType(mapping.getSource()));
+
+        BatchingRowCallbackHandler rowHandler = new BatchingRowCallbackHandler(batchSizer,
+                new ExtractTimingBatchHandler(metricsRegistry, mapping.getSource(), mappingName, batchHandler));
+        long queryStart = System.nanoTime();
+        try {
+            template.query(query, new MapSqlParameterSource(params), rowHandler);
+        } catch (ETLRuntimeException e) {
+            e.rethrowCause();
+        } catch (DataAccessException e) {
+            metricsRegistry.recordError(mapping.getSource(), mappingName, ETLStage.EXTRACT);
+            throw e;
+        }
+        rowHandler.flush();
+        if (rowHandler.getRowCount() > 0) {
+            metricsRegistry.recordTimeToFirstRow(mapping.getSource(), mappingName,
+                    rowHandler.getFirstRowTime() - queryStart);
+        }
+
+        LOGGER.debug(String.format("[E] completed in batches, mapping : %s, extracted rows: %d, batches: %d",
+                mappingName, rowHandler.getRowCount(), rowHandler.getBatchCount()));
+
+        return rowHandler.getRowCount();
+    }
+
     @Override
     @Transactional(noRollbackFor = {MappingNotFoundException.class, ETLException.class})
     public List<Map<String, Object>> transform(String mappingName, Map<String, Object> params,
@@ -139,13 +273,23 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
         // Output of transformed rows will be saved here
         List<Map<String, Object>> transformedRows = new ArrayList<>();
 
+        long start = System.nanoTime();
+        boolean completed = false;
         try {
-            VelocityContext context = buildContext(rows, params, transformedRows);
+            if (StringUtils.isNotBlank(mapping.getTransformDefinition())) {
+                // the declarative transform is used instead of the Velocity template
+                templateCache.getTransform(mapping, mapping.getTransformDefinition()).apply(rows, transformedRows);
+            } else {
+                VelocityContext context = buildContext(rows, params, transformedRows);
 
-            evalTemplate(mapping.getTransformTemplate(), context, ETL_TRANSFORM);
-        } catch (IOException e) {
+                evalTemplate(mapping, mapping.getTransformTemplate(), context, ETL_TRANSFORM);
+            }
+            completed = true;
+        } catch (IOException | IllegalArgumentException e) {
             String message = String.format("ETL Transform error, mapping = %s", mappingName);
             throw new ETLException(message, e);
+        } finally {
+            recordStage(mapping, ETLStage.TRANSFORM, start, rows.size(), transformedRows.size(), completed);
         }
         LOGGER.debug(String.format("[T] completed, mapping : %s, transformed: %d", mapping, transformedRows.size()));
         return transformedRows;
@@ -159,6 +303,8 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
         Mapping mapping = findMapping(mappingName, params);
         LOGGER.debug(String.format("[L] started, mapping : %s", mappingName));
 
+        long start = System.nanoTime();
+        boolean completed = false;
         try {
             VelocityContext context = buildContext(rows, params, outs);
             context.put(Constants.PARAM_DATABASE, mapping.getSource());
@@ -166,12 +312,15 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
             context.put(Constants.ETL_IMPORT_JOB_ID, jobId);
 
             // includes spring services additionally in the velocity context
-            loadBeans(context, beansToLoad);
+            loadBeans(context, serviceCache.getServices(configService.getServices()));
 
-            evalTemplate(mapping.getLoadTemplate(), context, ETL_LOAD);
+            evalLoadTemplate(mapping, context, outs);
+            completed = true;
         } catch (IOException e) {
             String message = String.format("ETL Load error, mapping = %s", mappingName);
             throw new ETLException(message, e);
+        } finally {
+            recordStage(mapping, ETLStage.LOAD, start, outs.size(), outs.size(), completed);
         }
         LOGGER.debug(String.format("[L] completed, mapping : %s", mappingName));
     }
@@ -180,42 +329,54 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
     @Transactional
     public void doETL(String mappingName, Map<String, Object> params) {
         Mapping mapping = null;
+        String runningMapping = null;
+        ETLLog runningLog = null;
         try {
             mapping = findMapping(mappingName, params);
+            String mappingKey = ETLTaskUtil.generateTaskName(mapping.getSource(), mappingName);
+            if (!runningMappings.add(mappingKey)) {
+                LOGGER.warn(String.format("[ETL] skipped, source : %s, mapping : %s is already running",
+                        mapping.getSource(), mappingName));
+                return;
+            }
+            runningMapping = mappingKey;
             LOGGER.info(String.format("[ETL] started, source : %s, mapping : %s", mapping.getSource(), mappingName));
-            int fetchSize = mapping.getFetchSize();
-
-            ETLLog etlLog = new ETLLog();
-            etlLog.setDatabaseName(mapping.getSource());
-            etlLog.setMapping(mappingName);
-            etlLog.setRunOn(DateUtil.getDateWithLocalTimeZone(new Date()));
-            etlLog.setExtractStartTime(DateUtil.now());
-            //Extract and fetch the rows based on the query
-            List<Map<String, Object>> rows = extract(mappingName, params);
-            etlLog.setExtractedRecords(rows.size());
-            etlLog.setExtractEndTime(DateUtil.now());
-
-            etlLog.setTransformStartTime(DateUtil.now());
-            etlLog.setLoadStartTime(DateUtil.now());
-            //Set the number of load records to the number of extracted data and in case of error reduce the load count
-            etlLog.setLoadRecords(rows.size());
-            //set the job status to success in case of any failures update the job status
-            etlLog.setJobStatus(true);
-            ETLLog dbETLLog = etlLogDao.create(etlLog);
-
-            // Process the rows in batches and the batch size is the fetch size value defined in the UI
-            for (List<Map<String, Object>> subRows : Lists.partition(rows, fetchSize)) {
-                LOGGER.info(String.format("Processing records with batch size : = %d", subRows.size()));
-
-                //Transform the extracted rows based on the transform velocity template
-                List<Map<String, Object>> transformedRows = transform(mappingName, params, subRows);
-                dbETLLog.setTransformedRecords(rows.size());
-                dbETLLog.setTransformEndTime(DateUtil.now());
-                //Load the transformed data using spring services into the target system
-                load(mappingName, params, subRows, transformedRows, dbETLLog.getId());
+
+            // an interrupted run of a mapping which commits each batch is continued after its last checkpoint
+            ETLLog interruptedLog = findInterruptedLog(mapping);
+            ETLLog etlLog = interruptedLog == null ? createLog(mapping) : interruptedLog;
+            // the failed records are applied to the log in memory, it is saved over the log row below
+            errorChannel.registerRunningJob(etlLog);
+            runningLog = etlLog;
+            // the extract query of a mapping with a watermark already starts after the last committed batch
+            int checkpoint = hasWatermark(mapping) ? 0 : etlLog.getCheckpointOffset();
+            if (interruptedLog != null) {
+                LOGGER.info(String.format("[ETL] resuming, mapping : %s, committed rows: %d", mappingName, checkpoint));
+            }
+
+            // Extract the rows as a stream and process them in batches, the batch size is the fetch size value
+            // defined in the UI
+            ETLBatchProcessor batchProcessor = new ETLBatchProcessor(this, etlLogDao, etlLog, params);
+            WatermarkTracker watermarkTracker = createWatermarkTracker(mapping);
+            batchProcessor.setWatermarkTracker(watermarkTracker);
+            BatchSizer batchSizer = createBatchSizer(mapping);
+            batchProcessor.setBatchSizer(batchSizer);
+            int extractedRecords = processInBatches(mapping, params, batchProcessor, checkpoint);
+            batchProcessor.createLogIfNeeded();
+            if (watermarkTracker != null) {
+                watermarkTracker.save();
+            }
+            recordBatchSizes(etlLog, batchSizer);
+
+            synchronized (etlLog) {
+                // the failed records reported from now on are applied to the log row
+                errorChannel.unregisterRunningJob(etlLog);
+                runningLog = null;
+                etlLog.setExtractedRecords(extractedRecords);
+                etlLog.setExtractEndTime(DateUtil.now());
+                etlLog.setLoadEndTime(DateUtil.now());
+                etlLogDao.update(etlLog);
             }
-            dbETLLog.setLoadEndTime(DateUtil.now());
-            etlLogDao.update(etlLog);
 
         } catch (MappingNotFoundException e) {
             LOGGER.error(String.format("ETL mapping does not exist, source = %s, mapping = %s", params.get(Constants.PARAM_SOURCE),
@@ -225,6 +386,13 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
         } catch (IOException e) {
             LOGGER.error(String.format("ETL error in fetching extract query, source = %s, mapping = %s",
                     mapping.getSource(), mapping), e);
+        } finally {
+            if (runningLog != null) {
+                errorChannel.unregisterRunningJob(runningLog);
+            }
+            if (runningMapping != null) {
+                runningMappings.remove(runningMapping);
+            }
         }
         LOGGER.info(String.format("[ETL] completed, source : %s, mapping : %s", params.get(Constants.PARAM_SOURCE), mappingName));
     }
@@ -249,68 +417,299 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
         this.etlLogDao = etlLogDao;
     }
 
+    public void setWatermarkDao(WatermarkDao watermarkDao) {
+        this.watermarkDao = watermarkDao;
+    }
+
+    public void setTemplateCache(TemplateCache templateCache) {
+        this.templateCache = templateCache;
+    }
+
+    public void setExtractBufferMemory(long extractBufferMemory) {
+        this.extractBufferMemory = extractBufferMemory;
+    }
+
+    public void setExtractBufferDirectory(String extractBufferDirectory) {
+        this.extractBufferDirectory = extractBufferDirectory;
+    }
+
+    public void setPipelineQueueCapacity(int pipelineQueueCapacity) {
+        this.pipelineQueueCapacity = pipelineQueueCapacity;
+    }
+
+    public void setBatchExecutor(Executor batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    public void setBatchTransactionTemplate(TransactionOperations batchTransactionTemplate) {
+        this.batchTransactionTemplate = batchTransactionTemplate;
+    }
+
+    public void setMappingCache(MappingCache mappingCache) {
+        this.mappingCache = mappingCache;
+    }
+
+    public void setErrorChannel(ETLErrorChannel errorChannel) {
+        this.errorChannel = errorChannel;
+    }
+
+    public void setServiceCache(ServiceCache serviceCache) {
+        this.serviceCache = serviceCache;
+    }
+
+    public void setMetricsRegistry(ETLMetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
     /**
-     * loads the spring beans and includes in the velocity context
+     * includes the resolved spring beans in the velocity context
      *
-     * @param context     <code>VelocityContext</code>
-     * @param beansToLoad list of spring beans to load
+     * @param context  <code>VelocityContext</code>
+     * @param services spring beans by the names used in the template
      */
-    private void loadBeans(VelocityContext context, Map<String, String> beansToLoad) {
-        loadServices();
-        StringBuilder notFoundServices = new StringBuilder();
-
-        for (Map.Entry<String, String> entry : beansToLoad.entrySet()) {
-            String serviceKey = entry.getValue();
-
-            // We allow both loading OpenMRS service by providing their class (required for services such a
-            // the idgen service) or by their bean name.
-            Object service = tryLoadingService(serviceKey);
-            if (service == null) {
-                service = tryLoadingBean(serviceKey);
-            }
+    private void loadBeans(VelocityContext context, Map<String, Object> services) {
+        for (Map.Entry<String, Object> entry : services.entrySet()) {
+            context.put(entry.getKey(), entry.getValue());
+        }
+    }
 
-            if (service == null) {
-                notFoundServices.append(entry.getValue());
-                notFoundServices.append('\n');
-            } else {
-                context.put(entry.getKey(), service);
+    /**
+     * Records the batch processed by the stage, or an error of the stage if the batch was not completed
+     */
+    private void recordStage(Mapping mapping, ETLStage stage, long start, int rowsIn, int rowsOut, boolean completed) {
+        if (completed) {
+            metricsRegistry.recordBatch(mapping.getSource(), mapping.getName(), stage, System.nanoTime() - start,
+                    rowsIn, rowsOut);
+        } else {
+            metricsRegistry.recordError(mapping.getSource(), mapping.getName(), stage);
+        }
+    }
+
+    private ETLLog createLog(Mapping mapping) {
+        ETLLog etlLog = new ETLLog();
+        etlLog.setDatabaseName(mapping.getSource());
+        etlLog.setMapping(mapping.getName());
+        etlLog.setRunOn(DateUtil.getDateWithLocalTimeZone(new Date()));
+        etlLog.setExtractStartTime(DateUtil.now());
+        etlLog.setTransformStartTime(DateUtil.now());
+        etlLog.setLoadStartTime(DateUtil.now());
+        //set the job status to success in case of any failures update the job status
+        etlLog.setJobStatus(true);
+        return etlLog;
+    }
+
+    /**
+     * Returns the log of the last run of the mapping when the run was interrupted after some of its batches
+     * were committed. Only mappings which commit each batch can be resumed.
+     */
+    private ETLLog findInterruptedLog(Mapping mapping) {
+        if (!isCommitEachBatch(mapping)) {
+            return null;
+        }
+        ETLLog lastLog = etlLogDao.findLatest(mapping.getSource(), mapping.getName());
+        boolean interrupted = lastLog != null && lastLog.getLoadEndTime() == null && lastLog.getCheckpointOffset() > 0;
+        return interrupted ? lastLog : null;
+    }
+
+    private boolean hasWatermark(Mapping mapping) {
+        return mapping.getSettings() != null && StringUtils.isNotBlank(mapping.getSettings().getWatermarkColumn());
+    }
+
+    private boolean isBufferExtract(Mapping mapping) {
+        return mapping.getSettings() != null && mapping.getSettings().isBufferExtract();
+    }
+
+    private boolean isPipelined(Mapping mapping) {
+        return mapping.getSettings() != null && mapping.getSettings().isPipelined() && batchExecutor != null;
+    }
+
+    /**
+     * Checks if the extract query of the mapping is split into key ranges. The batches of the key ranges are handed
+     * over in no particular order, so the extract of a mapping which commits each batch is never partitioned.
+     */
+    private boolean isPartitioned(Mapping mapping) {
+        return mapping.getSettings() != null && StringUtils.isNotBlank(mapping.getSettings().getPartitionColumn())
+                && batchExecutor != null && !isCommitEachBatch(mapping);
+    }
+
+    private int getPartitionCount(Mapping mapping) {
+        int partitionCount = mapping.getSettings().getPartitionCount();
+        return partitionCount > 0 ? partitionCount : Constants.DEFAULT_PARTITION_COUNT;
+    }
+
+    private boolean isCommitEachBatch(Mapping mapping) {
+        return mapping.getSettings() != null && mapping.getSettings().isCommitEachBatch();
+    }
+
+    private int getParallelism(Mapping mapping) {
+        return mapping.getSettings() == null ? 1 : mapping.getSettings().getParallelism();
+    }
+
+    /**
+     * Checks if the batches of the mapping are processed by the batch executor. The batches of a mapping which
+     * commits each batch are always processed one by one, so that the checkpoint covers all preceding rows.
+     */
+    private boolean isParallel(Mapping mapping) {
+        return getParallelism(mapping) > 1 && batchExecutor != null && !isCommitEachBatch(mapping);
+    }
+
+    /**
+     * Extracts the rows of the mapping and processes them in batches. When the mapping has the parallelism
+     * greater than one, the batches are processed by the batch executor while the next batches are extracted.
+     * When the mapping commits each batch, every batch is processed in its own transaction and the rows
+     * before the checkpoint are skipped. When the mapping is pipelined, the batches are transformed and loaded
+     * by the batch executor while the next batches are extracted, see {@link PipelinedBatchHandler}.
+     */
+    private int processInBatches(Mapping mapping, Map<String, Object> params, ETLBatchProcessor batchProcessor,
+                                 int checkpoint) throws MappingNotFoundException, IOException, ETLException {
+        if (isPipelined(mapping)) {
+            return processPipelined(mapping, params, batchProcessor, checkpoint);
+        }
+        if (isCommitEachBatch(mapping)) {
+            if (getParallelism(mapping) > 1) {
+                LOGGER.warn(String.format("The batches of the mapping %s are committed one by one, "
+                        + "the parallelism is ignored", mapping.getName()));
             }
+            return extractBatches(mapping, params, batchProcessor.getBatchSizer(),
+                    new CheckpointBatchHandler(batchProcessor, batchTransactionTemplate, checkpoint));
         }
-        // We couldn't find some services
-        if (!notFoundServices.toString().isEmpty()) {
-            throw new IllegalArgumentException(String.format("Didn't load some services %s", notFoundServices));
+        if (!isParallel(mapping)) {
+            return extractBatches(mapping, params, batchProcessor.getBatchSizer(), batchProcessor);
+        }
+        int parallelism = getParallelism(mapping);
+
+        ParallelBatchHandler parallelHandler = new ParallelBatchHandler(batchProcessor, batchExecutor, parallelism);
+        int extractedRecords;
+        try {
+            extractedRecords = extractBatches(mapping, params, batchProcessor.getBatchSizer(), rows -> {
+                // the run log has to exist before the batches are handed over to the other threads
+                batchProcessor.createLogIfNeeded();
+                parallelHandler.handle(rows);
+            });
+        } finally {
+            parallelHandler.awaitTermination();
         }
+        parallelHandler.checkFailure();
+        return extractedRecords;
     }
 
-    private Object tryLoadingService(String serviceKey) {
-        Object service = null;
+    private int processPipelined(Mapping mapping, Map<String, Object> params, ETLBatchProcessor batchProcessor,
+                                 int checkpoint) throws MappingNotFoundException, IOException, ETLException {
+        PipelinedBatchHandler pipeline = new PipelinedBatchHandler(batchProcessor, batchExecutor,
+                getParallelism(mapping), pipelineQueueCapacity);
+        if (isCommitEachBatch(mapping)) {
+            pipeline.commitEachBatch(batchTransactionTemplate, checkpoint);
+        }
+        pipeline.start();
+        int extractedRecords;
         try {
-            Class<?> serviceClass = Thread.currentThread().getContextClassLoader().loadClass(serviceKey);
-            service = ServiceContext.getInstance().getService(serviceClass);
-        } catch (ClassNotFoundException | APIException ex) {
-            LOGGER.debug("Service not found", ex);
+            extractedRecords = extractBatches(mapping, params, batchProcessor.getBatchSizer(), pipeline);
+        } finally {
+            pipeline.awaitTermination();
         }
+        pipeline.checkFailure();
+        return extractedRecords;
+    }
 
-        return service;
+    /**
+     * Extracts the rows of the mapping and hands them over to the batch handler. When the mapping buffers its
+     * extract, the whole extract is read into the extract buffer first and the buffered rows are handed over
+     * batch by batch after the source result set was closed. The size of each batch is taken from the batch sizer.
+     */
+    private int extractBatches(Mapping mapping, Map<String, Object> params, BatchSizer batchSizer,
+                               BatchHandler batchHandler) throws MappingNotFoundException, IOException, ETLException {
+        if (!isBufferExtract(mapping)) {
+            return extractInBatches(mapping, params, batchSizer, batchHandler);
+        }
+        try (ExtractBuffer extractBuffer = new ExtractBuffer(extractBufferMemory, getExtractBufferDirectory())) {
+            int extractedRecords = extractInBatches(mapping.getName(), params, extractBuffer);
+            LOGGER.debug(String.format("[E] buffered, mapping : %s, extracted rows: %d, spilled rows: %d",
+                    mapping.getName(), extractedRecords, extractBuffer.getSpilledRowCount()));
+            extractBuffer.forEachBatch(batchSizer, batchHandler);
+            return extractedRecords;
+        }
     }
 
-    private Object tryLoadingBean(String beanName) {
-        Object bean = null;
+    /**
+     * Splits the values of the partition column of the extract query into key ranges. Returns null when the values
+     * can not be split, the extract query is not partitioned then.
+     */
+    private List<KeyRange> findKeyRanges(Mapping mapping, String query, Map<String, Object> params) {
+        String column = mapping.getSettings().getPartitionColumn();
+        DatabaseTypes databaseType = configService.getDatabaseType(mapping.getSource());
+        if (databaseType == null) {
+            LOGGER.warn(String.format("The database type of the source %s is unknown, the extract query of the "
+                    + "mapping %s is not partitioned", mapping.getSource(), mapping.getName()));
+            return null;
+        }
+        DataSource dataSource = configService.getDataSource(mapping.getSource());
+        Map<String, Object> bounds = util.getNamedParameterJdbcTemplate(dataSource, getFetchSize(mapping))
+                .queryForMap(databaseType.boundsQuery(query, column), params);
         try {
-            bean = ServiceContext.getInstance().getApplicationContext().getBean(beanName);
-        } catch (BeansException | APIException ex) {
-            LOGGER.debug("Bean not found", ex);
+            List<KeyRange> keyRanges = KeyRange.split(bounds.get("minValue"), bounds.get("maxValue"),
+                    getPartitionCount(mapping));
+            LOGGER.debug(String.format("[E] partitioned, mapping : %s, key ranges: %s", mapping.getName(),
+                    keyRanges));
+            return keyRanges;
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn(String.format("The extract query of the mapping %s is not partitioned: %s",
+                    mapping.getName(), e.getMessage()));
+            return null;
         }
-        return bean;
     }
 
-    private void loadServices() {
-        beansToLoad.clear();
-        Map<String, String> services = util.parseStringToMap(configService.getServices());
+    /**
+     * Extracts the key ranges of the extract query at the same time, each on its own connection, and hands their
+     * batches over to the batch handler in the calling thread, see {@link PartitionedExtractor}.
+     */
+    private int extractPartitioned(Mapping mapping, String query, Map<String, Object> params,
+                                   List<KeyRange> keyRanges, BatchSizer batchSizer, BatchHandler batchHandler)
+            throws MappingNotFoundException, ETLException {
+        String column = mapping.getSettings().getPartitionColumn();
+        DatabaseTypes databaseType = configService.getDatabaseType(mapping.getSource());
+        DataSource dataSource = configService.getDataSource(mapping.getSource());
+        NamedParameterJdbcTemplate template = util.getStreamingJdbcTemplate(dataSource, getFetchSize(mapping),
+                databaseType);
+
+        List<PartitionedExtractor.PartitionReader> partitionReaders = new ArrayList<>();
+        for (KeyRange keyRange : keyRanges) {
+            String rangeQuery = databaseType.rangeQuery(query, column, Constants.PARAM_PARTITION_FROM,
+                    Constants.PARAM_PARTITION_TO, keyRange.getType());
+            Map<String, Object> rangeParams = new HashMap<>(params);
+            rangeParams.put(Constants.PARAM_PARTITION_FROM, keyRange.getFrom());
+            rangeParams.put(Constants.PARAM_PARTITION_TO, keyRange.getTo());
+            partitionReaders.add(handler -> readKeyRange(template, rangeQuery, rangeParams,
+                    new BatchingRowCallbackHandler(batchSizer, new ExtractTimingBatchHandler(metricsRegistry,
+                            mapping.getSource(), mapping.getName(), handler))));
+        }
+        // every partition reader can put one batch into the queue without waiting
+        PartitionedExtractor extractor = new PartitionedExtractor(batchExecutor, partitionReaders.size());
+        int extractedRecords;
+        try {
+            extractedRecords = extractor.extract(partitionReaders, batchHandler);
+        } catch (DataAccessException e) {
+            metricsRegistry.recordError(mapping.getSource(), mapping.getName(), ETLStage.EXTRACT);
+            throw e;
+        }
+
+        LOGGER.debug(String.format("[E] completed in partitions, mapping : %s, extracted rows: %d, key ranges: %d",
+                mapping.getName(), extractedRecords, keyRanges.size()));
 
-        for (Map.Entry<String, String> entry : services.entrySet()) {
-            beansToLoad.put(entry.getKey(), entry.getValue());
+        return extractedRecords;
+    }
+
+    private void readKeyRange(NamedParameterJdbcTemplate template, String query, Map<String, Object> params,
+                              BatchingRowCallbackHandler rowHandler) throws ETLException, MappingNotFoundException {
+        try {
+            template.query(query, new MapSqlParameterSource(params), rowHandler);
+        } catch (ETLRuntimeException e) {
+            e.rethrowCause();
         }
+        rowHandler.flush();
+    }
+
+    private Path getExtractBufferDirectory() {
+        return StringUtils.isBlank(extractBufferDirectory) ? null : Paths.get(extractBufferDirectory);
     }
 
     private VelocityContext buildContext(List<Map<String, Object>> rows, Map<String, Object> params,
@@ -323,15 +722,45 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
 
         // Register the event handler class
         EventCartridge ec = new EventCartridge();
-        ec.addEventHandler(this);
+        ec.addEventHandler(new ETLExceptionEventHandler(errorChannel));
         ec.attachToContext(context);
 
         return context;
     }
 
-    private String evalTemplate(String template, VelocityContext context, String key) throws IOException {
+    private String evalExtractQuery(Mapping mapping, Map<String, Object> params) throws IOException {
+        VelocityContext context = new VelocityContext();
+        context.put(Constants.CONTEXT_PARAM_PARAMS, params);
+        context.put("lastRunDate", getLastRunDate(mapping));
+        context.put(Constants.CONTEXT_PARAM_WATERMARK, getWatermark(mapping));
+        loadUtilsInContext(context);
+        return evalTemplate(mapping, mapping.getQuery(), context, ETL_EXTRACT);
+    }
+
+    /**
+     * Evaluates the load template. When the mapping has the flush interval, the template is evaluated for each chunk
+     * of the transformed rows of that size and the Hibernate session is flushed and cleared after each chunk, so the
+     * saves of the later rows do not dirty check all entities saved before. The extracted rows are not split.
+     */
+    private void evalLoadTemplate(Mapping mapping, VelocityContext context, List<Map<String, Object>> outs)
+            throws IOException {
+        int flushInterval = mapping.getSettings() == null ? 0 : mapping.getSettings().getFlushInterval();
+        if (flushInterval <= 0 || outs.isEmpty()) {
+            evalTemplate(mapping, mapping.getLoadTemplate(), context, ETL_LOAD);
+            return;
+        }
+        for (List<Map<String, Object>> chunk : Lists.partition(outs, flushInterval)) {
+            context.put(Constants.CONTEXT_PARAM_OUTS, chunk);
+            evalTemplate(mapping, mapping.getLoadTemplate(), context, ETL_LOAD);
+            etlUtil.flushSession();
+        }
+    }
+
+    private String evalTemplate(Mapping mapping, String template, VelocityContext context, String key)
+            throws IOException {
         StringWriter writer = new StringWriter();
-        Velocity.evaluate(context, writer, key, template);
+        // the parsed template is reused as long as the mapping is not changed
+        templateCache.getTemplate(mapping, key, template).merge(context, writer);
         if (ETL_LOAD.equals(key)) {
             LOGGER.debug(String.format("[L] Log : %s", writer.toString()));
         }
@@ -347,7 +776,9 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
             throw new IllegalArgumentException(MAPPING_ERROR);
         }
 
-        Mapping mapping = mappingDao.findByNameAndSource(mappingName, source);
+        final String mappingSource = source;
+        Mapping mapping = mappingCache.getMapping(source, mappingName,
+                () -> mappingDao.findByNameAndSource(mappingName, mappingSource));
 
         if (null == mapping) {
             throw new MappingNotFoundException(MAPPING_NOT_FOUND + mappingName);
@@ -369,11 +800,80 @@ public class ETLServiceImpl extends ETLExceptionEventHandler implements ETLServi
         context.put("Math", Math.class);
     }
 
+    /**
+     * Get the highest value of the watermark column loaded by the previous runs or null if the mapping does not
+     * use a watermark or no rows were loaded yet
+     */
+    private String getWatermark(Mapping mapping) {
+        if (mapping.getSettings() == null || StringUtils.isBlank(mapping.getSettings().getWatermarkColumn())) {
+            return null;
+        }
+        Watermark watermark = watermarkDao.findByMapping(mapping.getSource(), mapping.getName());
+        return watermark != null ? watermark.getLastValue() : null;
+    }
+
+    /**
+     * Creates the sizer of the batches of the run. The adaptive batch size starts from the fetch size and changes
+     * between the bounds of the mapping settings, other mappings use the fetch size for all the batches.
+     */
+    private BatchSizer createBatchSizer(Mapping mapping) {
+        int fetchSize = getFetchSize(mapping);
+        MappingSettings settings = mapping.getSettings();
+        if (settings == null || !settings.isAdaptiveBatchSize()) {
+            return BatchSizer.fixed(fetchSize);
+        }
+        int minBatchSize = settings.getMinBatchSize() > 0 ? settings.getMinBatchSize() : Math.max(1, fetchSize / 10);
+        int maxBatchSize = settings.getMaxBatchSize() > 0 ? settings.getMaxBatchSize() : fetchSize * 10;
+        int targetLatency = settings.getTargetBatchLatency() > 0 ? settings.getTargetBatchLatency()
+                : Constants.DEFAULT_TARGET_BATCH_LATENCY;
+        return new AdaptiveBatchSizer(fetchSize, minBatchSize, Math.max(minBatchSize, maxBatchSize), targetLatency);
+    }
+
+    private void recordBatchSizes(ETLLog etlLog, BatchSizer batchSizer) {
+        if (batchSizer instanceof AdaptiveBatchSizer) {
+            AdaptiveBatchSizer adaptiveBatchSizer = (AdaptiveBatchSizer) batchSizer;
+            etlLog.setBatchSizes(adaptiveBatchSizer.getHistory());
+            LOGGER.info(String.format("[ETL] batch sizes, mapping : %s, sizes : %s", etlLog.getMapping(),
+                    adaptiveBatchSizer.getHistory()));
+        }
+    }
+
+    private int getFetchSize(Mapping mapping) {
+        return mapping.getFetchSize() > 0 ? mapping.getFetchSize() : Constants.DEFAULT_FETCH_SIZE;
+    }
+
+    /**
+     * Creates the tracker of the watermark of the run or returns null if the mapping does not use a watermark.
+     * The watermark is stored after each batch unless the batches are processed in parallel or extracted in
+     * partitions.
+     */
+    private WatermarkTracker createWatermarkTracker(Mapping mapping) {
+        if (!hasWatermark(mapping)) {
+            return null;
+        }
+        MappingSettings settings = mapping.getSettings();
+        // the batches of a partitioned extract are not ordered by the watermark column
+        boolean saveEachBatch = !isParallel(mapping) && !isPartitioned(mapping);
+        return new WatermarkTracker(watermarkDao, mapping.getSource(), mapping.getName(),
+                settings.getWatermarkColumn(), saveEachBatch);
+    }
+
     /**
      * Get the last successful job run date or previous day date if no job data available for the specified database and mapping
      */
-    private Date getLastRunDate(String database, String mapping) {
-        Date lastRunDate = etlLogDao.executeQuery(database, mapping);
+    /**
+     * Returns the last run date used by the extract query of the mapping. A resumed run uses the date its interrupted
+     * run used, so the query returns the same rows and the checkpoint skips only the committed ones: the runs logged
+     * before the interrupted run, or the day before the interrupted run if there were none.
+     */
+    private Date getLastRunDate(Mapping mapping) {
+        ETLLog interruptedLog = findInterruptedLog(mapping);
+        if (interruptedLog != null) {
+            Date lastRunDate = etlLogDao.findLastRunOnBefore(mapping.getSource(), mapping.getName(),
+                    interruptedLog.getId());
+            return lastRunDate != null ? lastRunDate : DateUtil.plusDays(interruptedLog.getRunOn(), -1);
+        }
+        Date lastRunDate = etlLogDao.executeQuery(mapping.getSource(), mapping.getName());
         return lastRunDate != null ? lastRunDate : DateUtil.plusDays(DateUtil.getDateWithLocalTimeZone(new Date()), -1);
     }
 
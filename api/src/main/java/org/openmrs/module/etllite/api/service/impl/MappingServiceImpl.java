@@ -13,8 +13,11 @@ package org.openmrs.module.etllite.api.service.impl;
 import org.apache.commons.lang.StringUtils;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.etllite.api.cache.MappingCache;
+import org.openmrs.module.etllite.api.cache.TemplateCache;
 import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.dao.MappingDao;
+import org.openmrs.module.etllite.api.dao.WatermarkDao;
 import org.openmrs.module.etllite.api.domain.Mapping;
 import org.openmrs.module.etllite.api.event.ETLEvent;
 import org.openmrs.module.etllite.api.exception.ETLException;
@@ -25,6 +28,8 @@ import org.openmrs.module.etllite.api.service.ETLService;
 import org.openmrs.module.etllite.api.service.MappingService;
 import org.openmrs.module.etllite.api.task.ETLJobTask;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -53,6 +58,12 @@ public class MappingServiceImpl extends BaseOpenmrsService implements MappingSer
 
     private ETLSchedulerService schedulerService;
 
+    private TemplateCache templateCache;
+
+    private MappingCache mappingCache;
+
+    private WatermarkDao watermarkDao;
+
     @Override
     @Transactional(noRollbackFor = MappingAlreadyExistsException.class)
     public Mapping create(Mapping mapping) throws MappingAlreadyExistsException {
@@ -73,6 +84,7 @@ public class MappingServiceImpl extends BaseOpenmrsService implements MappingSer
             scheduleCron(mapping.getSource(), mapping.getName(), mapping.getCronExpression());
         }
 
+        invalidateMapping(mapping.getSource(), mapping.getName());
         return getMappingDao().create(mapping);
     }
 
@@ -105,14 +117,32 @@ public class MappingServiceImpl extends BaseOpenmrsService implements MappingSer
         if (null == existingMapping) {
             throw new MappingNotFoundException(ERROR_MESSAGE + mapping.getName());
         }
+        // the mapping can be renamed, so the snapshot cached under the previous name is removed as well
+        invalidateMapping(existingMapping.getSource(), existingMapping.getName());
+        invalidateMapping(mapping.getSource(), mapping.getName());
+        if (mapping.getSettings() != null && !StringUtils.equals(existingMapping.getSettings().getWatermarkColumn(),
+                mapping.getSettings().getWatermarkColumn())) {
+            // the stored watermark belongs to the previous watermark column, the next run starts from scratch
+            getWatermarkDao().deleteByMapping(existingMapping.getSource(), existingMapping.getName());
+        } else if (!StringUtils.equals(existingMapping.getSource(), mapping.getSource())
+                || !StringUtils.equals(existingMapping.getName(), mapping.getName())) {
+            // the watermark is stored by the source and name of the mapping, it is moved along with them
+            getWatermarkDao().moveMapping(existingMapping.getSource(), existingMapping.getName(), mapping.getSource(),
+                    mapping.getName());
+        }
         existingMapping.setName(mapping.getName());
         existingMapping.setSource(mapping.getSource());
         existingMapping.setQuery(mapping.getQuery());
         existingMapping.setTransformTemplate(mapping.getTransformTemplate());
+        existingMapping.setTransformDefinition(mapping.getTransformDefinition());
         existingMapping.setLoadTemplate(mapping.getLoadTemplate());
         existingMapping.setCronExpression(mapping.getCronExpression());
         existingMapping.setFetchSize(mapping.getFetchSize());
         existingMapping.setTestResultsSize(mapping.getTestResultsSize());
+        if (mapping.getSettings() != null) {
+            existingMapping.setSettings(mapping.getSettings());
+        }
+        getTemplateCache().invalidate(existingMapping.getId());
 
         if (manageScheduledTask) {
             if (!StringUtils.isEmpty(mapping.getCronExpression())) {
@@ -134,6 +164,9 @@ public class MappingServiceImpl extends BaseOpenmrsService implements MappingSer
             throw new MappingNotFoundException(ERROR_MESSAGE + id);
         }
         getMappingDao().delete(existingMapping);
+        getTemplateCache().invalidate(existingMapping.getId());
+        invalidateMapping(existingMapping.getSource(), existingMapping.getName());
+        getWatermarkDao().deleteByMapping(existingMapping.getSource(), existingMapping.getName());
         if (!StringUtils.isEmpty(existingMapping.getCronExpression())) {
             unScheduleCron(existingMapping.getSource(), existingMapping.getName());
         }
@@ -167,10 +200,8 @@ public class MappingServiceImpl extends BaseOpenmrsService implements MappingSer
         }
         int resultsSize = mapping.getTestResultsSize() != 0 ? mapping.getTestResultsSize() : DEFAULT_RESULTS_SIZE;
         params.put(Constants.PARAM_SOURCE, mapping.getSource());
-        List<Map<String, Object>> extractedData = getEtlService().extract(mapping.getName(), params);
-        if (!extractedData.isEmpty() && extractedData.size() > resultsSize) {
-            extractedData = extractedData.subList(0, resultsSize);
-        }
+        // only the previewed rows are extracted and transformed
+        List<Map<String, Object>> extractedData = getEtlService().extract(mapping.getName(), params, resultsSize);
         List<Map<String, Object>> transformedData = getEtlService().transform(mapping.getName(), params, extractedData);
         if (!transformedData.isEmpty() && transformedData.size() > resultsSize) {
             transformedData = transformedData.subList(0, resultsSize);
@@ -190,6 +221,23 @@ public class MappingServiceImpl extends BaseOpenmrsService implements MappingSer
         getSchedulerService().safeScheduleJob(new ETLEvent(Constants.SUBJECT_RUNNER, params), cronExp, new ETLJobTask());
     }
 
+    /**
+     * Removes the cached snapshot of the mapping. The snapshot is removed again when the transaction completes,
+     * because a run started before the commit could cache the previous version of the mapping in the meantime.
+     */
+    private void invalidateMapping(final String source, final String name) {
+        final MappingCache cache = getMappingCache();
+        cache.invalidate(source, name);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(source, name);
+                }
+            });
+        }
+    }
+
     private String generateJobId(String source, String mapping) {
         return new StringBuilder().append(source).append("-").append(mapping).toString();
     }
@@ -223,4 +271,25 @@ public class MappingServiceImpl extends BaseOpenmrsService implements MappingSer
         }
         return schedulerService;
     }
+
+    private TemplateCache getTemplateCache() {
+        if (templateCache == null) {
+            templateCache = Context.getRegisteredComponent("etllite.templateCache", TemplateCache.class);
+        }
+        return templateCache;
+    }
+
+    private MappingCache getMappingCache() {
+        if (mappingCache == null) {
+            mappingCache = Context.getRegisteredComponent("etllite.mappingCache", MappingCache.class);
+        }
+        return mappingCache;
+    }
+
+    private WatermarkDao getWatermarkDao() {
+        if (watermarkDao == null) {
+            watermarkDao = Context.getRegisteredComponent("etllite.WatermarkDao", WatermarkDao.class);
+        }
+        return watermarkDao;
+    }
 }
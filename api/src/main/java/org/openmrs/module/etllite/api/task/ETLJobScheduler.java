@@ -0,0 +1,332 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.task;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.service.ETLService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the scheduled ETL of the mappings. The OpenMRS task of a mapping only fires the job, the scheduler decides
+ * when it is run:
+ * <ul>
+ * <li>a firing of a mapping which is already waiting or running is not run at the same time, it is coalesced into
+ * one more run after the current one or skipped according to the overlap policy,</li>
+ * <li>at most the configured number of jobs run at the same time, overall and for each ETL source, the other jobs
+ * wait in the order they were fired,</li>
+ * <li>the start of each firing is delayed by a random jitter, so the mappings with the same cron expression do not
+ * start in the same second,</li>
+ * <li>a firing which comes later than the misfire threshold after its scheduled time, e.g. the missed firing run
+ * when OpenMRS is started again, is run once or skipped according to the misfire policy.</li>
+ * </ul>
+ */
+public class ETLJobScheduler {
+
+    private static final Log LOGGER = LogFactory.getLog(ETLJobScheduler.class);
+
+    private final Map<String, Job> jobs = new HashMap<>();
+
+    private final Deque<Job> waitingJobs = new ArrayDeque<>();
+
+    private final Map<String, Integer> runningJobsBySource = new HashMap<>();
+
+    private int runningJobs;
+
+    private int maxConcurrentJobs = Constants.DEFAULT_MAX_CONCURRENT_JOBS;
+
+    private int maxConcurrentJobsPerSource = Constants.DEFAULT_MAX_CONCURRENT_JOBS_PER_SOURCE;
+
+    private long maxJitter;
+
+    private long misfireThreshold = Constants.DEFAULT_MISFIRE_THRESHOLD;
+
+    private OverlapPolicy overlapPolicy = OverlapPolicy.COALESCE;
+
+    private MisfirePolicy misfirePolicy = MisfirePolicy.RUN_ONCE;
+
+    private ScheduledExecutorService scheduler;
+
+    private Executor executor;
+
+    private ETLService etlService;
+
+    /**
+     * The handling of a firing of a mapping which is still running
+     */
+    public enum OverlapPolicy {
+
+        /**
+         * The mapping is run once more after the current run, no matter how many firings came in the meantime
+         */
+        COALESCE,
+
+        /**
+         * The firing is dropped
+         */
+        SKIP
+    }
+
+    /**
+     * The handling of a firing which comes later than the misfire threshold after its scheduled time
+     */
+    public enum MisfirePolicy {
+
+        /**
+         * The mapping is run once as if it was fired in time
+         */
+        RUN_ONCE,
+
+        /**
+         * The firing is dropped, the mapping is run at its next scheduled time
+         */
+        SKIP
+    }
+
+    /**
+     * Starts the scheduler of the delayed firings, called by Spring once the properties are set
+     */
+    public void initialize() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, Constants.PROJECT_ID + "-job-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the scheduler, the delayed firings are dropped and the running jobs are completed
+     */
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Fires the scheduled ETL of the mapping, the job is run later on the executor
+     *
+     * @param source        the name of the ETL source of the mapping
+     * @param mapping       the name of the mapping
+     * @param params        the parameters of the ETL run
+     * @param scheduledTime the time the firing was scheduled for, null if not known
+     */
+    public void fire(String source, String mapping, Map<String, Object> params, Date scheduledTime) {
+        if (isMisfire(scheduledTime)) {
+            if (misfirePolicy == MisfirePolicy.SKIP) {
+                LOGGER.warn(String.format("The firing of the mapping %s scheduled for %s is skipped, it was "
+                        + "missed by more than %d ms", mapping, scheduledTime, misfireThreshold));
+                return;
+            }
+            LOGGER.info(String.format("The missed firing of the mapping %s scheduled for %s is run once", mapping,
+                    scheduledTime));
+        }
+
+        Job job = addJob(source, mapping, params);
+        if (job == null) {
+            return;
+        }
+        long jitter = maxJitter > 0 ? ThreadLocalRandom.current().nextLong(maxJitter + 1) : 0L;
+        if (jitter > 0) {
+            LOGGER.debug(String.format("The job of the mapping %s is delayed by %d ms", mapping, jitter));
+            try {
+                scheduler.schedule(() -> submit(job), jitter, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn(String.format("The firing of the mapping %s is dropped, the scheduler is stopped",
+                        mapping));
+                removeJob(job);
+            }
+        } else {
+            submit(job);
+        }
+    }
+
+    public synchronized int getRunningJobs() {
+        return runningJobs;
+    }
+
+    public synchronized int getWaitingJobs() {
+        return waitingJobs.size();
+    }
+
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    public void setMaxConcurrentJobsPerSource(int maxConcurrentJobsPerSource) {
+        this.maxConcurrentJobsPerSource = maxConcurrentJobsPerSource;
+    }
+
+    public void setMaxJitter(long maxJitter) {
+        this.maxJitter = maxJitter;
+    }
+
+    public void setMisfireThreshold(long misfireThreshold) {
+        this.misfireThreshold = misfireThreshold;
+    }
+
+    public void setOverlapPolicy(OverlapPolicy overlapPolicy) {
+        this.overlapPolicy = overlapPolicy;
+    }
+
+    public void setMisfirePolicy(MisfirePolicy misfirePolicy) {
+        this.misfirePolicy = misfirePolicy;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setEtlService(ETLService etlService) {
+        this.etlService = etlService;
+    }
+
+    private boolean isMisfire(Date scheduledTime) {
+        return scheduledTime != null && System.currentTimeMillis() - scheduledTime.getTime() > misfireThreshold;
+    }
+
+    /**
+     * Adds the job of the firing, returns null if the mapping already has a waiting or running job
+     */
+    private synchronized Job addJob(String source, String mapping, Map<String, Object> params) {
+        String key = ETLTaskUtil.generateTaskName(source, mapping);
+        Job job = jobs.get(key);
+        if (job == null) {
+            job = new Job(key, source, mapping, params);
+            jobs.put(key, job);
+            return job;
+        }
+        if (!job.running) {
+            LOGGER.debug(String.format("The firing of the mapping %s is merged with its waiting job", mapping));
+        } else if (overlapPolicy == OverlapPolicy.COALESCE) {
+            LOGGER.info(String.format("The mapping %s is still running, it is run again once it is completed",
+                    mapping));
+            job.rerunParams = params;
+        } else {
+            LOGGER.warn(String.format("The firing of the mapping %s is skipped, the mapping is still running",
+                    mapping));
+        }
+        return null;
+    }
+
+    /**
+     * Removes the job which was never submitted, so the next firing of its mapping is not merged with it
+     */
+    private synchronized void removeJob(Job job) {
+        jobs.remove(job.key);
+    }
+
+    private void submit(Job job) {
+        synchronized (this) {
+            waitingJobs.add(job);
+        }
+        startWaitingJobs();
+    }
+
+    private void startWaitingJobs() {
+        for (Job job : takeStartableJobs()) {
+            try {
+                executor.execute(() -> run(job));
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("The job of the mapping %s could not be started", job.mapping), e);
+                complete(job);
+            }
+        }
+    }
+
+    /**
+     * Takes the waiting jobs which fit into the limits of the running jobs in the order they were fired, a job
+     * of a source which reached its limit does not hold up the jobs of the other sources
+     */
+    private synchronized List<Job> takeStartableJobs() {
+        List<Job> startableJobs = new ArrayList<>();
+        Iterator<Job> iterator = waitingJobs.iterator();
+        while (runningJobs < maxConcurrentJobs && iterator.hasNext()) {
+            Job job = iterator.next();
+            if (runningJobsBySource.getOrDefault(job.source, 0) < maxConcurrentJobsPerSource) {
+                iterator.remove();
+                runningJobs++;
+                runningJobsBySource.merge(job.source, 1, Integer::sum);
+                job.running = true;
+                startableJobs.add(job);
+            }
+        }
+        return startableJobs;
+    }
+
+    private void run(Job job) {
+        LOGGER.debug(String.format("ETL started for mapping : %s", job.mapping));
+        try {
+            // every run gets its own copy, so the templates of a run can not affect the next runs
+            etlService.doETL(job.mapping, new HashMap<>(job.params));
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("ETL error executing mapping : %s", job.mapping), e);
+        } finally {
+            complete(job);
+        }
+    }
+
+    private void complete(Job job) {
+        synchronized (this) {
+            runningJobs--;
+            runningJobsBySource.computeIfPresent(job.source, (source, count) -> count > 1 ? count - 1 : null);
+            job.running = false;
+            if (job.rerunParams != null) {
+                job.params = job.rerunParams;
+                job.rerunParams = null;
+                waitingJobs.add(job);
+            } else {
+                jobs.remove(job.key);
+            }
+        }
+        startWaitingJobs();
+    }
+
+    private static final class Job {
+
+        private final String key;
+
+        private final String source;
+
+        private final String mapping;
+
+        private Map<String, Object> params;
+
+        private boolean running;
+
+        /**
+         * The parameters of the firing coalesced while the job was running, null if there was no such firing
+         */
+        private Map<String, Object> rerunParams;
+
+        Job(String key, String source, String mapping, Map<String, Object> params) {
+            this.key = key;
+            this.source = source;
+            this.mapping = mapping;
+            this.params = params;
+        }
+    }
+}
@@ -14,7 +14,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.etllite.api.constants.Constants;
-import org.openmrs.module.etllite.api.service.ETLService;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -25,14 +24,16 @@ public class ETLJobTask extends AbstractCronTask {
 
     @Override
     protected void executeTask() {
-        LOGGER.debug("ETL Batch Job started");
+        LOGGER.debug("ETL Batch Job fired");
 
         Map<String, Object> properties = new HashMap<>();
         properties.putAll(getTaskDefinition().getProperties());
 
         String mapping = (String) properties.get(Constants.PARAM_MAPPING);
+        String source = (String) properties.get(Constants.PARAM_SOURCE);
 
-        LOGGER.debug(String.format("ETL started for mapping : %s", mapping));
-        Context.getRegisteredComponent("etllite.etlService", ETLService.class).doETL(mapping, properties);
+        // the start time is still the time of this firing, the task is rescheduled once it is executed
+        Context.getRegisteredComponent("etllite.jobScheduler", ETLJobScheduler.class)
+                .fire(source, mapping, properties, getTaskDefinition().getStartTime());
     }
 }
@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.transform;
+
+import java.util.Map;
+
+/**
+ * Computes the value of a single output column of the declarative transform from the extracted row
+ */
+@FunctionalInterface
+public interface ColumnConverter {
+
+    /**
+     * Computes the value of the column
+     *
+     * @param row extracted row
+     * @return value of the output column, may be null
+     */
+    Object convert(Map<String, Object> row);
+}
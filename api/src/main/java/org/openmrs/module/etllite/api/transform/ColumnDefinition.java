@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.transform;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Map;
+
+/**
+ * Definition of a single output column of the declarative transform. The value of the column is either
+ * the constant <code>value</code> or the value of the <code>source</code> column of the extracted row
+ * (the column of the same name by default), optionally replaced using the <code>lookup</code> table and
+ * converted to the <code>type</code> of the column. The <code>default</code> is used when the value is null
+ * or it is missing in the lookup table.
+ */
+public class ColumnDefinition {
+
+    private String name;
+
+    private String source;
+
+    private String value;
+
+    private String type;
+
+    private String format;
+
+    private Map<String, String> lookup;
+
+    @SerializedName("default")
+    private String defaultValue;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public Map<String, String> getLookup() {
+        return lookup;
+    }
+
+    public void setLookup(Map<String, String> lookup) {
+        this.lookup = lookup;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    public void setDefaultValue(String defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+}
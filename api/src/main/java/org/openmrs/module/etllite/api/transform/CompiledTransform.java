@@ -0,0 +1,72 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.transform;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declarative transform compiled by the {@link TransformCompiler}. The output row is built directly
+ * from the converters of its columns, so neither the extracted row is copied nor a template is interpreted.
+ * The compiled transform is immutable and can be shared by the threads transforming the batches in parallel.
+ */
+public final class CompiledTransform {
+
+    private final String[] columnNames;
+
+    private final ColumnConverter[] converters;
+
+    private final int outputCapacity;
+
+    CompiledTransform(String[] columnNames, ColumnConverter[] converters) {
+        this.columnNames = columnNames;
+        this.converters = converters;
+        this.outputCapacity = (int) (columnNames.length / 0.75f) + 1;
+    }
+
+    /**
+     * Transforms the extracted rows and adds the output rows to the list
+     *
+     * @param rows       extracted rows
+     * @param outputRows list to which the transformed rows are added
+     * @throws IllegalArgumentException if a value can not be converted to the type of its column
+     */
+    public void apply(List<Map<String, Object>> rows, List<Map<String, Object>> outputRows) {
+        for (Map<String, Object> row : rows) {
+            outputRows.add(apply(row));
+        }
+    }
+
+    /**
+     * Transforms the extracted row
+     *
+     * @param row extracted row
+     * @return transformed row
+     * @throws IllegalArgumentException if a value can not be converted to the type of its column
+     */
+    public Map<String, Object> apply(Map<String, Object> row) {
+        Map<String, Object> outputRow = new HashMap<>(outputCapacity);
+        for (int i = 0; i < converters.length; i++) {
+            try {
+                outputRow.put(columnNames[i], converters[i].convert(row));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Could not convert the value of the column %s: %s",
+                        columnNames[i], e.getMessage()), e);
+            }
+        }
+        return outputRow;
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.transform;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Compiles the JSON declarative transform of a mapping (see {@link TransformDefinition}) into the converters
+ * of its columns. The definition is parsed and validated, the constants, the lookup tables and the defaults
+ * are converted to the types of their columns once, so only the values of the extracted rows are converted
+ * when the rows are transformed.
+ */
+public class TransformCompiler {
+
+    private final Gson gson = new Gson();
+
+    /**
+     * Compiles the declarative transform
+     *
+     * @param definition JSON definition of the transform
+     * @return compiled transform
+     * @throws IllegalArgumentException if the definition is not valid
+     */
+    public CompiledTransform compile(String definition) {
+        TransformDefinition transformDefinition = parse(definition);
+        List<ColumnDefinition> columns = transformDefinition.getColumns();
+        String[] columnNames = new String[columns.size()];
+        ColumnConverter[] converters = new ColumnConverter[columns.size()];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnDefinition column = columns.get(i);
+            validate(column, names);
+            columnNames[i] = column.getName();
+            converters[i] = compileColumn(column);
+        }
+        return new CompiledTransform(columnNames, converters);
+    }
+
+    private TransformDefinition parse(String definition) {
+        TransformDefinition transformDefinition;
+        try {
+            transformDefinition = gson.fromJson(definition, TransformDefinition.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException(String.format("Invalid transform definition: %s", e.getMessage()), e);
+        }
+        if (transformDefinition == null || transformDefinition.getColumns() == null
+                || transformDefinition.getColumns().isEmpty()) {
+            throw new IllegalArgumentException("The transform definition has to define at least one column");
+        }
+        return transformDefinition;
+    }
+
+    private void validate(ColumnDefinition column, Set<String> names) {
+        if (column == null || StringUtils.isBlank(column.getName())) {
+            throw new IllegalArgumentException("The name of each column of the transform has to be defined");
+        }
+        if (!names.add(column.getName())) {
+            throw new IllegalArgumentException(String.format("The column %s is defined twice", column.getName()));
+        }
+        if (column.getValue() != null && column.getSource() != null) {
+            throw new IllegalArgumentException(String.format("The column %s can not define both the source "
+                    + "and the value", column.getName()));
+        }
+    }
+
+    private ColumnConverter compileColumn(ColumnDefinition column) {
+        Function<Object, Object> typeConverter = compileType(column);
+        Object defaultValue = typeConverter.apply(column.getDefaultValue());
+        if (column.getValue() != null) {
+            Object value = typeConverter.apply(column.getValue());
+            Object constant = value == null ? defaultValue : value;
+            return row -> constant;
+        }
+        String source = StringUtils.defaultIfBlank(column.getSource(), column.getName());
+        Function<Object, Object> valueConverter = column.getLookup() == null ? typeConverter
+                : compileLookup(column.getLookup(), typeConverter);
+        if (defaultValue == null) {
+            return row -> valueConverter.apply(row.get(source));
+        }
+        return row -> {
+            Object value = valueConverter.apply(row.get(source));
+            return value == null ? defaultValue : value;
+        };
+    }
+
+    private Function<Object, Object> compileType(ColumnDefinition column) {
+        if (StringUtils.isBlank(column.getType())) {
+            return Function.identity();
+        }
+        ValueType type = ValueType.fromName(column.getType());
+        String format = column.getFormat();
+        return value -> type.convert(value, format);
+    }
+
+    private Function<Object, Object> compileLookup(Map<String, String> lookup, Function<Object, Object> typeConverter) {
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, String> entry : lookup.entrySet()) {
+            values.put(entry.getKey(), typeConverter.apply(entry.getValue()));
+        }
+        return value -> value == null ? null : values.get(value.toString());
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.transform;
+
+import java.util.List;
+
+/**
+ * Declarative transform of a mapping, used instead of the Velocity transform template. Each extracted row
+ * is transformed to a single output row composed of the defined columns, e.g.
+ * <pre>
+ * {"columns": [
+ *     {"name": "patientUuid", "source": "uuid"},
+ *     {"name": "age", "type": "integer"},
+ *     {"name": "visitDate", "source": "visit_date", "type": "date", "format": "dd-MMM-yy"},
+ *     {"name": "gender", "source": "sex", "lookup": {"M": "Male", "F": "Female"}, "default": "Unknown"},
+ *     {"name": "locationName", "value": "Unknown Location"}
+ * ]}
+ * </pre>
+ */
+public class TransformDefinition {
+
+    private List<ColumnDefinition> columns;
+
+    public List<ColumnDefinition> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<ColumnDefinition> columns) {
+        this.columns = columns;
+    }
+}
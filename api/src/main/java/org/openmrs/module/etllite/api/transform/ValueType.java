@@ -0,0 +1,161 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.transform;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.etllite.api.util.DateUtil;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Types of the columns of the declarative transform. The values are converted without reflection, the strings
+ * are trimmed and blank strings are converted to null for all the types but the string.
+ */
+public enum ValueType {
+
+    STRING {
+        @Override
+        Object convertValue(Object value, String format) {
+            if (value instanceof Date && StringUtils.isNotBlank(format)) {
+                return DateUtil.dateToString((Date) value, format, DateUtil.getLocalTimeZone());
+            }
+            return value.toString();
+        }
+    },
+    INTEGER {
+        @Override
+        Object convertValue(Object value, String format) {
+            if (value instanceof Number) {
+                try {
+                    return toBigDecimal((Number) value).intValueExact();
+                } catch (ArithmeticException e) {
+                    throw conversionError(value, this, e);
+                }
+            }
+            String text = toText(value);
+            return text == null ? null : Integer.valueOf(text);
+        }
+    },
+    LONG {
+        @Override
+        Object convertValue(Object value, String format) {
+            if (value instanceof Number) {
+                try {
+                    return toBigDecimal((Number) value).longValueExact();
+                } catch (ArithmeticException e) {
+                    throw conversionError(value, this, e);
+                }
+            }
+            String text = toText(value);
+            return text == null ? null : Long.valueOf(text);
+        }
+    },
+    DOUBLE {
+        @Override
+        Object convertValue(Object value, String format) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            String text = toText(value);
+            return text == null ? null : Double.valueOf(text);
+        }
+    },
+    DECIMAL {
+        @Override
+        Object convertValue(Object value, String format) {
+            if (value instanceof BigDecimal) {
+                return value;
+            }
+            String text = toText(value);
+            return text == null ? null : new BigDecimal(text);
+        }
+    },
+    BOOLEAN {
+        @Override
+        Object convertValue(Object value, String format) {
+            if (value instanceof Boolean) {
+                return value;
+            }
+            if (value instanceof Number) {
+                return toBigDecimal((Number) value).signum() != 0;
+            }
+            String text = toText(value);
+            return text == null ? null : "1".equals(text) || Boolean.parseBoolean(text);
+        }
+    },
+    DATE {
+        @Override
+        Object convertValue(Object value, String format) {
+            if (value instanceof Date) {
+                return value;
+            }
+            if (value instanceof Number) {
+                return new Date(((Number) value).longValue());
+            }
+            String text = toText(value);
+            if (text == null) {
+                return null;
+            }
+            Date date = DateUtil.parse(text, format);
+            if (date == null) {
+                throw new IllegalArgumentException(String.format("The value %s can not be parsed as a date", text));
+            }
+            return date;
+        }
+    };
+
+    /**
+     * Converts the value to this type
+     *
+     * @param value  value to convert, may be null
+     * @param format date pattern used to parse or format the dates, the ISO date time format if blank
+     * @return converted value, null if the value is null
+     * @throws IllegalArgumentException if the value can not be converted
+     */
+    public Object convert(Object value, String format) {
+        return value == null ? null : convertValue(value, format);
+    }
+
+    /**
+     * Returns the type of the given name
+     *
+     * @param name name of the type, case insensitive
+     * @return the type
+     * @throws IllegalArgumentException if there is no type of the given name
+     */
+    public static ValueType fromName(String name) {
+        for (ValueType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown column type: %s", name));
+    }
+
+    abstract Object convertValue(Object value, String format);
+
+    /**
+     * Returns the exact decimal value of the number, so the integer types can reject fractions and overflows
+     */
+    private static BigDecimal toBigDecimal(Number value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+
+    private static IllegalArgumentException conversionError(Object value, ValueType type, ArithmeticException e) {
+        return new IllegalArgumentException(String.format("The value %s can not be converted to %s without loss",
+                value, type), e);
+    }
+
+    private static String toText(Object value) {
+        return StringUtils.trimToNull(value.toString());
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.util;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Formats and parses the dates of <code>DateUtil</code> with cached, immutable java.time formatters. Only the
+ * patterns which java.time handles exactly like <code>SimpleDateFormat</code> get a formatter. For the other
+ * patterns, the dates outside of the supported range and the texts which the strict java.time parser rejects the
+ * methods return null and <code>DateUtil</code> uses <code>SimpleDateFormat</code> as before.
+ */
+final class DateFormatterHelper {
+
+    /**
+     * The formatters are cached by the pattern and the time zone. The templates use few patterns, the limit only
+     * protects the memory when the patterns are built from the data.
+     */
+    private static final int MAX_CACHED_FORMATTERS = 256;
+
+    private static final String KEY_SEPARATOR = "|";
+
+    /**
+     * <code>SimpleDateFormat</code> uses the Julian calendar before the Gregorian cutover and prints the years
+     * above 9999 without a sign, java.time does neither
+     */
+    private static final Instant MIN_INSTANT = Instant.parse("1583-01-01T00:00:00Z");
+
+    private static final Instant MAX_INSTANT = Instant.parse("9999-01-01T00:00:00Z");
+
+    /**
+     * The pattern letters which java.time interprets like <code>SimpleDateFormat</code> when they are repeated at
+     * least MIN_RUNS and at most MAX_RUNS times
+     */
+    private static final String SUPPORTED_LETTERS = "yMEdHmsSXZ";
+
+    private static final int[] MIN_RUNS = {2, 1, 1, 1, 1, 1, 1, 3, 2, 1};
+
+    private static final int[] MAX_RUNS = {Integer.MAX_VALUE, 4, 4, 2, 2, 2, 2, 3, 3, 3};
+
+    /**
+     * The characters which java.time reserves, <code>SimpleDateFormat</code> prints them as they are
+     */
+    private static final String RESERVED_CHARACTERS = "[]{}#";
+
+    private static final String TIME_LETTERS = "msS";
+
+    private static final char HOUR = 'H';
+
+    private static final String TWO_DIGIT_YEAR = "yy";
+
+    private static final char QUOTE = '\'';
+
+    /**
+     * <code>SimpleDateFormat</code> reads two digit years as a year within 80 years before and 20 years after now
+     */
+    private static final int TWO_DIGIT_YEAR_START = 80;
+
+    private static final int FIRST_YEAR = 1970;
+
+    private static final ConcurrentMap<String, Optional<DateTimeFormatter>> FORMATTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Formats the date in the time zone
+     *
+     * @param date    the date to format
+     * @param pattern <code>SimpleDateFormat</code> pattern
+     * @param zone    the time zone of the formatted date
+     * @return the formatted date or null if the pattern or the date is not supported
+     */
+    static String format(Date date, String pattern, TimeZone zone) {
+        // java.sql.Date does not support toInstant
+        Instant instant = Instant.ofEpochMilli(date.getTime());
+        if (!isSupported(instant)) {
+            return null;
+        }
+        return getFormatter(pattern, zone).map(formatter -> formatter.format(instant)).orElse(null);
+    }
+
+    /**
+     * Parses the date in the system time zone unless the text contains an offset
+     *
+     * @param text    the text to parse
+     * @param pattern <code>SimpleDateFormat</code> pattern
+     * @return the parsed date or null if the pattern is not supported or the text can not be parsed strictly
+     */
+    static Date parse(String text, String pattern) {
+        Optional<DateTimeFormatter> formatter = getFormatter(pattern, TimeZone.getDefault());
+        if (!formatter.isPresent()) {
+            return null;
+        }
+        try {
+            TemporalAccessor parsed = formatter.get().parse(text);
+            LocalDate date = parsed.query(TemporalQueries.localDate());
+            LocalTime time = parsed.query(TemporalQueries.localTime());
+            ZoneOffset offset = parsed.query(TemporalQueries.offset());
+            // like SimpleDateFormat, a local time which occurs twice at the end of the daylight saving time is
+            // read as the later one, the standard time
+            Instant instant = ZonedDateTime.of(date, time == null ? LocalTime.MIDNIGHT : time,
+                    offset == null ? formatter.get().getZone() : offset).withLaterOffsetAtOverlap().toInstant();
+            return isSupported(instant) ? Date.from(instant) : null;
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached formatter of the pattern and the time zone
+     *
+     * @param pattern <code>SimpleDateFormat</code> pattern
+     * @param zone    the time zone of the formatted dates
+     * @return the formatter or empty if java.time does not handle the pattern like <code>SimpleDateFormat</code>
+     */
+    static Optional<DateTimeFormatter> getFormatter(String pattern, TimeZone zone) {
+        String key = pattern + KEY_SEPARATOR + zone.getID();
+        Optional<DateTimeFormatter> formatter = FORMATTERS.get(key);
+        if (formatter == null) {
+            formatter = createFormatter(pattern, zone.toZoneId());
+            if (FORMATTERS.size() < MAX_CACHED_FORMATTERS) {
+                FORMATTERS.putIfAbsent(key, formatter);
+            }
+        }
+        return formatter;
+    }
+
+    private static Optional<DateTimeFormatter> createFormatter(String pattern, ZoneId zone) {
+        List<String> tokens = split(pattern);
+        if (tokens == null || !isSupported(tokens)) {
+            return Optional.empty();
+        }
+        DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseCaseInsensitive();
+        StringBuilder segment = new StringBuilder();
+        for (String token : tokens) {
+            if (TWO_DIGIT_YEAR.equals(token)) {
+                builder.appendPattern(segment.toString());
+                segment.setLength(0);
+                builder.appendValueReduced(ChronoField.YEAR_OF_ERA, 2, 2,
+                        LocalDate.now().minusYears(TWO_DIGIT_YEAR_START));
+            } else {
+                segment.append(token);
+            }
+        }
+        builder.appendPattern(segment.toString());
+        return Optional.of(withDefaults(builder, hasHour(tokens)).toFormatter()
+                .withResolverStyle(ResolverStyle.STRICT)
+                .withZone(zone));
+    }
+
+    /**
+     * Splits the pattern into the runs of the same letter and the literals, a quoted text is a single literal
+     *
+     * @return the tokens of the pattern or null if a quote is not closed
+     */
+    private static List<String> split(String pattern) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        while (start < pattern.length()) {
+            char character = pattern.charAt(start);
+            int end = start + 1;
+            if (character == QUOTE) {
+                end = pattern.indexOf(QUOTE, end) + 1;
+                if (end == 0) {
+                    return null;
+                }
+            } else if (!isLiteral(character)) {
+                while (end < pattern.length() && pattern.charAt(end) == character) {
+                    end++;
+                }
+            }
+            tokens.add(pattern.substring(start, end));
+            start = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * Checks the letters of the pattern, the minutes and seconds are supported only together with the hours, so
+     * the missing fields can be defaulted like in <code>SimpleDateFormat</code>
+     */
+    private static boolean isSupported(List<String> tokens) {
+        boolean hasHour = false;
+        boolean hasTime = false;
+        for (String token : tokens) {
+            char letter = token.charAt(0);
+            if (letter != QUOTE && !isLiteral(letter)) {
+                int letterIndex = SUPPORTED_LETTERS.indexOf(letter);
+                if (letterIndex < 0 || token.length() < MIN_RUNS[letterIndex]
+                        || token.length() > MAX_RUNS[letterIndex]) {
+                    return false;
+                }
+                hasHour |= letter == HOUR;
+                hasTime |= TIME_LETTERS.indexOf(letter) >= 0;
+            }
+        }
+        return hasHour || !hasTime;
+    }
+
+    /**
+     * <code>SimpleDateFormat</code> takes the missing fields from 1970-01-01 00:00:00
+     */
+    private static DateTimeFormatterBuilder withDefaults(DateTimeFormatterBuilder builder, boolean hasHour) {
+        builder.parseDefaulting(ChronoField.ERA, 1)
+                .parseDefaulting(ChronoField.YEAR_OF_ERA, FIRST_YEAR)
+                .parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+                .parseDefaulting(ChronoField.DAY_OF_MONTH, 1);
+        if (hasHour) {
+            builder.parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+                    .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+                    .parseDefaulting(ChronoField.NANO_OF_SECOND, 0);
+        }
+        return builder;
+    }
+
+    private static boolean hasHour(List<String> tokens) {
+        for (String token : tokens) {
+            if (token.charAt(0) == HOUR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLiteral(char character) {
+        boolean letter = character >= 'a' && character <= 'z' || character >= 'A' && character <= 'Z';
+        return !letter && RESERVED_CHARACTERS.indexOf(character) < 0;
+    }
+
+    private static boolean isSupported(Instant instant) {
+        return !instant.isBefore(MIN_INSTANT) && instant.isBefore(MAX_INSTANT);
+    }
+
+    private DateFormatterHelper() {
+    }
+}
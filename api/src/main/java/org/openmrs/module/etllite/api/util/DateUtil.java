@@ -16,10 +16,19 @@ import org.apache.commons.logging.LogFactory;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
 
+/**
+ * Formats, parses and shifts the dates. The dates are formatted and parsed with cached java.time formatters, the
+ * patterns and dates which java.time can not handle exactly like <code>SimpleDateFormat</code> still use it.
+ */
 public final class DateUtil {
 
     private static final Log LOGGER = LogFactory.getLog(DateUtil.class);
@@ -37,12 +46,14 @@ public final class DateUtil {
         if (StringUtils.isBlank(pattern)) {
             datePattern = ISO_DATE_TIME_FORMAT;
         }
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(datePattern);
-        Date result = null;
-        try {
-            result = simpleDateFormat.parse(dateTime);
-        } catch (ParseException e) {
-            LOGGER.error(String.format("Could not parse `%s` date using `%s` pattern", dateTime, datePattern));
+        Date result = DateFormatterHelper.parse(dateTime, datePattern);
+        if (result == null) {
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(datePattern);
+            try {
+                result = simpleDateFormat.parse(dateTime);
+            } catch (ParseException e) {
+                LOGGER.error(String.format("Could not parse `%s` date using `%s` pattern", dateTime, datePattern));
+            }
         }
         return result;
     }
@@ -52,13 +63,36 @@ public final class DateUtil {
     }
 
     public static Date plusDays(Date date, int duration) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        calendar.add(Calendar.DATE, duration);
-        return calendar.getTime();
+        ZoneId zone = ZoneId.systemDefault();
+        ZonedDateTime dateTime = ZonedDateTime.ofInstant(toInstant(date), zone);
+        LocalDateTime shifted = dateTime.toLocalDateTime().plusDays(duration);
+        // like Calendar.add, the time is first read in the offset of the date and moved by the change of the
+        // offset only if it stays on the same day
+        Instant result = shifted.toInstant(dateTime.getOffset());
+        int offsetChange = dateTime.getOffset().getTotalSeconds() - zone.getRules().getOffset(result).getTotalSeconds();
+        if (offsetChange != 0) {
+            Instant adjusted = result.plusSeconds(offsetChange);
+            if (adjusted.atZone(zone).toLocalDate().equals(shifted.toLocalDate())) {
+                result = adjusted;
+            }
+        }
+        return Date.from(result);
     }
 
     public static Date setTimeOfDay(Date date, int hour, int minute, int second) {
+        try {
+            ZoneId zone = getLocalTimeZone().toZoneId();
+            LocalDateTime dateTime = LocalDateTime.ofInstant(toInstant(date), zone)
+                    .withHour(hour).withMinute(minute).withSecond(second);
+            // like Calendar, a time which occurs twice at the end of the daylight saving time is the later one
+            return Date.from(ZonedDateTime.of(dateTime, zone).withLaterOffsetAtOverlap().toInstant());
+        } catch (DateTimeException e) {
+            // Calendar rolls the values out of their range over to the next fields
+            return setTimeOfDayLeniently(date, hour, minute, second);
+        }
+    }
+
+    private static Date setTimeOfDayLeniently(Date date, int hour, int minute, int second) {
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(date);
         calendar.set(Calendar.HOUR_OF_DAY, hour);
@@ -77,9 +111,8 @@ public final class DateUtil {
     }
 
     public static Date getDateWithTimeZone(Date timestamp, TimeZone timeZone) {
-        Calendar calendar = Calendar.getInstance(timeZone);
-        calendar.setTime(timestamp);
-        return calendar.getTime();
+        // a Date is an instant without a time zone, so it stays the same in every time zone
+        return new Date(timestamp.getTime());
     }
 
     public static String dateToString(Date date) {
@@ -102,16 +135,24 @@ public final class DateUtil {
         if (timeZone == null) {
             dateTimeZone = DEFAULT_TIME_ZONE;
         }
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(dateFormat);
-        simpleDateFormat.setTimeZone(dateTimeZone);
-
-        return simpleDateFormat.format(date);
+        String result = DateFormatterHelper.format(date, dateFormat, dateTimeZone);
+        if (result == null) {
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(dateFormat);
+            simpleDateFormat.setTimeZone(dateTimeZone);
+            result = simpleDateFormat.format(date);
+        }
+        return result;
     }
 
     public static TimeZone getLocalTimeZone() {
         return TimeZone.getDefault();
     }
 
+    private static Instant toInstant(Date date) {
+        // java.sql.Date does not support toInstant
+        return Instant.ofEpochMilli(date.getTime());
+    }
+
     private DateUtil() {
     }
 }
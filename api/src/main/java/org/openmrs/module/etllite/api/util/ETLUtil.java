@@ -10,16 +10,27 @@
 
 package org.openmrs.module.etllite.api.util;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
-
+import org.openmrs.api.db.hibernate.DbSession;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Statement;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Defines utilities methods that will be injected in transform and load templates by default under
@@ -31,6 +42,8 @@ public class ETLUtil {
 
   private static final Log LOGGER = LogFactory.getLog(ETLUtil.class);
 
+  private DbSessionFactory dbSessionFactory;
+
   /**
    * Creates and returns a new object instance using Context from OpenMRS
    *
@@ -135,4 +148,67 @@ public class ETLUtil {
   public Date today() {
     return new Date();
   }
+
+  /**
+   * Flushes the pending changes of the current Hibernate session and detaches all entities loaded by
+   * the session, so the following saves do not dirty check the entities saved for the previous rows
+   */
+  public void flushSession() {
+    DbSession session = dbSessionFactory.getCurrentSession();
+    session.flush();
+    session.clear();
+  }
+
+  /**
+   * Executes the SQL statement once for each row using JDBC batches of the default size
+   *
+   * @param sql  SQL statement with named parameters
+   * @param rows values of the named parameters, one map for each execution
+   * @return number of affected rows
+   * @see #batchInsert(String, List, int)
+   */
+  public int batchInsert(String sql, List<Map<String, Object>> rows) {
+    return batchInsert(sql, rows, Constants.DEFAULT_JDBC_BATCH_SIZE);
+  }
+
+  /**
+   * Executes the SQL statement once for each row using JDBC batches. The statement runs on the connection of
+   * the current Hibernate session, so it is a part of the ETL transaction. The pending changes of the session
+   * are flushed first, so the statement may refer to the entities saved before.
+   *
+   * @param sql       SQL statement with named parameters, e.g. insert into obs (person_id, value_text)
+   *                  values (:personId, :value)
+   * @param rows      values of the named parameters, one map for each execution
+   * @param batchSize number of rows sent to the database in a single JDBC batch
+   * @return number of affected rows
+   */
+  public int batchInsert(String sql, List<Map<String, Object>> rows, int batchSize) {
+    DbSession session = dbSessionFactory.getCurrentSession();
+    session.flush();
+
+    AtomicInteger affectedRows = new AtomicInteger();
+    session.doWork(connection -> {
+      NamedParameterJdbcTemplate template =
+          new NamedParameterJdbcTemplate(new SingleConnectionDataSource(connection, true));
+      for (List<Map<String, Object>> batch : Lists.partition(rows, batchSize)) {
+        for (int count : template.batchUpdate(sql, toParameterSources(batch))) {
+          // some drivers do not report the number of rows affected by a batched statement
+          affectedRows.addAndGet(count == Statement.SUCCESS_NO_INFO ? 1 : count);
+        }
+      }
+    });
+    return affectedRows.get();
+  }
+
+  public void setDbSessionFactory(DbSessionFactory dbSessionFactory) {
+    this.dbSessionFactory = dbSessionFactory;
+  }
+
+  private static SqlParameterSource[] toParameterSources(List<Map<String, Object>> rows) {
+    SqlParameterSource[] parameterSources = new SqlParameterSource[rows.size()];
+    for (int i = 0; i < rows.size(); i++) {
+      parameterSources[i] = new MapSqlParameterSource(rows.get(i));
+    }
+    return parameterSources;
+  }
 }
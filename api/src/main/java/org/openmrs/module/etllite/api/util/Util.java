@@ -11,10 +11,14 @@
 package org.openmrs.module.etllite.api.util;
 
 import org.apache.commons.lang.StringUtils;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.domain.types.DatabaseTypes;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,8 +27,6 @@ import java.util.Map;
  */
 public class Util {
 
-  private static final int DEFAULT_FETCH_SIZE = 1000;
-
   /**
    * This method creates <code>NamedParameterJdbcTemplate</code> using the datasource
    *
@@ -37,7 +39,53 @@ public class Util {
       throw new IllegalArgumentException("datasource can not be null");
     }
     JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-    jdbcTemplate.setFetchSize(fetchSize != 0 ? fetchSize : DEFAULT_FETCH_SIZE);
+    jdbcTemplate.setFetchSize(fetchSize != 0 ? fetchSize : Constants.DEFAULT_FETCH_SIZE);
+    return new NamedParameterJdbcTemplate(jdbcTemplate);
+  }
+
+  /**
+   * This method creates <code>NamedParameterJdbcTemplate</code> which makes the driver return at most the given
+   * number of rows of each query
+   *
+   * @param dataSource <code>DataSource</code>
+   * @param maxRows    the maximum number of rows
+   * @return <code>NamedParameterJdbcTemplate</code>
+   */
+  public NamedParameterJdbcTemplate getLimitedJdbcTemplate(DataSource dataSource, int maxRows) {
+    if (null == dataSource) {
+      throw new IllegalArgumentException("datasource can not be null");
+    }
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.setMaxRows(maxRows);
+    jdbcTemplate.setFetchSize(maxRows);
+    return new NamedParameterJdbcTemplate(jdbcTemplate);
+  }
+
+  /**
+   * This method creates <code>NamedParameterJdbcTemplate</code> which reads the result set as a stream instead of
+   * loading it into memory at once. The fetch size is adjusted to the database type, because some drivers
+   * (e.g. MySQL) only stream the rows when a driver specific fetch size is used.
+   *
+   * @param dataSource   <code>DataSource</code>
+   * @param fetchSize    parameter to retrieve the data in chunks
+   * @param databaseType type of the database, may be null if unknown
+   * @return <code>NamedParameterJdbcTemplate</code>
+   */
+  public NamedParameterJdbcTemplate getStreamingJdbcTemplate(DataSource dataSource, int fetchSize,
+                                                             DatabaseTypes databaseType) {
+    if (null == dataSource) {
+      throw new IllegalArgumentException("datasource can not be null");
+    }
+    int rowsToFetch = fetchSize != 0 ? fetchSize : Constants.DEFAULT_FETCH_SIZE;
+    final int streamingFetchSize = databaseType != null ? databaseType.getStreamingFetchSize(rowsToFetch) : rowsToFetch;
+    // JdbcTemplate ignores non positive fetch sizes, so the statement settings are applied directly
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource) {
+      @Override
+      protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        stmt.setFetchSize(streamingFetchSize);
+      }
+    };
     return new NamedParameterJdbcTemplate(jdbcTemplate);
   }
 
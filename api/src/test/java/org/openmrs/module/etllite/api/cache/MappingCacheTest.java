@@ -0,0 +1,142 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.ETLTestHelper;
+import org.openmrs.module.etllite.api.domain.Mapping;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Mapping Cache Unit Test Class
+ */
+public class MappingCacheTest extends BaseTest {
+
+    private MappingCache mappingCache;
+
+    private Mapping mapping;
+
+    private AtomicInteger loadCount;
+
+    @Before
+    public void setUp() {
+        mappingCache = new MappingCache();
+        mapping = ETLTestHelper.setUpDbMapping();
+        loadCount = new AtomicInteger();
+    }
+
+    @Test
+    public void shouldReuseCachedMapping() {
+        //Given
+        Mapping cachedMapping = getMapping();
+
+        //When
+        Mapping reusedMapping = getMapping();
+
+        //Then
+        assertThat(reusedMapping, sameInstance(cachedMapping));
+        assertThat(loadCount.get(), equalTo(1));
+        assertThat(mappingCache.getHitCount(), equalTo(1L));
+        assertThat(mappingCache.getMissCount(), equalTo(1L));
+        assertThat(mappingCache.size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldCacheSnapshotOfMapping() {
+        //When
+        Mapping cachedMapping = getMapping();
+        mapping.setQuery("SELECT 1");
+        mapping.getSettings().setParallelism(4);
+
+        //Then
+        assertThat(cachedMapping, not(sameInstance(mapping)));
+        assertThat(cachedMapping.getId(), equalTo(mapping.getId()));
+        assertThat(cachedMapping.getQuery(), equalTo(ETLTestHelper.setUpDbMapping().getQuery()));
+        assertThat(cachedMapping.getSettings().getParallelism(), equalTo(1));
+    }
+
+    @Test
+    public void shouldNotCacheMissingMapping() {
+        //When
+        Mapping missingMapping = mappingCache.getMapping(mapping.getSource(), mapping.getName(), () -> null);
+
+        //Then
+        assertThat(missingMapping, nullValue());
+        assertThat(mappingCache.size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldLoadMappingAgainAfterInvalidate() {
+        //Given
+        Mapping cachedMapping = getMapping();
+
+        //When
+        mappingCache.invalidate(mapping.getSource(), mapping.getName());
+        Mapping reloadedMapping = getMapping();
+
+        //Then
+        assertThat(reloadedMapping, not(sameInstance(cachedMapping)));
+        assertThat(loadCount.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldNotCacheMappingInvalidatedWhileLoading() {
+        //When
+        Mapping loadedMapping = mappingCache.getMapping(mapping.getSource(), mapping.getName(), () -> {
+            mappingCache.invalidate(mapping.getSource(), mapping.getName());
+            return mapping;
+        });
+
+        //Then
+        assertThat(loadedMapping.getId(), equalTo(mapping.getId()));
+        assertThat(mappingCache.size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldNotCacheMappingLoadedBeforeAllMappingsWereRemoved() {
+        //When
+        mappingCache.getMapping(mapping.getSource(), mapping.getName(), () -> {
+            mappingCache.invalidateAll();
+            return mapping;
+        });
+
+        //Then
+        assertThat(mappingCache.size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldRemoveAllMappings() {
+        //Given
+        getMapping();
+
+        //When
+        mappingCache.invalidateAll();
+
+        //Then
+        assertThat(mappingCache.size(), equalTo(0));
+    }
+
+    private Mapping getMapping() {
+        return mappingCache.getMapping(mapping.getSource(), mapping.getName(), () -> {
+            loadCount.incrementAndGet();
+            return mapping;
+        });
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.cache;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.Velocity;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.log.Log4JLogChute;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.ETLTestHelper;
+import org.openmrs.module.etllite.api.domain.Mapping;
+
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.Properties;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Template Cache Unit Test Class
+ */
+public class TemplateCacheTest extends BaseTest {
+
+    private static final String TEMPLATE_NAME = "ETL Transform";
+
+    private static final String TEMPLATE = "#set($name = 'etl')$name";
+
+    private TemplateCache templateCache;
+
+    private Mapping mapping;
+
+    @Before
+    public void setUp() {
+        Properties props = new Properties();
+        props.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS, Log4JLogChute.class.getName());
+        props.setProperty(Log4JLogChute.RUNTIME_LOG_LOG4J_LOGGER, "root");
+        Velocity.init(props);
+
+        templateCache = new TemplateCache();
+        mapping = ETLTestHelper.setUpDbMapping();
+    }
+
+    @Test
+    public void shouldReuseParsedTemplate() {
+        //Given
+        Template template = templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE);
+
+        //When
+        Template cachedTemplate = templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE);
+
+        //Then
+        assertThat(cachedTemplate, sameInstance(template));
+        assertThat(templateCache.getHitCount(), equalTo(1L));
+        assertThat(templateCache.getMissCount(), equalTo(1L));
+        assertThat(templateCache.size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldMergeParsedTemplate() {
+        //Given
+        StringWriter writer = new StringWriter();
+
+        //When
+        templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE).merge(new VelocityContext(), writer);
+
+        //Then
+        assertThat(writer.toString(), equalTo("etl"));
+    }
+
+    @Test
+    public void shouldParseTemplateAgainIfMappingWasChanged() {
+        //Given
+        Template template = templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE);
+        mapping.setDateChanged(new Date());
+
+        //When
+        Template changedTemplate = templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE);
+
+        //Then
+        assertThat(changedTemplate, not(sameInstance(template)));
+        assertThat(templateCache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldParseTemplateAgainAfterInvalidation() {
+        //Given
+        templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE);
+
+        //When
+        templateCache.invalidate(mapping.getId());
+        templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE);
+
+        //Then
+        assertThat(templateCache.getHitCount(), equalTo(0L));
+        assertThat(templateCache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldNotCacheTemplatesOfUnsavedMapping() {
+        //Given
+        mapping.setId(null);
+
+        //When
+        templateCache.getTemplate(mapping, TEMPLATE_NAME, TEMPLATE);
+
+        //Then
+        assertThat(templateCache.size(), equalTo(0));
+    }
+}
@@ -12,6 +12,7 @@ package org.openmrs.module.etllite.api.dao;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.etllite.api.domain.ETLLog;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -83,6 +84,34 @@ public class ETLLogDaoTest extends BaseModuleContextSensitiveTest {
         assertNotNull(date);
     }
 
+    @Test
+    public void shouldFindLastRunOnBeforeLog() {
+        ETLLog etlLog = createETLLog();
+        etlLog.setRunOn(new Date(RUN_ON.getTime() + 1000L));
+        etlLogDao.update(etlLog);
+
+        assertThat(etlLogDao.findLastRunOnBefore(DB, MAPPING, etlLog.getId()), equalTo(RUN_ON));
+        assertThat(etlLogDao.executeQuery(DB, MAPPING), equalTo(etlLog.getRunOn()));
+    }
+
+    @Test
+    public void shouldMarkFailedRecords() {
+        ETLLog etlLog = createETLLog();
+        etlLog.setLoadRecords(5);
+        etlLog.setJobStatus(true);
+        etlLogDao.update(etlLog);
+        Context.flushSession();
+
+        assertThat(etlLogDao.markFailedRecords(etlLog.getId(), 2), equalTo(1));
+        assertThat(etlLogDao.markFailedRecords(etlLog.getId(), 4), equalTo(1));
+        assertThat(etlLogDao.markFailedRecords(-1, 1), equalTo(0));
+
+        Context.clearSession();
+        ETLLog updated = etlLogDao.findById(etlLog.getId());
+        assertThat(updated.getLoadRecords(), equalTo(0));
+        assertThat(updated.getJobStatus(), equalTo(false));
+    }
+
     private ETLLog createETLLog() {
         ETLLog etlLog = new ETLLog();
         etlLog.setExtractedRecords(1);
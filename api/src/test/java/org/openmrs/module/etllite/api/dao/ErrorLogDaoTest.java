@@ -10,6 +10,7 @@
 
 package org.openmrs.module.etllite.api.dao;
 
+import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.module.etllite.api.domain.ErrorLog;
@@ -17,6 +18,8 @@ import org.openmrs.module.etllite.api.util.DateUtil;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -74,6 +77,17 @@ public class ErrorLogDaoTest extends BaseModuleContextSensitiveTest {
         }
     }
 
+    @Test
+    public void shouldFindPageByMappingAndBetweenRunDates() {
+        List<ErrorLog> firstPage = errorLogDao.findByMappingAndBetweenRunDates(DB, MAPPING, APRIL24, APRIL26, 0, 3);
+        List<ErrorLog> secondPage = errorLogDao.findByMappingAndBetweenRunDates(DB, MAPPING, APRIL24, APRIL26, 3, 3);
+
+        assertThat(errorLogDao.countByMappingAndBetweenRunDates(DB, MAPPING, APRIL24, APRIL26), equalTo(4L));
+        assertThat(firstPage.size(), equalTo(3));
+        assertThat(secondPage.size(), equalTo(1));
+        assertThat(firstPage.contains(secondPage.get(0)), equalTo(false));
+    }
+
     @Test
     public void shouldProperlyCreateErrorLog() {
         ErrorLog errorLog = createErrorLog(DB_3, SOURCE_KEY, SOURCE_VALUE, APRIL26);
@@ -81,7 +95,34 @@ public class ErrorLogDaoTest extends BaseModuleContextSensitiveTest {
         assertNotNull(errorLog);
     }
 
+    @Test
+    public void shouldTruncateTooLongErrorMessage() {
+        ErrorLog errorLog = buildErrorLog(DB_3, SOURCE_KEY, SOURCE_VALUE, APRIL26);
+        errorLog.setErrorMessage(StringUtils.repeat("x", 1000));
+
+        int insertedRows = errorLogDao.createAll(Collections.singletonList(errorLog));
+
+        assertThat(insertedRows, equalTo(1));
+        assertThat(errorLogDao.findBySourceKeyAndRunDate(DB_3, MAPPING, SOURCE_KEY, SOURCE_VALUE, APRIL26)
+                .getErrorMessage().length(), equalTo(255));
+    }
+
+    @Test
+    public void shouldInsertValidErrorLogsOfFailedBatch() {
+        ErrorLog invalidErrorLog = buildErrorLog(null, SOURCE_KEY, SOURCE_VALUE, APRIL26);
+        ErrorLog validErrorLog = buildErrorLog(DB_3, SOURCE_KEY, SOURCE_VALUE, APRIL26);
+
+        int insertedRows = errorLogDao.createAll(Arrays.asList(invalidErrorLog, validErrorLog));
+
+        assertThat(insertedRows, equalTo(1));
+        assertNotNull(errorLogDao.findBySourceKeyAndRunDate(DB_3, MAPPING, SOURCE_KEY, SOURCE_VALUE, APRIL26));
+    }
+
     private ErrorLog createErrorLog(String db, String sourceKey, String sourceValue, Date runOn) {
+        return errorLogDao.saveOrUpdate(buildErrorLog(db, sourceKey, sourceValue, runOn));
+    }
+
+    private ErrorLog buildErrorLog(String db, String sourceKey, String sourceValue, Date runOn) {
         ErrorLog errorLog = new ErrorLog();
         errorLog.setDatabaseName(db);
         errorLog.setMapping(ErrorLogDaoTest.MAPPING);
@@ -89,6 +130,6 @@ public class ErrorLogDaoTest extends BaseModuleContextSensitiveTest {
         errorLog.setSourceValue(sourceValue);
         errorLog.setRunOn(runOn);
 
-        return errorLogDao.saveOrUpdate(errorLog);
+        return errorLog;
     }
 }
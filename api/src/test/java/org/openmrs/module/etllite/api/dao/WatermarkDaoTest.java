@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.dao;
+
+import org.junit.Test;
+import org.openmrs.module.etllite.api.dao.impl.WatermarkDaoImpl;
+import org.openmrs.module.etllite.api.domain.Watermark;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class WatermarkDaoTest extends BaseModuleContextSensitiveTest {
+
+    private static final String DB = "db";
+    private static final String MAPPING = "mapping";
+
+    @Autowired
+    private WatermarkDao watermarkDao;
+
+    @Test
+    public void shouldSaveAndFindWatermarkOfMapping() {
+        watermarkDao.save(buildWatermark("42"));
+
+        assertThat(watermarkDao.findByMapping(DB, MAPPING).getLastValue(), equalTo("42"));
+    }
+
+    @Test
+    public void shouldDeleteWatermarkOfMapping() {
+        watermarkDao.save(buildWatermark("42"));
+
+        watermarkDao.deleteByMapping(DB, MAPPING);
+
+        assertThat(watermarkDao.findByMapping(DB, MAPPING), nullValue());
+    }
+
+    @Test
+    public void shouldMoveWatermarkOfMapping() {
+        watermarkDao.save(buildWatermark("42"));
+
+        watermarkDao.moveMapping(DB, MAPPING, DB, "renamed");
+
+        assertThat(watermarkDao.findByMapping(DB, MAPPING), nullValue());
+        assertThat(watermarkDao.findByMapping(DB, "renamed").getLastValue(), equalTo("42"));
+    }
+
+    @Test
+    public void shouldSaveWatermarkInTransactionOfLoadedRows() throws NoSuchMethodException {
+        // a watermark committed before the rows it covers would skip them for good if their transaction rolls back
+        Transactional transactional = WatermarkDaoImpl.class.getMethod("save", Watermark.class)
+                .getAnnotation(Transactional.class);
+
+        assertThat(transactional.propagation(), equalTo(Propagation.REQUIRED));
+    }
+
+    private Watermark buildWatermark(String lastValue) {
+        Watermark watermark = new Watermark();
+        watermark.setDatabaseName(DB);
+        watermark.setMapping(MAPPING);
+        watermark.setLastValue(lastValue);
+        return watermark;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Adaptive Batch Sizer Unit Test Class
+ */
+public class AdaptiveBatchSizerTest extends BaseTest {
+
+    private static final int INITIAL_BATCH_SIZE = 100;
+
+    private static final int MIN_BATCH_SIZE = 20;
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private static final long TARGET_LATENCY = 1000;
+
+    private double heapUsage = 0.1;
+
+    @Test
+    public void shouldGrowBatchSizeTowardsTargetLatency() {
+        //Given
+        AdaptiveBatchSizer batchSizer = createBatchSizer();
+        // 0.5 ms per row, so 2000 rows would be processed in the target latency
+        batchSizer.batchProcessed(ETLStage.TRANSFORM, 100, TimeUnit.MILLISECONDS.toNanos(10));
+        batchSizer.batchProcessed(ETLStage.LOAD, 100, TimeUnit.MILLISECONDS.toNanos(40));
+
+        //When
+        int firstSize = batchSizer.nextBatchSize();
+        int secondSize = batchSizer.nextBatchSize();
+
+        //Then
+        assertThat(firstSize, equalTo(200));
+        assertThat(secondSize, equalTo(400));
+        assertThat(batchSizer.getHistory(), equalTo("100, 200 (latency), 400 (latency)"));
+    }
+
+    @Test
+    public void shouldShrinkBatchSizeWhenBatchesAreSlow() {
+        //Given
+        AdaptiveBatchSizer batchSizer = createBatchSizer();
+        // 12.5 ms per row, so 80 rows would be processed in the target latency
+        batchSizer.batchProcessed(ETLStage.LOAD, 100, TimeUnit.MILLISECONDS.toNanos(1250));
+
+        //When
+        int size = batchSizer.nextBatchSize();
+
+        //Then
+        assertThat(size, equalTo(80));
+    }
+
+    @Test
+    public void shouldHalveBatchSizeOnHeapPressure() {
+        //Given
+        AdaptiveBatchSizer batchSizer = createBatchSizer();
+        batchSizer.batchProcessed(ETLStage.LOAD, 100, TimeUnit.MILLISECONDS.toNanos(10));
+        heapUsage = 0.9;
+
+        //When
+        int size = batchSizer.nextBatchSize();
+
+        //Then
+        assertThat(size, equalTo(50));
+        assertThat(batchSizer.getHistory(), equalTo("100, 50 (heap 90%)"));
+    }
+
+    @Test
+    public void shouldNotGrowBatchSizeAboveHeapGrowthThreshold() {
+        //Given
+        AdaptiveBatchSizer batchSizer = createBatchSizer();
+        batchSizer.batchProcessed(ETLStage.LOAD, 100, TimeUnit.MILLISECONDS.toNanos(10));
+        heapUsage = 0.75;
+
+        //When
+        int size = batchSizer.nextBatchSize();
+
+        //Then
+        assertThat(size, equalTo(INITIAL_BATCH_SIZE));
+    }
+
+    @Test
+    public void shouldHalveBatchSizeWhenManyRecordsFail() {
+        //Given
+        AdaptiveBatchSizer batchSizer = createBatchSizer();
+        batchSizer.batchProcessed(ETLStage.LOAD, 100, TimeUnit.MILLISECONDS.toNanos(10));
+        batchSizer.recordsFailed(100, 50);
+
+        //When
+        int firstSize = batchSizer.nextBatchSize();
+        batchSizer.recordsFailed(50, 0);
+        int secondSize = batchSizer.nextBatchSize();
+
+        //Then
+        assertThat(firstSize, equalTo(50));
+        assertThat(secondSize, equalTo(100));
+        assertThat(batchSizer.getHistory(), equalTo("100, 50 (error rate 15%), 100 (latency)"));
+    }
+
+    @Test
+    public void shouldNotGrowBatchSizeAboveErrorRateGrowthThreshold() {
+        //Given
+        AdaptiveBatchSizer batchSizer = createBatchSizer();
+        batchSizer.batchProcessed(ETLStage.LOAD, 100, TimeUnit.MILLISECONDS.toNanos(10));
+        batchSizer.recordsFailed(100, 5);
+
+        //When
+        int size = batchSizer.nextBatchSize();
+
+        //Then
+        assertThat(size, equalTo(INITIAL_BATCH_SIZE));
+    }
+
+    @Test
+    public void shouldHalveBatchSizeAfterFailureDownToMinimum() {
+        //Given
+        AdaptiveBatchSizer batchSizer = createBatchSizer();
+
+        //When
+        for (int i = 0; i < 5; i++) {
+            batchSizer.batchFailed();
+            batchSizer.nextBatchSize();
+        }
+
+        //Then
+        assertThat(batchSizer.getBatchSize(), equalTo(MIN_BATCH_SIZE));
+        assertThat(batchSizer.getHistory(), equalTo("100, 50 (errors), 25 (errors), 20 (errors)"));
+    }
+
+    @Test
+    public void shouldKeepHistoryWithinLengthOfRunLogColumn() {
+        //Given
+        AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(Integer.MAX_VALUE, 1, Integer.MAX_VALUE,
+                TARGET_LATENCY, () -> heapUsage);
+        batchSizer.batchProcessed(ETLStage.LOAD, 1000, 1);
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            failAllRecords(batchSizer);
+            batchSizer.nextBatchSize();
+            batchSizer.nextBatchSize();
+        }
+        failAllRecords(batchSizer);
+        batchSizer.nextBatchSize();
+
+        //Then
+        assertThat(batchSizer.getHistory().length(), lessThanOrEqualTo(AdaptiveBatchSizer.MAX_HISTORY_LENGTH));
+        assertThat(batchSizer.getHistory(), endsWith(" ... 1073741823 (error rate 100%)"));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfBoundsAreInvalid() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        new AdaptiveBatchSizer(INITIAL_BATCH_SIZE, MAX_BATCH_SIZE, MIN_BATCH_SIZE, TARGET_LATENCY);
+    }
+
+    private void failAllRecords(AdaptiveBatchSizer batchSizer) {
+        // the moving average of the error rate reaches 100% after a series of batches in which every record failed
+        for (int i = 0; i < 20; i++) {
+            batchSizer.recordsFailed(100, 100);
+        }
+    }
+
+    private AdaptiveBatchSizer createBatchSizer() {
+        return new AdaptiveBatchSizer(INITIAL_BATCH_SIZE, MIN_BATCH_SIZE, MAX_BATCH_SIZE, TARGET_LATENCY,
+                () -> heapUsage);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.ETLRuntimeException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Batching Row Callback Handler Unit Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class BatchingRowCallbackHandlerTest extends BaseTest {
+
+    private static final String COLUMN_NAME = "patientId";
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Mock
+    private ResultSetMetaData metaData;
+
+    private List<List<Map<String, Object>>> batches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws SQLException {
+        given(resultSet.getMetaData()).willReturn(metaData);
+        given(metaData.getColumnCount()).willReturn(1);
+        given(metaData.getColumnLabel(1)).willReturn(COLUMN_NAME);
+        given(resultSet.getObject(1)).willReturn(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void shouldHandleRowsInBatches() throws SQLException, ETLException, MappingNotFoundException {
+        //Given
+        BatchingRowCallbackHandler rowHandler = new BatchingRowCallbackHandler(2, batches::add);
+
+        //When
+        processRows(rowHandler, 5);
+        rowHandler.flush();
+
+        //Then
+        assertThat(rowHandler.getRowCount(), equalTo(5));
+        assertThat(rowHandler.getBatchCount(), equalTo(3));
+        assertThat(batches.size(), equalTo(3));
+        assertThat(batches.get(0).size(), equalTo(2));
+        assertThat(batches.get(2).size(), equalTo(1));
+        assertThat(batches.get(2).get(0).get(COLUMN_NAME), equalTo((Object) 5));
+    }
+
+    @Test
+    public void shouldTakeSizeOfEachBatchFromBatchSizer()
+            throws SQLException, ETLException, MappingNotFoundException {
+        //Given
+        Iterator<Integer> batchSizes = Arrays.asList(1, 3, 2).iterator();
+        BatchingRowCallbackHandler rowHandler = new BatchingRowCallbackHandler(batchSizes::next, batches::add);
+
+        //When
+        processRows(rowHandler, 5);
+        rowHandler.flush();
+
+        //Then
+        assertThat(batches.size(), equalTo(3));
+        assertThat(batches.get(0).size(), equalTo(1));
+        assertThat(batches.get(1).size(), equalTo(3));
+        assertThat(batches.get(2).size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldNotHandleEmptyBatchOnFlush() throws ETLException, MappingNotFoundException {
+        //Given
+        BatchingRowCallbackHandler rowHandler = new BatchingRowCallbackHandler(2, batches::add);
+
+        //When
+        rowHandler.flush();
+
+        //Then
+        assertThat(rowHandler.getBatchCount(), equalTo(0));
+        assertThat(batches.size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldWrapBatchHandlerErrors() throws SQLException, ETLException, MappingNotFoundException {
+        expectedException.expect(ETLRuntimeException.class);
+        //Given
+        BatchHandler batchHandler = mock(BatchHandler.class);
+        doThrow(new ETLException("error", null)).when(batchHandler).handle(any());
+        BatchingRowCallbackHandler rowHandler = new BatchingRowCallbackHandler(1, batchHandler);
+
+        //When
+        processRows(rowHandler, 1);
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfBatchSizeIsNotPositive() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        new BatchingRowCallbackHandler(0, batches::add);
+    }
+
+    private void processRows(BatchingRowCallbackHandler rowHandler, int count) throws SQLException {
+        for (int i = 0; i < count; i++) {
+            rowHandler.processRow(resultSet);
+        }
+    }
+}
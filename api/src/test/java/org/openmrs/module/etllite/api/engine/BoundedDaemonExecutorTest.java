@@ -0,0 +1,155 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Bounded Daemon Executor Unit Test Class
+ */
+public class BoundedDaemonExecutorTest extends BaseTest {
+
+    private static final long TIMEOUT_SECONDS = 5L;
+
+    private BoundedDaemonExecutor executor;
+
+    private ExecutorService taskExecutor;
+
+    @Before
+    public void setUp() {
+        taskExecutor = Executors.newCachedThreadPool();
+        executor = new BoundedDaemonExecutor();
+        executor.setName("test-listener");
+        executor.setTaskExecutor(taskExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.destroy();
+        taskExecutor.shutdownNow();
+    }
+
+    @Test
+    public void shouldRunTasksUpToMaxWorkersAtOnce() throws InterruptedException {
+        //Given
+        executor.setMaxWorkers(2);
+        executor.initialize();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(6);
+
+        //When
+        for (int i = 0; i < 6; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep();
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        //Then
+        assertThat(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+        assertThat(executor.getWaitTime().getCount(), equalTo(6L));
+        assertThat(executor.getRejectedTasks(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldDiscardTasksWhichDoNotFitIntoQueue() throws InterruptedException {
+        //Given
+        executor.setMaxWorkers(1);
+        executor.setQueueCapacity(1);
+        executor.setRejectionPolicy(BoundedDaemonExecutor.RejectionPolicy.DISCARD);
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        AtomicInteger runTasks = new AtomicInteger();
+        Runnable task = () -> {
+            await(release);
+            runTasks.incrementAndGet();
+            finished.countDown();
+        };
+
+        //When
+        executor.execute(task);
+        executor.execute(task);
+        executor.execute(task);
+
+        //Then
+        assertThat(executor.getQueueDepth(), equalTo(1));
+        assertThat(executor.getRejectedTasks(), equalTo(1L));
+        release.countDown();
+        assertThat(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+        assertThat(runTasks.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldRunTaskInCallerThreadWhenQueueIsFull() {
+        //Given
+        executor.setMaxWorkers(1);
+        executor.setQueueCapacity(1);
+        executor.setRejectionPolicy(BoundedDaemonExecutor.RejectionPolicy.CALLER_RUNS);
+        executor.setTaskExecutor(Runnable::run);
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> rejectedTaskThread = new AtomicReference<>();
+        executor.execute(() -> await(release));
+        executor.execute(() -> await(release));
+
+        //When
+        executor.execute(() -> rejectedTaskThread.set(Thread.currentThread()));
+
+        //Then
+        assertThat(rejectedTaskThread.get(), equalTo(Thread.currentThread()));
+        assertThat(executor.getRejectedTasks(), equalTo(1L));
+        release.countDown();
+    }
+
+    @Test
+    public void shouldRejectTasksWhenNotInitialized() {
+        expectedException.expect(RejectedExecutionException.class);
+
+        executor.execute(() -> { });
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checkpoint Batch Handler Unit Test Class
+ */
+public class CheckpointBatchHandlerTest extends BaseTest {
+
+    private ETLBatchProcessor batchProcessor;
+
+    private TransactionOperations transactionOperations;
+
+    @Before
+    public void setUp() {
+        batchProcessor = mock(ETLBatchProcessor.class);
+        transactionOperations = mock(TransactionOperations.class, invocation -> {
+            // runs the callback directly instead of starting a new transaction
+            return ((TransactionCallback<?>) invocation.getArguments()[0])
+                    .doInTransaction(null);
+        });
+    }
+
+    @Test
+    public void shouldCheckpointEachProcessedBatch() throws ETLException, MappingNotFoundException {
+        //Given
+        CheckpointBatchHandler handler = new CheckpointBatchHandler(batchProcessor, transactionOperations, 0);
+        List<Map<String, Object>> rows = batch(3);
+
+        //When
+        handler.handle(rows);
+
+        //Then
+        verify(batchProcessor).handle(rows);
+        verify(batchProcessor).checkpoint(3);
+    }
+
+    @Test
+    public void shouldSkipRowsCoveredByCheckpoint() throws ETLException, MappingNotFoundException {
+        //Given
+        CheckpointBatchHandler handler = new CheckpointBatchHandler(batchProcessor, transactionOperations, 4);
+        List<Map<String, Object>> firstBatch = batch(3);
+        List<Map<String, Object>> secondBatch = batch(3);
+
+        //When
+        handler.handle(firstBatch);
+        handler.handle(secondBatch);
+
+        //Then
+        verify(batchProcessor, never()).handle(firstBatch);
+        verify(batchProcessor).handle(secondBatch.subList(1, 3));
+        verify(batchProcessor).checkpoint(2);
+    }
+
+    @Test
+    public void shouldRethrowBatchErrorsWithoutCheckpoint() throws ETLException, MappingNotFoundException {
+        expectedException.expect(ETLException.class);
+        //Given
+        CheckpointBatchHandler handler = new CheckpointBatchHandler(batchProcessor, transactionOperations, 0);
+        doThrow(new ETLException("error", null)).when(batchProcessor).handle(anyList());
+
+        try {
+            //When
+            handler.handle(batch(1));
+        } finally {
+            //Then
+            verify(batchProcessor, never()).checkpoint(anyInt());
+        }
+    }
+
+    private List<Map<String, Object>> batch(int size) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            rows.add(Collections.singletonMap("patientId", i));
+        }
+        return rows;
+    }
+}
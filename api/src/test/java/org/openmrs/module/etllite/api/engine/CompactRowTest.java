@@ -0,0 +1,148 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.etllite.api.BaseTest;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Compact Row Unit Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CompactRowTest extends BaseTest {
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Mock
+    private ResultSetMetaData metaData;
+
+    @Test
+    public void shouldGetValuesCaseInsensitively() {
+        //Given
+        CompactRow row = new CompactRow(RowHeader.of("person_id", "Name"), new Object[] {1, "Male"});
+
+        //Then
+        assertThat(row.get("person_id"), equalTo((Object) 1));
+        assertThat(row.get("PERSON_ID"), equalTo((Object) 1));
+        assertThat(row.get("name"), equalTo((Object) "Male"));
+        assertThat(row.get("location_id"), nullValue());
+        assertThat(row.containsKey("NAME"), equalTo(true));
+        assertThat(row.size(), equalTo(2));
+        assertThat(new ArrayList<>(row.keySet()), equalTo(Arrays.asList("person_id", "Name")));
+    }
+
+    @Test
+    public void shouldBeEqualToMapWithSameEntries() {
+        //Given
+        CompactRow row = new CompactRow(RowHeader.of("person_id", "name"), new Object[] {1, null});
+        Map<String, Object> map = new HashMap<>();
+        map.put("person_id", 1);
+        map.put("name", null);
+
+        //Then
+        assertThat(row.equals(map), equalTo(true));
+        assertThat(map.equals(row), equalTo(true));
+        assertThat(row.hashCode(), equalTo(map.hashCode()));
+    }
+
+    @Test
+    public void shouldPutAndRemoveValues() {
+        //Given
+        CompactRow row = new CompactRow(RowHeader.of("person_id", "name"), new Object[] {1, "Male"});
+
+        //When
+        Object previous = row.put("NAME", "Female");
+        row.put("gender", "F");
+        row.remove("person_id");
+
+        //Then
+        assertThat(previous, equalTo((Object) "Male"));
+        assertThat(row.get("name"), equalTo((Object) "Female"));
+        assertThat(row.get("GENDER"), equalTo((Object) "F"));
+        assertThat(row.containsKey("person_id"), equalTo(false));
+        assertThat(row.size(), equalTo(2));
+        assertThat(new ArrayList<>(row.keySet()), equalTo(Arrays.asList("name", "gender")));
+    }
+
+    @Test
+    public void shouldRemoveValuesUsingIterator() {
+        //Given
+        CompactRow row = new CompactRow(RowHeader.of("person_id", "name"), new Object[] {1, "Male"});
+        row.put("gender", "M");
+
+        //When
+        Iterator<Map.Entry<String, Object>> iterator = row.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (!"name".equals(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+
+        //Then
+        assertThat(row.size(), equalTo(1));
+        assertThat(row.get("name"), equalTo((Object) "Male"));
+    }
+
+    @Test
+    public void shouldKeepLastValueOfDuplicatedColumn() {
+        //Given
+        RowHeader header = RowHeader.of("id", "name", "ID");
+
+        //Then
+        assertThat(header.size(), equalTo(2));
+        assertThat(header.indexOf("Id"), equalTo(0));
+        assertThat(header.getResultSetIndex(0), equalTo(3));
+        assertThat(header.getResultSetIndex(1), equalTo(2));
+    }
+
+    @Test
+    public void shouldMapRowsSharingHeader() throws SQLException {
+        //Given
+        given(resultSet.getMetaData()).willReturn(metaData);
+        given(metaData.getColumnCount()).willReturn(2);
+        given(metaData.getColumnLabel(1)).willReturn("person_id");
+        given(metaData.getColumnLabel(2)).willReturn("name");
+        given(resultSet.getObject(1)).willReturn(1, 2);
+        given(resultSet.getObject(2)).willReturn("Male", "Female");
+        CompactRowMapper rowMapper = new CompactRowMapper();
+
+        //When
+        Map<String, Object> first = rowMapper.mapRow(resultSet, 0);
+        Map<String, Object> second = rowMapper.mapRow(resultSet, 1);
+
+        //Then
+        assertThat(first.get("person_id"), equalTo((Object) 1));
+        assertThat(second.get("name"), equalTo((Object) "Female"));
+        assertThat(((CompactRow) second).getHeader(), sameInstance(((CompactRow) first).getHeader()));
+        verify(resultSet, times(1)).getMetaData();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Extract Buffer Unit Test Class
+ */
+public class ExtractBufferTest extends BaseTest {
+
+    private static final RowHeader HEADER = RowHeader.of("person_id", "name");
+
+    private Path directory;
+
+    private List<List<Map<String, Object>>> batches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("extract-buffer-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void shouldKeepRowsOnHeapWithinMemoryBudget() throws ETLException, MappingNotFoundException {
+        //Given
+        try (ExtractBuffer buffer = new ExtractBuffer(Long.MAX_VALUE, directory)) {
+            buffer.handle(rows(0, 5));
+
+            //When
+            buffer.forEachBatch(2, batches::add);
+
+            //Then
+            assertThat(buffer.getRowCount(), equalTo(5));
+            assertThat(buffer.getSpilledRowCount(), equalTo(0));
+            assertThat(fileCount(), equalTo(0L));
+        }
+        assertThat(batches.size(), equalTo(3));
+        assertThat(batches.get(2).get(0).get("person_id"), equalTo((Object) 4));
+    }
+
+    @Test
+    public void shouldSpillRowsAboveMemoryBudgetAndKeepOrder() throws ETLException, MappingNotFoundException,
+            IOException {
+        //Given
+        try (ExtractBuffer buffer = new ExtractBuffer(300, directory, 64)) {
+            buffer.handle(rows(0, 10));
+            buffer.handle(rows(10, 20));
+
+            //When
+            buffer.forEachBatch(3, batches::add);
+
+            //Then
+            assertThat(buffer.getRowCount(), equalTo(20));
+            assertThat(buffer.getSpilledRowCount() > 0, equalTo(true));
+            assertThat(fileCount(), equalTo(1L));
+        }
+        assertThat(fileCount(), equalTo(0L));
+        assertThat(batches.size(), equalTo(7));
+        List<Object> ids = new ArrayList<>();
+        for (List<Map<String, Object>> batch : batches) {
+            for (Map<String, Object> row : batch) {
+                ids.add(row.get("PERSON_ID"));
+                assertThat(row.get("name"), equalTo((Object) ("name " + row.get("person_id"))));
+            }
+        }
+        assertThat(ids.size(), equalTo(20));
+        assertThat(ids.get(19), equalTo((Object) 19));
+    }
+
+    @Test
+    public void shouldRestoreSpilledValues() throws ETLException, MappingNotFoundException {
+        //Given
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("string", "\u017c\u00f3\u0142w");
+        row.put("integer", 1);
+        row.put("long", 2L);
+        row.put("double", 3.5);
+        row.put("boolean", true);
+        row.put("decimal", new BigDecimal("-12.345"));
+        row.put("timestamp", Timestamp.valueOf("2020-01-15 10:20:30.123456789"));
+        row.put("sqlDate", java.sql.Date.valueOf("2020-01-15"));
+        row.put("date", new Date(1000L));
+        row.put("bytes", new byte[] {1, 2});
+        row.put("serialized", new ArrayList<>(Arrays.asList("a", "b")));
+        row.put("null", null);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(row);
+
+        //When
+        try (ExtractBuffer buffer = new ExtractBuffer(0, directory)) {
+            buffer.handle(rows);
+            buffer.forEachBatch(10, batches::add);
+            assertThat(buffer.getSpilledRowCount(), equalTo(1));
+        }
+
+        //Then
+        Map<String, Object> restored = batches.get(0).get(0);
+        assertThat(new ArrayList<>(restored.keySet()), equalTo(new ArrayList<>(row.keySet())));
+        assertThat(((byte[]) restored.remove("bytes")).length, equalTo(2));
+        row.remove("bytes");
+        assertThat(new HashMap<>(restored), equalTo(new HashMap<>(row)));
+    }
+
+    @Test
+    public void shouldSpillLobsAsStringsAndBytes() throws ETLException, MappingNotFoundException, SQLException {
+        //Given
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("clob", new SerialClob("text".toCharArray()));
+        row.put("blob", new SerialBlob(new byte[] {1, 2, 3}));
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(row);
+
+        //When
+        try (ExtractBuffer buffer = new ExtractBuffer(0, directory)) {
+            buffer.handle(rows);
+            buffer.forEachBatch(10, batches::add);
+        }
+
+        //Then
+        Map<String, Object> restored = batches.get(0).get(0);
+        assertThat(restored.get("clob"), equalTo((Object) "text"));
+        assertThat(((byte[]) restored.get("blob")).length, equalTo(3));
+    }
+
+    @Test
+    public void shouldThrowETLExceptionNamingColumnOfNotSerializableValue() throws ETLException {
+        expectedException.expect(ETLException.class);
+        expectedException.expectMessage("column driverValue");
+        //Given
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("driverValue", new Object());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(row);
+
+        //When
+        try (ExtractBuffer buffer = new ExtractBuffer(0, directory)) {
+            buffer.handle(rows);
+        }
+    }
+
+    private List<Map<String, Object>> rows(int from, int to) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.add(new CompactRow(HEADER, new Object[] {i, "name " + i}));
+        }
+        return rows;
+    }
+
+    private long fileCount() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
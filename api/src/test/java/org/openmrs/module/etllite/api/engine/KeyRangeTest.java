@@ -0,0 +1,114 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.domain.types.DatabaseTypes.KeyRangeType;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Key Range Unit Test Class
+ */
+public class KeyRangeTest extends BaseTest {
+
+    @Test
+    public void shouldSplitIntegersIntoRangesOfSameWidth() {
+        //Given & When
+        List<KeyRange> ranges = KeyRange.split(1, 12, 3);
+
+        //Then
+        assertThat(ranges.toString(), equalTo("[[1, 5), [5, 9), [9, 12], [null]]"));
+        assertThat(ranges.get(2).getType(), equalTo(KeyRangeType.LAST));
+        assertThat(ranges.get(3).getType(), equalTo(KeyRangeType.NULL));
+    }
+
+    @Test
+    public void shouldNotSplitIntoMoreRangesThanValues() {
+        //Given & When
+        List<KeyRange> ranges = KeyRange.split(1L, 2L, 4);
+
+        //Then
+        assertThat(ranges.toString(), equalTo("[[1, 2), [2, 2], [null]]"));
+    }
+
+    @Test
+    public void shouldSplitDecimals() {
+        //Given & When
+        List<KeyRange> ranges = KeyRange.split(new BigDecimal("0.5"), new BigDecimal("1.5"), 2);
+
+        //Then
+        assertThat(ranges.toString(), equalTo("[[0.5, 1.0), [1.0, 1.5], [null]]"));
+    }
+
+    @Test
+    public void shouldKeepBoundsOfDecimalsWhichDoNotFitIntoDouble() {
+        //Given
+        BigDecimal min = new BigDecimal("0.10000000000000000001");
+        BigDecimal max = new BigDecimal("0.30000000000000000003");
+
+        //When
+        List<KeyRange> ranges = KeyRange.split(min, max, 2);
+
+        //Then
+        assertThat(ranges.size(), equalTo(3));
+        assertThat(ranges.get(0).getFrom(), sameInstance((Object) min));
+        assertThat(ranges.get(1).getTo(), sameInstance((Object) max));
+        assertThat(((BigDecimal) ranges.get(0).getTo()).compareTo(max) < 0, equalTo(true));
+    }
+
+    @Test
+    public void shouldKeepNanosOfHighestTimestamp() {
+        //Given
+        Timestamp min = new Timestamp(0L);
+        Timestamp max = new Timestamp(1123L);
+        max.setNanos(123456000);
+
+        //When
+        List<KeyRange> ranges = KeyRange.split(min, max, 2);
+
+        //Then
+        assertThat(ranges.get(1).getType(), equalTo(KeyRangeType.LAST));
+        assertThat(ranges.get(1).getTo(), sameInstance((Object) max));
+        assertThat(((Timestamp) ranges.get(1).getTo()).getNanos(), equalTo(123456000));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfIntegersDoNotFitIntoLong() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        KeyRange.split(BigDecimal.ZERO, new BigDecimal("1E30"), 2);
+    }
+
+    @Test
+    public void shouldReturnOnlyNullRangeIfColumnHasNoValues() {
+        //Given & When
+        List<KeyRange> ranges = KeyRange.split(null, null, 2);
+
+        //Then
+        assertThat(ranges.size(), equalTo(1));
+        assertThat(ranges.get(0).getType(), equalTo(KeyRangeType.NULL));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfValuesCanNotBeSplit() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        KeyRange.split("a", "z", 2);
+    }
+}
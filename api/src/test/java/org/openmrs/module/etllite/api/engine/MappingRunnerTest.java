@@ -0,0 +1,157 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.service.ETLService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Mapping Runner Unit Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class MappingRunnerTest extends BaseTest {
+
+    private static final String MAPPING_1 = "mapping1";
+
+    private static final String MAPPING_2 = "mapping2";
+
+    private static final String MAPPING_3 = "mapping3";
+
+    @Mock
+    private ETLService etlService;
+
+    private Map<String, Object> params = new HashMap<>();
+
+    private Map<String, Set<String>> dependencies = new HashMap<>();
+
+    @Test
+    public void shouldRunMappingsUpToTheLimitAtOnce() throws ETLException {
+        //Given
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            running.decrementAndGet();
+            return null;
+        }).when(etlService).doETL(anyString(), anyMapOf(String.class, Object.class));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        //When
+        try {
+            new MappingRunner(etlService, executor, 2).run(
+                    Arrays.asList(MAPPING_1, MAPPING_2, MAPPING_3, "mapping4", "mapping5"), dependencies, params);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //Then
+        assertThat(running.get(), equalTo(0));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+        verify(etlService, times(5)).doETL(anyString(), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldRunMappingAfterItsDependencies() throws ETLException {
+        //Given
+        dependencies.put(MAPPING_1, new HashSet<>(Arrays.asList(MAPPING_2, MAPPING_3)));
+
+        //When
+        new MappingRunner(etlService, Runnable::run, 1).run(
+                Arrays.asList(MAPPING_1, MAPPING_2, MAPPING_3), dependencies, params);
+
+        //Then
+        InOrder inOrder = inOrder(etlService);
+        inOrder.verify(etlService).doETL(eq(MAPPING_2), anyMapOf(String.class, Object.class));
+        inOrder.verify(etlService).doETL(eq(MAPPING_3), anyMapOf(String.class, Object.class));
+        inOrder.verify(etlService).doETL(eq(MAPPING_1), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldIgnoreDependenciesWhichAreNotPartOfTheRun() throws ETLException {
+        //Given
+        dependencies.put(MAPPING_1, Collections.singleton("otherMapping"));
+
+        //When
+        new MappingRunner(etlService, Runnable::run, 1).run(Collections.singletonList(MAPPING_1), dependencies,
+                params);
+
+        //Then
+        verify(etlService, times(1)).doETL(eq(MAPPING_1), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldRunMappingsOfDependencyCycleInRequestedOrder() throws ETLException {
+        //Given
+        dependencies.put(MAPPING_1, Collections.singleton(MAPPING_2));
+        dependencies.put(MAPPING_2, Collections.singleton(MAPPING_1));
+
+        //When
+        new MappingRunner(etlService, Runnable::run, 2).run(Arrays.asList(MAPPING_1, MAPPING_2, MAPPING_3),
+                dependencies, params);
+
+        //Then
+        InOrder inOrder = inOrder(etlService);
+        inOrder.verify(etlService).doETL(eq(MAPPING_3), anyMapOf(String.class, Object.class));
+        inOrder.verify(etlService).doETL(eq(MAPPING_1), anyMapOf(String.class, Object.class));
+        inOrder.verify(etlService).doETL(eq(MAPPING_2), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldRunDependentMappingEvenIfDependencyFailed() throws ETLException {
+        //Given
+        dependencies.put(MAPPING_1, Collections.singleton(MAPPING_2));
+        doThrow(new IllegalArgumentException()).when(etlService).doETL(eq(MAPPING_2),
+                anyMapOf(String.class, Object.class));
+
+        //When
+        new MappingRunner(etlService, Runnable::run, 2).run(Arrays.asList(MAPPING_1, MAPPING_2), dependencies,
+                params);
+
+        //Then
+        verify(etlService, times(1)).doETL(eq(MAPPING_1), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfLimitIsNotPositive() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        new MappingRunner(etlService, Runnable::run, 0);
+    }
+}
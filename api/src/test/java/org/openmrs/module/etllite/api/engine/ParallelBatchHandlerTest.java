@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Parallel Batch Handler Unit Test Class
+ */
+public class ParallelBatchHandlerTest extends BaseTest {
+
+    private static final int PARALLELISM = 2;
+
+    private ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldProcessAllBatches() throws ETLException, MappingNotFoundException {
+        //Given
+        AtomicInteger processedRows = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ParallelBatchHandler handler = new ParallelBatchHandler(rows -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            processedRows.addAndGet(rows.size());
+            running.decrementAndGet();
+        }, executor, PARALLELISM);
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            handler.handle(batch());
+        }
+        handler.awaitTermination();
+        handler.checkFailure();
+
+        //Then
+        assertThat(processedRows.get(), equalTo(10));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(PARALLELISM));
+    }
+
+    @Test
+    public void shouldRethrowBatchHandlerErrors() throws ETLException, MappingNotFoundException {
+        expectedException.expect(MappingNotFoundException.class);
+        //Given
+        ParallelBatchHandler handler = new ParallelBatchHandler(rows -> {
+            throw new MappingNotFoundException("not found");
+        }, Runnable::run, PARALLELISM);
+
+        //When
+        handler.handle(batch());
+        handler.awaitTermination();
+        handler.checkFailure();
+    }
+
+    @Test
+    public void shouldStopHandingOverBatchesAfterError() throws ETLException, MappingNotFoundException {
+        expectedException.expect(ETLException.class);
+        //Given
+        ParallelBatchHandler handler = new ParallelBatchHandler(rows -> {
+            throw new ETLException("error", null);
+        }, Runnable::run, PARALLELISM);
+        handler.handle(batch());
+
+        //When
+        handler.handle(batch());
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfParallelismIsNotPositive() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        new ParallelBatchHandler(rows -> { }, Runnable::run, 0);
+    }
+
+    private List<Map<String, Object>> batch() {
+        return Collections.singletonList(Collections.singletonMap("patientId", 1));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Partitioned Extractor Unit Test Class
+ */
+public class PartitionedExtractorTest extends BaseTest {
+
+    private static final int PARTITIONS = 3;
+
+    private static final int BATCHES = 20;
+
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldHandBatchesOfAllPartitionsOverInCallingThread() throws ETLException, MappingNotFoundException {
+        //Given
+        Set<Object> patientIds = new HashSet<>();
+        Set<Thread> handlerThreads = new HashSet<>();
+        PartitionedExtractor extractor = new PartitionedExtractor(executor, 1);
+
+        //When
+        int rowCount = extractor.extract(partitionReaders(), rows -> {
+            handlerThreads.add(Thread.currentThread());
+            patientIds.add(rows.get(0).get("patientId"));
+        });
+
+        //Then
+        assertThat(rowCount, equalTo(PARTITIONS * BATCHES));
+        assertThat(patientIds.size(), equalTo(PARTITIONS * BATCHES));
+        assertThat(handlerThreads, contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void shouldRethrowBatchHandlerErrors() throws ETLException, MappingNotFoundException {
+        expectedException.expect(MappingNotFoundException.class);
+        //Given
+        PartitionedExtractor extractor = new PartitionedExtractor(executor, 1);
+
+        //When
+        extractor.extract(partitionReaders(), rows -> {
+            throw new MappingNotFoundException("not found");
+        });
+    }
+
+    @Test
+    public void shouldRethrowPartitionReaderErrors() throws ETLException, MappingNotFoundException {
+        expectedException.expect(ETLException.class);
+        //Given
+        List<PartitionedExtractor.PartitionReader> partitionReaders = partitionReaders();
+        partitionReaders.add(batchHandler -> {
+            throw new ETLException("error", null);
+        });
+        PartitionedExtractor extractor = new PartitionedExtractor(executor, 1);
+
+        //When
+        extractor.extract(partitionReaders, rows -> { });
+    }
+
+    private List<PartitionedExtractor.PartitionReader> partitionReaders() {
+        List<PartitionedExtractor.PartitionReader> partitionReaders = new ArrayList<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            int firstPatientId = partition * BATCHES;
+            partitionReaders.add(batchHandler -> {
+                for (int i = 0; i < BATCHES; i++) {
+                    batchHandler.handle(batch(firstPatientId + i));
+                }
+            });
+        }
+        return partitionReaders;
+    }
+
+    private List<Map<String, Object>> batch(int patientId) {
+        return Collections.singletonList(Collections.singletonMap("patientId", patientId));
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.dao.ETLLogDao;
+import org.openmrs.module.etllite.api.domain.ETLLog;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.ETLRuntimeException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.openmrs.module.etllite.api.service.ETLService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pipelined Batch Handler Unit Test Class
+ */
+public class PipelinedBatchHandlerTest extends BaseTest {
+
+    private static final int TRANSFORM_WORKERS = 3;
+
+    private static final int QUEUE_CAPACITY = 2;
+
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    private ETLBatchProcessor batchProcessor;
+
+    @Before
+    public void setUp() throws ETLException, MappingNotFoundException {
+        batchProcessor = mock(ETLBatchProcessor.class);
+        when(batchProcessor.transform(anyList())).thenAnswer(invocation -> {
+            List<Map<String, Object>> rows = (List<Map<String, Object>>) invocation.getArguments()[0];
+            // the first batches take the longest, so they are transformed after the next ones
+            Thread.sleep(30L - 10L * (Integer) rows.get(0).get("patientId"));
+            return rows;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldLoadBatchesInExtractOrder() throws ETLException, MappingNotFoundException {
+        //Given
+        List<Object> loadedPatients = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<Map<String, Object>> rows = (List<Map<String, Object>>) invocation.getArguments()[1];
+            loadedPatients.add(rows.get(0).get("patientId"));
+            return null;
+        }).when(batchProcessor).load(anyList(), anyList());
+        PipelinedBatchHandler handler = new PipelinedBatchHandler(batchProcessor, executor, TRANSFORM_WORKERS,
+                QUEUE_CAPACITY);
+
+        //When
+        handler.start();
+        for (int i = 0; i < 3; i++) {
+            handler.handle(batch(i, 1));
+        }
+        handler.awaitTermination();
+        handler.checkFailure();
+
+        //Then
+        assertThat(loadedPatients, contains(0, 1, 2));
+        verify(batchProcessor).createLogIfNeeded();
+    }
+
+    @Test
+    public void shouldSkipRowsCoveredByCheckpointAndCheckpointEachLoadedBatch()
+            throws ETLException, MappingNotFoundException {
+        //Given
+        TransactionOperations transactionOperations = mock(TransactionOperations.class, invocation -> {
+            // runs the callback directly instead of starting a new transaction
+            return ((TransactionCallback<?>) invocation.getArguments()[0]).doInTransaction(null);
+        });
+        PipelinedBatchHandler handler = new PipelinedBatchHandler(batchProcessor, executor, TRANSFORM_WORKERS,
+                QUEUE_CAPACITY);
+        handler.commitEachBatch(transactionOperations, 4);
+        List<Map<String, Object>> firstBatch = batch(0, 3);
+        List<Map<String, Object>> secondBatch = batch(0, 3);
+
+        //When
+        handler.start();
+        handler.handle(firstBatch);
+        handler.handle(secondBatch);
+        handler.awaitTermination();
+        handler.checkFailure();
+
+        //Then
+        verify(batchProcessor, never()).transform(firstBatch);
+        verify(batchProcessor).load(secondBatch.subList(1, 3), secondBatch.subList(1, 3));
+        verify(batchProcessor).checkpoint(2);
+    }
+
+    @Test
+    public void shouldCommitRunLogBeforeBatchesAreLoadedInTheirOwnTransactions()
+            throws ETLException, MappingNotFoundException {
+        //Given
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:pipelined-batch-handler;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=2000");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table etl_log (id int primary key, checkpoint_offset int)");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate runTransaction = new TransactionTemplate(transactionManager);
+        TransactionTemplate batchTransaction = new TransactionTemplate(transactionManager);
+        batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        ETLLog etlLog = new ETLLog();
+        ETLLogDao etlLogDao = mock(ETLLogDao.class);
+        when(etlLogDao.create(etlLog)).thenAnswer(invocation -> {
+            jdbcTemplate.update("insert into etl_log (id, checkpoint_offset) values (1, 0)");
+            etlLog.setId(1);
+            return etlLog;
+        });
+        when(etlLogDao.update(etlLog)).thenAnswer(invocation -> {
+            jdbcTemplate.update("update etl_log set checkpoint_offset = ? where id = 1",
+                    etlLog.getCheckpointOffset());
+            return etlLog;
+        });
+        ETLService etlService = mock(ETLService.class);
+        when(etlService.transform(anyString(), anyMapOf(String.class, Object.class), anyList()))
+                .thenAnswer(invocation -> invocation.getArguments()[2]);
+        PipelinedBatchHandler handler = new PipelinedBatchHandler(
+                new ETLBatchProcessor(etlService, etlLogDao, etlLog, new HashMap<>()), executor, TRANSFORM_WORKERS,
+                QUEUE_CAPACITY);
+        handler.commitEachBatch(batchTransaction, 0);
+
+        //When
+        try {
+            // the extract runs in the transaction of the run, like doETL
+            runTransaction.execute(status -> {
+                handler.start();
+                try {
+                    handler.handle(batch(0, 2));
+                    handler.handle(batch(2, 3));
+                } catch (ETLException | MappingNotFoundException e) {
+                    throw new ETLRuntimeException(e.getMessage(), e);
+                } finally {
+                    handler.awaitTermination();
+                }
+                return null;
+            });
+            handler.checkFailure();
+
+            //Then
+            assertThat(jdbcTemplate.queryForObject("select checkpoint_offset from etl_log where id = 1",
+                    Integer.class), equalTo(5));
+        } finally {
+            jdbcTemplate.execute("drop table etl_log");
+        }
+    }
+
+    @Test
+    public void shouldNotLoadAfterTransformError() throws ETLException, MappingNotFoundException {
+        expectedException.expect(ETLException.class);
+        //Given
+        doThrow(new ETLException("error", null)).when(batchProcessor).transform(anyList());
+        PipelinedBatchHandler handler = new PipelinedBatchHandler(batchProcessor, executor, TRANSFORM_WORKERS,
+                QUEUE_CAPACITY);
+
+        try {
+            //When
+            handler.start();
+            handler.handle(batch(0, 1));
+            handler.awaitTermination();
+            handler.checkFailure();
+        } finally {
+            //Then
+            verify(batchProcessor, never()).load(anyList(), anyList());
+        }
+    }
+
+    @Test
+    public void shouldStopExtractAfterLoadError() throws ETLException, MappingNotFoundException {
+        expectedException.expect(MappingNotFoundException.class);
+        //Given
+        doThrow(new MappingNotFoundException("not found")).when(batchProcessor).load(anyList(), anyList());
+        PipelinedBatchHandler handler = new PipelinedBatchHandler(batchProcessor, executor, TRANSFORM_WORKERS,
+                QUEUE_CAPACITY);
+        handler.start();
+
+        try {
+            //When
+            while (true) {
+                handler.handle(batch(2, 1));
+            }
+        } finally {
+            handler.awaitTermination();
+        }
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfTransformWorkersIsNotPositive() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        new PipelinedBatchHandler(batchProcessor, executor, 0, QUEUE_CAPACITY);
+    }
+
+    private List<Map<String, Object>> batch(int firstPatientId, int size) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            rows.add(Collections.singletonMap("patientId", firstPatientId + i));
+        }
+        return rows;
+    }
+}
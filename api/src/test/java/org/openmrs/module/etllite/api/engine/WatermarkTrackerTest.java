@@ -0,0 +1,122 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.engine;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.dao.WatermarkDao;
+import org.openmrs.module.etllite.api.domain.Watermark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Watermark Tracker Unit Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class WatermarkTrackerTest extends BaseTest {
+
+    private static final String DATABASE = "database";
+
+    private static final String MAPPING = "mapping";
+
+    private static final String COLUMN = "patientId";
+
+    @Mock
+    private WatermarkDao watermarkDao;
+
+    @Test
+    public void shouldSaveHighestValueAfterEachBatch() {
+        //Given
+        WatermarkTracker tracker = new WatermarkTracker(watermarkDao, DATABASE, MAPPING, COLUMN, true);
+        ArgumentCaptor<Watermark> captor = ArgumentCaptor.forClass(Watermark.class);
+
+        //When
+        tracker.batchLoaded(rows(3, 7, 5));
+
+        //Then
+        verify(watermarkDao, times(1)).save(captor.capture());
+        assertThat(captor.getValue().getDatabaseName(), equalTo(DATABASE));
+        assertThat(captor.getValue().getMapping(), equalTo(MAPPING));
+        assertThat(captor.getValue().getLastValue(), equalTo("7"));
+    }
+
+    @Test
+    public void shouldUpdateExistingWatermark() {
+        //Given
+        Watermark watermark = new Watermark();
+        watermark.setLastValue("2");
+        given(watermarkDao.findByMapping(DATABASE, MAPPING)).willReturn(watermark);
+        WatermarkTracker tracker = new WatermarkTracker(watermarkDao, DATABASE, MAPPING, COLUMN, true);
+
+        //When
+        tracker.batchLoaded(rows(4));
+
+        //Then
+        verify(watermarkDao, times(1)).save(watermark);
+        assertThat(watermark.getLastValue(), equalTo("4"));
+    }
+
+    @Test
+    public void shouldSaveOnlyOnceIfBatchesAreLoadedInParallel() {
+        //Given
+        WatermarkTracker tracker = new WatermarkTracker(watermarkDao, DATABASE, MAPPING, COLUMN, false);
+        ArgumentCaptor<Watermark> captor = ArgumentCaptor.forClass(Watermark.class);
+
+        //When
+        tracker.batchLoaded(rows(8, 9));
+        tracker.batchLoaded(rows(1, 2));
+        verify(watermarkDao, never()).save(any(Watermark.class));
+        tracker.save();
+
+        //Then
+        verify(watermarkDao, times(1)).save(captor.capture());
+        assertThat(captor.getValue().getLastValue(), equalTo("9"));
+    }
+
+    @Test
+    public void shouldNotSaveIfNoRowsWereLoaded() {
+        //Given
+        WatermarkTracker tracker = new WatermarkTracker(watermarkDao, DATABASE, MAPPING, COLUMN, true);
+
+        //When
+        tracker.batchLoaded(Collections.emptyList());
+        tracker.save();
+
+        //Then
+        verify(watermarkDao, never()).save(any(Watermark.class));
+    }
+
+    private List<Map<String, Object>> rows(Integer... values) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Integer value : values) {
+            Map<String, Object> row = new HashMap<>();
+            row.put(COLUMN, value);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
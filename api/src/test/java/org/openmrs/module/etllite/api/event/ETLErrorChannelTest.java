@@ -0,0 +1,155 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.event;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.service.ETLEventService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ETL Error Channel Unit Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ETLErrorChannelTest extends BaseTest {
+
+    private static final String METHOD = "save";
+
+    private static final int PUBLISHERS = 4;
+
+    private static final int FAILURES_PER_PUBLISHER = 2000;
+
+    @Mock
+    private ETLErrorPersistence errorPersistence;
+
+    @Mock
+    private ETLEventService etlEventService;
+
+    @InjectMocks
+    private ETLErrorChannel errorChannel = new ETLErrorChannel();
+
+    private Map<String, Object> properties;
+
+    @Before
+    public void setUp() {
+        properties = new HashMap<>();
+        properties.put(Constants.ETL_IMPORT_DATABASE, "db");
+        properties.put(Constants.ETL_IMPORT_MAPPING, "mapping");
+    }
+
+    @Test
+    public void shouldPersistStackTraceOfEachFailure() {
+        //When
+        errorChannel.publish(String.class, METHOD, new IllegalStateException("first"), properties);
+        errorChannel.publish(String.class, METHOD, new IllegalStateException("second"), properties);
+
+        //Then
+        ArgumentCaptor<Map<String, Object>> failedRecords = failedRecordCaptor();
+        verify(errorPersistence, times(2)).persistError(failedRecords.capture());
+        List<Map<String, Object>> values = failedRecords.getAllValues();
+        assertThat((String) values.get(0).get(Constants.ETL_IMPORT_FAILURE_STACKTRACE), containsString("first"));
+        assertThat((String) values.get(1).get(Constants.ETL_IMPORT_FAILURE_STACKTRACE), containsString("second"));
+        assertThat(values.get(0).get(Constants.ETL_IMPORT_FAILURE_MESSAGE),
+                equalTo((Object) ("Class : " + String.class + " Method : " + METHOD)));
+    }
+
+    @Test
+    public void shouldSendOneSummaryEventForFailuresOfTheSameMethod() {
+        //Given
+        errorChannel.publish(String.class, METHOD, new IllegalStateException(), properties);
+        errorChannel.publish(String.class, METHOD, new IllegalStateException(), properties);
+        errorChannel.publish(Integer.class, METHOD, new IllegalStateException(), properties);
+
+        //When
+        errorChannel.publishSummaries();
+
+        //Then
+        ArgumentCaptor<ETLEvent> events = ArgumentCaptor.forClass(ETLEvent.class);
+        verify(etlEventService, times(2)).sendEventMessage(events.capture());
+        int failures = 0;
+        for (ETLEvent event : events.getAllValues()) {
+            assertThat(event.getSubject(), equalTo(Constants.ETL_FAILURE_SUMMARY_SUBJECT));
+            failures += (Integer) event.getParameters().get(Constants.ETL_IMPORT_FAILURE_COUNT);
+        }
+        assertThat(failures, equalTo(3));
+    }
+
+    @Test
+    public void shouldCountEveryFailurePublishedWhileSummariesAreClosed() throws InterruptedException {
+        //Given
+        AtomicInteger summarizedFailures = new AtomicInteger();
+        willAnswer(invocation -> summarizedFailures.addAndGet((Integer) ((ETLEvent) invocation.getArguments()[0])
+                .getParameters().get(Constants.ETL_IMPORT_FAILURE_COUNT))).given(etlEventService)
+                .sendEventMessage(any(ETLEvent.class));
+        errorChannel.setErrorPersistence(failedRecord -> { });
+        CountDownLatch published = new CountDownLatch(PUBLISHERS);
+        List<Thread> publishers = new ArrayList<>();
+        for (int i = 0; i < PUBLISHERS; i++) {
+            publishers.add(new Thread(() -> {
+                for (int j = 0; j < FAILURES_PER_PUBLISHER; j++) {
+                    errorChannel.publish(String.class, METHOD, new IllegalStateException(), properties);
+                }
+                published.countDown();
+            }));
+        }
+
+        //When
+        publishers.forEach(Thread::start);
+        while (!published.await(1, TimeUnit.MILLISECONDS)) {
+            errorChannel.publishSummaries();
+        }
+        errorChannel.publishSummaries();
+
+        //Then
+        assertThat(summarizedFailures.get(), equalTo(PUBLISHERS * FAILURES_PER_PUBLISHER));
+    }
+
+    @Test
+    public void shouldNotSendSummaryEventsWhenDisabled() {
+        //Given
+        errorChannel.setSummaryEventsEnabled(false);
+        errorChannel.publish(String.class, METHOD, new IllegalStateException(), properties);
+
+        //When
+        errorChannel.publishSummaries();
+
+        //Then
+        verify(etlEventService, never()).sendEventMessage(any(ETLEvent.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<Map<String, Object>> failedRecordCaptor() {
+        return ArgumentCaptor.forClass((Class) Map.class);
+    }
+}
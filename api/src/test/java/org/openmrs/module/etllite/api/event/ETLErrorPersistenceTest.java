@@ -0,0 +1,256 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.event;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.dao.ETLLogDao;
+import org.openmrs.module.etllite.api.dao.ErrorLogDao;
+import org.openmrs.module.etllite.api.domain.ETLLog;
+import org.openmrs.module.etllite.api.domain.ErrorLog;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ETL Error Persistence Unit Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ETLErrorPersistenceTest extends BaseTest {
+
+    private static final String DATABASE = "db";
+
+    private static final String MAPPING = "mapping";
+
+    private static final String SOURCE_KEY = "patient_id";
+
+    private static final Integer JOB_ID = 7;
+
+    @Mock
+    private ErrorLogDao errorLogDao;
+
+    @Mock
+    private ETLLogDao etlLogDao;
+
+    @Captor
+    private ArgumentCaptor<List<ErrorLog>> errorLogs;
+
+    @InjectMocks
+    private ETLErrorPersistenceImpl errorPersistence = new ETLErrorPersistenceImpl();
+
+    private ETLLog etlLog;
+
+    @Before
+    public void setUp() {
+        errorPersistence.setFlushExecutor(Runnable::run);
+        errorPersistence.setTransactionTemplate(new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+                return action.doInTransaction(null);
+            }
+        });
+        etlLog = new ETLLog();
+        etlLog.setLoadRecords(10);
+        etlLog.setJobStatus(true);
+        etlLog.setId(JOB_ID);
+        given(etlLogDao.markFailedRecords(eq(JOB_ID), anyInt())).willReturn(1);
+    }
+
+    @Test
+    public void shouldWriteQueuedErrorsInOneBatch() {
+        //Given
+        errorPersistence.persistError(buildProperties("1"));
+        errorPersistence.persistError(buildProperties("2"));
+        errorPersistence.persistError(buildProperties("1"));
+
+        //When
+        errorPersistence.flush();
+
+        //Then
+        verify(errorLogDao, times(1)).findSourceValuesByRunDate(eq(DATABASE), eq(MAPPING), eq(SOURCE_KEY),
+                anyCollectionOf(String.class), any());
+        verify(errorLogDao, times(1)).createAll(errorLogs.capture());
+        assertThat(errorLogs.getValue().size(), equalTo(2));
+        assertThat(errorLogs.getValue().get(0).getSourceValue(), equalTo("1"));
+        verify(etlLogDao, times(1)).markFailedRecords(JOB_ID, 2);
+        verify(etlLogDao, never()).update(any(ETLLog.class));
+    }
+
+    @Test
+    public void shouldSkipErrorsAlreadyLoggedOnTheSameDay() {
+        //Given
+        given(errorLogDao.findSourceValuesByRunDate(eq(DATABASE), eq(MAPPING), eq(SOURCE_KEY),
+                anyCollectionOf(String.class), any())).willReturn(Collections.singletonList("1"));
+        errorPersistence.persistError(buildProperties("1"));
+        errorPersistence.persistError(buildProperties("2"));
+
+        //When
+        errorPersistence.flush();
+
+        //Then
+        verify(errorLogDao, times(1)).createAll(errorLogs.capture());
+        assertThat(errorLogs.getValue().size(), equalTo(1));
+        verify(etlLogDao, times(1)).markFailedRecords(JOB_ID, 1);
+    }
+
+    @Test
+    public void shouldApplyFailedRecordsToLogOfRunningJob() {
+        //Given
+        errorPersistence.registerRunningJob(etlLog);
+        errorPersistence.persistError(buildProperties("1"));
+        errorPersistence.persistError(buildProperties("2"));
+
+        //When
+        errorPersistence.flush();
+
+        //Then
+        assertThat(etlLog.getLoadRecords(), equalTo(8));
+        assertThat(etlLog.getJobStatus(), equalTo(false));
+        verify(etlLogDao, never()).markFailedRecords(anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldApplyFailedRecordsToLogRowWhenRunningJobIsUnregistered() {
+        //Given
+        errorPersistence.registerRunningJob(etlLog);
+        errorPersistence.unregisterRunningJob(etlLog);
+        errorPersistence.persistError(buildProperties("1"));
+
+        //When
+        errorPersistence.flush();
+
+        //Then
+        assertThat(etlLog.getLoadRecords(), equalTo(10));
+        verify(etlLogDao, times(1)).markFailedRecords(JOB_ID, 1);
+    }
+
+    @Test
+    public void shouldKeepFailedRecordsUntilLogRowIsVisible() {
+        //Given
+        given(etlLogDao.markFailedRecords(JOB_ID, 2)).willReturn(0, 1);
+        errorPersistence.persistError(buildProperties("1"));
+        errorPersistence.persistError(buildProperties("2"));
+
+        //When
+        errorPersistence.flush();
+
+        //Then
+        verify(etlLogDao, times(2)).markFailedRecords(JOB_ID, 2);
+
+        //When
+        errorPersistence.flush();
+
+        //Then
+        verify(etlLogDao, times(2)).markFailedRecords(JOB_ID, 2);
+    }
+
+    @Test
+    public void shouldFlushWhenQueueReachesFlushSize() {
+        //Given
+        errorPersistence.setFlushSize(2);
+
+        //When
+        errorPersistence.persistError(buildProperties("1"));
+
+        //Then
+        verify(errorLogDao, never()).createAll(anyListOf(ErrorLog.class));
+
+        //When
+        errorPersistence.persistError(buildProperties("2"));
+
+        //Then
+        verify(errorLogDao, times(1)).createAll(anyListOf(ErrorLog.class));
+    }
+
+    @Test
+    public void shouldWriteWaitingErrorsWhenQueueIsFull() {
+        //Given
+        errorPersistence.setFlushExecutor(task -> { });
+        errorPersistence.setQueueCapacity(1);
+
+        //When
+        errorPersistence.persistError(buildProperties("1"));
+        errorPersistence.persistError(buildProperties("2"));
+
+        //Then
+        verify(errorLogDao, times(1)).createAll(anyListOf(ErrorLog.class));
+    }
+
+    @Test
+    public void shouldNotThrowWhenWaitingErrorsOfFullQueueCanNotBeWritten() {
+        //Given
+        errorPersistence.setFlushExecutor(task -> { });
+        errorPersistence.setQueueCapacity(1);
+        given(errorLogDao.createAll(anyListOf(ErrorLog.class))).willThrow(new IllegalStateException("failed"));
+
+        //When
+        errorPersistence.persistError(buildProperties("1"));
+        errorPersistence.persistError(buildProperties("2"));
+
+        //Then
+        verify(errorLogDao, times(1)).createAll(anyListOf(ErrorLog.class));
+    }
+
+    @Test
+    public void shouldWriteWaitingErrorsOnFlushExecutorWhenDestroyed() {
+        //Given
+        List<Runnable> flushTasks = new ArrayList<>();
+        errorPersistence.setFlushExecutor(task -> {
+            flushTasks.add(task);
+            task.run();
+        });
+        errorPersistence.persistError(buildProperties("1"));
+
+        //When
+        errorPersistence.destroy();
+
+        //Then
+        assertThat(flushTasks.size(), equalTo(1));
+        verify(errorLogDao, times(1)).createAll(anyListOf(ErrorLog.class));
+    }
+
+    private Map<String, Object> buildProperties(String sourceValue) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(Constants.ETL_IMPORT_JOB_ID, JOB_ID);
+        properties.put(Constants.ETL_IMPORT_DATABASE, DATABASE);
+        properties.put(Constants.ETL_IMPORT_MAPPING, MAPPING);
+        properties.put(Constants.ETL_IMPORT_SOURCE_KEY, SOURCE_KEY);
+        properties.put(Constants.ETL_IMPORT_SOURCE_VALUE, sourceValue);
+        properties.put(Constants.ETL_IMPORT_FAILURE_MESSAGE, "error");
+        return properties;
+    }
+}
@@ -10,36 +10,59 @@
 
 package org.openmrs.module.etllite.api.event;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openmrs.module.etllite.api.BaseTest;
 import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.domain.Mapping;
+import org.openmrs.module.etllite.api.service.ConfigService;
 import org.openmrs.module.etllite.api.service.ETLService;
+import org.openmrs.module.etllite.api.service.MappingService;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ETLImportDataEventListenerTest extends BaseTest {
 
+    private static final String SOURCE = "source";
+
     @Mock
     private ETLService etlService;
 
+    @Mock
+    private MappingService mappingService;
+
+    @Mock
+    private ConfigService configService;
+
     @InjectMocks
     private ETLImportDataEventListener etlImportDataEventListener = new ETLImportDataEventListener();
 
+    @Before
+    public void setUp() {
+        etlImportDataEventListener.setMappingExecutor(Runnable::run);
+        given(configService.getMaxConcurrentMappings(SOURCE)).willReturn(2);
+    }
+
     @Test
     public void shouldReturnProperSubject() {
         assertThat(etlImportDataEventListener.getSubject(), equalTo(Constants.ETL_EVENT_IMPORT_DATA));
@@ -59,4 +82,23 @@ public class ETLImportDataEventListenerTest extends BaseTest {
         verify(etlService, times(2)).doETL(anyString(), anyMapOf(String.class, Object.class));
     }
 
+    @Test
+    public void shouldRunMappingAfterItsDependencies() {
+        Mapping dependent = new Mapping();
+        dependent.setName("mapping1");
+        dependent.getSettings().setDependsOn("mapping2, mapping3");
+        given(mappingService.findBySource(SOURCE)).willReturn(Arrays.asList(dependent));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(Constants.PARAM_MAPPINGS, Arrays.asList("mapping1", "mapping2", "mapping3"));
+        params.put(Constants.PARAM_SOURCE, SOURCE);
+
+        etlImportDataEventListener.handleEvent(params);
+
+        InOrder inOrder = inOrder(etlService);
+        inOrder.verify(etlService).doETL(eq("mapping2"), anyMapOf(String.class, Object.class));
+        inOrder.verify(etlService).doETL(eq("mapping3"), anyMapOf(String.class, Object.class));
+        inOrder.verify(etlService).doETL(eq("mapping1"), anyMapOf(String.class, Object.class));
+    }
+
 }
@@ -12,6 +12,7 @@ package org.openmrs.module.etllite.api.event;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -19,13 +20,20 @@ import org.openmrs.module.etllite.api.BaseTest;
 import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.service.ETLService;
 
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ETLJobEventListenerTest extends BaseTest {
@@ -33,6 +41,12 @@ public class ETLJobEventListenerTest extends BaseTest {
     @Mock
     private ETLService etlService;
 
+    @Mock
+    private Executor executor;
+
+    @Mock
+    private MapMessage mapMessage;
+
     @InjectMocks
     private ETLJobEventListener etlJobEventListener = new ETLJobEventListener();
 
@@ -49,4 +63,22 @@ public class ETLJobEventListenerTest extends BaseTest {
 
         verify(etlService).doETL(eq("mapping"), eq(properties));
     }
+
+    @Test
+    public void shouldHandleMessageWithExecutor() throws JMSException {
+        //Given
+        List<String> names = Collections.singletonList(Constants.PARAM_MAPPING);
+        when(mapMessage.getMapNames()).thenReturn(Collections.enumeration(names));
+        when(mapMessage.getObject(Constants.PARAM_MAPPING)).thenReturn("mapping");
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+        //When
+        etlJobEventListener.setExecutor(executor);
+        etlJobEventListener.onMessage(mapMessage);
+
+        //Then
+        verify(executor).execute(task.capture());
+        task.getValue().run();
+        verify(etlService).doETL(eq("mapping"), any(Map.class));
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.metrics;
+
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * ETL Metrics Registry Unit Test Class
+ */
+public class ETLMetricsRegistryTest extends BaseTest {
+
+    private static final String SOURCE = "source";
+
+    private static final String MAPPING = "mapping";
+
+    private ETLMetricsRegistry metricsRegistry = new ETLMetricsRegistry();
+
+    @Test
+    public void shouldRecordBatchesOfStage() {
+        //When
+        metricsRegistry.recordBatch(SOURCE, MAPPING, ETLStage.TRANSFORM, TimeUnit.MILLISECONDS.toNanos(3), 10, 8);
+        metricsRegistry.recordBatch(SOURCE, MAPPING, ETLStage.TRANSFORM, TimeUnit.MILLISECONDS.toNanos(200), 10, 9);
+
+        //Then
+        StageMetrics transform = metricsRegistry.getMappingMetrics(SOURCE, MAPPING).getStage(ETLStage.TRANSFORM);
+        assertThat(transform.getRowsIn(), equalTo(20L));
+        assertThat(transform.getRowsOut(), equalTo(17L));
+        assertThat(transform.getBatchLatency().getCount(), equalTo(2L));
+        assertThat(transform.getBatchLatency().getMeanMillis(), closeTo(101.5, 0.001));
+        assertThat(transform.getBatchLatency().getMaxMillis(), closeTo(200, 0.001));
+        assertThat(transform.getBatchLatency().getBuckets().get("5"), equalTo(1L));
+        assertThat(transform.getBatchLatency().getBuckets().get("500"), equalTo(1L));
+        assertThat(transform.getRowsPerSecond(), closeTo(20 / 0.203, 0.001));
+        assertThat(metricsRegistry.getMappingMetrics(SOURCE, MAPPING).getStage(ETLStage.LOAD).getRowsIn(),
+                equalTo(0L));
+    }
+
+    @Test
+    public void shouldCountLongDurationsInOverflowBucket() {
+        //When
+        metricsRegistry.recordBatch(SOURCE, MAPPING, ETLStage.LOAD, TimeUnit.MINUTES.toNanos(2), 1, 1);
+
+        //Then
+        Histogram latency = metricsRegistry.getMappingMetrics(SOURCE, MAPPING).getStage(ETLStage.LOAD)
+                .getBatchLatency();
+        assertThat(latency.getBuckets().get("+Inf"), equalTo(1L));
+        assertThat(latency.getBuckets().get("60000"), equalTo(0L));
+    }
+
+    @Test
+    public void shouldRecordErrorsAndTimeToFirstRow() {
+        //When
+        metricsRegistry.recordError(SOURCE, MAPPING, ETLStage.LOAD);
+        metricsRegistry.recordTimeToFirstRow(SOURCE, MAPPING, TimeUnit.MILLISECONDS.toNanos(40));
+
+        //Then
+        MappingMetrics mappingMetrics = metricsRegistry.getMappingMetrics(SOURCE, MAPPING);
+        assertThat(mappingMetrics.getStage(ETLStage.LOAD).getErrors(), equalTo(1L));
+        assertThat(mappingMetrics.getStage(ETLStage.EXTRACT).getTimeToFirstRow().getMeanMillis(), closeTo(40, 0.001));
+    }
+
+    @Test
+    public void shouldReturnMetricsOfAllMappingsUntilReset() {
+        //Given
+        metricsRegistry.recordError("b", MAPPING, ETLStage.LOAD);
+        metricsRegistry.recordError("a", MAPPING, ETLStage.LOAD);
+        MappingMetrics first = metricsRegistry.getMappingMetrics("a", MAPPING);
+        MappingMetrics second = metricsRegistry.getMappingMetrics("b", MAPPING);
+
+        //When & Then
+        assertThat(metricsRegistry.getAllMetrics(), contains(sameInstance(first), sameInstance(second)));
+        metricsRegistry.reset();
+        assertThat(metricsRegistry.getAllMetrics().isEmpty(), equalTo(true));
+    }
+}
@@ -10,6 +10,7 @@
 
 package org.openmrs.module.etllite.api.service;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
@@ -22,6 +23,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.openmrs.module.etllite.api.BaseTest;
 import org.openmrs.module.etllite.api.ETLTestHelper;
 import org.openmrs.module.etllite.api.builder.ConfigBuilder;
+import org.openmrs.module.etllite.api.cache.ServiceCache;
 import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.contract.ConfigRequestWrapper;
 import org.openmrs.module.etllite.api.domain.Config;
@@ -44,6 +46,9 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
@@ -83,6 +88,9 @@ public class ConfigServiceTest extends BaseTest {
     @Mock
     private IOUtils ioUtils;
 
+    @Mock
+    private ServiceCache serviceCache;
+
     @InjectMocks
     private ConfigServiceImpl configService = new ConfigServiceImpl();
 
@@ -170,6 +178,61 @@ public class ConfigServiceTest extends BaseTest {
         assertTrue(configService.allConfigs().isEmpty());
     }
 
+    @Test
+    public void shouldBackETLDatabaseWithConnectionPool() {
+        HikariDataSource dataSource = (HikariDataSource) configService.getDataSource(ETLTestHelper.ETL_DB_NAME);
+        assertThat(dataSource.getJdbcUrl(), is(ETLTestHelper.ETL_DB_URL));
+        assertThat(dataSource.getUsername(), is(ETLTestHelper.ETL_DB_USER));
+        assertThat(dataSource.getMaximumPoolSize(), is(Constants.DEFAULT_POOL_SIZE));
+        assertThat(dataSource.getIdleTimeout(), is(Constants.DEFAULT_POOL_IDLE_TIMEOUT));
+        assertThat(dataSource.getMaxLifetime(), is(Constants.DEFAULT_POOL_MAX_LIFETIME));
+    }
+
+    @Test
+    public void shouldKeepConnectionPoolIfDatabaseSettingsAreNotChanged() throws IOException {
+        HikariDataSource dataSource = (HikariDataSource) configService.getDataSource(ETLTestHelper.ETL_DB_NAME);
+        mockGetRawConfig(json(configRequestWrapper));
+
+        configService.initialize();
+
+        assertSame(dataSource, configService.getDataSource(ETLTestHelper.ETL_DB_NAME));
+        assertFalse(dataSource.isClosed());
+    }
+
+    @Test
+    public void shouldRebuildConnectionPoolIfDatabaseSettingsAreChanged() throws IOException {
+        HikariDataSource dataSource = (HikariDataSource) configService.getDataSource(ETLTestHelper.ETL_DB_NAME);
+        configRequestWrapper.getDatabases().get(0).setPoolSize(2);
+        configRequestWrapper.getDatabases().get(0).setValidationQuery(ETLTestHelper.ETL_TEST_QUERY);
+        mockGetRawConfig(json(configRequestWrapper));
+
+        configService.initialize();
+
+        HikariDataSource newDataSource = (HikariDataSource) configService.getDataSource(ETLTestHelper.ETL_DB_NAME);
+        assertNotSame(dataSource, newDataSource);
+        assertTrue(dataSource.isClosed());
+        assertThat(newDataSource.getMaximumPoolSize(), is(2));
+        assertThat(newDataSource.getConnectionTestQuery(), is(ETLTestHelper.ETL_TEST_QUERY));
+    }
+
+    @Test
+    public void shouldCloseConnectionPoolWhenETLDatabaseIsDeleted() {
+        HikariDataSource dataSource = (HikariDataSource) configService.getDataSource(ETLTestHelper.ETL_DB_NAME);
+
+        configService.deleteConfig(ETLTestHelper.ETL_DB_NAME);
+
+        assertTrue(dataSource.isClosed());
+        assertNull(configService.getDataSource(ETLTestHelper.ETL_DB_NAME));
+    }
+
+    @Test
+    public void shouldReturnDefaultMaxConcurrentMappingsIfNotDefined() {
+        assertThat(configService.getMaxConcurrentMappings(ETLTestHelper.ETL_DB_NAME),
+                is(Constants.DEFAULT_MAX_CONCURRENT_MAPPINGS));
+        assertThat(configService.getMaxConcurrentMappings(ETLTestHelper.NON_EXISTING_DB),
+                is(Constants.DEFAULT_MAX_CONCURRENT_MAPPINGS));
+    }
+
     @Test
     public void shouldReturnServicesWhenGetServicesIsCalled() {
         String services = configService.getServices();
@@ -218,6 +281,7 @@ public class ConfigServiceTest extends BaseTest {
         assertThat(configService.allConfigs().size(), is(3));
         assertThat(configService.getConfig(ETLTestHelper.ETL_DB_NAME3).getName(), equalTo(ETLTestHelper.ETL_DB_NAME3));
         verify(settingsManagerService, times(2)).getRawConfig(ETLTestHelper.CONFIG_FILE_NAME);
+        verify(serviceCache).invalidate();
     }
 
     @Test
@@ -0,0 +1,157 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.service;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.Patient;
+import org.openmrs.Visit;
+import org.openmrs.VisitType;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.dao.ErrorLogDao;
+import org.openmrs.module.etllite.api.dao.VisitDao;
+import org.openmrs.module.etllite.api.domain.ErrorLog;
+import org.openmrs.module.etllite.api.domain.VisitErrorLog;
+import org.openmrs.module.etllite.api.service.impl.ETLErrorServiceImpl;
+import org.openmrs.module.etllite.api.util.DateUtil;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ETL Error Service Unit Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ETLErrorServiceTest extends BaseTest {
+
+    private static final String DB = "db";
+
+    private static final String MAPPING = "mapping";
+
+    private static final String PATIENT_1 = "patient1";
+
+    private static final String PATIENT_2 = "patient2";
+
+    private static final String DOSING_DATE = "12-Mar-20";
+
+    private static final Date START_DATE = new Date(1583971200000L);
+
+    private static final Date END_DATE = new Date(1586649600000L);
+
+    @Mock
+    private ErrorLogDao errorLogDao;
+
+    @Mock
+    private VisitDao visitDao;
+
+    @InjectMocks
+    private ETLErrorServiceImpl etlErrorService = new ETLErrorServiceImpl();
+
+    @Test
+    public void shouldReturnOnlyVisitsWhichWereNotCreated() {
+        //Given
+        when(errorLogDao.findByMappingAndBetweenRunDates(DB, MAPPING, START_DATE, END_DATE)).thenReturn(Arrays.asList(
+                createErrorLog(PATIENT_1 + "~Dosing~" + DOSING_DATE),
+                createErrorLog(PATIENT_2 + "~Dosing~" + DOSING_DATE),
+                createErrorLog(PATIENT_1 + "~Follow-up~" + DOSING_DATE)));
+        when(visitDao.findByPatientUuids(new HashSet<>(Arrays.asList(PATIENT_1, PATIENT_2))))
+                .thenReturn(Collections.singletonList(createVisit(PATIENT_1, "dosing", DOSING_DATE)));
+
+        //When
+        List<VisitErrorLog> result = etlErrorService.getVisitErrorLogs(DB, MAPPING, START_DATE, END_DATE);
+
+        //Then
+        assertThat(result.size(), equalTo(2));
+        assertThat(result.get(0).getUuid(), equalTo(PATIENT_2));
+        assertThat(result.get(1).getUuid(), equalTo(PATIENT_1));
+        assertThat(result.get(1).getVisitPurpose(), equalTo("Follow-up"));
+    }
+
+    @Test
+    public void shouldReturnVisitsWithUnparseableDosingDateAsNotCreated() {
+        //Given
+        when(errorLogDao.findByMappingAndBetweenRunDates(DB, MAPPING, START_DATE, END_DATE)).thenReturn(Arrays.asList(
+                createErrorLog(PATIENT_1 + "~Dosing~" + DOSING_DATE),
+                createErrorLog(PATIENT_1 + "~Dosing~not a date"),
+                createErrorLog(PATIENT_2 + "~Dosing~not a date")));
+        when(visitDao.findByPatientUuids(new HashSet<>(Arrays.asList(PATIENT_1, PATIENT_2))))
+                .thenReturn(Collections.singletonList(createVisit(PATIENT_1, "dosing", DOSING_DATE)));
+
+        //When
+        List<VisitErrorLog> result = etlErrorService.getVisitErrorLogs(DB, MAPPING, START_DATE, END_DATE);
+
+        //Then
+        assertThat(result.size(), equalTo(2));
+        assertThat(result.get(0).getUuid(), equalTo(PATIENT_1));
+        assertThat(result.get(0).getDosingDate(), equalTo("not a date"));
+        assertThat(result.get(1).getUuid(), equalTo(PATIENT_2));
+    }
+
+    @Test
+    public void shouldReconcilePageOfErrorLogs() {
+        //Given
+        when(errorLogDao.findByMappingAndBetweenRunDates(DB, MAPPING, START_DATE, END_DATE, 100, 50))
+                .thenReturn(Collections.singletonList(createErrorLog(PATIENT_1 + "~Dosing~" + DOSING_DATE)));
+        when(visitDao.findByPatientUuids(Collections.singleton(PATIENT_1))).thenReturn(Collections.emptyList());
+
+        //When
+        List<VisitErrorLog> result = etlErrorService.getVisitErrorLogs(DB, MAPPING, START_DATE, END_DATE, 100, 50);
+
+        //Then
+        assertThat(result.size(), equalTo(1));
+        assertThat(result.get(0).getDosingDate(), equalTo(DOSING_DATE));
+    }
+
+    @Test
+    public void shouldNotReadVisitsWhenThereAreNoErrorLogs() {
+        //Given
+        when(errorLogDao.findByMappingAndBetweenRunDates(DB, MAPPING, START_DATE, END_DATE))
+                .thenReturn(Collections.emptyList());
+
+        //When
+        List<VisitErrorLog> result = etlErrorService.getVisitErrorLogs(DB, MAPPING, START_DATE, END_DATE);
+
+        //Then
+        assertThat(result.size(), equalTo(0));
+        verify(visitDao, never()).findByPatientUuids(anyCollectionOf(String.class));
+    }
+
+    private ErrorLog createErrorLog(String sourceValue) {
+        ErrorLog errorLog = new ErrorLog();
+        errorLog.setDatabaseName(DB);
+        errorLog.setMapping(MAPPING);
+        errorLog.setSourceValue(sourceValue);
+        return errorLog;
+    }
+
+    private Visit createVisit(String patientUuid, String visitType, String startDate) {
+        Patient patient = new Patient();
+        patient.setUuid(patientUuid);
+        Visit visit = new Visit();
+        visit.setPatient(patient);
+        visit.setVisitType(new VisitType(visitType, null));
+        visit.setStartDatetime(DateUtil.parse(startDate, "dd-MMM-yy"));
+        return visit;
+    }
+}
@@ -15,28 +15,45 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.openmrs.api.context.ServiceContext;
 import org.openmrs.module.etllite.api.BaseTest;
 import org.openmrs.module.etllite.api.ETLTestHelper;
+import org.openmrs.module.etllite.api.cache.ServiceCache;
+import org.openmrs.module.etllite.api.cache.TemplateCache;
 import org.openmrs.module.etllite.api.dao.ETLLogDao;
 import org.openmrs.module.etllite.api.dao.MappingDao;
+import org.openmrs.module.etllite.api.dao.WatermarkDao;
 import org.openmrs.module.etllite.api.domain.ETLLog;
 import org.openmrs.module.etllite.api.domain.Mapping;
+import org.openmrs.module.etllite.api.domain.Watermark;
+import org.openmrs.module.etllite.api.domain.types.DatabaseTypes;
+import org.openmrs.module.etllite.api.engine.BatchHandler;
+import org.openmrs.module.etllite.api.event.ETLErrorChannel;
 import org.openmrs.module.etllite.api.exception.ETLException;
 import org.openmrs.module.etllite.api.exception.MappingAlreadyExistsException;
 import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.openmrs.module.etllite.api.metrics.ETLMetricsRegistry;
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+import org.openmrs.module.etllite.api.metrics.StageMetrics;
 import org.openmrs.module.etllite.api.service.impl.ETLServiceImpl;
 import org.openmrs.module.etllite.api.util.DateUtil;
+import org.openmrs.module.etllite.api.util.ETLUtil;
 import org.openmrs.module.etllite.api.util.Util;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import java.io.IOException;
@@ -52,7 +69,13 @@ import java.util.TimeZone;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -66,6 +89,7 @@ import static org.mockito.Mockito.verify;
 public class ETLServiceTest extends BaseTest {
 
     private static final String BEAN_NAME = "patientDataService";
+    private static final int PREVIEW_ROWS = 10;
     private Mapping mapping;
     private Mapping dbMapping;
     private Date dateTime;
@@ -97,6 +121,18 @@ public class ETLServiceTest extends BaseTest {
     @Mock
     private ETLLogDao etlLogDao;
 
+    @Mock
+    private WatermarkDao watermarkDao;
+
+    @Mock
+    private ETLErrorChannel errorChannel;
+
+    @Spy
+    private TemplateCache templateCache = new TemplateCache();
+
+    @Spy
+    private ServiceCache serviceCache = new ServiceCache();
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(ETLServiceTest.class);
@@ -117,6 +153,7 @@ public class ETLServiceTest extends BaseTest {
 
         params.put("patientId", "123");
         params.put("source", ETLTestHelper.MAPPING_SOURCE);
+        serviceCache.setUtil(util);
         ((ETLServiceImpl) etlService).initialize();
     }
 
@@ -137,6 +174,120 @@ public class ETLServiceTest extends BaseTest {
         verify(configService, times(1)).getDataSource(ETLTestHelper.MAPPING_SOURCE);
     }
 
+    @Test
+    public void shouldExtractDataInBatches() throws MappingNotFoundException, IOException, ETLException {
+        //Given
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        int extractedRows = etlService.extractInBatches(mapping.getName(), params, mock(BatchHandler.class));
+
+        //Then
+        assertThat(extractedRows, equalTo(0));
+        verify(configService, times(1)).getDataSource(ETLTestHelper.MAPPING_SOURCE);
+        verify(namedParameterJdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public void shouldExtractKeyRangesOfPartitionedMapping()
+            throws MappingNotFoundException, IOException, ETLException {
+        //Given
+        dbMapping.getSettings().setPartitionColumn("patient_id");
+        dbMapping.getSettings().setPartitionCount(2);
+        ((ETLServiceImpl) etlService).setBatchExecutor(command -> new Thread(command).start());
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("minValue", 1);
+        bounds.put("maxValue", 10);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(configService.getDatabaseType(ETLTestHelper.MAPPING_SOURCE)).willReturn(DatabaseTypes.POSTGRESQL);
+        given(util.getNamedParameterJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE))
+                .willReturn(namedParameterJdbcTemplate);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, DatabaseTypes.POSTGRESQL))
+                .willReturn(namedParameterJdbcTemplate);
+        given(namedParameterJdbcTemplate.queryForMap(anyString(), anyMapOf(String.class, Object.class)))
+                .willReturn(bounds);
+
+        //When
+        int extractedRows = etlService.extractInBatches(mapping.getName(), params, mock(BatchHandler.class));
+
+        //Then
+        assertThat(extractedRows, equalTo(0));
+        // two key ranges and the range of the rows without the key
+        verify(namedParameterJdbcTemplate, times(3)).query(anyString(), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public void shouldExposeWatermarkToExtractQuery() throws MappingNotFoundException, IOException, ETLException {
+        //Given
+        dbMapping.setQuery("SELECT * FROM patient WHERE patient_id > $watermark");
+        dbMapping.getSettings().setWatermarkColumn("patient_id");
+        Watermark watermark = new Watermark();
+        watermark.setLastValue("42");
+        given(watermarkDao.findByMapping(mapping.getSource(), mapping.getName())).willReturn(watermark);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        etlService.extractInBatches(mapping.getName(), params, mock(BatchHandler.class));
+
+        //Then
+        verify(namedParameterJdbcTemplate, times(1)).query(eq("SELECT * FROM patient WHERE patient_id > 42"),
+                any(SqlParameterSource.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public void shouldPushRowLimitDownIntoExtractQuery() throws MappingNotFoundException, IOException {
+        //Given
+        dbMapping.setQuery("SELECT * FROM patient;");
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(configService.getDatabaseType(ETLTestHelper.MAPPING_SOURCE)).willReturn(DatabaseTypes.MSSQL);
+        given(util.getLimitedJdbcTemplate(dataSource, PREVIEW_ROWS)).willReturn(namedParameterJdbcTemplate);
+        given(namedParameterJdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .willReturn(new ArrayList<>());
+
+        //When
+        etlService.extract(mapping.getName(), params, PREVIEW_ROWS);
+
+        //Then
+        verify(namedParameterJdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class),
+                any(RowMapper.class));
+        verify(namedParameterJdbcTemplate).query(eq("SELECT TOP 10 * FROM (\nSELECT * FROM patient\n) limited_query"),
+                any(SqlParameterSource.class), any(RowMapper.class));
+    }
+
+    @Test
+    public void shouldExtractWithoutPushedDownLimitIfDatabaseRejectsIt() throws MappingNotFoundException, IOException {
+        //Given
+        dbMapping.setQuery("SELECT * FROM patient LIMIT 5");
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(configService.getDatabaseType(ETLTestHelper.MAPPING_SOURCE)).willReturn(DatabaseTypes.MYSQL);
+        given(util.getLimitedJdbcTemplate(dataSource, PREVIEW_ROWS)).willReturn(namedParameterJdbcTemplate);
+        given(namedParameterJdbcTemplate.query(eq("SELECT * FROM patient LIMIT 5\nLIMIT 10"),
+                any(SqlParameterSource.class), any(RowMapper.class)))
+                .willThrow(new BadSqlGrammarException("extract", "LIMIT", new SQLException()));
+        given(namedParameterJdbcTemplate.query(eq("SELECT * FROM patient LIMIT 5"),
+                any(SqlParameterSource.class), any(RowMapper.class)))
+                .willReturn(new ArrayList<>());
+
+        //When
+        List<Map<String, Object>> rows = etlService.extract(mapping.getName(), params, PREVIEW_ROWS);
+
+        //Then
+        assertThat(rows.size(), equalTo(0));
+        verify(namedParameterJdbcTemplate, times(2)).query(anyString(), any(SqlParameterSource.class),
+                any(RowMapper.class));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentIfMappingIsNullWhenExtractIsCalled()
             throws MappingNotFoundException, IOException {
@@ -160,6 +311,94 @@ public class ETLServiceTest extends BaseTest {
         verify(mappingDao, times(1)).findByNameAndSource(mapping.getName(), mapping.getSource());
     }
 
+    @Test
+    public void shouldRecordTransformMetrics() throws ETLException, MappingNotFoundException {
+        //Given
+        ETLMetricsRegistry metricsRegistry = new ETLMetricsRegistry();
+        ((ETLServiceImpl) etlService).setMetricsRegistry(metricsRegistry);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+
+        //When
+        etlService.transform(mapping.getName(), params, rows);
+
+        //Then
+        StageMetrics transform = metricsRegistry.getMappingMetrics(dbMapping.getSource(), dbMapping.getName())
+                .getStage(ETLStage.TRANSFORM);
+        assertThat(transform.getBatchLatency().getCount(), equalTo(1L));
+        assertThat(transform.getErrors(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldReuseParsedTemplateWhenTransformIsCalledAgain() throws ETLException, MappingNotFoundException {
+        //Given
+        List<Map<String, Object>> rows = new ArrayList<>();
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+
+        //When
+        etlService.transform(mapping.getName(), params, rows);
+        etlService.transform(mapping.getName(), params, rows);
+
+        //Then
+        assertThat(templateCache.getMissCount(), equalTo(1L));
+        assertThat(templateCache.getHitCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldReadMappingOnceWhenTransformAndLoadAreCalled() throws ETLException, MappingNotFoundException {
+        //Given
+        List<Map<String, Object>> rows = new ArrayList<>();
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(util.parseStringToMap(configService.getServices())).willReturn(new HashMap<>());
+
+        //When
+        List<Map<String, Object>> outs = etlService.transform(mapping.getName(), params, rows);
+        etlService.load(mapping.getName(), params, rows, outs, etlLog.getId());
+
+        //Then
+        verify(mappingDao, times(1)).findByNameAndSource(mapping.getName(), mapping.getSource());
+    }
+
+    @Test
+    public void shouldTransformDataUsingDeclarativeTransform() throws ETLException, MappingNotFoundException {
+        //Given
+        dbMapping.setTransformDefinition("{\"columns\": [{\"name\": \"age\", \"source\": \"patient_age\", "
+                + "\"type\": \"integer\"}, {\"name\": \"gender\", \"source\": \"sex\", "
+                + "\"lookup\": {\"M\": \"Male\"}, \"default\": \"Unknown\"}, "
+                + "{\"name\": \"location\", \"value\": \"Unknown Location\"}]}");
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Map<String, Object> row = new HashMap<>();
+        row.put("patient_age", "42");
+        row.put("sex", "M");
+        rows.add(row);
+
+        //When
+        List<Map<String, Object>> outs = etlService.transform(mapping.getName(), params, rows);
+
+        //Then
+        assertThat(outs.size(), equalTo(1));
+        assertThat(outs.get(0).get("age"), equalTo((Object) 42));
+        assertThat(outs.get(0).get("gender"), equalTo((Object) "Male"));
+        assertThat(outs.get(0).get("location"), equalTo((Object) "Unknown Location"));
+        assertThat(outs.get(0).size(), equalTo(3));
+    }
+
+    @Test(expected = ETLException.class)
+    public void shouldThrowETLExceptionIfDeclarativeTransformCanNotConvertValue()
+            throws ETLException, MappingNotFoundException {
+        //Given
+        dbMapping.setTransformDefinition("{\"columns\": [{\"name\": \"age\", \"type\": \"integer\"}]}");
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Map<String, Object> row = new HashMap<>();
+        row.put("age", "unknown");
+        rows.add(row);
+
+        //When
+        etlService.transform(mapping.getName(), params, rows);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentIfMappingIsNullWhenTransformIsCalled()
             throws ETLException, MappingNotFoundException {
@@ -200,6 +439,74 @@ public class ETLServiceTest extends BaseTest {
         verify(util, times(1)).parseStringToMap(configService.getServices());
     }
 
+    @Test
+    public void shouldResolveServicesOnceWhenLoadIsCalledAgain() throws ETLException, MappingNotFoundException {
+        Map<String, String> services = new HashMap<>();
+        services.put("patientSrvc", BEAN_NAME);
+        //Given
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<Map<String, Object>> outs = new ArrayList<>();
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getServices()).willReturn(ETLTestHelper.SERVICES);
+        given(util.parseStringToMap(ETLTestHelper.SERVICES)).willReturn(services);
+        given(ServiceContext.getInstance().getApplicationContext().getBean(BEAN_NAME)).willReturn(BEAN_NAME);
+
+        //When
+        etlService.load(mapping.getName(), params, rows, outs, etlLog.getId());
+        etlService.load(mapping.getName(), params, rows, outs, etlLog.getId());
+
+        //Verify
+        verify(util, times(1)).parseStringToMap(ETLTestHelper.SERVICES);
+        verify(ServiceContext.getInstance().getApplicationContext(), times(1)).getBean(BEAN_NAME);
+    }
+
+    @Test
+    public void shouldResolveServicesAgainWhenServicesConfigIsChanged() throws ETLException, MappingNotFoundException {
+        Map<String, String> services = new HashMap<>();
+        services.put("patientSrvc", BEAN_NAME);
+        String changedServices = "patientSrvc:" + BEAN_NAME;
+        //Given
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<Map<String, Object>> outs = new ArrayList<>();
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getServices()).willReturn(ETLTestHelper.SERVICES, changedServices);
+        given(util.parseStringToMap(ETLTestHelper.SERVICES)).willReturn(services);
+        given(util.parseStringToMap(changedServices)).willReturn(services);
+        given(ServiceContext.getInstance().getApplicationContext().getBean(BEAN_NAME)).willReturn(BEAN_NAME);
+
+        //When
+        etlService.load(mapping.getName(), params, rows, outs, etlLog.getId());
+        etlService.load(mapping.getName(), params, rows, outs, etlLog.getId());
+
+        //Verify
+        verify(util, times(1)).parseStringToMap(ETLTestHelper.SERVICES);
+        verify(util, times(1)).parseStringToMap(changedServices);
+    }
+
+    @Test
+    public void shouldFlushSessionAfterEachChunkOfLoadedRows() throws ETLException, MappingNotFoundException {
+        Map<String, String> services = new HashMap<>();
+        services.put("patientSrvc", "patientDataService");
+        //Given
+        ETLUtil etlUtil = mock(ETLUtil.class);
+        ((ETLServiceImpl) etlService).setEtlUtil(etlUtil);
+        dbMapping.getSettings().setFlushInterval(2);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<Map<String, Object>> outs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            outs.add(new HashMap<>());
+        }
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getServices()).willReturn(ETLTestHelper.SERVICES);
+        given(util.parseStringToMap(configService.getServices())).willReturn(services);
+        given(ServiceContext.getInstance().getApplicationContext().getBean(BEAN_NAME)).willReturn(BEAN_NAME);
+        //When
+        etlService.load(mapping.getName(), params, rows, outs, etlLog.getId());
+
+        //Verify
+        verify(etlUtil, times(3)).flushSession();
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentIfServiceNotFound() throws ETLException, MappingNotFoundException {
         Map<String, String> services = new HashMap<>();
@@ -240,17 +547,186 @@ public class ETLServiceTest extends BaseTest {
         given(etlLogDao.create(etlLog)).willReturn(etlLog);
         given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
         given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
-        given(util.getNamedParameterJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE))
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
                 .willReturn(namedParameterJdbcTemplate);
 
         //When
         etlService.doETL(mapping.getName(), params);
 
         //Verify
-        verify(mappingDao, times(2)).findByNameAndSource(mapping.getName(), mapping.getSource());
+        verify(mappingDao, times(1)).findByNameAndSource(mapping.getName(), mapping.getSource());
         verify(configService, times(1)).getDataSource(ETLTestHelper.MAPPING_SOURCE);
     }
 
+    @Test
+    public void shouldSkipETLOfMappingWhichIsAlreadyRunning() {
+        //Given
+        given(etlLogDao.create(etlLog)).willReturn(etlLog);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willAnswer(invocation -> {
+            // the same mapping is started again while it is running
+            etlService.doETL(mapping.getName(), params);
+            return dataSource;
+        });
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        verify(configService, times(2)).getDataSource(ETLTestHelper.MAPPING_SOURCE);
+    }
+
+    @Test
+    public void shouldDoETLWithParallelBatches() {
+        //Given
+        dbMapping.getSettings().setParallelism(2);
+        ((ETLServiceImpl) etlService).setBatchExecutor(Runnable::run);
+        given(etlLogDao.create(etlLog)).willReturn(etlLog);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        verify(namedParameterJdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+        verify(etlLogDao, times(1)).create(any(ETLLog.class));
+        verify(etlLogDao, times(1)).update(any(ETLLog.class));
+    }
+
+    @Test
+    public void shouldDoETLWithPipelinedBatches() {
+        //Given
+        dbMapping.getSettings().setPipelined(true);
+        ((ETLServiceImpl) etlService).setBatchExecutor(command -> new Thread(command).start());
+        given(etlLogDao.create(etlLog)).willReturn(etlLog);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        verify(namedParameterJdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+        verify(etlLogDao, times(1)).create(any(ETLLog.class));
+        verify(etlLogDao, times(1)).update(any(ETLLog.class));
+    }
+
+    @Test
+    public void shouldRecordBatchSizesOfAdaptiveRun() {
+        //Given
+        dbMapping.getSettings().setAdaptiveBatchSize(true);
+        given(etlLogDao.create(etlLog)).willReturn(etlLog);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+        ArgumentCaptor<ETLLog> logArgumentCaptor = ArgumentCaptor.forClass(ETLLog.class);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        verify(etlLogDao, times(1)).update(logArgumentCaptor.capture());
+        assertThat(logArgumentCaptor.getValue().getBatchSizes(),
+                equalTo(String.valueOf(ETLTestHelper.DEFAULT_FETCH_SIZE)));
+    }
+
+    @Test
+    public void shouldDoETLWithBufferedExtract() {
+        //Given
+        dbMapping.getSettings().setBufferExtract(true);
+        given(etlLogDao.create(etlLog)).willReturn(etlLog);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        verify(namedParameterJdbcTemplate, times(1)).query(anyString(), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+        verify(etlLogDao, times(1)).create(any(ETLLog.class));
+        verify(etlLogDao, times(1)).update(any(ETLLog.class));
+    }
+
+    @Test
+    public void shouldResumeInterruptedRunWhenMappingCommitsEachBatch() {
+        //Given
+        dbMapping.getSettings().setCommitEachBatch(true);
+        ETLLog interruptedLog = new ETLLog();
+        interruptedLog.setCheckpointOffset(10);
+        given(etlLogDao.findLatest(mapping.getSource(), mapping.getName())).willReturn(interruptedLog);
+        given(etlLogDao.create(interruptedLog)).willReturn(interruptedLog);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        verify(etlLogDao, times(1)).create(interruptedLog);
+        verify(etlLogDao, times(1)).update(interruptedLog);
+        assertThat(interruptedLog.getLoadEndTime(), equalTo(dateTime));
+        assertThat(interruptedLog.getCheckpointOffset(), equalTo(10));
+    }
+
+    @Test
+    public void shouldUseLastRunDateOfInterruptedRunWhenRunIsResumed() {
+        //Given
+        dbMapping.getSettings().setCommitEachBatch(true);
+        ETLLog interruptedLog = new ETLLog();
+        interruptedLog.setId(7);
+        interruptedLog.setCheckpointOffset(10);
+        given(etlLogDao.findLatest(mapping.getSource(), mapping.getName())).willReturn(interruptedLog);
+        given(etlLogDao.findLastRunOnBefore(mapping.getSource(), mapping.getName(), 7)).willReturn(dateTime);
+        given(etlLogDao.create(interruptedLog)).willReturn(interruptedLog);
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        verify(etlLogDao, times(1)).findLastRunOnBefore(mapping.getSource(), mapping.getName(), 7);
+        verify(etlLogDao, never()).executeQuery(mapping.getSource(), mapping.getName());
+    }
+
+    @Test
+    public void shouldApplyFailedRecordsToLogRowOnlyAfterRunningJobIsUnregistered() {
+        //Given
+        given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
+        given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
+                .willReturn(namedParameterJdbcTemplate);
+        given(etlLogDao.create(any(ETLLog.class))).willAnswer(invocation -> invocation.getArguments()[0]);
+        ArgumentCaptor<ETLLog> logArgumentCaptor = ArgumentCaptor.forClass(ETLLog.class);
+
+        //When
+        etlService.doETL(mapping.getName(), params);
+
+        //Verify
+        InOrder inOrder = inOrder(errorChannel, etlLogDao);
+        inOrder.verify(errorChannel, times(1)).registerRunningJob(logArgumentCaptor.capture());
+        inOrder.verify(errorChannel, times(1)).unregisterRunningJob(logArgumentCaptor.getValue());
+        inOrder.verify(etlLogDao, times(1)).update(logArgumentCaptor.getValue());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentIfMappingIsNullWhenDoETLIsCalled() throws ETLException {
         //Given
@@ -264,7 +740,7 @@ public class ETLServiceTest extends BaseTest {
         //Given
         given(mappingDao.findByNameAndSource(mapping.getName(), mapping.getSource())).willReturn(dbMapping);
         given(configService.getDataSource(ETLTestHelper.MAPPING_SOURCE)).willReturn(dataSource);
-        given(util.getNamedParameterJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE))
+        given(util.getStreamingJdbcTemplate(dataSource, ETLTestHelper.DEFAULT_FETCH_SIZE, null))
                 .willReturn(namedParameterJdbcTemplate);
         given(etlLogDao.create(etlLog)).willReturn(etlLog);
 
@@ -274,7 +750,7 @@ public class ETLServiceTest extends BaseTest {
         etlService.doETL(mapping.getName(), params);
 
         //Verify
-        verify(mappingDao, times(2)).findByNameAndSource(mapping.getName(), mapping.getSource());
+        verify(mappingDao, times(1)).findByNameAndSource(mapping.getName(), mapping.getSource());
         verify(configService, times(1)).getDataSource(ETLTestHelper.MAPPING_SOURCE);
         verify(etlLogDao, times(1)).create(logArgumentCaptor.capture());
         verify(etlLogDao, times(1)).update(etlLog);
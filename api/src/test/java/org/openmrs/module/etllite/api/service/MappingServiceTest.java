@@ -20,8 +20,11 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openmrs.module.etllite.api.BaseTest;
 import org.openmrs.module.etllite.api.ETLTestHelper;
+import org.openmrs.module.etllite.api.cache.MappingCache;
+import org.openmrs.module.etllite.api.cache.TemplateCache;
 import org.openmrs.module.etllite.api.constants.Constants;
 import org.openmrs.module.etllite.api.dao.MappingDao;
+import org.openmrs.module.etllite.api.dao.WatermarkDao;
 import org.openmrs.module.etllite.api.domain.Mapping;
 import org.openmrs.module.etllite.api.event.ETLEvent;
 import org.openmrs.module.etllite.api.exception.ETLException;
@@ -41,6 +44,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.never;
@@ -56,6 +60,8 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 @RunWith(MockitoJUnitRunner.class)
 public class MappingServiceTest extends BaseTest {
 
+    private static final int DEFAULT_TEST_RESULTS_SIZE = 10;
+
     private Mapping mapping;
 
     private Mapping dbMapping;
@@ -76,6 +82,15 @@ public class MappingServiceTest extends BaseTest {
     @Mock
     private ETLSchedulerService schedulerService;
 
+    @Mock
+    private TemplateCache templateCache;
+
+    @Mock
+    private MappingCache mappingCache;
+
+    @Mock
+    private WatermarkDao watermarkDao;
+
     @Before
     public void setUp() {
         mapping = ETLTestHelper.setUpNewMapping();
@@ -104,6 +119,7 @@ public class MappingServiceTest extends BaseTest {
 
         verify(mappingDao, times(1)).findByNameAndSource(dbMapping.getName(), dbMapping.getSource());
         verify(mappingDao, times(1)).create(mapping);
+        verify(mappingCache, times(1)).invalidate(mapping.getSource(), mapping.getName());
         verify(schedulerService, times(1)).safeScheduleJob(eventArgumentCaptor.capture(),
                 eq(mapping.getCronExpression()), notNull(ETLJobTask.class));
         checkScheduleCronAsserts(eventArgumentCaptor);
@@ -171,6 +187,9 @@ public class MappingServiceTest extends BaseTest {
         ETLTestHelper.checkMappingAsserts(mappingToBeUpdated, updatedMapping);
         verify(mappingDao, times(1)).update(mappingToBeUpdated);
         verify(mappingDao, times(1)).findById(mappingToBeUpdated.getId());
+        verify(templateCache, times(1)).invalidate(mappingToBeUpdated.getId());
+        verify(mappingCache, times(1)).invalidate(dbMapping.getSource(), ETLTestHelper.MAPPING_NAME);
+        verify(mappingCache, times(1)).invalidate(mappingToBeUpdated.getSource(), "updatedName");
     }
 
     @Test
@@ -256,6 +275,38 @@ public class MappingServiceTest extends BaseTest {
         }
     }
 
+    @Test
+    public void shouldMoveWatermarkWhenMappingIsRenamed() throws MappingNotFoundException {
+        //Given
+        Mapping mappingToBeUpdated = ETLTestHelper.setUpDbMapping();
+        mappingToBeUpdated.setName("updatedName");
+        given(mappingDao.findById(mappingToBeUpdated.getId())).willReturn(dbMapping);
+
+        //When
+        mappingService.update(mappingToBeUpdated);
+
+        //Then
+        verify(watermarkDao, times(1)).moveMapping(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME,
+                ETLTestHelper.MAPPING_SOURCE, "updatedName");
+        verify(watermarkDao, never()).deleteByMapping(anyString(), anyString());
+    }
+
+    @Test
+    public void shouldDeleteWatermarkOfPreviousNameWhenWatermarkColumnChanges() throws MappingNotFoundException {
+        //Given
+        Mapping mappingToBeUpdated = ETLTestHelper.setUpDbMapping();
+        mappingToBeUpdated.setName("updatedName");
+        mappingToBeUpdated.getSettings().setWatermarkColumn("patient_id");
+        given(mappingDao.findById(mappingToBeUpdated.getId())).willReturn(dbMapping);
+
+        //When
+        mappingService.update(mappingToBeUpdated);
+
+        //Then
+        verify(watermarkDao, times(1)).deleteByMapping(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME);
+        verify(watermarkDao, never()).moveMapping(anyString(), anyString(), anyString(), anyString());
+    }
+
     @Test
     public void shouldDeleteMapping() throws MappingNotFoundException {
         //Given
@@ -267,6 +318,9 @@ public class MappingServiceTest extends BaseTest {
         //Then
         verify(mappingDao, times(1)).findById(dbMapping.getId());
         verify(mappingDao, times(1)).delete(dbMapping);
+        verify(templateCache, times(1)).invalidate(dbMapping.getId());
+        verify(mappingCache, times(1)).invalidate(dbMapping.getSource(), dbMapping.getName());
+        verify(watermarkDao, times(1)).deleteByMapping(dbMapping.getSource(), dbMapping.getName());
         verify(schedulerService, times(1)).safeUnscheduleJob(Constants.SUBJECT_RUNNER,
                 generateJobId(dbMapping.getSource(), dbMapping.getName()));
     }
@@ -359,7 +413,7 @@ public class MappingServiceTest extends BaseTest {
         //Given
         given(mappingDao.findById(dbMapping.getId())).willReturn(dbMapping);
 
-        given(etlService.extract(dbMapping.getName(), params)).willReturn(extractedData);
+        given(etlService.extract(dbMapping.getName(), params, DEFAULT_TEST_RESULTS_SIZE)).willReturn(extractedData);
         given(etlService.transform(dbMapping.getName(), params, extractedData)).willReturn(transformedData);
 
         //When
@@ -10,6 +10,7 @@
 
 package org.openmrs.module.etllite.api.service.it;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,7 +20,6 @@ import org.openmrs.module.etllite.api.domain.Config;
 import org.openmrs.module.etllite.api.service.ConfigService;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import javax.sql.DataSource;
 import java.io.IOException;
@@ -90,10 +90,10 @@ public class ConfigServiceBundleIT extends BaseModuleContextSensitiveTest {
     public void shouldReturnDataSourceForASpecifiedETLDatabase() {
         createETLDatabase();
         DataSource ds = configService.getDataSource(ETLTestHelper.ETL_DB_NAME);
-        DriverManagerDataSource dataSource = (DriverManagerDataSource) ds;
+        HikariDataSource dataSource = (HikariDataSource) ds;
         assertThat(dataSource.getUsername(), is(ETLTestHelper.H2_TEST_DB_USER));
         assertThat(dataSource.getPassword(), is(ETLTestHelper.H2_TEST_DB_PASSWORD));
-        assertThat(dataSource.getUrl(), is(ETLTestHelper.H2_TEST_DB_URL));
+        assertThat(dataSource.getJdbcUrl(), is(ETLTestHelper.H2_TEST_DB_URL));
     }
 
     @Test(expected = IllegalArgumentException.class)
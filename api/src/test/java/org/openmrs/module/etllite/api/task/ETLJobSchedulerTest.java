@@ -0,0 +1,228 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.task;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.service.ETLService;
+
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ETL Job Scheduler Unit Test Class
+ */
+public class ETLJobSchedulerTest extends BaseTest {
+
+    private static final String SOURCE = "source";
+
+    private static final String OTHER_SOURCE = "otherSource";
+
+    private static final long MISFIRE_THRESHOLD = 60000L;
+
+    private static final long JITTER = 50L;
+
+    // long enough, so the firing is practically never run without a delay
+    private static final long STOPPED_SCHEDULER_JITTER = 3600000L;
+
+    private static final long START_TIMEOUT = 5000L;
+
+    private final Deque<Runnable> startedJobs = new ConcurrentLinkedDeque<>();
+
+    private final Map<String, Object> params = new HashMap<>();
+
+    private ETLService etlService = mock(ETLService.class);
+
+    private ETLJobScheduler jobScheduler = new ETLJobScheduler();
+
+    @Before
+    public void setUp() {
+        jobScheduler.setEtlService(etlService);
+        jobScheduler.setExecutor(startedJobs::add);
+        jobScheduler.setMisfireThreshold(MISFIRE_THRESHOLD);
+        jobScheduler.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        jobScheduler.destroy();
+    }
+
+    @Test
+    public void shouldRunMappingOnceMoreIfItIsFiredWhileRunning() {
+        //Given
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+
+        //When
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+
+        //Then
+        assertThat(startedJobs.size(), equalTo(1));
+        startedJobs.poll().run();
+        assertThat(startedJobs.size(), equalTo(1));
+        startedJobs.poll().run();
+        assertThat(startedJobs.size(), equalTo(0));
+        verify(etlService, times(2)).doETL(eq("mapping"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldSkipFiringOfRunningMappingIfOverlapPolicyIsSkip() {
+        //Given
+        jobScheduler.setOverlapPolicy(ETLJobScheduler.OverlapPolicy.SKIP);
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+
+        //When
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+
+        //Then
+        startedJobs.poll().run();
+        assertThat(startedJobs.size(), equalTo(0));
+        verify(etlService, times(1)).doETL(eq("mapping"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldLimitRunningJobsOfSource() {
+        //Given
+        jobScheduler.setMaxConcurrentJobsPerSource(1);
+
+        //When
+        jobScheduler.fire(SOURCE, "first", params, new Date());
+        jobScheduler.fire(SOURCE, "second", params, new Date());
+        jobScheduler.fire(OTHER_SOURCE, "third", params, new Date());
+
+        //Then
+        assertThat(jobScheduler.getRunningJobs(), equalTo(2));
+        assertThat(jobScheduler.getWaitingJobs(), equalTo(1));
+        startedJobs.poll().run();
+        assertThat(jobScheduler.getRunningJobs(), equalTo(2));
+        assertThat(jobScheduler.getWaitingJobs(), equalTo(0));
+        verify(etlService, times(1)).doETL(eq("first"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldLimitRunningJobs() {
+        //Given
+        jobScheduler.setMaxConcurrentJobs(1);
+
+        //When
+        jobScheduler.fire(SOURCE, "first", params, new Date());
+        jobScheduler.fire(OTHER_SOURCE, "second", params, new Date());
+
+        //Then
+        assertThat(startedJobs.size(), equalTo(1));
+        startedJobs.poll().run();
+        assertThat(startedJobs.size(), equalTo(1));
+        startedJobs.poll().run();
+        verify(etlService, times(1)).doETL(eq("first"), anyMapOf(String.class, Object.class));
+        verify(etlService, times(1)).doETL(eq("second"), anyMapOf(String.class, Object.class));
+        assertThat(jobScheduler.getRunningJobs(), equalTo(0));
+    }
+
+    @Test
+    public void shouldRunMissedFiringOnce() {
+        //Given
+        Date missedTime = new Date(System.currentTimeMillis() - 2 * MISFIRE_THRESHOLD);
+
+        //When
+        jobScheduler.fire(SOURCE, "mapping", params, missedTime);
+
+        //Then
+        startedJobs.poll().run();
+        verify(etlService, times(1)).doETL(eq("mapping"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldSkipMissedFiringIfMisfirePolicyIsSkip() {
+        //Given
+        jobScheduler.setMisfirePolicy(ETLJobScheduler.MisfirePolicy.SKIP);
+        Date missedTime = new Date(System.currentTimeMillis() - 2 * MISFIRE_THRESHOLD);
+
+        //When
+        jobScheduler.fire(SOURCE, "mapping", params, missedTime);
+
+        //Then
+        assertThat(startedJobs.size(), equalTo(0));
+        verify(etlService, never()).doETL(anyString(), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldStartJobAfterJitter() throws InterruptedException {
+        //Given
+        jobScheduler.setMaxJitter(JITTER);
+
+        //When
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+
+        //Then
+        awaitStartedJob();
+        startedJobs.poll().run();
+        verify(etlService, times(1)).doETL(eq("mapping"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldDropDelayedFiringAfterSchedulerIsStopped() throws InterruptedException {
+        //Given
+        jobScheduler.setMaxJitter(STOPPED_SCHEDULER_JITTER);
+        jobScheduler.destroy();
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+        jobScheduler.initialize();
+        jobScheduler.setMaxJitter(JITTER);
+
+        //When
+        jobScheduler.fire(SOURCE, "mapping", params, new Date());
+
+        //Then
+        awaitStartedJob();
+        startedJobs.poll().run();
+        verify(etlService, times(1)).doETL(eq("mapping"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldStartNextJobIfMappingFails() {
+        //Given
+        jobScheduler.setMaxConcurrentJobs(1);
+        willThrow(new IllegalStateException("failed")).given(etlService)
+                .doETL(eq("first"), anyMapOf(String.class, Object.class));
+        jobScheduler.fire(SOURCE, "first", params, new Date());
+        jobScheduler.fire(SOURCE, "second", params, new Date());
+
+        //When
+        startedJobs.poll().run();
+
+        //Then
+        assertThat(startedJobs.size(), equalTo(1));
+    }
+
+    private void awaitStartedJob() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + START_TIMEOUT;
+        while (startedJobs.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(startedJobs.size(), equalTo(1));
+    }
+}
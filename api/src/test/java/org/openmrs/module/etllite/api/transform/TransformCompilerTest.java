@@ -0,0 +1,185 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.api.transform;
+
+import org.junit.Test;
+import org.openmrs.module.etllite.api.BaseTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Transform Compiler Unit Test Class
+ */
+public class TransformCompilerTest extends BaseTest {
+
+    private TransformCompiler compiler = new TransformCompiler();
+
+    @Test
+    public void shouldRenameAndCastColumns() {
+        //Given
+        CompiledTransform transform = compiler.compile("{\"columns\": ["
+                + "{\"name\": \"patientId\", \"source\": \"patient_id\", \"type\": \"long\"},"
+                + "{\"name\": \"weight\", \"type\": \"decimal\"},"
+                + "{\"name\": \"active\", \"type\": \"boolean\"},"
+                + "{\"name\": \"identifier\", \"source\": \"id\", \"type\": \"string\"},"
+                + "{\"name\": \"note\"}]}");
+        Map<String, Object> row = new HashMap<>();
+        row.put("patient_id", 12);
+        row.put("weight", " 72.5 ");
+        row.put("active", 1);
+        row.put("id", 100);
+
+        //When
+        Map<String, Object> outputRow = transform.apply(row);
+
+        //Then
+        assertThat(outputRow.get("patientId"), equalTo((Object) 12L));
+        assertThat(outputRow.get("weight"), equalTo((Object) new BigDecimal("72.5")));
+        assertThat(outputRow.get("active"), equalTo((Object) true));
+        assertThat(outputRow.get("identifier"), equalTo((Object) "100"));
+        assertThat(outputRow.get("note"), nullValue());
+        assertThat(outputRow.size(), equalTo(5));
+        assertThat(transform.getColumnCount(), equalTo(5));
+    }
+
+    @Test
+    public void shouldParseAndFormatDates() {
+        //Given
+        CompiledTransform transform = compiler.compile("{\"columns\": ["
+                + "{\"name\": \"visitDate\", \"source\": \"visit_date\", \"type\": \"date\", "
+                + "\"format\": \"yyyy-MM-dd\"},"
+                + "{\"name\": \"birthDate\", \"source\": \"birth_date\", \"type\": \"string\", "
+                + "\"format\": \"dd/MM/yyyy\"}]}");
+        Date birthDate = new GregorianCalendar(1980, Calendar.MARCH, 2).getTime();
+        Map<String, Object> row = new HashMap<>();
+        row.put("visit_date", "2020-01-15");
+        row.put("birth_date", birthDate);
+
+        //When
+        Map<String, Object> outputRow = transform.apply(row);
+
+        //Then
+        assertThat(outputRow.get("visitDate"), equalTo((Object) new GregorianCalendar(2020, Calendar.JANUARY, 15)
+                .getTime()));
+        assertThat(outputRow.get("birthDate"), equalTo((Object) "02/03/1980"));
+    }
+
+    @Test
+    public void shouldUseConstantsLookupsAndDefaults() {
+        //Given
+        CompiledTransform transform = compiler.compile("{\"columns\": ["
+                + "{\"name\": \"gender\", \"source\": \"sex\", \"lookup\": {\"M\": \"Male\", \"F\": \"Female\"}, "
+                + "\"default\": \"Unknown\"},"
+                + "{\"name\": \"visitTypeId\", \"value\": \"3\", \"type\": \"integer\"},"
+                + "{\"name\": \"count\", \"type\": \"integer\", \"default\": \"0\"}]}");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(Collections.<String, Object>singletonMap("sex", "F"));
+        rows.add(Collections.<String, Object>singletonMap("sex", "X"));
+        List<Map<String, Object>> outputRows = new ArrayList<>();
+
+        //When
+        transform.apply(rows, outputRows);
+
+        //Then
+        assertThat(outputRows.size(), equalTo(2));
+        assertThat(outputRows.get(0).get("gender"), equalTo((Object) "Female"));
+        assertThat(outputRows.get(1).get("gender"), equalTo((Object) "Unknown"));
+        assertThat(outputRows.get(0).get("visitTypeId"), equalTo((Object) 3));
+        assertThat(outputRows.get(1).get("count"), equalTo((Object) 0));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfValueCanNotBeConverted() {
+        //Given
+        CompiledTransform transform = compiler.compile("{\"columns\": [{\"name\": \"age\", \"type\": \"integer\"}]}");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("age");
+
+        //When
+        transform.apply(Collections.<String, Object>singletonMap("age", "unknown"));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfNumberHasFraction() {
+        //Given
+        CompiledTransform transform = compiler.compile("{\"columns\": [{\"name\": \"age\", \"type\": \"integer\"}]}");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("age");
+
+        //When
+        transform.apply(Collections.<String, Object>singletonMap("age", 3.7));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfNumberDoesNotFitIntoType() {
+        //Given
+        CompiledTransform transform = compiler.compile("{\"columns\": [{\"name\": \"count\", \"type\": \"integer\"}]}");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("count");
+
+        //When
+        transform.apply(Collections.<String, Object>singletonMap("count", 1L << 40));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfDateCanNotBeParsed() {
+        //Given
+        CompiledTransform transform = compiler.compile("{\"columns\": [{\"name\": \"birthdate\", "
+                + "\"type\": \"date\", \"format\": \"yyyy-MM-dd\"}]}");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("birthdate");
+
+        //When
+        transform.apply(Collections.<String, Object>singletonMap("birthdate", "not a date"));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfTypeIsUnknown() {
+        //Given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Unknown column type: uuid");
+
+        //When
+        compiler.compile("{\"columns\": [{\"name\": \"patient\", \"type\": \"uuid\"}]}");
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfColumnIsDefinedTwice() {
+        //Given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("The column age is defined twice");
+
+        //When
+        compiler.compile("{\"columns\": [{\"name\": \"age\"}, {\"name\": \"age\", \"source\": \"years\"}]}");
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfDefinitionIsNotValidJson() {
+        //Given
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid transform definition");
+
+        //When
+        compiler.compile("{\"columns\": [");
+    }
+}
@@ -17,17 +17,37 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({DateUtil.class, TimeZone.class})
 public class DateUtilTest {
 
+    private static final String[][] DATES_TO_PARSE = {
+        {"2015-12-05", "yyyy-MM-dd"},
+        {"12-Mar-20", "dd-MMM-yy"},
+        {"12-march-99", "dd-MMM-yy"},
+        {"5/3/2020", "dd/MM/yyyy"},
+        {"2020-02-31", "yyyy-MM-dd"},
+        {"2020-01-01 13", "yyyy-MM-dd HH"},
+        {"2010-11-16T15:43:59.123Z", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX"},
+        {"2015-12-05 with text", "yyyy-MM-dd"},
+        {"03/2020", "MM/yyyy"},
+        {"Sat 05 Dec 2015", "EEE dd MMM yyyy"},
+        {"2015-12-05 10 PM", "yyyy-MM-dd hh a"}
+    };
+
+    private static final String[] FORMAT_PATTERNS = {"yyyy-MM-dd", "dd-MMM-yy", "EEE, d MMM yyyy HH:mm:ss Z",
+        "yyyy-MM-dd HH:mm:ss.S", "hh:mm a", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX"};
+
     @Test
     public void shouldSuccessfullyParseDateTime() {
         Date expected = createDate(2010, Calendar.NOVEMBER, 16, 15, 43, 59, "Asia/Almaty");
@@ -89,6 +109,37 @@ public class DateUtilTest {
         assertThat(DateUtil.setTimeOfDay(dateToConvert, hour, minute, seconds), equalTo(expectedDate));
     }
 
+    @Test
+    public void shouldParseLikeSimpleDateFormat() throws ParseException {
+        for (String[] dateToParse : DATES_TO_PARSE) {
+            Date expected = new SimpleDateFormat(dateToParse[1]).parse(dateToParse[0]);
+            assertThat(DateUtil.parse(dateToParse[0], dateToParse[1]), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void shouldReturnNullWhenDateCanNotBeParsed() {
+        assertThat(DateUtil.parse("not a date", "yyyy-MM-dd"), nullValue());
+    }
+
+    @Test
+    public void shouldFormatLikeSimpleDateFormat() {
+        Date date = new Date(1449273600123L);
+        TimeZone timeZone = TimeZone.getTimeZone("Asia/Kolkata");
+        for (String pattern : FORMAT_PATTERNS) {
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
+            simpleDateFormat.setTimeZone(timeZone);
+            assertThat(DateUtil.dateToString(date, pattern, timeZone), equalTo(simpleDateFormat.format(date)));
+        }
+    }
+
+    @Test
+    public void shouldFormatSqlDate() {
+        java.sql.Date date = new java.sql.Date(1449273600000L);
+        TimeZone timeZone = TimeZone.getTimeZone("UTC");
+        assertThat(DateUtil.dateToString(date, "yyyy-MM-dd", timeZone), equalTo("2015-12-05"));
+    }
+
     private Date createDate(int year, int month, int day, int hour, int minute, int second, String timezone) {
         Calendar calendar = Calendar.getInstance();
         calendar.set(year, month, day, hour, minute, second);
@@ -15,9 +15,14 @@ import com.google.common.base.Splitter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.hibernate.jdbc.Work;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.db.hibernate.DbSession;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
 import org.openmrs.module.etllite.api.BaseTest;
 import org.openmrs.module.etllite.api.domain.Mapping;
 import org.powermock.api.mockito.PowerMockito;
@@ -28,6 +33,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +45,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
 
 /**
  * ETL Util Test Class
@@ -52,6 +60,12 @@ public class ETLUtilTest extends BaseTest {
     @InjectMocks
     private ETLUtil etlUtil = new ETLUtil();
 
+    @Mock
+    private DbSessionFactory dbSessionFactory;
+
+    @Mock
+    private DbSession dbSession;
+
     @Before
     public void setup() throws Exception {
         MockitoAnnotations.initMocks(ETLUtilTest.class);
@@ -248,4 +262,32 @@ public class ETLUtilTest extends BaseTest {
         assertThat(resultCalendar.get(Calendar.DAY_OF_WEEK), is(Calendar.SATURDAY));
     }
 
+    @Test
+    public void shouldFlushAndClearCurrentSession() {
+        //Given
+        given(dbSessionFactory.getCurrentSession()).willReturn(dbSession);
+
+        //When
+        etlUtil.flushSession();
+
+        //Then
+        InOrder order = inOrder(dbSession);
+        order.verify(dbSession).flush();
+        order.verify(dbSession).clear();
+    }
+
+    @Test
+    public void shouldFlushSessionBeforeBatchInsert() {
+        //Given
+        given(dbSessionFactory.getCurrentSession()).willReturn(dbSession);
+
+        //When
+        etlUtil.batchInsert("insert into person (gender) values (:gender)",
+                Collections.singletonList(Collections.singletonMap("gender", "F")));
+
+        //Then
+        InOrder order = inOrder(dbSession);
+        order.verify(dbSession).flush();
+        order.verify(dbSession).doWork(any(Work.class));
+    }
 }
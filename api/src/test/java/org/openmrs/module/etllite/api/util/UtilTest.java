@@ -17,6 +17,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openmrs.module.etllite.api.BaseTest;
 import org.openmrs.module.etllite.api.ETLTestHelper;
+import org.openmrs.module.etllite.api.domain.types.DatabaseTypes;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
@@ -82,4 +83,19 @@ public class UtilTest extends BaseTest {
         //Then
         assertNotNull(template);
     }
+
+    @Test
+    public void shouldReturnStreamingJDBCTemplateIfTheDataSourceIsNotNull() {
+        //Given & When
+        NamedParameterJdbcTemplate template = util.getStreamingJdbcTemplate(dataSource, 0, DatabaseTypes.MYSQL);
+        //Then
+        assertNotNull(template);
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentIfTheDataSourceIsNullForStreamingTemplate() {
+        expectedException.expect(IllegalArgumentException.class);
+        //Given & When
+        util.getStreamingJdbcTemplate(null, 0, null);
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares the JMH results written with -rf json against the committed baseline and fails when a benchmark
+ * is slower than its baseline score by more than the tolerance of the baseline. A benchmark which has no score
+ * in the baseline fails the check as well, so an empty or stale baseline can not pass. With --update the scores
+ * of the baseline are replaced by the results.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar org.openmrs.module.etllite.benchmark.BaselineCheck
+ * target/jmh-result.json baseline.json [--update]
+ */
+public class BaselineCheck {
+
+    private static final Log LOGGER = LogFactory.getLog(BaselineCheck.class);
+
+    private static final String UPDATE = "--update";
+
+    private static final String THROUGHPUT_MODE = "thrpt";
+
+    private final Map<String, Score> results;
+
+    private final Baseline baseline;
+
+    public BaselineCheck(Map<String, Score> results, Baseline baseline) {
+        this.results = results;
+        this.baseline = baseline;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: BaselineCheck <results> <baseline> [--update]");
+        }
+        BaselineCheck check = new BaselineCheck(readResults(args[0]), readBaseline(args[1]));
+        if (args.length > 2 && UPDATE.equals(args[2])) {
+            writeBaseline(args[1], check.updatedBaseline());
+            LOGGER.info(String.format("Baseline updated with %d results", check.results.size()));
+        } else {
+            check.verify();
+        }
+    }
+
+    /**
+     * Compares each result with its baseline score
+     *
+     * @throws IllegalStateException if there are no results, any benchmark has no baseline score or is slower
+     *                               than the baseline allows
+     */
+    public void verify() {
+        if (results.isEmpty()) {
+            throw new IllegalStateException("There are no benchmark results to compare with the baseline");
+        }
+        int regressions = 0;
+        int missing = 0;
+        for (Map.Entry<String, Score> result : results.entrySet()) {
+            Score expected = baseline.scores.get(result.getKey());
+            if (expected == null) {
+                LOGGER.info(String.format("MISS %s: %.3f %s, no baseline", result.getKey(), result.getValue().score,
+                        result.getValue().unit));
+                missing++;
+                continue;
+            }
+            double change = result.getValue().changeFrom(expected);
+            boolean regression = change > baseline.tolerance;
+            LOGGER.info(String.format("%s %s: %.3f %s, baseline %.3f, change %+.1f%%", regression ? "FAIL" : "OK  ",
+                    result.getKey(), result.getValue().score, result.getValue().unit, expected.score, change * 100));
+            if (regression) {
+                regressions++;
+            }
+        }
+
+        if (missing > 0) {
+            throw new IllegalStateException(String.format("%d benchmarks have no baseline score, record the baseline "
+                    + "with %s", missing, UPDATE));
+        }
+        if (regressions > 0) {
+            throw new IllegalStateException(String.format("%d benchmarks are slower than the baseline by more than %.0f%%",
+                    regressions, baseline.tolerance * 100));
+        }
+    }
+
+    /**
+     * Returns the baseline with the current results as the expected scores
+     */
+    public Baseline updatedBaseline() {
+        Baseline updated = new Baseline();
+        updated.tolerance = baseline.tolerance;
+        updated.scores = results;
+        return updated;
+    }
+
+    private static Map<String, Score> readResults(String path) throws IOException {
+        Map<String, Score> results = new TreeMap<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            JsonArray runs = new JsonParser().parse(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                JsonObject metric = run.getAsJsonObject("primaryMetric");
+                Score score = new Score();
+                score.score = metric.get("score").getAsDouble();
+                score.unit = metric.get("scoreUnit").getAsString();
+                score.higherIsBetter = THROUGHPUT_MODE.equals(run.get("mode").getAsString());
+                results.put(key(run), score);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Builds the key of the result from the benchmark and its parameters, e.g. TransformBenchmark.transform[rowCount=100]
+     */
+    private static String key(JsonObject run) {
+        String key = run.get("benchmark").getAsString().replace(BaselineCheck.class.getPackage().getName() + '.', "");
+        if (!run.has("params")) {
+            return key;
+        }
+        Map<String, String> params = new TreeMap<>();
+        for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+            params.put(param.getKey(), param.getValue().getAsString());
+        }
+        return key + params.toString().replace('{', '[').replace('}', ']').replace(", ", ",");
+    }
+
+    private static Baseline readBaseline(String path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            Baseline baseline = new Gson().fromJson(reader, Baseline.class);
+            if (baseline.scores == null) {
+                baseline.scores = new TreeMap<>();
+            }
+            return baseline;
+        }
+    }
+
+    private static void writeBaseline(String path, Baseline baseline) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(baseline, writer);
+        }
+    }
+
+    /**
+     * The committed baseline: the allowed relative slowdown and the expected score of each benchmark
+     */
+    public static class Baseline {
+
+        private double tolerance;
+
+        private Map<String, Score> scores;
+    }
+
+    public static class Score {
+
+        private double score;
+
+        private String unit;
+
+        private boolean higherIsBetter;
+
+        /**
+         * Returns the relative slowdown of this score compared with the baseline score, negative values mean speedup
+         */
+        private double changeFrom(Score baseline) {
+            if (higherIsBetter) {
+                return (baseline.score - score) / baseline.score;
+            }
+            return (score - baseline.score) / baseline.score;
+        }
+    }
+}
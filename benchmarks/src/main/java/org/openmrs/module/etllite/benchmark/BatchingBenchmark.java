@@ -0,0 +1,76 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import com.google.common.collect.Lists;
+import org.openmrs.module.etllite.api.engine.BatchingRowCallbackHandler;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the batching of the extracted rows: all rows loaded into memory and split by Lists.partition
+ * against the rows streamed from the result set and handed over batch by batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchingBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private static final String QUERY = "select * from person";
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private JdbcTemplate template;
+
+    @Setup
+    public void setUp() {
+        template = new JdbcTemplate(BenchmarkDatabaseHelper.createSourceDataSource("batching" + batchSize, ROWS));
+    }
+
+    @Benchmark
+    public void partitionLoadedRows(Blackhole blackhole) {
+        List<Map<String, Object>> rows = template.queryForList(QUERY);
+        for (List<Map<String, Object>> batch : Lists.partition(rows, batchSize)) {
+            blackhole.consume(batch);
+        }
+    }
+
+    @Benchmark
+    public int streamBatches(Blackhole blackhole) throws ETLException, MappingNotFoundException {
+        BatchingRowCallbackHandler rowHandler = new BatchingRowCallbackHandler(batchSize, blackhole::consume);
+        template.query(QUERY, rowHandler);
+        rowHandler.flush();
+        return rowHandler.getBatchCount();
+    }
+}
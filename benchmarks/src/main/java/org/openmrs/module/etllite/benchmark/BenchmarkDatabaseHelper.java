@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the in-memory H2 databases used by the benchmarks, both as the ETL sources and as the OpenMRS database
+ */
+public final class BenchmarkDatabaseHelper {
+
+    private static final String INSERT_PERSON =
+            "insert into person (person_id, name, date_created, location_id) values (?, ?, ?, ?)";
+
+    private BenchmarkDatabaseHelper() {
+    }
+
+    /**
+     * Creates the session factory of a new in-memory database, the sessions are bound to the current thread
+     * like the sessions of the OpenMRS transactions
+     *
+     * @param name the name of the database
+     * @return the session factory
+     */
+    public static SessionFactory createSessionFactory(String name) {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(BenchmarkPerson.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1", name))
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.current_session_context_class", "thread")
+                .setProperty("hibernate.jdbc.batch_size", "50");
+        return configuration.buildSessionFactory(new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties()).build());
+    }
+
+    /**
+     * Creates a new in-memory ETL source database with the person table filled with synthetic rows
+     *
+     * @param name the name of the database
+     * @param rows the number of rows of the person table
+     * @return the data source of the database, it always returns the same connection
+     */
+    public static DataSource createSourceDataSource(String name, int rows) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1", name), "sa", "", true);
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table person (person_id int primary key, name varchar(50), "
+                + "date_created timestamp, location_id int)");
+        List<Object[]> values = new ArrayList<>(rows);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            values.add(new Object[] {i, i % 2 == 0 ? "Male" : "Female", new Timestamp(now - i * 60000L), i % 10});
+        }
+        template.batchUpdate(INSERT_PERSON, values);
+        return dataSource;
+    }
+
+    /**
+     * Creates a new in-memory ETL source database with the wide table of the given number of columns filled with
+     * synthetic rows, the even columns are integers and the odd columns are strings
+     *
+     * @param name    the name of the database
+     * @param rows    the number of rows of the wide table
+     * @param columns the number of columns of the wide table
+     * @return the data source of the database, it always returns the same connection
+     */
+    public static DataSource createWideSourceDataSource(String name, int rows, int columns) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                String.format("jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1", name), "sa", "", true);
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        StringBuilder create = new StringBuilder("create table wide (");
+        StringBuilder insert = new StringBuilder("insert into wide values (");
+        for (int column = 0; column < columns; column++) {
+            String separator = column == 0 ? "" : ", ";
+            create.append(separator).append("column_").append(column).append(column % 2 == 0 ? " int" : " varchar(50)");
+            insert.append(separator).append('?');
+        }
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute(create.append(')').toString());
+        List<Object[]> values = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            Object[] rowValues = new Object[columns];
+            for (int column = 0; column < columns; column++) {
+                rowValues[column] = column % 2 == 0 ? (Object) (row + column) : "value " + row + "-" + column;
+            }
+            values.add(rowValues);
+        }
+        template.batchUpdate(insert.append(')').toString(), values);
+        return dataSource;
+    }
+}
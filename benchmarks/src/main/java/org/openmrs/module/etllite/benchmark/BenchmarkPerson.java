@@ -0,0 +1,56 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The entity saved by the load benchmarks, it stands for the OpenMRS objects saved by the load templates
+ */
+@Entity
+@Table(name = "benchmark_person")
+public class BenchmarkPerson {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private Integer id;
+
+    @Column
+    private String gender;
+
+    @Column
+    private String externalId;
+
+    public BenchmarkPerson() {
+    }
+
+    public BenchmarkPerson(String gender, String externalId) {
+        this.gender = gender;
+        this.externalId = externalId;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+}
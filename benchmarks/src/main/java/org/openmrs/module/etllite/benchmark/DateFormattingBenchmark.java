@@ -0,0 +1,70 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import org.openmrs.module.etllite.api.util.ETLUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the date utilities which the transform templates call for each row. The legacy benchmarks create a
+ * <code>SimpleDateFormat</code> for each call like the utilities did before the formatters were cached, so the
+ * results compare both implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DateFormattingBenchmark {
+
+    private final ETLUtil etlUtil = new ETLUtil();
+
+    private final Date date = new Date(1449273600000L);
+
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    @Benchmark
+    public Date stringToDate() {
+        return etlUtil.stringToDate("2015-12-05", "yyyy-MM-dd");
+    }
+
+    @Benchmark
+    public String formatDate() {
+        return etlUtil.formatDate(date, "MM/dd/yyyy");
+    }
+
+    @Benchmark
+    public Date legacyStringToDate() throws ParseException {
+        return new SimpleDateFormat("yyyy-MM-dd").parse("2015-12-05");
+    }
+
+    @Benchmark
+    public String legacyFormatDate() {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        simpleDateFormat.setTimeZone(timeZone);
+        return simpleDateFormat.format(date);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
+import org.openmrs.module.etllite.api.util.ETLUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of loading a single row when all rows of a batch are saved in one Hibernate session.
+ * Every save is followed by a query, like the lookups done by the OpenMRS services, which flushes the session
+ * and dirty checks all entities it holds. With the flush interval the session is cleared by ETLUtil, so the cost
+ * per row no longer grows with the number of rows saved before. The batch insert benchmark shows the cost of
+ * the same rows inserted by the JDBC batches of ETLUtil.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadSessionBenchmark {
+
+    private static final int ROWS = 2000;
+
+    private static final String INSERT_SQL =
+            "insert into benchmark_person (id, gender, externalId) values (:id, :gender, :externalId)";
+
+    /**
+     * The number of saved rows after which the session is flushed and cleared, 0 means it is never cleared
+     */
+    @Param({"0", "100"})
+    private int flushInterval;
+
+    private SessionFactory sessionFactory;
+
+    private ETLUtil etlUtil;
+
+    private List<Map<String, Object>> rows;
+
+    @Setup
+    public void setUp() {
+        sessionFactory = BenchmarkDatabaseHelper.createSessionFactory("load");
+        etlUtil = new ETLUtil();
+        etlUtil.setDbSessionFactory(new DbSessionFactory(sessionFactory));
+
+        rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", -i - 1);
+            row.put("gender", i % 2 == 0 ? "F" : "M");
+            row.put("externalId", String.valueOf(i));
+            rows.add(row);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long saveRows() {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        long count = 0;
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                Map<String, Object> row = rows.get(i);
+                session.save(new BenchmarkPerson((String) row.get("gender"), (String) row.get("externalId")));
+                count += (Long) session.createQuery("select count(p) from BenchmarkPerson p where p.gender = :gender")
+                        .setParameter("gender", row.get("gender"))
+                        .uniqueResult();
+                if (flushInterval > 0 && (i + 1) % flushInterval == 0) {
+                    etlUtil.flushSession();
+                }
+            }
+        } finally {
+            // the rows are rolled back, so every invocation starts with an empty table
+            session.getTransaction().rollback();
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int batchInsertRows() {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+        try {
+            return etlUtil.batchInsert(INSERT_SQL, rows);
+        } finally {
+            session.getTransaction().rollback();
+        }
+    }
+}
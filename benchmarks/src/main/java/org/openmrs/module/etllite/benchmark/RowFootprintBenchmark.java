@@ -0,0 +1,65 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import org.openmrs.module.etllite.api.engine.CompactRowMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the rows of a wide 40-column extract mapped by <code>queryForList</code> with the compact rows
+ * sharing the column names of the result set. Run it with <code>-prof gc</code>, the gc.alloc.rate.norm metric
+ * is the number of bytes allocated by one extract of all the rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RowFootprintBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private static final int COLUMNS = 40;
+
+    private static final String QUERY = "select * from wide";
+
+    private JdbcTemplate template;
+
+    @Setup
+    public void setUp() {
+        template = new JdbcTemplate(BenchmarkDatabaseHelper.createWideSourceDataSource("footprint", ROWS, COLUMNS));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> columnMapRows() {
+        return template.queryForList(QUERY);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> compactRows() {
+        return template.query(QUERY, new CompactRowMapper());
+    }
+}
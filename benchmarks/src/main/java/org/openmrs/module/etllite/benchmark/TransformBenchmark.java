@@ -0,0 +1,142 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.benchmark;
+
+import org.openmrs.module.etllite.api.cache.TemplateCache;
+import org.openmrs.module.etllite.api.constants.Constants;
+import org.openmrs.module.etllite.api.dao.MappingDao;
+import org.openmrs.module.etllite.api.domain.Mapping;
+import org.openmrs.module.etllite.api.exception.ETLException;
+import org.openmrs.module.etllite.api.exception.MappingNotFoundException;
+import org.openmrs.module.etllite.api.service.impl.ETLServiceImpl;
+import org.openmrs.module.etllite.api.util.ETLUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Velocity transform and the equivalent declarative transform of the ETL service over the rows
+ * extracted from an H2 source
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransformBenchmark {
+
+    private static final String MAPPING_NAME = "benchmark";
+
+    private static final String DECLARATIVE_MAPPING_NAME = "benchmark-declarative";
+
+    private static final String SOURCE = "benchmark-source";
+
+    private static final String TRANSFORM_TEMPLATE = "#foreach( $row in $rows )\n"
+            + "  #set($out = $util.newMap())\n"
+            + "  #if ($row.get(\"name\") == \"Male\")\n"
+            + "    $out.put(\"gender\", \"male\")\n"
+            + "  #else\n"
+            + "    $out.put(\"gender\", \"female\")\n"
+            + "  #end\n"
+            + "  $out.put(\"dateCreated\", $util.formatDate($row.get(\"date_created\"), \"MM/dd/yyyy\"))\n"
+            + "  $out.put(\"externalId\", $row.get(\"person_id\").toString())\n"
+            + "  $out.put(\"locationId\", $row.get(\"location_id\"))\n"
+            + "  $outs.add($out)\n"
+            + "#end\n";
+
+    private static final String TRANSFORM_DEFINITION = "{\"columns\": ["
+            + "{\"name\": \"gender\", \"source\": \"name\", \"lookup\": {\"Male\": \"male\"}, \"default\": \"female\"},"
+            + "{\"name\": \"dateCreated\", \"source\": \"date_created\", \"type\": \"string\", "
+            + "\"format\": \"MM/dd/yyyy\"},"
+            + "{\"name\": \"externalId\", \"source\": \"person_id\", \"type\": \"string\"},"
+            + "{\"name\": \"locationId\", \"source\": \"location_id\"}]}";
+
+    @Param({"100", "1000"})
+    private int rowCount;
+
+    private ETLServiceImpl etlService;
+
+    private Map<String, Object> params;
+
+    private List<Map<String, Object>> rows;
+
+    @Setup
+    public void setUp() {
+        rows = new JdbcTemplate(BenchmarkDatabaseHelper.createSourceDataSource("transform" + rowCount, rowCount))
+                .queryForList("select * from person");
+
+        Mapping mapping = new Mapping();
+        mapping.setId(1);
+        mapping.setName(MAPPING_NAME);
+        mapping.setSource(SOURCE);
+        mapping.setTransformTemplate(TRANSFORM_TEMPLATE);
+
+        Mapping declarativeMapping = new Mapping();
+        declarativeMapping.setId(2);
+        declarativeMapping.setName(DECLARATIVE_MAPPING_NAME);
+        declarativeMapping.setSource(SOURCE);
+        declarativeMapping.setTransformDefinition(TRANSFORM_DEFINITION);
+
+        etlService = new ETLServiceImpl();
+        etlService.setMappingDao(mappingDao(mapping, declarativeMapping));
+        etlService.setEtlUtil(new ETLUtil());
+        etlService.setTemplateCache(new TemplateCache());
+        etlService.initialize();
+
+        params = new HashMap<>();
+        params.put(Constants.PARAM_SOURCE, SOURCE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> transform() throws ETLException, MappingNotFoundException {
+        return etlService.transform(MAPPING_NAME, params, rows);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> declarativeTransform() throws ETLException, MappingNotFoundException {
+        return etlService.transform(DECLARATIVE_MAPPING_NAME, params, rows);
+    }
+
+    /**
+     * The mapping DAO finds only the benchmarked mappings, the other methods are not used by the transform
+     */
+    private MappingDao mappingDao(Mapping... mappings) {
+        return (MappingDao) Proxy.newProxyInstance(MappingDao.class.getClassLoader(),
+                new Class<?>[] {MappingDao.class},
+                (proxy, method, args) -> "findByNameAndSource".equals(method.getName()) ? findMapping(mappings,
+                        (String) args[0]) : null);
+    }
+
+    private static Mapping findMapping(Mapping[] mappings, String name) {
+        for (Mapping mapping : mappings) {
+            if (mapping.getName().equals(name)) {
+                return mapping;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.web.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.etllite.api.builder.MetricsResponseBuilder;
+import org.openmrs.module.etllite.api.cache.MappingCache;
+import org.openmrs.module.etllite.api.cache.TemplateCache;
+import org.openmrs.module.etllite.api.contract.CacheStatsResponse;
+import org.openmrs.module.etllite.api.contract.ExecutorStatsResponse;
+import org.openmrs.module.etllite.api.contract.MappingMetricsResponse;
+import org.openmrs.module.etllite.api.engine.BoundedDaemonExecutor;
+import org.openmrs.module.etllite.api.metrics.ETLMetricsRegistry;
+import org.openmrs.module.etllite.api.metrics.MappingMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Controller exposing the timing and throughput metrics of the ETL runs
+ */
+@Api(value = "Metrics")
+@RequestMapping(value = "/etllite/metrics")
+@Controller
+public class MetricsController extends RestController {
+
+    private static final String MAPPING_CACHE = "mappings";
+
+    private static final String TEMPLATE_CACHE = "templates";
+
+    @Autowired
+    @Qualifier("etllite.metricsRegistry")
+    private ETLMetricsRegistry metricsRegistry;
+
+    @Autowired
+    @Qualifier("etllite.MetricsResponseBuilder")
+    private MetricsResponseBuilder metricsResponseBuilder;
+
+    @Autowired
+    @Qualifier("etllite.mappingCache")
+    private MappingCache mappingCache;
+
+    @Autowired
+    @Qualifier("etllite.templateCache")
+    private TemplateCache templateCache;
+
+    /**
+     * REST API to retrieve the metrics of the mappings recorded since the start of the module or the last reset
+     *
+     * @param source ETL database, optional
+     * @param mapping mapping name, optional
+     * @return list of metrics of the mappings
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    @ApiOperation(value = "Retrieves the metrics of the ETL mappings",
+            notes = "Retrieves the batch latency histograms, row counts, throughput, error counts and extract time to "
+                    + "first row of each stage of the mappings, optionally only for a specific source or mapping",
+            response = MappingMetricsResponse.class,
+            responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = HttpURLConnection.HTTP_OK, message = "On successful retrieval of the metrics")})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<MappingMetricsResponse> getMetrics(
+            @ApiParam(name = "source", value = "source system name defined in the ETL settings", required = false)
+            @RequestParam(value = "source", required = false) String source,
+            @ApiParam(name = "mapping", value = "Mapping name", required = false)
+            @RequestParam(value = "mapping", required = false) String mapping) {
+        List<MappingMetricsResponse> responses = new ArrayList<>();
+        for (MappingMetrics mappingMetrics : metricsRegistry.getAllMetrics()) {
+            if ((StringUtils.isEmpty(source) || source.equals(mappingMetrics.getSource()))
+                    && (StringUtils.isEmpty(mapping) || mapping.equals(mappingMetrics.getMapping()))) {
+                responses.add(metricsResponseBuilder.createFrom(mappingMetrics));
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * REST API to retrieve the statistics of the mapping and template caches
+     *
+     * @return list of statistics of the caches
+     */
+    @RequestMapping(value = "/caches", method = RequestMethod.GET)
+    @ApiOperation(value = "Retrieves the statistics of the ETL caches",
+            notes = "Retrieves the size, hit count and miss count of the mapping and template caches",
+            response = CacheStatsResponse.class,
+            responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = HttpURLConnection.HTTP_OK, message = "On successful retrieval of the statistics")})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<CacheStatsResponse> getCacheStats() {
+        List<CacheStatsResponse> responses = new ArrayList<>();
+        responses.add(new CacheStatsResponse(MAPPING_CACHE, mappingCache.size(), mappingCache.getHitCount(),
+                mappingCache.getMissCount()));
+        responses.add(new CacheStatsResponse(TEMPLATE_CACHE, templateCache.size(), templateCache.getHitCount(),
+                templateCache.getMissCount()));
+        return responses;
+    }
+
+    /**
+     * REST API to retrieve the statistics of the executors of the ETL event listeners
+     *
+     * @return list of statistics of the executors
+     */
+    @RequestMapping(value = "/executors", method = RequestMethod.GET)
+    @ApiOperation(value = "Retrieves the statistics of the ETL event listener executors",
+            notes = "Retrieves the active workers, queue depth, completed and rejected tasks and the waiting and "
+                    + "running times of the tasks of the executors of the ETL event listeners",
+            response = ExecutorStatsResponse.class,
+            responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = HttpURLConnection.HTTP_OK, message = "On successful retrieval of the statistics")})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public List<ExecutorStatsResponse> getExecutorStats() {
+        List<ExecutorStatsResponse> responses = new ArrayList<>();
+        for (BoundedDaemonExecutor executor : metricsRegistry.getExecutors()) {
+            responses.add(metricsResponseBuilder.createFrom(executor));
+        }
+        return responses;
+    }
+
+    /**
+     * REST API to reset the metrics of all mappings
+     */
+    @RequestMapping(method = RequestMethod.DELETE)
+    @ApiOperation(value = "Resets the metrics of all ETL mappings", notes = "Resets the metrics of all ETL mappings")
+    @ApiResponses(value = {
+            @ApiResponse(code = HttpURLConnection.HTTP_OK, message = "On successful reset of the metrics")})
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public void reset() {
+        metricsRegistry.reset();
+    }
+}
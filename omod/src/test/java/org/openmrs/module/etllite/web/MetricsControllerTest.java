@@ -0,0 +1,154 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ * <p>
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+
+package org.openmrs.module.etllite.web;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.etllite.api.BaseTest;
+import org.openmrs.module.etllite.api.ETLTestHelper;
+import org.openmrs.module.etllite.api.builder.MetricsResponseBuilder;
+import org.openmrs.module.etllite.api.cache.MappingCache;
+import org.openmrs.module.etllite.api.cache.TemplateCache;
+import org.openmrs.module.etllite.api.contract.CacheStatsResponse;
+import org.openmrs.module.etllite.api.contract.ExecutorStatsResponse;
+import org.openmrs.module.etllite.api.contract.MappingMetricsResponse;
+import org.openmrs.module.etllite.api.engine.BoundedDaemonExecutor;
+import org.openmrs.module.etllite.api.metrics.ETLMetricsRegistry;
+import org.openmrs.module.etllite.api.metrics.ETLStage;
+import org.openmrs.module.etllite.web.controller.MetricsController;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Metrics Controller Test Class
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class MetricsControllerTest extends BaseTest {
+
+    private static final String METRICS_URL = "/etllite/metrics/";
+
+    private static final String OTHER_SOURCE = "other";
+
+    private MockMvc mockMvc;
+
+    @Spy
+    private ETLMetricsRegistry metricsRegistry = new ETLMetricsRegistry();
+
+    @Spy
+    private MetricsResponseBuilder metricsResponseBuilder = new MetricsResponseBuilder();
+
+    @Spy
+    private MappingCache mappingCache = new MappingCache();
+
+    @Spy
+    private TemplateCache templateCache = new TemplateCache();
+
+    @InjectMocks
+    private MetricsController metricsController = new MetricsController();
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(metricsController).build();
+        metricsRegistry.recordBatch(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME, ETLStage.TRANSFORM,
+                2000000L, 10, 8);
+        metricsRegistry.recordError(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME, ETLStage.LOAD);
+        metricsRegistry.recordBatch(OTHER_SOURCE, ETLTestHelper.MAPPING_NAME, ETLStage.EXTRACT, 1000000L, 5, 5);
+    }
+
+    @Test
+    public void shouldReturnMetricsOfAllMappingsAsJson() throws Exception {
+        //Given
+        List<MappingMetricsResponse> expected = new ArrayList<>();
+        expected.add(metricsResponseBuilder.createFrom(
+                metricsRegistry.getMappingMetrics(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME)));
+        expected.add(metricsResponseBuilder.createFrom(
+                metricsRegistry.getMappingMetrics(OTHER_SOURCE, ETLTestHelper.MAPPING_NAME)));
+
+        //When and Then
+        mockMvc.perform(get(METRICS_URL))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(content().contentType(ETLTestHelper.APPLICATION_JSON_UTF8))
+                .andExpect(content().string(json(expected)));
+    }
+
+    @Test
+    public void shouldReturnMetricsOfSourceAsJson() throws Exception {
+        //Given
+        MappingMetricsResponse expected = metricsResponseBuilder.createFrom(
+                metricsRegistry.getMappingMetrics(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME));
+
+        //When and Then
+        mockMvc.perform(get(METRICS_URL).param("source", ETLTestHelper.MAPPING_SOURCE))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(content().string(json(Collections.singletonList(expected))));
+        assertThat(expected.getStages().get(ETLStage.TRANSFORM.name()).getRowsOut(), is(8L));
+        assertThat(expected.getStages().get(ETLStage.LOAD.name()).getErrors(), is(1L));
+    }
+
+    @Test
+    public void shouldReturnCacheStatsAsJson() throws Exception {
+        //Given
+        mappingCache.getMapping(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME,
+                ETLTestHelper::setUpDbMapping);
+        mappingCache.getMapping(ETLTestHelper.MAPPING_SOURCE, ETLTestHelper.MAPPING_NAME,
+                ETLTestHelper::setUpDbMapping);
+        List<CacheStatsResponse> expected = new ArrayList<>();
+        expected.add(new CacheStatsResponse("mappings", 1, 1L, 1L));
+        expected.add(new CacheStatsResponse("templates", 0, 0L, 0L));
+
+        //When and Then
+        mockMvc.perform(get(METRICS_URL + "caches"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(content().string(json(expected)));
+    }
+
+    @Test
+    public void shouldReturnExecutorStatsAsJson() throws Exception {
+        //Given
+        BoundedDaemonExecutor executor = new BoundedDaemonExecutor();
+        executor.setName("etllite-job-listener");
+        executor.initialize();
+        metricsRegistry.setExecutors(Collections.singletonList(executor));
+        List<ExecutorStatsResponse> expected = Collections.singletonList(metricsResponseBuilder.createFrom(executor));
+
+        //When and Then
+        mockMvc.perform(get(METRICS_URL + "executors"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(content().string(json(expected)));
+        assertThat(expected.get(0).getName(), is("etllite-job-listener"));
+        executor.destroy();
+    }
+
+    @Test
+    public void shouldResetMetrics() throws Exception {
+        //When
+        mockMvc.perform(delete(METRICS_URL)).andExpect(status().is(HttpStatus.OK.value()));
+
+        //Then
+        assertThat(metricsRegistry.getAllMetrics(), is(Collections.emptyList()));
+    }
+}
@@ -156,6 +156,14 @@ const Mapping = (props) => {
             value={props.mapping.transformTemplate}
             onChange={handleChange} />
         </FormGroup>
+        <FormGroup controlId={"formTransformDefinition" + props.mapping.uiLocalUuid}>
+          <TextLabel text={getIntl().formatMessage({ id: 'ETL_MAPPING_TRANSFORM_DEFINITION_LABEL', defaultMessage: Default.MAPPING_TRANSFORM_DEFINITION_LABEL })} isMandatory={false} isWithColon={true} />
+          <Tooltip message={getIntl().formatMessage({ id: 'ETL_MAPPING_TRANSFORM_DEFINITION_DESC', defaultMessage: Default.MAPPING_TRANSFORM_DEFINITION_DESC })} />
+          <FormControl componentClass="textarea"
+            name='transformDefinition'
+            value={props.mapping.transformDefinition}
+            onChange={handleChange} />
+        </FormGroup>
         <FormGroup controlId={"formLoad" + props.mapping.uiLocalUuid}>
           <TextLabel text={getIntl().formatMessage({ id: 'ETL_MAPPING_LOAD_LABEL', defaultMessage: Default.MAPPING_LOAD_LABEL })} isMandatory={false} isWithColon={true} />
           <Tooltip message={getIntl().formatMessage({ id: 'ETL_MAPPING_LOAD_DESC', defaultMessage: Default.MAPPING_LOAD_DESC })} />
@@ -18,6 +18,11 @@ export class DatabaseModel {
     this.type = response && response.type ? response.type : '';
     this.query = response && response.query ? response.query : 'SELECT 0;';
     this.url = response && response.url ? response.url : '';
+    this.poolSize = response ? response.poolSize : null;
+    this.idleTimeout = response ? response.idleTimeout : null;
+    this.maxLifetime = response ? response.maxLifetime : null;
+    this.validationQuery = response ? response.validationQuery : null;
+    this.maxConcurrentMappings = response ? response.maxConcurrentMappings : null;
     this.confirmed = !!response;
     this.testResult = null;
     this.errors = null;
@@ -30,6 +35,11 @@ export class DatabaseModel {
       type: this.type,
       query: this.query,
       url: this.url,
+      poolSize: this.poolSize,
+      idleTimeout: this.idleTimeout,
+      maxLifetime: this.maxLifetime,
+      validationQuery: this.validationQuery,
+      maxConcurrentMappings: this.maxConcurrentMappings,
       dbPassword: this.dbPassword
     });
   }
@@ -17,11 +17,13 @@ export class MappingModel {
     this.source = mappingResponse && mappingResponse.source ? mappingResponse.source : '';
     this.loadTemplate = mappingResponse && mappingResponse.loadTemplate ? mappingResponse.loadTemplate : '';
     this.transformTemplate = mappingResponse && mappingResponse.transformTemplate ? mappingResponse.transformTemplate : '';
+    this.transformDefinition = mappingResponse && mappingResponse.transformDefinition ? mappingResponse.transformDefinition : '';
     this.name = mappingResponse && mappingResponse.name ? mappingResponse.name : '';
     this.cronExpression = mappingResponse && mappingResponse.cronExpression ? mappingResponse.cronExpression : '';
     this.query = mappingResponse && mappingResponse.query ? mappingResponse.query : '';
     this.fetchSize = mappingResponse && mappingResponse.fetchSize ? mappingResponse.fetchSize : 1000;
     this.testResultsSize = mappingResponse && mappingResponse.testResultsSize ? mappingResponse.testResultsSize : 10;
+    this.settings = mappingResponse && mappingResponse.settings ? mappingResponse.settings : null;
     this.isOpen = isOpen;
     this.isTestable = mappingResponse && mappingResponse.id;
   }
@@ -31,11 +33,13 @@ export class MappingModel {
       source: this.source,
       loadTemplate: this.loadTemplate,
       transformTemplate: this.transformTemplate,
+      transformDefinition: this.transformDefinition,
       name: this.name,
       cronExpression: this.cronExpression,
       query: this.query,
       fetchSize: this.fetchSize,
-      testResultsSize: this.testResultsSize
+      testResultsSize: this.testResultsSize,
+      settings: this.settings
     });
   }
 }
@@ -22,6 +22,7 @@ export const GENERIC_PROCESSING = 'Processing...';
 export const MAPPING_NAME_DESC = 'The Mapping Name.';
 export const MAPPING_QUERY_DESC = 'This is the SQL query to be run at the source. This forms the Extract section of the ETL module. The output of this query is saved under the variable rows and passed to the transform template for transformation. This field is used to test the mapping.';
 export const MAPPING_TRANSFORM_DESC = 'The Transformation template. Uses Velocity Syntax. This field is used to test the mapping.';
+export const MAPPING_TRANSFORM_DEFINITION_DESC = 'The optional declarative transform in JSON, e.g. {"columns": [{"name": "age", "source": "patient_age", "type": "integer"}]}. Each column is either a constant value or a source column, optionally replaced using a lookup table, converted to a type (string, integer, long, double, decimal, boolean, date) using a date format and defaulted. When it is set it is used instead of the transform template. This field is used to test the mapping.';
 export const MAPPING_SOURCE_DESC = '';
 export const MAPPING_CRON_DESC = 'Optional CRON expression used to run this mapping regularly on a scheduled basis.';
 export const MAPPING_FETCH_SIZE_DESC = 'This is the fetch size parameter to retrieve the data in chunks.';
@@ -34,6 +35,7 @@ export const MAPPING_SOURCE_LABEL = 'Source';
 export const MAPPING_FETCH_SIZE_LABEL = 'Fetch Size';
 export const MAPPING_QUERY_LABEL = 'Query (Extract)';
 export const MAPPING_TRANSFORM_LABEL = 'Transform';
+export const MAPPING_TRANSFORM_DEFINITION_LABEL = 'Transform Definition';
 export const MAPPING_LOAD_LABEL = 'Load';
 export const MAPPING_CRON_LABEL = 'CRON';
 export const MAPPING_TEST_RESULTS_SIZE_LABEL = 'Test Results Size';